@@ -94,7 +94,7 @@ public class AddNodeCommand extends Command {
 		// Revert to the old alignment
 		AlignmentManager.Instance()
 				.addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 
 		// Get the alignment update
 		return WorksheetUpdateFactory.createSemanticTypesAndSVGAlignmentUpdates(worksheetId, workspace, oldAlignment);
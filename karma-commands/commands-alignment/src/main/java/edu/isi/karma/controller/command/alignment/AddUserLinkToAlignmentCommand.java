@@ -122,7 +122,7 @@ public class AddUserLinkToAlignmentCommand extends Command {
 
 		// Revert to the old alignment
 		AlignmentManager.Instance().addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 		
 		// Get the alignment update
 		return getAlignmentUpdateContainer(oldAlignment, worksheet, workspace);
@@ -124,8 +124,9 @@ public class AugmentDataCommand extends WorksheetCommand{
 		CloneTableUtils.getDatatable(worksheet.getDataTable(), factory.getHTable(hnode.getHTableId()), dataTables);
 		Map<String, String> rowHashToSubjectURI = new HashMap<String, String>();
 		Map<String, List<String>> SubjectURIToRowId = new HashMap<String, List<String>>();
+		HashValueManager hashValues = new HashValueManager();
 		for(Table t : dataTables) {
-			for(Row r : t.getRows(0, t.getNumRows())) {
+			for(Row r : t.getRowsView()) {
 				Node n = r.getNode(hNodeId);
 				if(n != null && n.getValue() != null && !n.getValue().isEmptyValue() && n.getValue().asString() != null && !n.getValue().asString().trim().isEmpty() ) {
 					String uri = n.getValue().asString().trim().replace(" ", "");
@@ -139,7 +140,7 @@ public class AugmentDataCommand extends WorksheetCommand{
 						// TODO Auto-generated catch block
 					}
 //					n.setValue(uri, n.getStatus(), factory);
-					rowHashToSubjectURI.put(HashValueManager.getHashValue(r, hNodeIds), uri);
+					rowHashToSubjectURI.put(hashValues.getHashValue(r, hNodeIds), uri);
 
 					if (SubjectURIToRowId.get(uri) == null)
 						SubjectURIToRowId.put(uri, new ArrayList<String>());
@@ -246,7 +246,7 @@ public class ChangeInternalNodeLinksCommand extends Command {
 		// Revert to the old alignment
 		AlignmentManager.Instance()
 				.addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 
 		// Get the alignment update
 		return getAlignmentUpdateContainer(oldAlignment, worksheet, workspace);
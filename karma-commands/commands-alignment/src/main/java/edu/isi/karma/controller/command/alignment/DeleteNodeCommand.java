@@ -92,7 +92,7 @@ public class DeleteNodeCommand extends Command {
 		// Revert to the old alignment
 		AlignmentManager.Instance()
 				.addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 
 		// Get the alignment update
 		return WorksheetUpdateFactory.createSemanticTypesAndSVGAlignmentUpdates(worksheetId, workspace, oldAlignment);
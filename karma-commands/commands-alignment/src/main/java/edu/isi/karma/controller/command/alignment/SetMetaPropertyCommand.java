@@ -326,7 +326,7 @@ public class SetMetaPropertyCommand extends Command {
 				workspace.getId(), worksheetId);
 		AlignmentManager.Instance()
 				.addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 
 		// Get the alignment update if any
 		try {
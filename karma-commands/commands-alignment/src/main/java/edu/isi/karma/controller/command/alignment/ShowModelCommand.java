@@ -157,7 +157,7 @@ public class ShowModelCommand extends WorksheetCommand {
 		} else {
 		// Replace the current alignment with the old alignment
 			alignment = initialAlignment;
-			alignment.setGraph(initialGraph);
+			alignment.restore(initialGraph);
 			alignment.align();
 			AlignmentManager.Instance().addAlignmentToMap(alignmentId, alignment);
 		}
@@ -319,7 +319,7 @@ public class ShowModelCommand extends WorksheetCommand {
 		}
 
 		alignment = initialAlignment;
-		alignment.setGraph(initialGraph);
+		alignment.restore(initialGraph);
 		alignment.align();
 		AlignmentManager.Instance().addAlignmentToMap(alignmentId, alignment);
 		
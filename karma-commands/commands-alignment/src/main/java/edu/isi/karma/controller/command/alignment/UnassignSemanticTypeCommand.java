@@ -179,7 +179,7 @@ public class UnassignSemanticTypeCommand extends Command {
 		// Update with old alignment
 		String alignmentId = AlignmentManager.Instance().constructAlignmentId(workspace.getId(), worksheetId);
 		AlignmentManager.Instance().addAlignmentToMap(alignmentId, oldAlignment);
-		oldAlignment.setGraph(oldGraph);
+		oldAlignment.restore(oldGraph);
 		try {
 			c.add(new SemanticTypesUpdate(worksheet, worksheetId, oldAlignment));
 			c.add(new AlignmentSVGVisualizationUpdate(worksheetId, oldAlignment));
@@ -32,16 +32,13 @@ import java.io.StringWriter;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.lang.reflect.Field;
 
-import org.apache.hadoop.util.bloom.BloomFilter;
 import org.apache.hadoop.util.hash.Hash;
 import org.json.JSONException;
 import org.json.JSONObject;
@@ -256,16 +253,9 @@ public class PublishRDFCommand extends Command {
 					bf.populateFromCompressedAndBase64EncodedString(obj.getString(key));
 					bf2.and(bf);
 					bf2.xor(bf);
-					try {
-						Field f1 = BloomFilter.class.getDeclaredField("bits");
-						f1.setAccessible(true);
-						BitSet bits = (BitSet) f1.get(bf2);
-						if (bits.cardinality() != 0) {
-							verify = false;
-							break;
-						}
-					} catch (Exception e) {
-						
+					if (bf2.cardinality() != 0) {
+						verify = false;
+						break;
 					}
 				}
 				if (!verify) {
@@ -135,7 +135,7 @@ public class ExportJSONCommand extends WorksheetCommand {
 		PrintWriter printWriter;
 		try {
 			printWriter = new PrintWriter(jsonFileLocalPath);
-			JSONKR2RMLRDFWriter writer = new JSONKR2RMLRDFWriter(printWriter);
+			JSONKR2RMLRDFWriter writer = JSONKR2RMLRDFWriter.createCompactWriter(printWriter);
 			RootStrategy strategy = new UserSpecifiedRootStrategy(rootTriplesMapId, new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
 			KR2RMLWorksheetRDFGenerator generator = new KR2RMLWorksheetRDFGenerator(worksheet, f, ontMgr, writer, false, strategy, mapping, errorReport);
 			try {
@@ -23,7 +23,6 @@ package edu.isi.karma.controller.command.transformation;
 
 import java.io.File;
 import java.io.FilenameFilter;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -130,9 +129,8 @@ public abstract class PythonTransformationCommand extends WorksheetCommand {
 		interpreter.exec(pyHelper.getVDefStatement());
 		interpreter.exec(transformMethodStmt);
 
-		Collection<Node> nodes = new ArrayList<Node>(Math.max(1000, worksheet
-				.getDataTable().getNumRows()));
-		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), nodes);
+		Collection<Node> nodes = worksheet.getDataTable().getCollectedNodes(
+				hNode.getHNodePath(f));
 
 		Map<String, String> rowToValueMap = new HashMap<String, String>();
 
@@ -28,6 +28,8 @@ import edu.isi.karma.controller.command.CommandException;
 import edu.isi.karma.controller.command.CommandType;
 import edu.isi.karma.controller.update.ErrorUpdate;
 import edu.isi.karma.controller.update.UpdateContainer;
+import edu.isi.karma.controller.update.WorksheetUpdateFactory;
+import edu.isi.karma.rep.ColumnSnapshot;
 import edu.isi.karma.rep.HNode;
 import edu.isi.karma.rep.RepFactory;
 import edu.isi.karma.rep.Worksheet;
@@ -81,12 +83,14 @@ public class SubmitEditPythonTransformationCommand extends SubmitPythonTransform
 				workspace.getId());
 		
 		//this.previousPythonTransformationCommand = ctrl.getWorkspace().getCommandHistory().getCommand(previousCommandId);
+		valuesBefore = ColumnSnapshot.take(worksheet, targetHNodeId, f);
 		this.saveOrResetColumnValues(workspace, ctrl);
 		
 		try
 		{
 			UpdateContainer c = applyPythonTransformation(workspace, worksheet, f,
 				hNode, ctrl, targetHNodeId);
+			valuesAfter = ColumnSnapshot.take(worksheet, targetHNodeId, f);
 			return c;
 		}
 		catch (Exception e )
@@ -99,7 +103,12 @@ public class SubmitEditPythonTransformationCommand extends SubmitPythonTransform
 
 	@Override
 	public UpdateContainer undoIt(Workspace workspace) {
-		
+		if(valuesBefore != null) {
+			valuesBefore.restore();
+			UpdateContainer c = (WorksheetUpdateFactory.createRegenerateWorksheetUpdates(worksheetId));
+			c.append(computeAlignmentAndSemanticTypesAndCreateUpdates(workspace));
+			return c;
+		}
 		try {
 			if(previousPythonTransformationCommand instanceof SubmitPythonTransformationCommand)
 			{
@@ -52,6 +52,10 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 	protected AddColumnCommand addColCmd;
 	protected ArrayList<String> originalColumnValues;
 	protected String pythonNodeId;
+	// the values of the transformed column before and after doIt, so that
+	// undo and redo don't need to run the transformations again
+	protected ColumnSnapshot valuesBefore;
+	protected ColumnSnapshot valuesAfter;
 	private static Logger logger = LoggerFactory
 			.getLogger(SubmitPythonTransformationCommand.class);
 
@@ -103,11 +107,13 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 			{
 				pythonNodeId = nodeId;
 
+				valuesBefore = ColumnSnapshot.take(worksheet, nodeId, f);
 				saveOrResetColumnValues(workspace, ctrl);
 
 				logger.debug("SubmitPythonTranformation: Tranform Existing Column" + hNodeId + ":" + nodeId);
 				UpdateContainer c = applyPythonTransformation(workspace, worksheet, f,
 						newColumnNameHNode, ctrl, nodeId);
+				valuesAfter = ColumnSnapshot.take(worksheet, nodeId, f);
 				return c;
 			} else {
 				saveColumnValues(workspace);
@@ -138,6 +144,7 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 		{
 			UpdateContainer c = applyPythonTransformation(workspace, worksheet, f,
 					hNode, ctrl, addColCmd.getNewHNodeId());
+			valuesAfter = ColumnSnapshot.take(worksheet, addColCmd.getNewHNodeId(), f);
 			return c;
 		}
 		catch (Exception e )
@@ -174,6 +181,8 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 	public UpdateContainer undoIt(Workspace workspace) {
 		if(addColCmd != null) {
 			addColCmd.undoIt(workspace);
+		} else if(valuesBefore != null) {
+			valuesBefore.restore();
 		} else if(previousPythonTransformationCommand != null) {
 			try {
 				if(previousPythonTransformationCommand instanceof SubmitPythonTransformationCommand)
@@ -197,14 +206,34 @@ public class SubmitPythonTransformationCommand extends MutatingPythonTransformat
 		return c;
 	}
 
+	/**
+	 * Puts back the values computed by doIt instead of running the
+	 * transformation again.
+	 */
+	@Override
+	public UpdateContainer redoIt(Workspace workspace) throws CommandException {
+		if(valuesAfter == null) {
+			return doIt(workspace);
+		}
+		if(addColCmd != null) {
+			// the column was removed by undo, it comes back with a new HNode
+			addColCmd.doIt(workspace);
+			valuesAfter.restore(addColCmd.getNewHNodeId());
+		} else {
+			valuesAfter.restore();
+		}
+		UpdateContainer c = (WorksheetUpdateFactory.createRegenerateWorksheetUpdates(worksheetId));
+		c.append(computeAlignmentAndSemanticTypesAndCreateUpdates(workspace));
+		return c;
+	}
+
 	protected void saveColumnValues(Workspace workspace) {
 		Worksheet worksheet = workspace.getWorksheet(worksheetId);
 		RepFactory f = workspace.getFactory();
 		HNode hNode = f.getHNode(pythonNodeId);
 
 		this.originalColumnValues = new ArrayList<String>();
-		Collection<Node> nodes = new ArrayList<Node>();
-		worksheet.getDataTable().collectNodes(hNode.getHNodePath(f), nodes);
+		Collection<Node> nodes = worksheet.getDataTable().getCollectedNodes(hNode.getHNodePath(f));
 		for(Node node : nodes) {
 			originalColumnValues.add(node.getValue().asString());
 		}
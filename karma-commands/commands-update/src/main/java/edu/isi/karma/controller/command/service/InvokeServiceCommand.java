@@ -204,7 +204,7 @@ public class InvokeServiceCommand extends WorksheetCommand {
 		
 		String alignmentId = AlignmentManager.Instance().constructAlignmentId(workspace.getId(), worksheetId);
 		Alignment alignment = initialAlignment;
-		alignment.setGraph(initialGraph);
+		alignment.restore(initialGraph);
 		alignment.align();
 		AlignmentManager.Instance().addAlignmentToMap(alignmentId, alignment);
 		try {
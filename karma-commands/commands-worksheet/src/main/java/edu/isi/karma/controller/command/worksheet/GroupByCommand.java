@@ -148,18 +148,8 @@ public class GroupByCommand extends WorksheetCommand {
 		Worksheet newws = factory.createWorksheet("GroupBy: " + oldws.getTitle(), workspace, oldws.getEncoding());
 		newws.getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, oldws.getMetadataContainer().getWorksheetProperties().getPropertyValue(Property.sourceType));
 		HTable newht =  newws.getHeaders();
-		ArrayList<Row> rows = oldws.getDataTable().getRows(0, oldws.getDataTable().getNumRows());
 		HTable oldht =  oldws.getHeaders();
-		Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-		for (Row row : rows) {
-			String hashValue = HashValueManager.getHashValue(row, hnodeIDs);
-			ArrayList<String> ids = hash.get(hashValue);
-			if (ids == null)
-				ids = new ArrayList<String>();
-			ids.add(row.getId());
-			hash.put(hashValue, ids);
-			//System.out.println("Hash: " + HashValueManager.getHashValue(row, hnodeIDs));
-		}	
+		Collection<List<Row>> groups = new HashValueManager().groupRows(oldws.getDataTable(), hnodeIDs).values();
 		//HTable newKeyTable = newht.getHNodeFromColumnName("Keys").addNestedTable("Table for keys", newws, factory);
 		//newValueTable.addHNode("Values", newws, factory);
 		//HTable newValueNestedTable = newValueTable.getHNodeFromColumnName("Values").addNestedTable("Table for nested values", newws, factory);
@@ -167,12 +157,9 @@ public class GroupByCommand extends WorksheetCommand {
 		newht.addHNode("Values", HNodeType.Transformation, newws, factory);
 		HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", newws, factory);
 		CloneTableUtils.cloneHTable(oldht, newValueTable, newws, factory, valuehnodes);
-		for (String key : hash.keySet()) {
-			//System.out.println("key: " + hash.get(key));
-			ArrayList<String> r = hash.get(key);
-			Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), newws.getDataTable(), oldws.getHeaders(), newht, keyhnodes, factory);
-			for (String rowid : r) {
-				Row cur = CloneTableUtils.getRow(rows, rowid);
+		for (List<Row> group : groups) {
+			Row lastRow = CloneTableUtils.cloneDataTable(group.get(0), newws.getDataTable(), oldws.getHeaders(), newht, keyhnodes, factory);
+			for (Row cur : group) {
 				Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
 				CloneTableUtils.cloneDataTable(cur, dataTable, oldws.getHeaders(), newValueTable, valuehnodes, factory);
 			}
@@ -186,9 +173,7 @@ public class GroupByCommand extends WorksheetCommand {
 		CloneTableUtils.getDatatable(oldws.getDataTable(), parentHT,parentTables);
 		ArrayList<Row> parentRows = new ArrayList<Row>();
 		for (Table tmp : parentTables) {
-			for (Row row : tmp.getRows(0, tmp.getNumRows())) {
-				parentRows.add(row);
-			}
+			parentRows.addAll(tmp.getRowsView());
 		}
 		HNode newNode = parentHT.addHNode(parentHT.getNewColumnName("GroupBy"), HNodeType.Transformation, oldws, factory);
 		HTable newht = newNode.addNestedTable(newNode.getColumnName(), oldws, factory);
@@ -196,6 +181,7 @@ public class GroupByCommand extends WorksheetCommand {
 		newht.addHNode("Values", HNodeType.Transformation, oldws, factory);
 		HTable newValueTable = newht.getHNodeFromColumnName("Values").addNestedTable("Table for values", oldws, factory);
 		CloneTableUtils.cloneHTable(ht, newValueTable, oldws, factory, valuehnodes);
+		HashValueManager hashValues = new HashValueManager();
 		for (Row parentRow : parentRows) {
 			Table t = null;
 			for (Node node : parentRow.getNodes()) {
@@ -204,23 +190,10 @@ public class GroupByCommand extends WorksheetCommand {
 					break;
 				}	
 			}
-			ArrayList<Row> rows = t.getRows(0, t.getNumRows());
-			Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-			for (Row row : rows) {
-				String hashValue = HashValueManager.getHashValue(row, hnodeIDs);
-				ArrayList<String> ids = hash.get(hashValue);
-				if (ids == null)
-					ids = new ArrayList<String>();
-				ids.add(row.getId());
-				hash.put(hashValue, ids);
-			}	
-			
-			for (String key : hash.keySet()) {
-				ArrayList<String> r = hash.get(key);
+			for (List<Row> group : hashValues.groupRows(t, hnodeIDs).values()) {
 				Node node = parentRow.getNeighbor(newNode.getId());
-				Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), node.getNestedTable(), ht, newht, keyhnodes, factory);
-				for (String rowid : r) {
-					Row cur = CloneTableUtils.getRow(rows, rowid);
+				Row lastRow = CloneTableUtils.cloneDataTable(group.get(0), node.getNestedTable(), ht, newht, keyhnodes, factory);
+				for (Row cur : group) {
 					Table dataTable = lastRow.getNeighborByColumnName("Values", factory).getNestedTable();
 					CloneTableUtils.cloneDataTable(cur, dataTable, ht, newValueTable, valuehnodes, factory);
 				}
@@ -157,9 +157,7 @@ public class UnfoldCommand extends WorksheetCommand {
 		CloneTableUtils.getDatatable(oldws.getDataTable(), parentHT,parentTables);
 		ArrayList<Row> parentRows = new ArrayList<Row>();
 		for (Table tmp : parentTables) {
-			for (Row row : tmp.getRows(0, tmp.getNumRows())) {
-				parentRows.add(row);
-			}
+			parentRows.addAll(tmp.getRowsView());
 		}
 		//ArrayList<Row> parentRows = parentTable.getRows(0, parentTable.getNumRows());
 		HNode newNode = parentHT.addHNode("Unfold: " + ht.getHNode(keyHNodeid).getColumnName(), HNodeType.Transformation, oldws, factory);
@@ -177,6 +175,7 @@ public class UnfoldCommand extends WorksheetCommand {
 		}
 		CloneTableUtils.cloneHTable(ht, newHT, oldws, factory, hnodes);
 		List<Row> resultRows = new ArrayList<Row>();
+		HashValueManager hashValues = new HashValueManager();
 		for (Row parentRow: parentRows) {
 			Table t = null;
 			for (Node node : parentRow.getNodes()) {
@@ -185,41 +184,23 @@ public class UnfoldCommand extends WorksheetCommand {
 					break;
 				}	
 			}
-			Map<String, String> keyMapping = new HashMap<String, String>();
 			Map<String, String> HNodeidMapping = new HashMap<String, String>();
-			ArrayList<Row> rows = t.getRows(0, t.getNumRows());
-			for (Row row : rows) {
-				Node n = row.getNode(key.getId());
-				keyMapping.put(HashValueManager.getHashValue(oldws, n.getId()), n.getValue().asString());
-			}
-			for (String mapkey : keyMapping.keySet()) {
-				HNode hn = newHT.getHNodeFromColumnName(keyMapping.get(mapkey).toLowerCase().replace('/', '_'));
+			for (String keyValue : getKeyValues(t, key.getId())) {
+				HNode hn = newHT.getHNodeFromColumnName(keyValue.toLowerCase().replace('/', '_'));
 				if (hn == null) {
-					HNode n = newHT.addHNode(keyMapping.get(mapkey).toLowerCase().replace('/', '_'), HNodeType.Transformation, oldws, factory);
+					HNode n = newHT.addHNode(keyValue.toLowerCase().replace('/', '_'), HNodeType.Transformation, oldws, factory);
 					HTable htt = n.addNestedTable("values", oldws, factory);
 					htt.addHNode("Values", HNodeType.Transformation, oldws, factory);
-					HNodeidMapping.put(keyMapping.get(mapkey), n.getId());
+					HNodeidMapping.put(keyValue, n.getId());
 				}
 				else
-					HNodeidMapping.put(keyMapping.get(mapkey), hn.getId());
-			}
-			Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-			for (Row row : rows) {
-				String hashValue = HashValueManager.getHashValue(row, hnodeIds);
-				ArrayList<String> ids = hash.get(hashValue);
-				if (ids == null)
-					ids = new ArrayList<String>();
-				ids.add(row.getId());
-				hash.put(hashValue, ids);
-				//System.out.println("Hash: " + HashValueManager.getHashValue(row, hnodeIDs));
+					HNodeidMapping.put(keyValue, hn.getId());
 			}
 
-			for (String hashKey : hash.keySet()) {
-				ArrayList<String> r = hash.get(hashKey);
+			for (List<Row> group : hashValues.groupRows(t, hnodeIds).values()) {
 				Node node = parentRow.getNeighbor(newNode.getId());
-				Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(t.getRows(0, t.getNumRows()), r.get(0)), node.getNestedTable(), parentHT, newHT, hnodes, factory);
-				for (String rowid : r) {
-					Row cur = CloneTableUtils.getRow(rows, rowid);
+				Row lastRow = CloneTableUtils.cloneDataTable(group.get(0), node.getNestedTable(), parentHT, newHT, hnodes, factory);
+				for (Row cur : group) {
 					String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
 					Node newnode = lastRow.getNode(newId);
 					Node oldnode = cur.getNode(value.getId());
@@ -246,7 +227,6 @@ public class UnfoldCommand extends WorksheetCommand {
 		Worksheet newws = factory.createWorksheet("Unfold: " + oldws.getTitle(), workspace, oldws.getEncoding());
 		newws.getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, oldws.getMetadataContainer().getWorksheetProperties().getPropertyValue(Property.sourceType));
 		ArrayList<HNode> topHNodes = new ArrayList<HNode>(oldws.getHeaders().getHNodes());
-		ArrayList<Row> rows = oldws.getDataTable().getRows(0, oldws.getDataTable().getNumRows());
 		HNode key = oldws.getHeaders().getHNode(keyHNodeid);
 		HNode value = oldws.getHeaders().getHNode(valueHNodeid);
 		List<HNode> hnodes = new ArrayList<HNode>();
@@ -258,34 +238,18 @@ public class UnfoldCommand extends WorksheetCommand {
 			}
 		}
 		CloneTableUtils.cloneHTable(oldws.getHeaders(), newws.getHeaders(), newws, factory, hnodes);
-		Map<String, String> keyMapping = new HashMap<String, String>();
 		Map<String, String> HNodeidMapping = new HashMap<String, String>();
-		for (Row row : rows) {
-			Node n = row.getNode(key.getId());
-			keyMapping.put(HashValueManager.getHashValue(oldws, n.getId()), n.getValue().asString());
-		}
-		for (String mapkey : keyMapping.keySet()) {
-			HNode n = newws.getHeaders().addHNode(keyMapping.get(mapkey), HNodeType.Transformation, newws, factory);
+		for (String keyValue : getKeyValues(oldws.getDataTable(), key.getId())) {
+			HNode n = newws.getHeaders().addHNode(keyValue, HNodeType.Transformation, newws, factory);
 			HTable ht = n.addNestedTable("values", newws, factory);
 			ht.addHNode("Values", HNodeType.Transformation, newws, factory);
-			HNodeidMapping.put(keyMapping.get(mapkey), n.getId());
+			HNodeidMapping.put(keyValue, n.getId());
 		}
 
-		Map<String, ArrayList<String>> hash = new TreeMap<String, ArrayList<String>>();
-		for (Row row : rows) {
-			String hashValue = HashValueManager.getHashValue(row, hnodeIds);
-			ArrayList<String> ids = hash.get(hashValue);
-			if (ids == null)
-				ids = new ArrayList<String>();
-			ids.add(row.getId());
-			hash.put(hashValue, ids);
-		}
 		List<Row> resultRows = new ArrayList<Row>();
-		for (String hashKey : hash.keySet()) {
-			ArrayList<String> r = hash.get(hashKey);
-			Row lastRow = CloneTableUtils.cloneDataTable(CloneTableUtils.getRow(rows, r.get(0)), newws.getDataTable(), oldws.getHeaders(), newws.getHeaders(), hnodes, factory);
-			for (String rowid : r) {
-				Row cur = CloneTableUtils.getRow(rows, rowid);
+		for (List<Row> group : new HashValueManager().groupRows(oldws.getDataTable(), hnodeIds).values()) {
+			Row lastRow = CloneTableUtils.cloneDataTable(group.get(0), newws.getDataTable(), oldws.getHeaders(), newws.getHeaders(), hnodes, factory);
+			for (Row cur : group) {
 				String newId = HNodeidMapping.get(cur.getNode(key.getId()).getValue().asString());
 				Node newnode = lastRow.getNode(newId);
 				Node oldnode = cur.getNode(value.getId());
@@ -308,4 +272,16 @@ public class UnfoldCommand extends WorksheetCommand {
 		return newws;
 	}
 
+	/**
+	 * @return the distinct values of the key column, in the order in which
+	 *         they first appear in the table
+	 */
+	private Set<String> getKeyValues(Table table, String keyHNodeId) {
+		Set<String> keyValues = new LinkedHashSet<String>();
+		for (Row row : table.getRowsView()) {
+			keyValues.add(row.getNode(keyHNodeId).getValue().asString());
+		}
+		return keyValues;
+	}
+
 }
@@ -23,6 +23,7 @@
  */
 package edu.isi.karma.controller.command;
 
+import edu.isi.karma.controller.update.UpdateContainer;
 import edu.isi.karma.rep.Entity;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.util.JSONUtil;
@@ -77,6 +78,15 @@ public abstract class Command extends Entity implements ICommand
 		super(id);
 	}
 
+	/**
+	 * Commands that can put their results back without computing them again
+	 * override this.
+	 */
+	@Override
+	public UpdateContainer redoIt(Workspace workspace) throws CommandException {
+		return doIt(workspace);
+	}
+
 	@Override
 	public boolean isExecuted() {
 		return isExecuted;
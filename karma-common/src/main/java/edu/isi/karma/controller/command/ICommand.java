@@ -42,6 +42,12 @@ public interface ICommand extends IEntity
 
 	UpdateContainer undoIt(Workspace workspace);
 
+	/**
+	 * Does the command again after it was undone.
+	 */
+	UpdateContainer redoIt(Workspace workspace)
+			throws CommandException;
+
 	boolean isExecuted();
 
 	void setExecuted(boolean isExecuted);
@@ -328,7 +328,7 @@ public class CommandHistory {
 			for (ICommand c : commandsToRedo) {
 				redoStack.remove(c);
 				history.add(c);
-				effects.append(c.doIt(workspace));
+				effects.append(c.redoIt(workspace));
 			}
 			return effects;
 		} else {
@@ -85,8 +85,7 @@ public class CloneTableUtils {
 	}
 
 	public static void cloneDataTable(Table oldDataTable, Table newDataTable, HTable oldHTable, HTable newHTable, List<HNode> hnodes, RepFactory factory) {
-		ArrayList<Row> rows = oldDataTable.getRows(0, oldDataTable.getNumRows());
-		for (Row row : rows) {
+		for (Row row : oldDataTable.getRowsView()) {
 			Row newrow = newDataTable.addRow(factory);
 			for (HNode hnode : hnodes) {
 				HNode newHNode = newHTable.getHNodeFromColumnName(hnode.getColumnName());
@@ -142,7 +141,7 @@ public class CloneTableUtils {
 		if (dt.getHTableId().compareTo(ht.getId()) == 0)
 			parentTables.add(dt);
 		else {
-			for (Row row : dt.getRows(0, dt.getNumRows())) {
+			for (Row row : dt.getRowsView()) {
 				for (Node n : row.getNodes()) {
 					getDatatable(n.getNestedTable(), ht, parentTables);
 				}
@@ -155,7 +154,7 @@ public class CloneTableUtils {
 			HTable nestHT = hn.getNestedTable();
 			Table dataTable = node.getNestedTable();
 			JSONArray array = new JSONArray();
-			for (Row row : dataTable.getRows(0, dataTable.getNumRows())) {
+			for (Row row : dataTable.getRowsView()) {
 				JSONObject obj = new JSONObject();
 				for (HNode hnode : nestHT.getHNodes()) {
 					Node n = row.getNode(hnode.getId());
@@ -1334,9 +1334,7 @@ public class TripleStoreUtil {
 			KR2RMLBloomFilter bf = bfs.get(tripleUri);
 			String oldserializedBloomFilter = bloomfilterMapping.get(tripleUri);
 			if (oldserializedBloomFilter != null) {
-				KR2RMLBloomFilter bf2 = new KR2RMLBloomFilter();
-				bf2.populateFromCompressedAndBase64EncodedString(oldserializedBloomFilter);
-				bf.or(bf2);
+				bf.orFromCompressedAndBase64EncodedString(oldserializedBloomFilter);
 			}
 			bfs.put(tripleUri, bf);
 		}
@@ -1346,7 +1344,9 @@ public class TripleStoreUtil {
 		for (Entry<String, KR2RMLBloomFilter> entry : bfs.entrySet()) {
 			pw.print("<" + entry.getKey() + "> ");
 			pw.print("<" + Uris.KM_HAS_BLOOMFILTER + "> ");
-			pw.println("\"" + entry.getValue().compressAndBase64Encode() + "\" . ");
+			pw.print("\"");
+			entry.getValue().writeCompressedAndBase64Encoded(pw);
+			pw.println("\" . ");
 		}
 		pw.close();
 		return saveToStoreFromString(sw.toString(), modelurl, context, new Boolean(false), null);
@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.imp;
+
+import java.io.IOException;
+
+import org.json.JSONException;
+
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.metadata.WorksheetProperties.Property;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Imports a source a batch of records at a time, so that only one batch has
+ * to be held in a worksheet at any time.
+ */
+public abstract class BatchImport {
+
+	protected final String sourceName;
+	protected final String encoding;
+	protected final int batchSize;
+	protected final int maxNumRecords;
+	protected int numRecords = 0;
+
+	/**
+	 * @param batchSize
+	 *            maximum number of records in a worksheet
+	 * @param maxNumRecords
+	 *            maximum number of records to import, or -1 for all of them
+	 */
+	public BatchImport(String sourceName, String encoding, int batchSize, int maxNumRecords) {
+		this.sourceName = sourceName;
+		this.encoding = encoding;
+		this.batchSize = Math.max(1, batchSize);
+		this.maxNumRecords = maxNumRecords;
+	}
+
+	/**
+	 * Creates a worksheet in the workspace holding the next batch of records.
+	 * 
+	 * @return the worksheet, or null once all the records have been imported
+	 */
+	public abstract Worksheet generateNextWorksheet(Workspace workspace) throws IOException, KarmaException, JSONException;
+
+	public abstract void close() throws IOException;
+
+	public int getNumRecords() {
+		return numRecords;
+	}
+
+	protected int getNumRecordsForNextBatch() {
+		if (maxNumRecords > 0) {
+			return Math.min(batchSize, maxNumRecords - numRecords);
+		}
+		return batchSize;
+	}
+
+	protected Worksheet createWorksheet(Workspace workspace, SourceTypes sourceType) {
+		Worksheet worksheet = workspace.getFactory().createWorksheet(sourceName, workspace, encoding);
+		worksheet.getMetadataContainer().getWorksheetProperties().setPropertyValue(Property.sourceType, sourceType.toString());
+		return worksheet;
+	}
+}
@@ -0,0 +1,99 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.imp.csv;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+
+import edu.isi.karma.imp.BatchImport;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Imports the lines of a delimited file in batches, each with the header
+ * line of the file, using {@link CSVImport}.
+ */
+public class CSVBatchImport extends BatchImport {
+
+	private final BufferedReader reader;
+	private final char delimiter;
+	private final char quoteCharacter;
+	private String headerLine;
+	private boolean finished = false;
+
+	public CSVBatchImport(Reader reader, String sourceName, String encoding,
+			int batchSize, int maxNumRecords, char delimiter, char quoteCharacter) {
+		super(sourceName, encoding, batchSize, maxNumRecords);
+		this.reader = new BufferedReader(reader);
+		this.delimiter = delimiter;
+		this.quoteCharacter = quoteCharacter;
+	}
+
+	@Override
+	public Worksheet generateNextWorksheet(Workspace workspace) throws IOException, KarmaException {
+		if (finished) {
+			return null;
+		}
+		if (headerLine == null) {
+			headerLine = reader.readLine();
+			if (headerLine == null) {
+				finished = true;
+				return null;
+			}
+		}
+
+		StringBuilder batch = new StringBuilder(headerLine);
+		batch.append('\n');
+		int numRecordsToRead = getNumRecordsForNextBatch();
+		int numRecordsRead = 0;
+		String line = null;
+		while (numRecordsRead < numRecordsToRead && (line = reader.readLine()) != null) {
+			batch.append(line);
+			batch.append('\n');
+			numRecordsRead++;
+		}
+		numRecords += numRecordsRead;
+		if (numRecordsRead < numRecordsToRead || (maxNumRecords > 0 && numRecords >= maxNumRecords)) {
+			finished = true;
+		}
+		if (numRecordsRead == 0) {
+			return null;
+		}
+
+		final String batchContents = batch.toString();
+		CSVImport csvImport = new CSVImport(1, 2, delimiter, quoteCharacter, encoding, -1,
+				sourceName, null, workspace) {
+			@Override
+			protected BufferedReader getLineReader() throws IOException {
+				return new BufferedReader(new StringReader(batchContents));
+			}
+		};
+		return csvImport.generateWorksheet();
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
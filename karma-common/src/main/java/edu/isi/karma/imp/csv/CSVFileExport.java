@@ -60,7 +60,7 @@ public class CSVFileExport {
 		if(numRows==0) 
 			return "";
 		StringBuilder sb = new StringBuilder();
-		ArrayList<Row> rows =  worksheet.getDataTable().getRows(0, numRows);
+		List<Row> rows =  worksheet.getDataTable().getRowsView();
 		List<HNode> sortedLeafHNodes = new ArrayList<HNode>();
 		List<String> hNodeIdList = new ArrayList<String>();
 		worksheet.getHeaders().getSortedLeafHNodes(sortedLeafHNodes);
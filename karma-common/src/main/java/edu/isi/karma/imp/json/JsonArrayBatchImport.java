@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.imp.json;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import edu.isi.karma.imp.BatchImport;
+import edu.isi.karma.rep.ColumnMetadata.DataStructure;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+
+/**
+ * Reads the elements of a top level JSON array one at a time and imports them
+ * in batches, giving the same worksheet structure as {@link JsonImport} on
+ * the whole array.  Any other JSON document is imported as a single batch.
+ */
+public class JsonArrayBatchImport extends BatchImport {
+
+	private final Reader reader;
+	private final JSONTokener tokener;
+	private boolean started = false;
+	private boolean finished = false;
+
+	public JsonArrayBatchImport(Reader reader, String sourceName, String encoding,
+			int batchSize, int maxNumRecords) {
+		super(sourceName, encoding, batchSize, maxNumRecords);
+		this.reader = reader;
+		this.tokener = new JSONTokener(reader);
+	}
+
+	@Override
+	public Worksheet generateNextWorksheet(Workspace workspace) throws JSONException {
+		if (!started) {
+			started = true;
+			char c = tokener.nextClean();
+			if (c == 0) {
+				finished = true;
+				return null;
+			}
+			if (c != '[') {
+				tokener.back();
+				finished = true;
+				return generateObjectWorksheet(workspace, tokener.nextValue());
+			}
+		}
+		if (finished) {
+			return null;
+		}
+
+		Worksheet worksheet = null;
+		int numRecordsToRead = getNumRecordsForNextBatch();
+		int numRecordsRead = 0;
+		while (numRecordsRead < numRecordsToRead) {
+			char c = tokener.nextClean();
+			if (c == ']' || c == 0) {
+				finished = true;
+				break;
+			}
+			if (c == ',') {
+				continue;
+			}
+			tokener.back();
+			Object record = tokener.nextValue();
+			if (worksheet == null) {
+				worksheet = createWorksheet(workspace, SourceTypes.JSON);
+				worksheet.getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.COLLECTION);
+			}
+			JsonImportValues.addListElement(record, worksheet.getHeaders(),
+					worksheet.getDataTable(), -1, 0, workspace.getFactory(), worksheet);
+			numRecordsRead++;
+			numRecords++;
+		}
+		if (maxNumRecords > 0 && numRecords >= maxNumRecords) {
+			finished = true;
+		}
+		return worksheet;
+	}
+
+	private Worksheet generateObjectWorksheet(Workspace workspace, Object json) throws JSONException {
+		if (!(json instanceof JSONObject)) {
+			return null;
+		}
+		Worksheet worksheet = createWorksheet(workspace, SourceTypes.JSON);
+		worksheet.getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.OBJECT);
+		JsonImportValues.addKeysAndValues((JSONObject) json, worksheet.getHeaders(),
+				worksheet.getDataTable(), -1, 0, workspace.getFactory(), worksheet);
+		numRecords++;
+		return worksheet;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
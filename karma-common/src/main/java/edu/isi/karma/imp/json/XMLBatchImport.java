@@ -0,0 +1,162 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.imp.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.XML;
+
+import edu.isi.karma.imp.BatchImport;
+import edu.isi.karma.rep.ColumnMetadata.DataStructure;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.metadata.WorksheetProperties.SourceTypes;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Streams the child elements of the root element of an XML document and
+ * imports them in batches.  Every batch is wrapped in a copy of the root 
+ * element and converted to JSON the same way as the whole document would be,
+ * so the worksheets have the same structure.
+ */
+public class XMLBatchImport extends BatchImport {
+
+	private static final XMLInputFactory inputFactory = XMLInputFactory.newInstance();
+	private static final XMLOutputFactory outputFactory = XMLOutputFactory.newInstance();
+	private static final XMLEventFactory eventFactory = XMLEventFactory.newInstance();
+
+	private final Reader reader;
+	private final XMLEventReader eventReader;
+	private StartElement root;
+	private boolean finished = false;
+
+	public XMLBatchImport(Reader reader, String sourceName, String encoding,
+			int batchSize, int maxNumRecords) throws KarmaException {
+		super(sourceName, encoding, batchSize, maxNumRecords);
+		this.reader = reader;
+		try {
+			this.eventReader = inputFactory.createXMLEventReader(reader);
+		} catch (XMLStreamException e) {
+			throw new KarmaException("Unable to read XML: " + e.getMessage());
+		}
+	}
+
+	@Override
+	public Worksheet generateNextWorksheet(Workspace workspace) throws KarmaException, JSONException {
+		if (finished) {
+			return null;
+		}
+		try {
+			if (root == null) {
+				root = nextRootElement();
+				if (root == null) {
+					finished = true;
+					return null;
+				}
+			}
+
+			StringWriter batch = new StringWriter();
+			XMLEventWriter writer = outputFactory.createXMLEventWriter(batch);
+			writer.add(root);
+			int numRecordsToRead = getNumRecordsForNextBatch();
+			int numRecordsRead = 0;
+			while (numRecordsRead < numRecordsToRead) {
+				if (!eventReader.hasNext()) {
+					finished = true;
+					break;
+				}
+				XMLEvent event = eventReader.nextEvent();
+				if (event.isStartElement()) {
+					copyElement(event, writer);
+					numRecordsRead++;
+					numRecords++;
+				} else if (event.isEndElement()) {
+					finished = true;
+					break;
+				}
+			}
+			if (maxNumRecords > 0 && numRecords >= maxNumRecords) {
+				finished = true;
+			}
+			if (numRecordsRead == 0) {
+				return null;
+			}
+			writer.add(eventFactory.createEndElement(root.getName(), null));
+			writer.close();
+
+			JSONObject json = XML.toJSONObject(batch.toString());
+			Worksheet worksheet = createWorksheet(workspace, SourceTypes.JSON);
+			worksheet.getMetadataContainer().getWorksheetProperties().setWorksheetDataStructure(DataStructure.OBJECT);
+			JsonImportValues.addKeysAndValues(json, worksheet.getHeaders(),
+					worksheet.getDataTable(), -1, 0, workspace.getFactory(), worksheet);
+			return worksheet;
+		} catch (XMLStreamException e) {
+			throw new KarmaException("Unable to read XML: " + e.getMessage());
+		}
+	}
+
+	private StartElement nextRootElement() throws XMLStreamException {
+		while (eventReader.hasNext()) {
+			XMLEvent event = eventReader.nextEvent();
+			if (event.isStartElement()) {
+				return event.asStartElement();
+			}
+		}
+		return null;
+	}
+
+	private void copyElement(XMLEvent start, XMLEventWriter writer) throws XMLStreamException {
+		writer.add(start);
+		int depth = 1;
+		while (depth > 0 && eventReader.hasNext()) {
+			XMLEvent event = eventReader.nextEvent();
+			if (event.isStartElement()) {
+				depth++;
+			} else if (event.isEndElement()) {
+				depth--;
+			}
+			writer.add(event);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			eventReader.close();
+		} catch (XMLStreamException e) {
+			throw new IOException(e);
+		}
+		reader.close();
+	}
+}
@@ -1,9 +1,13 @@
 package edu.isi.karma.kr2rml;
 
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
 import edu.isi.karma.kr2rml.planning.TriplesMap;
 import edu.isi.karma.modeling.Uris;
@@ -11,6 +15,8 @@ import edu.isi.karma.modeling.Uris;
 
 public class BloomFilterKR2RMLRDFWriter implements KR2RMLRDFWriter {
 
+	private static final Logger LOG = LoggerFactory.getLogger(BloomFilterKR2RMLRDFWriter.class);
+
 	protected KR2RMLBloomFilterManager bloomFilterManager;
 	protected PrintWriter output;
 	protected boolean isRDF;
@@ -18,7 +24,12 @@ public class BloomFilterKR2RMLRDFWriter implements KR2RMLRDFWriter {
 	private String baseURI;
 	public BloomFilterKR2RMLRDFWriter(PrintWriter output, R2RMLMappingIdentifier mappingIdentifer, boolean isRDF, String baseURI)
 	{
-		bloomFilterManager = new KR2RMLBloomFilterManager(mappingIdentifer);
+		this(output, new KR2RMLBloomFilterManager(mappingIdentifer), isRDF, baseURI);
+	}
+	
+	public BloomFilterKR2RMLRDFWriter(PrintWriter output, KR2RMLBloomFilterManager bloomFilterManager, boolean isRDF, String baseURI)
+	{
+		this.bloomFilterManager = bloomFilterManager;
 		this.output = output;
 		this.isRDF = isRDF;
 		this.baseURI = baseURI;
@@ -137,10 +148,14 @@ public class BloomFilterKR2RMLRDFWriter implements KR2RMLRDFWriter {
 
 	@Override
 	public void close() {
-		if (!isRDF)
-			output.write(bloomFilterManager.toJSON().toString(4));
-		else {
-			output.write(bloomFilterManager.toRDF());
+		try {
+			if (!isRDF)
+				bloomFilterManager.writeJSON(output);
+			else {
+				bloomFilterManager.writeRDF(output);
+			}
+		} catch (IOException e) {
+			LOG.error("Unable to write bloom filters", e);
 		}
 		output.flush();
 		output.close();
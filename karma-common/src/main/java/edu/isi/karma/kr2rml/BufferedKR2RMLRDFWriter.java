@@ -0,0 +1,217 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.kr2rml;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.isi.karma.kr2rml.planning.TriplesMap;
+
+/**
+ * Records the output of a contiguous range of rows so that it can be generated
+ * on a worker thread and later replayed, in row order, to the real writers.
+ */
+public class BufferedKR2RMLRDFWriter implements KR2RMLRDFWriter {
+
+	private enum OutputType {
+		uriObject, refObject, literalObject, quadWithLiteralObject, finishRow
+	}
+
+	private static class BufferedOutput {
+		private final OutputType type;
+		private final TriplesMap subjTriplesMap;
+		private final String subjUri;
+		private final PredicateObjectMap predicateObjectMap;
+		private final String predicateUri;
+		private final TriplesMap objTriplesMap;
+		private final String object;
+		private final String literalType;
+		private final String graph;
+		private final boolean hasTriplesMaps;
+
+		private BufferedOutput(OutputType type, boolean hasTriplesMaps,
+				TriplesMap subjTriplesMap, String subjUri,
+				PredicateObjectMap predicateObjectMap, String predicateUri,
+				TriplesMap objTriplesMap, String object, String literalType,
+				String graph) {
+			this.type = type;
+			this.hasTriplesMaps = hasTriplesMaps;
+			this.subjTriplesMap = subjTriplesMap;
+			this.subjUri = subjUri;
+			this.predicateObjectMap = predicateObjectMap;
+			this.predicateUri = predicateUri;
+			this.objTriplesMap = objTriplesMap;
+			this.object = object;
+			this.literalType = literalType;
+			this.graph = graph;
+		}
+	}
+
+	private static final BufferedOutput FINISH_ROW = new BufferedOutput(
+			OutputType.finishRow, false, null, null, null, null, null, null,
+			null, null);
+
+	private List<BufferedOutput> outputs = new ArrayList<BufferedOutput>();
+	private int numRowsFinished = 0;
+
+	private synchronized void add(BufferedOutput output) {
+		outputs.add(output);
+	}
+
+	@Override
+	public void outputTripleWithURIObject(String subjUri, String predicateUri,
+			String objectUri) {
+		add(new BufferedOutput(OutputType.uriObject, false, null, subjUri,
+				null, predicateUri, null, objectUri, null, null));
+	}
+
+	@Override
+	public void outputTripleWithURIObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap,
+			String predicateUri, String objectUri) {
+		add(new BufferedOutput(OutputType.uriObject, true, subjTriplesMap,
+				subjUri, predicateObjectMap, predicateUri, null, objectUri,
+				null, null));
+	}
+
+	@Override
+	public void outputTripleWithURIObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap,
+			String predicateUri, TriplesMap objTriplesMap, String objectUri) {
+		add(new BufferedOutput(OutputType.refObject, true, subjTriplesMap,
+				subjUri, predicateObjectMap, predicateUri, objTriplesMap,
+				objectUri, null, null));
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(String subjUri,
+			String predicateUri, String value, String literalType) {
+		add(new BufferedOutput(OutputType.literalObject, false, null, subjUri,
+				null, predicateUri, null, value, literalType, null));
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap,
+			String predicateUri, String value, String literalType) {
+		add(new BufferedOutput(OutputType.literalObject, true, subjTriplesMap,
+				subjUri, predicateObjectMap, predicateUri, null, value,
+				literalType, null));
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(String subjUri,
+			String predicateUri, String value, String literalType, String graph) {
+		add(new BufferedOutput(OutputType.quadWithLiteralObject, false, null,
+				subjUri, null, predicateUri, null, value, literalType, graph));
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap,
+			String predicateUri, String value, String literalType, String graph) {
+		add(new BufferedOutput(OutputType.quadWithLiteralObject, true,
+				subjTriplesMap, subjUri, predicateObjectMap, predicateUri,
+				null, value, literalType, graph));
+	}
+
+	@Override
+	public void finishRow() {
+		add(FINISH_ROW);
+		numRowsFinished++;
+	}
+
+	public int getNumRowsFinished() {
+		return numRowsFinished;
+	}
+
+	/**
+	 * Replays everything recorded so far to the given writers, calling
+	 * finishRow on them wherever a row was finished on this buffer, and then
+	 * empties the buffer.
+	 *
+	 * @param writers
+	 *            the writers that should receive the buffered output
+	 */
+	public synchronized void replay(List<KR2RMLRDFWriter> writers) {
+		for (BufferedOutput output : outputs) {
+			for (KR2RMLRDFWriter writer : writers) {
+				replay(output, writer);
+			}
+		}
+		outputs = new ArrayList<BufferedOutput>();
+	}
+
+	private void replay(BufferedOutput output, KR2RMLRDFWriter writer) {
+		switch (output.type) {
+		case uriObject:
+			if (!output.hasTriplesMaps) {
+				writer.outputTripleWithURIObject(output.subjUri,
+						output.predicateUri, output.object);
+			} else {
+				writer.outputTripleWithURIObject(output.subjTriplesMap,
+						output.subjUri, output.predicateObjectMap,
+						output.predicateUri, output.object);
+			}
+			break;
+		case refObject:
+			writer.outputTripleWithURIObject(output.subjTriplesMap,
+					output.subjUri, output.predicateObjectMap,
+					output.predicateUri, output.objTriplesMap, output.object);
+			break;
+		case literalObject:
+			if (!output.hasTriplesMaps) {
+				writer.outputTripleWithLiteralObject(output.subjUri,
+						output.predicateUri, output.object, output.literalType);
+			} else {
+				writer.outputTripleWithLiteralObject(output.subjTriplesMap,
+						output.subjUri, output.predicateObjectMap,
+						output.predicateUri, output.object, output.literalType);
+			}
+			break;
+		case quadWithLiteralObject:
+			if (!output.hasTriplesMaps) {
+				writer.outputQuadWithLiteralObject(output.subjUri,
+						output.predicateUri, output.object, output.literalType,
+						output.graph);
+			} else {
+				writer.outputQuadWithLiteralObject(output.subjTriplesMap,
+						output.subjUri, output.predicateObjectMap,
+						output.predicateUri, output.object, output.literalType,
+						output.graph);
+			}
+			break;
+		case finishRow:
+			writer.finishRow();
+			break;
+		}
+	}
+
+	@Override
+	public void flush() {
+		return;
+	}
+
+	@Override
+	public void close() {
+		return;
+	}
+}
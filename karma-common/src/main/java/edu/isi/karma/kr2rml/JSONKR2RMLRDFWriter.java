@@ -21,36 +21,73 @@
 package edu.isi.karma.kr2rml;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import org.json.JSONObject;
+import java.util.TreeMap;
 
 import edu.isi.karma.kr2rml.planning.TriplesMap;
 
+/**
+ * Writes the objects generated for a row as a JSON array element as soon as
+ * the row is finished. The objects of a row are kept in small reusable nodes
+ * and serialized straight to the writer, without building JSONObjects or 
+ * strings of the whole object. Objects are written in the order of their URIs
+ * and properties in the order of their keys, so the output doesn't depend on
+ * the order the triples maps of a row ran in.
+ */
 public class JSONKR2RMLRDFWriter implements KR2RMLRDFWriter{
 
+	public static final int DEFAULT_INDENT_FACTOR = 4;
+
 	protected boolean firstObject = true;
 	protected PrintWriter outWriter;
-	protected Map<String, JSONObject> generatedObjects;
-	protected Map<String, JSONObject> rootObjects = new ConcurrentHashMap<String, JSONObject>();
+	protected final int indentFactor;
+	private final Map<String, JSONNode> generatedObjects = new HashMap<String, JSONNode>();
+	private final Map<String, JSONNode> rootObjects = new TreeMap<String, JSONNode>();
+	private final List<JSONNode> nodePool = new ArrayList<JSONNode>();
+	private int numNodesInUse = 0;
+	private final List<Frame> frames = new ArrayList<Frame>();
 
+	/**
+	 * Writes every object indented by {@link #DEFAULT_INDENT_FACTOR}, the same
+	 * layout as JSONObject.toString(4)
+	 */
 	public JSONKR2RMLRDFWriter (PrintWriter outWriter) {
+		this(outWriter, DEFAULT_INDENT_FACTOR);
+	}
+
+	/**
+	 * @param indentFactor
+	 *            number of spaces to indent each level of nesting with, 0 to 
+	 *            write each object on a single line
+	 */
+	public JSONKR2RMLRDFWriter (PrintWriter outWriter, int indentFactor) {
 		this.outWriter = outWriter;
-		generatedObjects = new ConcurrentHashMap<String, JSONObject>();
+		this.indentFactor = Math.max(0, indentFactor);
 		
 		outWriter.println("[");
 	}
 
+	/**
+	 * Writes every object on a single line, without the indentation that 
+	 * makes up much of the size of large exports
+	 */
+	public static JSONKR2RMLRDFWriter createCompactWriter(PrintWriter outWriter) {
+		return new JSONKR2RMLRDFWriter(outWriter, 0);
+	}
+
 	@Override
-	public void outputTripleWithURIObject(String subjUri, String predicateUri,
+	public synchronized void outputTripleWithURIObject(String subjUri, String predicateUri,
 			String objectUri) {
 		checkAndAddsubjUri(subjUri);
 		addURIObject(subjUri, predicateUri, objectUri);
 	}
 
 	@Override
-	public void outputTripleWithLiteralObject(String subjUri,
+	public synchronized void outputTripleWithLiteralObject(String subjUri,
 			String predicateUri, String value, String literalType) {
 		checkAndAddsubjUri(subjUri);
 		addLiteralObject(subjUri, predicateUri, value);
@@ -64,7 +101,7 @@ public class JSONKR2RMLRDFWriter implements KR2RMLRDFWriter{
 
 	private void checkAndAddsubjUri(String subjUri) {
 		if (!generatedObjects.containsKey(subjUri)) {
-			JSONObject object = new JSONObject();
+			JSONNode object = newNode();
 			object.put("uri", subjUri);
 			generatedObjects.put(subjUri, object);
 			rootObjects.put(subjUri, object);
@@ -72,46 +109,202 @@ public class JSONKR2RMLRDFWriter implements KR2RMLRDFWriter{
 	}
 
 	private void addLiteralObject(String subjUri, String predicateUri, String value) {
-		JSONObject object = generatedObjects.get(subjUri);
-		object.put(predicateUri, value);
-		generatedObjects.put(subjUri, object);
+		generatedObjects.get(subjUri).put(predicateUri, value);
 	}
 
 	private void addURIObject(String subjUri, String predicateUri, String objectUri) {
-		if (generatedObjects.containsKey(objectUri)) {
-			JSONObject object1 = generatedObjects.get(subjUri);
-			JSONObject object2 = generatedObjects.get(objectUri);
-			object1.put(predicateUri, object2);
-			//			generatedObjects.put(subjUri, object1);
+		JSONNode object2 = generatedObjects.get(objectUri);
+		if (object2 != null) {
+			generatedObjects.get(subjUri).put(predicateUri, object2);
 			rootObjects.remove(objectUri);
 		} else {
 			addLiteralObject(subjUri, predicateUri, objectUri);
 		}
 	}
 
+	private JSONNode newNode()
+	{
+		if(numNodesInUse == nodePool.size())
+		{
+			nodePool.add(new JSONNode());
+		}
+		JSONNode node = nodePool.get(numNodesInUse++);
+		node.clear();
+		return node;
+	}
+
 	@Override
-	public void finishRow() {
-		for(JSONObject value : rootObjects.values())
+	public synchronized void finishRow() {
+		for(JSONNode value : rootObjects.values())
 		{
 			if (!firstObject) {
 				outWriter.println(",");
 			}
 			firstObject = false;
-			outWriter.print(value.toString(4));
+			writeObject(value);
 		}
 		outWriter.println("");
-		generatedObjects = new ConcurrentHashMap<String, JSONObject>();
-		rootObjects = new ConcurrentHashMap<String, JSONObject>();		
+		generatedObjects.clear();
+		rootObjects.clear();
+		numNodesInUse = 0;
+	}
+
+	/**
+	 * Writes the object and the objects nested in it the way 
+	 * JSONObject.write does, keeping the objects being written on a stack
+	 * instead of recursing. An object nested in itself is written as its 
+	 * URI.
+	 */
+	private void writeObject(JSONNode root)
+	{
+		int depth = 0;
+		pushFrame(depth++, root, 0);
+		while(depth > 0)
+		{
+			Frame frame = frames.get(depth - 1);
+			JSONNode node = frame.node;
+			int length = node.keys.size();
+			if(frame.next == length)
+			{
+				if(length > 1)
+				{
+					newLine(frame.indent);
+				}
+				outWriter.write('}');
+				node.writing = false;
+				depth--;
+				continue;
+			}
+			int i = frame.next++;
+			int valueIndent = frame.indent;
+			if(length > 1)
+			{
+				if(i > 0)
+				{
+					outWriter.write(',');
+				}
+				valueIndent += indentFactor;
+				newLine(valueIndent);
+			}
+			writeQuoted(node.keys.get(i));
+			outWriter.write(':');
+			if(indentFactor > 0)
+			{
+				outWriter.write(' ');
+			}
+			Object value = node.values.get(i);
+			if(value instanceof JSONNode)
+			{
+				JSONNode nested = (JSONNode) value;
+				if(nested.writing)
+				{
+					writeQuoted(nested.uri);
+				}
+				else
+				{
+					pushFrame(depth++, nested, valueIndent);
+				}
+			}
+			else
+			{
+				writeQuoted((String) value);
+			}
+		}
+	}
+
+	private void pushFrame(int depth, JSONNode node, int indent)
+	{
+		if(depth == frames.size())
+		{
+			frames.add(new Frame());
+		}
+		Frame frame = frames.get(depth);
+		frame.node = node;
+		frame.next = 0;
+		frame.indent = indent;
+		node.writing = true;
+		outWriter.write('{');
+	}
+
+	private void newLine(int indent)
+	{
+		if(indentFactor > 0)
+		{
+			outWriter.write('\n');
+			for(int i = 0; i < indent; i++)
+			{
+				outWriter.write(' ');
+			}
+		}
+	}
+
+	/**
+	 * Escapes the string the same way as JSONObject.quote
+	 */
+	private void writeQuoted(String string)
+	{
+		if (string == null || string.length() == 0) {
+			outWriter.write("\"\"");
+			return;
+		}
+		char b;
+		char c = 0;
+		int length = string.length();
+		outWriter.write('"');
+		for(int i = 0; i < length; i++)
+		{
+			b = c;
+			c = string.charAt(i);
+			switch (c) {
+			case '\\':
+			case '"':
+				outWriter.write('\\');
+				outWriter.write(c);
+				break;
+			case '/':
+				if (b == '<') {
+					outWriter.write('\\');
+				}
+				outWriter.write(c);
+				break;
+			case '\b':
+				outWriter.write("\\b");
+				break;
+			case '\t':
+				outWriter.write("\\t");
+				break;
+			case '\n':
+				outWriter.write("\\n");
+				break;
+			case '\f':
+				outWriter.write("\\f");
+				break;
+			case '\r':
+				outWriter.write("\\r");
+				break;
+			default:
+				if (c < ' ' || (c >= '\u0080' && c < '\u00a0')
+						|| (c >= '\u2000' && c < '\u2100')) {
+					outWriter.write("\\u");
+					String hhhh = Integer.toHexString(c);
+					outWriter.write("0000", 0, 4 - hhhh.length());
+					outWriter.write(hhhh);
+				} else {
+					outWriter.write(c);
+				}
+			}
+		}
+		outWriter.write('"');
 	}
 
 	@Override
-	public void flush() {
+	public synchronized void flush() {
 		finishRow();
 		outWriter.flush();
 	}
 
 	@Override
-	public void close() {
+	public synchronized void close() {
 		outWriter.print("]");
 		outWriter.close();
 	}
@@ -137,7 +330,7 @@ public class JSONKR2RMLRDFWriter implements KR2RMLRDFWriter{
 	public void outputTripleWithLiteralObject(TriplesMap subjTriplesMap,
 			String subjUri, PredicateObjectMap predicateObjectMap, String predicateUri, String value,
 			String literalType) {
-		outputTripleWithLiteralObject(subjUri, predicateUri, value, value);
+		outputTripleWithLiteralObject(subjUri, predicateUri, value, literalType);
 		
 	}
 
@@ -149,4 +342,46 @@ public class JSONKR2RMLRDFWriter implements KR2RMLRDFWriter{
 		
 	}
 
+	/**
+	 * The properties of a generated object, sorted by key. A property that is
+	 * output again replaces the previous value.
+	 */
+	private static class JSONNode {
+		private String uri;
+		private final List<String> keys = new ArrayList<String>(8);
+		private final List<Object> values = new ArrayList<Object>(8);
+		private boolean writing;
+
+		private void put(String key, Object value)
+		{
+			if(uri == null)
+			{
+				uri = (String) value;
+			}
+			int index = Collections.binarySearch(keys, key);
+			if(index < 0)
+			{
+				keys.add(-index - 1, key);
+				values.add(-index - 1, value);
+			}
+			else
+			{
+				values.set(index, value);
+			}
+		}
+
+		private void clear()
+		{
+			uri = null;
+			keys.clear();
+			values.clear();
+			writing = false;
+		}
+	}
+
+	private static class Frame {
+		private JSONNode node;
+		private int next;
+		private int indent;
+	}
 }
@@ -1,74 +1,348 @@
 package edu.isi.karma.kr2rml;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.lang.reflect.Field;
-import java.util.BitSet;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.hadoop.util.bloom.BloomFilter;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.bloom.HashFunction;
+import org.apache.hadoop.util.bloom.Key;
+import org.apache.hadoop.util.hash.Hash;
 
-public class KR2RMLBloomFilter extends BloomFilter {
+/**
+ * A bloom filter that is read and written in the format of Hadoop's
+ * BloomFilter, so it can be combined with the filters already stored, but
+ * that keeps its bits in words of an AtomicLongArray. Adds from several
+ * threads don't need a lock, the set operations work a word at a time and
+ * serializing doesn't copy the bits into another array first.
+ */
+public class KR2RMLBloomFilter implements Writable {
 
-	private static final Logger LOG = LoggerFactory.getLogger(KR2RMLBloomFilter.class);
 	public static final int defaultVectorSize = 1000000;
 	public static final int defaultnbHash = 8;
-	static Field bitsField;
-	static
+	private static final int VERSION = -1;
+
+	private int vectorSize;
+	private int nbHash;
+	private int hashType;
+	private HashFunction hash;
+	private AtomicLongArray words;
+
+	public KR2RMLBloomFilter(int vectorSize, int nbHash, int hashType) {
+		initialize(vectorSize, nbHash, hashType);
+	}
+	public KR2RMLBloomFilter() {
+		this(defaultVectorSize, defaultnbHash, Hash.JENKINS_HASH);
+	}
+
+	/**
+	 * Creates a filter just large enough to hold the expected number of
+	 * values with the given false positive rate.
+	 */
+	public static KR2RMLBloomFilter forExpectedInsertions(long expectedInsertions, double falsePositiveRate)
 	{
-		try {
-			bitsField = BloomFilter.class.getDeclaredField("bits");
-			bitsField.setAccessible(true);
-		} catch (SecurityException | NoSuchFieldException e) {
-			LOG.error("Unable to set up KR2RMLBloomFilter: " + e.getMessage());
+		if(expectedInsertions <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+		{
+			throw new IllegalArgumentException("Expected insertions must be positive and the false positive rate between 0 and 1");
 		}
+		double ln2 = Math.log(2);
+		long vectorSize = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+		vectorSize = Math.max(64, Math.min(vectorSize, Integer.MAX_VALUE - 64));
+		int nbHash = (int) Math.max(1, Math.round((double) vectorSize / expectedInsertions * ln2));
+		return new KR2RMLBloomFilter((int) vectorSize, nbHash, Hash.JENKINS_HASH);
 	}
-	public KR2RMLBloomFilter(int vectorSize, int nbHash, int hashType) {
-		super(vectorSize,nbHash, hashType);
+
+	private void initialize(int vectorSize, int nbHash, int hashType)
+	{
+		this.vectorSize = vectorSize;
+		this.nbHash = nbHash;
+		this.hashType = hashType;
+		this.hash = new HashFunction(vectorSize, nbHash, hashType);
+		this.words = new AtomicLongArray((vectorSize + 63) >>> 6);
 	}
-	public KR2RMLBloomFilter() {
-		super();
+
+	public void add(Key key)
+	{
+		if(key == null)
+		{
+			throw new NullPointerException("key cannot be null");
+		}
+		for(int position : hash.hash(key))
+		{
+			int index = position >>> 6;
+			long mask = 1L << (position & 63);
+			long word = words.get(index);
+			while((word & mask) == 0 && !words.compareAndSet(index, word, word | mask))
+			{
+				word = words.get(index);
+			}
+		}
+	}
+
+	public boolean membershipTest(Key key)
+	{
+		if(key == null)
+		{
+			throw new NullPointerException("key cannot be null");
+		}
+		for(int position : hash.hash(key))
+		{
+			if((words.get(position >>> 6) & (1L << (position & 63))) == 0)
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public void and(KR2RMLBloomFilter filter)
+	{
+		checkCompatible(filter);
+		for(int i = 0; i < words.length(); i++)
+		{
+			long mask = filter.words.get(i);
+			long word;
+			do
+			{
+				word = words.get(i);
+			} while(!words.compareAndSet(i, word, word & mask));
+		}
+	}
+
+	public void or(KR2RMLBloomFilter filter)
+	{
+		checkCompatible(filter);
+		for(int i = 0; i < words.length(); i++)
+		{
+			orWord(i, filter.words.get(i));
+		}
+	}
+
+	public void xor(KR2RMLBloomFilter filter)
+	{
+		checkCompatible(filter);
+		for(int i = 0; i < words.length(); i++)
+		{
+			long mask = filter.words.get(i);
+			long word;
+			do
+			{
+				word = words.get(i);
+			} while(!words.compareAndSet(i, word, word ^ mask));
+		}
+	}
+
+	private void orWord(int index, long bits)
+	{
+		long word = words.get(index);
+		while((word | bits) != word && !words.compareAndSet(index, word, word | bits))
+		{
+			word = words.get(index);
+		}
+	}
+
+	private void checkCompatible(KR2RMLBloomFilter filter)
+	{
+		if(filter == null || filter.vectorSize != vectorSize || filter.nbHash != nbHash)
+		{
+			throw new IllegalArgumentException("filters cannot be combined");
+		}
 	}
+
+	public int getVectorSize() {
+		return vectorSize;
+	}
+
+	public int getNbHash() {
+		return nbHash;
+	}
+
+	/**
+	 * @return the number of bits set
+	 */
+	public int cardinality()
+	{
+		int setBits = 0;
+		for(int i = 0; i < words.length(); i++)
+		{
+			setBits += Long.bitCount(words.get(i));
+		}
+		return setBits;
+	}
+
 	public int estimateNumberOfHashedValues()
 	{
-		int num = 0;
-		try {
-			BitSet bits = (BitSet)bitsField.get(this);
+		int setBits = cardinality();
+		double N = this.getVectorSize();
+		int k = this.nbHash;
+		double tmp = -(N * Math.log(1 - (setBits / N))) / (double)k;
+		return (int) Math.round(tmp);
+	}
 
-			int setBits = bits.cardinality();
-			double N = this.getVectorSize();
-			int k = this.nbHash;
-			double tmp = -(N * Math.log(1 - (setBits / N))) / (double)k;
-			num = (int) Math.round(tmp);
-		} catch (IllegalArgumentException | IllegalAccessException e) {
-			LOG.error("Unable to estimate number of hashed values: " + e.getMessage());
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(VERSION);
+		out.writeInt(nbHash);
+		out.writeByte(hashType);
+		out.writeInt(vectorSize);
+		int numBytes = (vectorSize + 7) >>> 3;
+		byte[] bytes = new byte[Math.min(numBytes, 8192)];
+		int length = 0;
+		for(int i = 0; i < numBytes; i++)
+		{
+			bytes[length++] = (byte) (words.get(i >>> 3) >>> ((i & 7) << 3));
+			if(length == bytes.length)
+			{
+				out.write(bytes, 0, length);
+				length = 0;
+			}
 		}
-		return num;
-		
+		out.write(bytes, 0, length);
 	}
-	
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		readHeader(in);
+		readBits(in);
+	}
+
+	private void readHeader(DataInput in) throws IOException
+	{
+		int[] header = readHeaderFields(in);
+		if(header[0] != this.vectorSize || header[1] != this.nbHash || header[2] != this.hashType)
+		{
+			initialize(header[0], header[1], header[2]);
+		}
+		else
+		{
+			for(int i = 0; i < words.length(); i++)
+			{
+				words.set(i, 0);
+			}
+		}
+	}
+
+	/**
+	 * @return the vector size, number of hashes and hash type
+	 */
+	private static int[] readHeaderFields(DataInput in) throws IOException
+	{
+		int version = in.readInt();
+		int nbHash;
+		int hashType;
+		if(version > 0)
+		{
+			// the format from before the version was written
+			nbHash = version;
+			hashType = Hash.JENKINS_HASH;
+		}
+		else if(version == VERSION)
+		{
+			nbHash = in.readInt();
+			hashType = in.readByte();
+		}
+		else
+		{
+			throw new IOException("Unsupported version: " + version);
+		}
+		return new int[] {in.readInt(), nbHash, hashType};
+	}
+
+	/**
+	 * Adds the bits serialized by {@link #write(DataOutput)} to the ones
+	 * already set
+	 */
+	private void readBits(DataInput in) throws IOException
+	{
+		int numBytes = (vectorSize + 7) >>> 3;
+		byte[] bytes = new byte[Math.min(numBytes, 8192)];
+		int index = 0;
+		while(index < numBytes)
+		{
+			int length = Math.min(bytes.length, numBytes - index);
+			in.readFully(bytes, 0, length);
+			long word = 0;
+			for(int i = 0; i < length; i++, index++)
+			{
+				word |= (bytes[i] & 0xFFL) << ((index & 7) << 3);
+				if((index & 7) == 7 || index == numBytes - 1)
+				{
+					if(word != 0)
+					{
+						orWord(index >>> 3, word);
+					}
+					word = 0;
+				}
+			}
+		}
+	}
+
 	public String compressAndBase64Encode() throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream(getVectorSize() + 1000);
-		String base64EncodedCompressedSerializedBloomFilter = null;
-		ObjectOutputStream dout = new ObjectOutputStream(new DeflaterOutputStream(baos));
+		StringWriter writer = new StringWriter((vectorSize >>> 5) + 1000);
+		writeCompressedAndBase64Encoded(writer);
+		return writer.toString();
+	}
+
+	/**
+	 * Writes the same as {@link #compressAndBase64Encode()} without building
+	 * the string.
+	 */
+	public void writeCompressedAndBase64Encoded(final Writer writer) throws IOException
+	{
+		OutputStream base64 = new Base64OutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				writer.write(b);
+			}
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				for(int i = off; i < off + len; i++)
+				{
+					writer.write(b[i]);
+				}
+			}
+		}, true, 0, null);
+		ObjectOutputStream dout = new ObjectOutputStream(new DeflaterOutputStream(base64));
 		write(dout);
 		dout.flush();
 		dout.close();
-		base64EncodedCompressedSerializedBloomFilter = Base64.encodeBase64String(baos.toByteArray());
-		return base64EncodedCompressedSerializedBloomFilter;
 	}
-	
+
 	public void populateFromCompressedAndBase64EncodedString(String base64EncodedBloomFilter) throws IOException
+	{
+		readFields(openCompressedAndBase64Encoded(base64EncodedBloomFilter));
+	}
+
+	/**
+	 * Adds the values of a serialized filter to this one without creating
+	 * another filter.
+	 */
+	public void orFromCompressedAndBase64EncodedString(String base64EncodedBloomFilter) throws IOException
+	{
+		ObjectInputStream in = openCompressedAndBase64Encoded(base64EncodedBloomFilter);
+		int[] header = readHeaderFields(in);
+		if(header[0] != vectorSize || header[1] != nbHash || header[2] != hashType)
+		{
+			throw new IllegalArgumentException("filters cannot be combined");
+		}
+		readBits(in);
+	}
+
+	private static ObjectInputStream openCompressedAndBase64Encoded(String base64EncodedBloomFilter) throws IOException
 	{
 		byte[] serializedBloomFilter = Base64.decodeBase64(base64EncodedBloomFilter);
-		readFields(new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(serializedBloomFilter))));
+		return new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(serializedBloomFilter)));
 	}
 }
@@ -1,6 +1,7 @@
 package edu.isi.karma.kr2rml;
 
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.Charset;
 import java.util.Map.Entry;
 import java.util.concurrent.ConcurrentHashMap;
@@ -20,10 +21,27 @@ public class KR2RMLBloomFilterManager {
 	private static final Charset UTF8_CHARSET = Charset.forName("UTF-8");
 	protected ConcurrentHashMap<String, KR2RMLBloomFilter> idToBloomFilter;
 	protected R2RMLMappingIdentifier mappingIdentifier;
+	protected long expectedInsertions;
+	protected double falsePositiveRate;
 	public KR2RMLBloomFilterManager(R2RMLMappingIdentifier mappingIdentifier)
+	{
+		this(mappingIdentifier, 0, 0);
+	}
+	/**
+	 * @param expectedInsertions
+	 *            number of URIs expected for each triples map, predicate
+	 *            object map or ref object map, 0 for filters of the default
+	 *            size. Only filters of the same size can be combined.
+	 * @param falsePositiveRate
+	 *            the false positive rate of a filter holding the expected
+	 *            number of URIs
+	 */
+	public KR2RMLBloomFilterManager(R2RMLMappingIdentifier mappingIdentifier, long expectedInsertions, double falsePositiveRate)
 	{
 		idToBloomFilter = new ConcurrentHashMap<String, KR2RMLBloomFilter>();
 		this.mappingIdentifier = mappingIdentifier;
+		this.expectedInsertions = expectedInsertions;
+		this.falsePositiveRate = falsePositiveRate;
 	}
 	public KR2RMLBloomFilterManager(JSONObject serializedManager) throws IOException
 	{
@@ -45,18 +63,27 @@ public class KR2RMLBloomFilterManager {
 		return idToBloomFilter.get(id);
 	}
 	public void addUriToBloomFilter(String id, String uri) {
-		KR2RMLBloomFilter bf = null;
-		if(!idToBloomFilter.containsKey(id))
+		KR2RMLBloomFilter bf = idToBloomFilter.get(id);
+		if(bf == null)
 		{
-			idToBloomFilter.putIfAbsent(id, new KR2RMLBloomFilter(KR2RMLBloomFilter.defaultVectorSize, KR2RMLBloomFilter.defaultnbHash, Hash.JENKINS_HASH));
+			idToBloomFilter.putIfAbsent(id, createBloomFilter());
+			bf = idToBloomFilter.get(id);
 		}
-		bf = idToBloomFilter.get(id);
 		
 		Key k = new Key(uri.getBytes(UTF8_CHARSET));
 		bf.add(k);
 		return;
 	}
 	
+	private KR2RMLBloomFilter createBloomFilter()
+	{
+		if(expectedInsertions > 0)
+		{
+			return KR2RMLBloomFilter.forExpectedInsertions(expectedInsertions, falsePositiveRate);
+		}
+		return new KR2RMLBloomFilter(KR2RMLBloomFilter.defaultVectorSize, KR2RMLBloomFilter.defaultnbHash, Hash.JENKINS_HASH);
+	}
+	
 	public JSONObject toJSON()
 	{
 		JSONObject filters = new JSONObject();
@@ -117,4 +144,49 @@ public class KR2RMLBloomFilterManager {
 		return builder.toString();
 	}
 	
+
+	/**
+	 * Writes the same JSON as {@link #toJSON()}, one filter at a time, so that
+	 * the serialized filters are never all in memory together.
+	 */
+	public void writeJSON(Writer writer) throws IOException
+	{
+		StringBuilder ids = new StringBuilder();
+		writer.write("{");
+		for(Entry<String, KR2RMLBloomFilter> entry : idToBloomFilter.entrySet())
+		{
+			writer.write(JSONObject.quote(entry.getKey()));
+			writer.write(":\"");
+			entry.getValue().writeCompressedAndBase64Encoded(writer);
+			writer.write("\",\n");
+			if(ids.length() != 0)
+			{
+				ids.append(",");
+			}
+			ids.append(entry.getKey());
+		}
+		writer.write("\"ids\":");
+		writer.write(JSONObject.quote(ids.toString()));
+		writer.write(",\n\"mappingIdentifier\":");
+		writer.write(mappingIdentifier.toJSON().toString());
+		writer.write("}");
+	}
+	
+	/**
+	 * Writes the same triples as {@link #toRDF()}, one filter at a time.
+	 */
+	public void writeRDF(Writer writer) throws IOException
+	{
+		for(Entry<String, KR2RMLBloomFilter> entry : idToBloomFilter.entrySet())
+		{
+			writer.write("<");
+			writer.write(entry.getKey());
+			writer.write("> <");
+			writer.write(Uris.KM_HAS_BLOOMFILTER);
+			writer.write("> \"");
+			entry.getValue().writeCompressedAndBase64Encoded(writer);
+			writer.write("\" . \n");
+		}
+	}
+	
 }
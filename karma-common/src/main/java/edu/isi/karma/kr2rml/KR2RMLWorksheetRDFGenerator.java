@@ -29,25 +29,36 @@ import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang.RandomStringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.ErrorReport.Priority;
+import edu.isi.karma.kr2rml.exception.HNodeNotFoundKarmaException;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMapping;
+import edu.isi.karma.kr2rml.mapping.KR2RMLMappingAuxillaryInformation;
 import edu.isi.karma.kr2rml.mapping.KR2RMLMappingColumnNameHNodeTranslator;
+import edu.isi.karma.kr2rml.planning.CompiledTriplesMapPlan;
 import edu.isi.karma.kr2rml.planning.DFSTriplesMapGraphDAGifier;
 import edu.isi.karma.kr2rml.planning.RootStrategy;
 import edu.isi.karma.kr2rml.planning.SteinerTreeRootStrategy;
 import edu.isi.karma.kr2rml.planning.TriplesMap;
+import edu.isi.karma.kr2rml.planning.TriplesMapExecutionMetrics;
 import edu.isi.karma.kr2rml.planning.TriplesMapGraph;
 import edu.isi.karma.kr2rml.planning.TriplesMapPlan;
 import edu.isi.karma.kr2rml.planning.TriplesMapPlanExecutor;
@@ -78,6 +89,13 @@ public class KR2RMLWorksheetRDFGenerator {
 	private Logger logger = LoggerFactory.getLogger(KR2RMLWorksheetRDFGenerator.class);
 	private URIFormatter uriFormatter;
 	private RootStrategy strategy;
+	private int numRowPartitionThreads = 1;
+	private boolean skipMissingColumns = false;
+	private int rowsPerPartition = DEFAULT_ROWS_PER_PARTITION;
+	private int triplesMapParallelism = Runtime.getRuntime().availableProcessors();
+	private TriplesMapExecutionMetrics triplesMapExecutionMetrics = new TriplesMapExecutionMetrics();
+
+	public static final int DEFAULT_ROWS_PER_PARTITION = 1000;
 
 	public KR2RMLWorksheetRDFGenerator(Worksheet worksheet, RepFactory factory, 
 			OntologyManager ontMgr, String outputFileName, boolean addColumnContextInformation, 
@@ -141,60 +159,68 @@ public class KR2RMLWorksheetRDFGenerator {
 	}
 
 
+	/**
+	 * Generate the RDF for contiguous ranges of top level rows in parallel
+	 * instead of one row at a time.  The output is written in row order.
+	 * 
+	 * @param numThreads
+	 *            number of threads generating row ranges, 1 disables row
+	 *            partitioning
+	 * @param rowsPerPartition
+	 *            number of top level rows generated by a thread at a time
+	 */
+	public void setRowPartitioning(int numThreads, int rowsPerPartition)
+	{
+		this.numRowPartitionThreads = Math.max(1, numThreads);
+		this.rowsPerPartition = Math.max(1, rowsPerPartition);
+	}
+
+	/**
+	 * Skip the triples maps and predicate object maps whose columns are not in
+	 * the worksheet, when they are expected to be missing, e.g. in a worksheet
+	 * holding a batch of the records of a source.  Otherwise a missing column
+	 * fails the generation.
+	 */
+	public void setSkipMissingColumns(boolean skipMissingColumns)
+	{
+		this.skipMissingColumns = skipMissingColumns;
+	}
+
+	/**
+	 * @param parallelism
+	 *            number of threads processing the triples maps of a row when
+	 *            the rows aren't partitioned
+	 */
+	public void setTriplesMapParallelism(int parallelism)
+	{
+		this.triplesMapParallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * @return the time spent on each triples map by this generator
+	 */
+	public TriplesMapExecutionMetrics getTriplesMapExecutionMetrics() {
+		return triplesMapExecutionMetrics;
+	}
+
 	public void generateRDF(boolean closeWriterAfterGeneration) throws IOException {
 
 		try {
 
 			// RDF Generation starts at the top level rows
-			ArrayList<Row> rows = this.worksheet.getDataTable().getRows(0, 
-					this.worksheet.getDataTable().getNumRows());
+			List<Row> rows = this.worksheet.getDataTable().getRowsView();
 
 
 			
-			Map<TriplesMapGraph, List<String>> graphTriplesMapsProcessingOrder = new HashMap<TriplesMapGraph, List<String>>();
-			for(TriplesMapGraph graph : kr2rmlMapping.getAuxInfo().getTriplesMapGraph().getGraphs())
+			List<CompiledTriplesMapPlan> compiledPlans = getCompiledTriplesMapPlans();
+			if(numRowPartitionThreads > 1 && rows.size() > rowsPerPartition)
 			{
-				try{
-					DFSTriplesMapGraphDAGifier dagifier = new DFSTriplesMapGraphDAGifier();
-					if(null == strategy)
-					{
-						strategy =new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy());
-					
-					}
-					List<String> triplesMapsProcessingOrder = new LinkedList<String>();
-					triplesMapsProcessingOrder = dagifier.dagify(graph, strategy);
-					graphTriplesMapsProcessingOrder.put(graph, triplesMapsProcessingOrder);
-				}catch (Exception e)
-				{
-					logger.error("Unable to find DAG for RDF Generation!", e);
-					throw new Exception("Unable to find DAG for RDF Generation!", e);
-	
-				}
+				generateRDFInRowPartitions(rows, compiledPlans);
 			}
-			int i=1;
-			TriplesMapPlanExecutor e = new TriplesMapPlanExecutor();
-			Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan = new HashMap<TriplesMap, TriplesMapWorkerPlan>() ;
-			for(TriplesMap triplesMap : kr2rmlMapping.getTriplesMapList())
+			else
 			{
-				TriplesMapWorkerPlan workerPlan = new TriplesMapWorkerPlan(factory, triplesMap, kr2rmlMapping, uriFormatter, translator,  addColumnContextInformation, hNodeToContextUriMap);
-				triplesMapToWorkerPlan.put(triplesMap, workerPlan);
+				generateRDFRowByRow(rows, compiledPlans);
 			}
-			for (Row row:rows) {
-				for(Entry<TriplesMapGraph, List<String>> entry : graphTriplesMapsProcessingOrder.entrySet())
-				{
-					TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(triplesMapToWorkerPlan, row, outWriters);
-					TriplesMapPlan plan = g.generatePlan(entry.getKey(), entry.getValue());
-					errorReport.combine(e.execute(plan));
-				}
-				for(KR2RMLRDFWriter outWriter : outWriters)
-				{
-					outWriter.finishRow();
-				}
-				if (i++%2000 == 0)
-					logger.info("Done processing " + i + " rows");
-
-			}
-			e.shutdown(errorReport);
 			// Generate column provenance information if required
 			if (addColumnContextInformation) {
 				generateColumnProvenanceInformation();
@@ -216,7 +242,255 @@ public class KR2RMLWorksheetRDFGenerator {
 		}
 		// An attempt to prevent an occasional error that occurs on Windows platform
 		// The requested operation cannot be performed on a file with a user-mapped section open
-		System.gc();
+		if (closeWriterAfterGeneration) {
+			System.gc();
+		}
+	}
+
+	/**
+	 * The DAGs of the triples map graphs and the dependencies between their 
+	 * triples maps only depend on the mapping and the root strategy, so with 
+	 * the default strategy they are computed once and kept with the mapping 
+	 * for every row and every later worksheet generated with it.  A strategy 
+	 * given by the caller, e.g. a root chosen by the user, gets its own plans.
+	 */
+	private List<CompiledTriplesMapPlan> getCompiledTriplesMapPlans() throws Exception {
+		KR2RMLMappingAuxillaryInformation auxInfo = kr2rmlMapping.getAuxInfo();
+		if(null != strategy)
+		{
+			return compileTriplesMapPlans(auxInfo, strategy);
+		}
+		synchronized(auxInfo)
+		{
+			List<CompiledTriplesMapPlan> compiledPlans = auxInfo.getCompiledTriplesMapPlans();
+			if(compiledPlans == null)
+			{
+				compiledPlans = compileTriplesMapPlans(auxInfo, 
+						new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
+				auxInfo.setCompiledTriplesMapPlans(compiledPlans);
+			}
+			return compiledPlans;
+		}
+	}
+
+	private List<CompiledTriplesMapPlan> compileTriplesMapPlans(KR2RMLMappingAuxillaryInformation auxInfo, 
+			RootStrategy strategy) throws Exception {
+		List<CompiledTriplesMapPlan> compiledPlans = new LinkedList<CompiledTriplesMapPlan>();
+		for(TriplesMapGraph graph : auxInfo.getTriplesMapGraph().getGraphs())
+		{
+			try{
+				DFSTriplesMapGraphDAGifier dagifier = new DFSTriplesMapGraphDAGifier();
+				List<String> triplesMapsProcessingOrder = dagifier.dagify(graph, strategy);
+				compiledPlans.add(CompiledTriplesMapPlan.compile(graph, triplesMapsProcessingOrder));
+			}catch (Exception e)
+			{
+				logger.error("Unable to find DAG for RDF Generation!", e);
+				throw new Exception("Unable to find DAG for RDF Generation!", e);
+
+			}
+		}
+		return compiledPlans;
+	}
+
+	private void generateRDFRowByRow(List<Row> rows, 
+			List<CompiledTriplesMapPlan> compiledPlans) throws HNodeNotFoundKarmaException {
+		int i=1;
+		TriplesMapPlanExecutor e = new TriplesMapPlanExecutor(triplesMapParallelism);
+		Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan = generateTriplesMapWorkerPlans(uriFormatter);
+		for (Row row:rows) {
+			TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(triplesMapToWorkerPlan, row, outWriters);
+			for(CompiledTriplesMapPlan compiledPlan : compiledPlans)
+			{
+				TriplesMapPlan plan = g.generatePlan(compiledPlan);
+				errorReport.combine(e.execute(plan));
+			}
+			for(KR2RMLRDFWriter outWriter : outWriters)
+			{
+				outWriter.finishRow();
+			}
+			if (i++%2000 == 0)
+				logger.info("Done processing " + i + " rows");
+
+		}
+		e.shutdown(errorReport);
+		triplesMapExecutionMetrics.combine(e.getMetrics());
+	}
+
+	/**
+	 * Splits the top level rows into contiguous partitions that are generated 
+	 * concurrently, each into its own buffer. The buffers are replayed to the 
+	 * writers in row order, so the output is the same as when processing row 
+	 * by row. Only a bounded number of partitions is in flight at any time.
+	 */
+	private void generateRDFInRowPartitions(List<Row> rows,
+			List<CompiledTriplesMapPlan> compiledPlans) throws HNodeNotFoundKarmaException, InterruptedException, ExecutionException {
+		
+		// The worker plans memoize the nodes of the row they last processed, so
+		// every partition thread needs a set of its own.  They are created here 
+		// because creating them asks the factory for new ids.  The warnings of
+		// creating them are the same for every set, so only the first set's 
+		// are reported, once, before the partitions run.
+		BlockingQueue<RowPartitionPlans> availablePlans = new LinkedBlockingQueue<RowPartitionPlans>();
+		List<RowPartitionPlans> allPlans = new LinkedList<RowPartitionPlans>();
+		for(int t = 0; t < numRowPartitionThreads; t++)
+		{
+			ErrorReport planErrorReport = new ErrorReport();
+			PartitionErrorReport partitionErrorReport = new PartitionErrorReport(planErrorReport);
+			RowPartitionPlans plans = new RowPartitionPlans(generateTriplesMapWorkerPlans(new URIFormatter(ontMgr, partitionErrorReport)), partitionErrorReport);
+			if(t == 0)
+			{
+				errorReport.combine(planErrorReport);
+			}
+			partitionErrorReport.startRows();
+			availablePlans.add(plans);
+			allPlans.add(plans);
+		}
+		
+		ExecutorService service = Executors.newFixedThreadPool(numRowPartitionThreads);
+		Deque<Future<BufferedKR2RMLRDFWriter>> partitions = new LinkedList<Future<BufferedKR2RMLRDFWriter>>();
+		int maxPartitionsInFlight = numRowPartitionThreads * 2;
+		int rowsReplayed = 0;
+		try
+		{
+			for(int start = 0; start < rows.size(); start += rowsPerPartition)
+			{
+				int end = Math.min(start + rowsPerPartition, rows.size());
+				partitions.add(service.submit(new RowPartition(rows.subList(start, end), compiledPlans, availablePlans, triplesMapExecutionMetrics)));
+				if(partitions.size() >= maxPartitionsInFlight)
+				{
+					rowsReplayed += replayPartition(partitions.removeFirst());
+				}
+			}
+			while(!partitions.isEmpty())
+			{
+				rowsReplayed += replayPartition(partitions.removeFirst());
+			}
+		}
+		finally
+		{
+			service.shutdownNow();
+			// the partitions still running add to their reports
+			service.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+			for(RowPartitionPlans plans : allPlans)
+			{
+				errorReport.combine(plans.errorReport);
+			}
+		}
+		logger.info("Done processing " + rowsReplayed + " rows");
+	}
+
+	private int replayPartition(Future<BufferedKR2RMLRDFWriter> partition) throws InterruptedException, ExecutionException
+	{
+		BufferedKR2RMLRDFWriter buffer = partition.get();
+		buffer.replay(outWriters);
+		return buffer.getNumRowsFinished();
+	}
+
+	private Map<TriplesMap, TriplesMapWorkerPlan> generateTriplesMapWorkerPlans(URIFormatter uriFormatter) throws HNodeNotFoundKarmaException
+	{
+		Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan = new HashMap<TriplesMap, TriplesMapWorkerPlan>() ;
+		for(TriplesMap triplesMap : kr2rmlMapping.getTriplesMapList())
+		{
+			try
+			{
+				TriplesMapWorkerPlan workerPlan = new TriplesMapWorkerPlan(factory, triplesMap, kr2rmlMapping, uriFormatter, translator,  addColumnContextInformation, hNodeToContextUriMap, 
+						skipMissingColumns);
+				triplesMapToWorkerPlan.put(triplesMap, workerPlan);
+			}
+			catch (HNodeNotFoundKarmaException e)
+			{
+				if(!skipMissingColumns)
+				{
+					throw e;
+				}
+				logger.debug("Skipping " + triplesMap.getId() + ", " + e.getOffendingColumn() + " is not in the worksheet");
+			}
+		}
+		return triplesMapToWorkerPlan;
+	}
+
+	/**
+	 * Keeps the warnings of creating the plans of a partition thread apart
+	 * from the ones of generating its rows.
+	 */
+	private static class PartitionErrorReport extends ErrorReport {
+		private ErrorReport planErrorReport;
+		
+		private PartitionErrorReport(ErrorReport planErrorReport)
+		{
+			this.planErrorReport = planErrorReport;
+		}
+		
+		private void startRows()
+		{
+			planErrorReport = null;
+		}
+		
+		@Override
+		public void addReportMessage(ReportMessage errMsg)
+		{
+			if(planErrorReport != null)
+			{
+				planErrorReport.addReportMessage(errMsg);
+			}
+			else
+			{
+				super.addReportMessage(errMsg);
+			}
+		}
+	}
+	
+	private static class RowPartitionPlans {
+		private final Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan;
+		private final ErrorReport errorReport;
+		
+		private RowPartitionPlans(Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan, ErrorReport errorReport)
+		{
+			this.triplesMapToWorkerPlan = triplesMapToWorkerPlan;
+			this.errorReport = errorReport;
+		}
+	}
+	
+	private static class RowPartition implements Callable<BufferedKR2RMLRDFWriter> {
+		private final List<Row> rows;
+		private final List<CompiledTriplesMapPlan> compiledPlans;
+		private final BlockingQueue<RowPartitionPlans> availablePlans;
+		private final TriplesMapExecutionMetrics metrics;
+		
+		private RowPartition(List<Row> rows, List<CompiledTriplesMapPlan> compiledPlans, BlockingQueue<RowPartitionPlans> availablePlans, TriplesMapExecutionMetrics metrics)
+		{
+			this.rows = rows;
+			this.compiledPlans = compiledPlans;
+			this.availablePlans = availablePlans;
+			this.metrics = metrics;
+		}
+		
+		@Override
+		public BufferedKR2RMLRDFWriter call() throws InterruptedException {
+			BufferedKR2RMLRDFWriter buffer = new BufferedKR2RMLRDFWriter();
+			List<KR2RMLRDFWriter> partitionWriters = new LinkedList<KR2RMLRDFWriter>();
+			partitionWriters.add(buffer);
+			TriplesMapPlanExecutor e = new TriplesMapPlanExecutor(true);
+			RowPartitionPlans plans = availablePlans.take();
+			try
+			{
+				for (Row row : rows) {
+					TriplesMapPlanGenerator g = new TriplesMapPlanGenerator(plans.triplesMapToWorkerPlan, row, partitionWriters);
+					for(CompiledTriplesMapPlan compiledPlan : compiledPlans)
+					{
+						TriplesMapPlan plan = g.generatePlan(compiledPlan);
+						plans.errorReport.combine(e.execute(plan));
+					}
+					buffer.finishRow();
+				}
+			}
+			finally
+			{
+				availablePlans.add(plans);
+				metrics.combine(e.getMetrics());
+			}
+			return buffer;
+		}
 	}
 
 	private void generateColumnProvenanceInformation() {
@@ -0,0 +1,469 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.kr2rml;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.planning.TriplesMap;
+
+/**
+ * Writes the same N-Triples as {@link N3KR2RMLRDFWriter}, but every triple is
+ * built in a reused StringBuilder, checked against a per row set of 64 bit
+ * fingerprints and encoded straight into a large direct buffer that is drained
+ * to a channel.  No per triple Strings or map entries are kept around.  The
+ * triples of a row are still compared in full when their fingerprints match,
+ * so a collision never drops a triple.
+ */
+public class StreamingN3KR2RMLRDFWriter implements KR2RMLRDFWriter {
+
+	private static final Logger LOG = LoggerFactory.getLogger(StreamingN3KR2RMLRDFWriter.class);
+	public static final int DEFAULT_BUFFER_SIZE = 4 * 1024 * 1024;
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
+	protected URIFormatter uriFormatter;
+	protected WritableByteChannel channel;
+	protected ByteBuffer buffer;
+	protected String baseURI;
+	private final StringBuilder triple = new StringBuilder(256);
+	private final TripleFingerprintSet generatedTriples = new TripleFingerprintSet();
+
+	public StreamingN3KR2RMLRDFWriter(URIFormatter uriFormatter, OutputStream outputStream)
+	{
+		this(uriFormatter, Channels.newChannel(outputStream));
+	}
+
+	public StreamingN3KR2RMLRDFWriter(URIFormatter uriFormatter, WritableByteChannel channel)
+	{
+		this(uriFormatter, channel, DEFAULT_BUFFER_SIZE);
+	}
+
+	public StreamingN3KR2RMLRDFWriter(URIFormatter uriFormatter, WritableByteChannel channel, int bufferSize)
+	{
+		this.uriFormatter = uriFormatter;
+		this.channel = channel;
+		this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, 1024));
+		this.baseURI = null;
+	}
+
+	@Override
+	public synchronized void outputTripleWithURIObject(String subjUri, String predicateUri, String objectUri)
+	{
+		triple.setLength(0);
+		appendNormalizedTerm(subjUri);
+		triple.append(' ');
+		triple.append(uriFormatter.getExpandedAndNormalizedUri(predicateUri));
+		triple.append(' ');
+		appendNormalizedTerm(objectUri);
+		triple.append(" .");
+		outputTriple();
+	}
+
+	@Override
+	public synchronized void outputTripleWithLiteralObject(String subjUri, String predicateUri, String value,
+			String literalType) {
+		appendTripleWithLiteralObject(subjUri, predicateUri, value, literalType);
+		triple.append(" .");
+		outputTriple();
+	}
+
+	@Override
+	public synchronized void outputQuadWithLiteralObject(String subjUri, String predicateUri,
+			String value, String literalType, String graph) {
+		appendTripleWithLiteralObject(subjUri, predicateUri, value, literalType);
+		triple.append(" <");
+		triple.append(graph);
+		triple.append("> .");
+		outputTriple();
+	}
+
+	private void appendTripleWithLiteralObject(String subjUri, String predicateUri, String value,
+			String literalType) {
+		triple.setLength(0);
+		appendNormalizedTerm(subjUri);
+		triple.append(' ');
+		triple.append(uriFormatter.getExpandedAndNormalizedUri(predicateUri));
+		triple.append(" \"");
+		appendEscapedLiteral(value);
+		triple.append('"');
+		// Add the RDF literal type to the literal if present
+		if (literalType != null && !literalType.equals("")) {
+			triple.append("^^<");
+			triple.append(literalType);
+			triple.append('>');
+		}
+	}
+
+	@Override
+	public void outputTripleWithURIObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap, String predicateUri,
+			String objectUri) {
+		outputTripleWithURIObject(subjUri, predicateUri, objectUri);
+	}
+
+	@Override
+	public void outputTripleWithURIObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap, String predicateUri, TriplesMap objTriplesMapId,
+			String objectUri) {
+		outputTripleWithURIObject(subjUri, predicateUri, objectUri);
+	}
+
+	@Override
+	public void outputTripleWithLiteralObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap, String predicateUri, String value,
+			String literalType) {
+		outputTripleWithLiteralObject(subjUri, predicateUri, value, literalType);
+	}
+
+	@Override
+	public void outputQuadWithLiteralObject(TriplesMap subjTriplesMap,
+			String subjUri, PredicateObjectMap predicateObjectMap, String predicateUri, String value,
+			String literalType, String graph) {
+		outputQuadWithLiteralObject(subjUri, predicateUri, value, literalType, graph);
+	}
+
+	@Override
+	public synchronized void finishRow()
+	{
+		generatedTriples.clear();
+		writeLineSeparator();
+	}
+
+	@Override
+	public synchronized void flush() {
+		LOG.debug("Flushing writer");
+		generatedTriples.clear();
+		drainBuffer();
+		LOG.debug("Flushed writer");
+	}
+
+	@Override
+	public synchronized void close() {
+		drainBuffer();
+		try {
+			channel.close();
+		} catch (IOException e) {
+			LOG.error("Unable to close channel", e);
+		}
+	}
+
+	public void setBaseURI(String baseURI) {
+		this.baseURI = baseURI;
+	}
+
+	private void outputTriple()
+	{
+		if(!generatedTriples.add(triple))
+		{
+			return;
+		}
+		int length = triple.length();
+		for(int i = 0; i < length; i++)
+		{
+			char c = triple.charAt(i);
+			if(Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(triple.charAt(i + 1)))
+			{
+				writeCodePoint(Character.toCodePoint(c, triple.charAt(++i)));
+			}
+			else
+			{
+				writeChar(c);
+			}
+		}
+		writeLineSeparator();
+	}
+
+	/**
+	 * Appends the term, removing the spaces from a URI in angled brackets and
+	 * resolving it against the base URI when it is relative. Same as
+	 * N3KR2RMLRDFWriter, but without parsing the URI.
+	 */
+	private void appendNormalizedTerm(String term)
+	{
+		if (term.indexOf('<') == -1 || term.indexOf('>') == -1) {
+			triple.append(term);
+			return;
+		}
+		triple.append('<');
+		int start = 1;
+		int end = term.length() - 1;
+		if (baseURI != null && !hasScheme(term, start, end)) {
+			triple.append(baseURI);
+		}
+		for(int i = start; i < end; i++)
+		{
+			char c = term.charAt(i);
+			if(c != ' ')
+			{
+				triple.append(c);
+			}
+		}
+		triple.append('>');
+	}
+
+	private static boolean hasScheme(String term, int start, int end)
+	{
+		for(int i = start; i < end; i++)
+		{
+			char c = term.charAt(i);
+			if(c == ':')
+			{
+				return i > start;
+			}
+			boolean isAlpha = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+			if(!isAlpha && (i == start || !((c >= '0' && c <= '9') || c == '+' || c == '-' || c == '.')))
+			{
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Escapes the value the same way as StringEscapeUtils.escapeJava
+	 */
+	private void appendEscapedLiteral(String value)
+	{
+		int length = value.length();
+		for(int i = 0; i < length; i++)
+		{
+			char c = value.charAt(i);
+			switch(c)
+			{
+			case '"': triple.append("\\\""); break;
+			case '\\': triple.append("\\\\"); break;
+			case '\b': triple.append("\\b"); break;
+			case '\n': triple.append("\\n"); break;
+			case '\t': triple.append("\\t"); break;
+			case '\f': triple.append("\\f"); break;
+			case '\r': triple.append("\\r"); break;
+			default:
+				if(c < 32 || c > 0x7f)
+				{
+					appendUnicodeEscape(c);
+				}
+				else
+				{
+					triple.append(c);
+				}
+			}
+		}
+	}
+
+	private void appendUnicodeEscape(char c)
+	{
+		triple.append("\\u");
+		for(int shift = 12; shift >= 0; shift -= 4)
+		{
+			triple.append(Character.toUpperCase(Character.forDigit((c >> shift) & 0xF, 16)));
+		}
+	}
+
+	private static long fingerprint(CharSequence s)
+	{
+		// 64 bit FNV-1a
+		long hash = 0xcbf29ce484222325L;
+		int length = s.length();
+		for(int i = 0; i < length; i++)
+		{
+			hash ^= s.charAt(i);
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private void writeLineSeparator()
+	{
+		for(int i = 0; i < LINE_SEPARATOR.length(); i++)
+		{
+			writeChar(LINE_SEPARATOR.charAt(i));
+		}
+	}
+
+	private void writeChar(char c)
+	{
+		if(c < 0x80)
+		{
+			ensureCapacity(1);
+			buffer.put((byte) c);
+		}
+		else if(c < 0x800)
+		{
+			ensureCapacity(2);
+			buffer.put((byte) (0xC0 | (c >> 6)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+		else if(Character.isSurrogate(c))
+		{
+			// unpaired surrogate
+			ensureCapacity(1);
+			buffer.put((byte) '?');
+		}
+		else
+		{
+			ensureCapacity(3);
+			buffer.put((byte) (0xE0 | (c >> 12)));
+			buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+	}
+
+	private void writeCodePoint(int codePoint)
+	{
+		ensureCapacity(4);
+		buffer.put((byte) (0xF0 | (codePoint >> 18)));
+		buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+		buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+		buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+	}
+
+	private void ensureCapacity(int numBytes)
+	{
+		if(buffer.remaining() < numBytes)
+		{
+			drainBuffer();
+		}
+	}
+
+	private void drainBuffer()
+	{
+		buffer.flip();
+		try {
+			while(buffer.hasRemaining())
+			{
+				channel.write(buffer);
+			}
+		} catch (IOException e) {
+			LOG.error("Unable to write triples", e);
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Open addressing set of the triples of a row, keyed by their 64 bit
+	 * fingerprints.  The text of the triples is kept in one StringBuilder, so a
+	 * matching fingerprint is confirmed against the full triple.  Clearing only
+	 * resets the slots that were used, so it costs nothing for small rows.
+	 */
+	private static class TripleFingerprintSet {
+		private long[] slots = new long[1024];
+		private int[] starts = new int[1024];
+		private int[] lengths = new int[1024];
+		private int[] usedSlots = new int[512];
+		private int size = 0;
+		private final StringBuilder text = new StringBuilder(16 * 1024);
+
+		public boolean add(CharSequence triple)
+		{
+			long fingerprint = fingerprint(triple);
+			if(fingerprint == 0)
+			{
+				fingerprint = 1;
+			}
+			if((size + 1) * 2 > slots.length)
+			{
+				grow();
+			}
+			int mask = slots.length - 1;
+			int slot = slotOf(fingerprint, mask);
+			while(slots[slot] != 0)
+			{
+				if(slots[slot] == fingerprint && sameText(slot, triple))
+				{
+					return false;
+				}
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = fingerprint;
+			starts[slot] = text.length();
+			lengths[slot] = triple.length();
+			usedSlots[size++] = slot;
+			text.append(triple);
+			return true;
+		}
+
+		public void clear()
+		{
+			for(int i = 0; i < size; i++)
+			{
+				slots[usedSlots[i]] = 0;
+			}
+			size = 0;
+			text.setLength(0);
+		}
+
+		private boolean sameText(int slot, CharSequence triple)
+		{
+			int length = triple.length();
+			if(lengths[slot] != length)
+			{
+				return false;
+			}
+			int start = starts[slot];
+			for(int i = 0; i < length; i++)
+			{
+				if(text.charAt(start + i) != triple.charAt(i))
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private void grow()
+		{
+			long[] oldSlots = slots;
+			int[] oldStarts = starts;
+			int[] oldLengths = lengths;
+			int[] oldUsedSlots = usedSlots;
+			slots = new long[oldSlots.length * 2];
+			starts = new int[slots.length];
+			lengths = new int[slots.length];
+			usedSlots = new int[slots.length / 2];
+			int mask = slots.length - 1;
+			for(int i = 0; i < size; i++)
+			{
+				int oldSlot = oldUsedSlots[i];
+				// the entries are distinct, so they only need a free slot
+				int slot = slotOf(oldSlots[oldSlot], mask);
+				while(slots[slot] != 0)
+				{
+					slot = (slot + 1) & mask;
+				}
+				slots[slot] = oldSlots[oldSlot];
+				starts[slot] = oldStarts[oldSlot];
+				lengths[slot] = oldLengths[oldSlot];
+				usedSlots[i] = slot;
+			}
+		}
+
+		private static int slotOf(long fingerprint, int mask)
+		{
+			return (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+		}
+	}
+}
@@ -21,6 +21,7 @@
 
 package edu.isi.karma.kr2rml.mapping;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -29,6 +30,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.PredicateObjectMap;
+import edu.isi.karma.kr2rml.planning.CompiledTriplesMapPlan;
 import edu.isi.karma.kr2rml.planning.TriplesMapGraphMerger;
 
 public class KR2RMLMappingAuxillaryInformation {
@@ -38,6 +40,7 @@ public class KR2RMLMappingAuxillaryInformation {
 	private Map<String, String> blankNodesUriPrefixMap;
 	private Map<String, List<PredicateObjectMap>> columnNameToPredObjMLinks;
 	private Map<String, String> subjectMapIdToTemplateAnchor;
+	private List<CompiledTriplesMapPlan> compiledTriplesMapPlans;
 	
 	public KR2RMLMappingAuxillaryInformation() {
 		this.triplesMapGraphMerger = new TriplesMapGraphMerger();
@@ -67,6 +70,19 @@ public class KR2RMLMappingAuxillaryInformation {
 		return subjectMapIdToTemplateAnchor;
 	}
 
+	/**
+	 * @return the plans compiled from the DAGified triples map graphs with the
+	 *         default root strategy, or null if RDF hasn't been generated with
+	 *         this mapping and that strategy yet
+	 */
+	public List<CompiledTriplesMapPlan> getCompiledTriplesMapPlans() {
+		return compiledTriplesMapPlans;
+	}
+
+	public void setCompiledTriplesMapPlans(List<CompiledTriplesMapPlan> compiledTriplesMapPlans) {
+		this.compiledTriplesMapPlans = Collections.unmodifiableList(compiledTriplesMapPlans);
+	}
+
 	//TODO move this
 	public static String findSubjectMapTemplateAnchor(
 			List<String> columnsCovered) {
@@ -20,7 +20,9 @@
  ******************************************************************************/
 package edu.isi.karma.kr2rml.mapping;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.json.JSONArray;
@@ -92,19 +94,37 @@ public class KR2RMLMappingColumnNameHNodeTranslator {
 	public void populateHNodeIdAndColumnNameMaps()
 	{
 		HTable hTable = worksheet.getHeaders();
-		populateHNodeIdAndColumnNameMapsForHTable(hTable);
+		populateHNodeIdAndColumnNameMapsForHTable(hTable, new ArrayList<String>());
 	}
-	private void populateHNodeIdAndColumnNameMapsForHTable(HTable hTable) {
+	
+	/**
+	 * Builds the column names top down from the names of the parent columns, 
+	 * the same as {@link #translateHNodeIdToColumnName(String)} but without 
+	 * walking up to the root for every column.
+	 */
+	private void populateHNodeIdAndColumnNameMapsForHTable(HTable hTable, List<String> parentColumnNames) {
 		for(HNode hNode : hTable.getHNodes())
 		{
 			if(hNode.hasNestedTable())
 			{
-				populateHNodeIdAndColumnNameMapsForHTable(hNode.getNestedTable());
+				List<String> columnNames = new ArrayList<String>(parentColumnNames);
+				columnNames.add(hNode.getColumnName());
+				populateHNodeIdAndColumnNameMapsForHTable(hNode.getNestedTable(), columnNames);
 			}
 			else
 			{
 				String hNodeId = hNode.getId();
-				String columnName = translateHNodeIdToColumnName(hNodeId);
+				String columnName;
+				if(parentColumnNames.isEmpty())
+				{
+					columnName = hNode.getColumnName();
+				}
+				else
+				{
+					JSONArray colNames = new JSONArray(parentColumnNames);
+					colNames.put(hNode.getColumnName());
+					columnName = colNames.toString();
+				}
 				columnNameToHNodeId.put(columnName, hNodeId);
 				hNodeIdToColumnName.put(hNodeId, columnName);
 			}
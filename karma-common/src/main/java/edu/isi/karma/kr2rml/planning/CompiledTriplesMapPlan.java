@@ -0,0 +1,226 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.kr2rml.planning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The dependencies between the triples maps of a DAGified TriplesMapGraph.
+ * They only depend on the mapping, so this is computed once per mapping and
+ * TriplesMapPlanGenerator instantiates the workers of a row from it.
+ */
+public class CompiledTriplesMapPlan {
+
+	private static Logger LOG = LoggerFactory.getLogger(CompiledTriplesMapPlan.class);
+
+	private final TriplesMapGraph graph;
+	private final List<TriplesMap> triplesMaps;
+	private final int[] numDependencies;
+	private final int[][] dependents;
+
+	private CompiledTriplesMapPlan(TriplesMapGraph graph, List<TriplesMap> triplesMaps, int[] numDependencies, int[][] dependents)
+	{
+		this.graph = graph;
+		this.triplesMaps = Collections.unmodifiableList(triplesMaps);
+		this.numDependencies = numDependencies;
+		this.dependents = dependents;
+	}
+
+	public static CompiledTriplesMapPlan compile(TriplesMapGraph graph, List<String> triplesMapProcessingOrder)
+	{
+		Map<TriplesMap, List<TriplesMap>> mapToMapsDependedOn = new HashMap<TriplesMap, List<TriplesMap>>();
+		Set<String> unprocessedTriplesMapsIds = new HashSet<String>(graph.getTriplesMapIds());
+		String triplesMapId = graph.findRoot(new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
+		while(!unprocessedTriplesMapsIds.isEmpty())
+		{
+			if(triplesMapId == null)
+			{
+				triplesMapId = unprocessedTriplesMapsIds.iterator().next();
+			}
+			findMapsDependedOn(graph, graph.getTriplesMap(triplesMapId), unprocessedTriplesMapsIds, mapToMapsDependedOn);
+			triplesMapId = null;
+		}
+
+		List<TriplesMap> triplesMaps = new ArrayList<TriplesMap>();
+		Map<TriplesMap, Integer> mapToIndex = new HashMap<TriplesMap, Integer>();
+		for(String id : triplesMapProcessingOrder)
+		{
+			TriplesMap map = graph.getTriplesMap(id);
+			if(map == null || !mapToMapsDependedOn.containsKey(map))
+			{
+				LOG.error("Graph is disconnected from " + id );
+				continue;
+			}
+			mapToIndex.put(map, triplesMaps.size());
+			triplesMaps.add(map);
+		}
+
+		int[] numDependencies = new int[triplesMaps.size()];
+		List<List<Integer>> dependentsLists = new ArrayList<List<Integer>>();
+		for(int i = 0; i < triplesMaps.size(); i++)
+		{
+			dependentsLists.add(new LinkedList<Integer>());
+		}
+		for(int i = 0; i < triplesMaps.size(); i++)
+		{
+			for(TriplesMap mapDependedOn : mapToMapsDependedOn.get(triplesMaps.get(i)))
+			{
+				// a map that is not part of the plan never runs, so it can't be waited on
+				Integer dependedOnIndex = mapToIndex.get(mapDependedOn);
+				if(dependedOnIndex != null)
+				{
+					numDependencies[i]++;
+					dependentsLists.get(dependedOnIndex).add(i);
+				}
+			}
+		}
+		int[][] dependents = new int[triplesMaps.size()][];
+		for(int i = 0; i < triplesMaps.size(); i++)
+		{
+			List<Integer> dependentsList = dependentsLists.get(i);
+			dependents[i] = new int[dependentsList.size()];
+			int j = 0;
+			for(Integer dependent : dependentsList)
+			{
+				dependents[i][j++] = dependent;
+			}
+		}
+		return sortTopologically(graph, triplesMaps, numDependencies, dependents);
+	}
+
+	private static void findMapsDependedOn(TriplesMapGraph graph, TriplesMap map,
+			Set<String> unprocessedTriplesMapsIds, Map<TriplesMap, List<TriplesMap>> mapToMapsDependedOn)
+	{
+		if(!unprocessedTriplesMapsIds.remove(map.getId()))
+		{
+			LOG.error("already visited " + map.toString());
+			return;
+		}
+		List<TriplesMap> mapsDependedOn = new LinkedList<TriplesMap>();
+		for(TriplesMapLink link : graph.getAllNeighboringTriplesMap(map.getId()))
+		{
+			if((link.getSourceMap() == map && !link.isFlipped()) || (link.getTargetMap() == map && link.isFlipped()))
+			{
+				TriplesMap mapDependedOn = link.getSourceMap()==map? link.getTargetMap() : link.getSourceMap();
+				if(!mapToMapsDependedOn.containsKey(mapDependedOn))
+				{
+					findMapsDependedOn(graph, mapDependedOn, unprocessedTriplesMapsIds, mapToMapsDependedOn);
+				}
+				mapsDependedOn.add(mapDependedOn);
+			}
+		}
+		mapToMapsDependedOn.put(map, mapsDependedOn);
+	}
+
+	/**
+	 * Reorders the triples maps so that every map comes after the maps it
+	 * depends on, keeping the processing order otherwise. Maps caught in a
+	 * cycle are left at the end in processing order.
+	 */
+	private static CompiledTriplesMapPlan sortTopologically(TriplesMapGraph graph, List<TriplesMap> triplesMaps, int[] numDependencies, int[][] dependents)
+	{
+		int size = triplesMaps.size();
+		int[] remainingDependencies = numDependencies.clone();
+		int[] order = new int[size];
+		boolean[] ordered = new boolean[size];
+		int numOrdered = 0;
+		boolean progress = true;
+		while(numOrdered < size && progress)
+		{
+			progress = false;
+			for(int i = 0; i < size; i++)
+			{
+				if(!ordered[i] && remainingDependencies[i] == 0)
+				{
+					ordered[i] = true;
+					order[numOrdered++] = i;
+					for(int dependent : dependents[i])
+					{
+						remainingDependencies[dependent]--;
+					}
+					progress = true;
+				}
+			}
+		}
+		for(int i = 0; i < size && numOrdered < size; i++)
+		{
+			if(!ordered[i])
+			{
+				LOG.error("Triples map " + triplesMaps.get(i).getId() + " is part of a dependency cycle");
+				order[numOrdered++] = i;
+			}
+		}
+
+		int[] newIndex = new int[size];
+		for(int i = 0; i < size; i++)
+		{
+			newIndex[order[i]] = i;
+		}
+		List<TriplesMap> sortedTriplesMaps = new ArrayList<TriplesMap>(size);
+		int[] sortedNumDependencies = new int[size];
+		int[][] sortedDependents = new int[size][];
+		for(int i = 0; i < size; i++)
+		{
+			int oldIndex = order[i];
+			sortedTriplesMaps.add(triplesMaps.get(oldIndex));
+			sortedNumDependencies[i] = numDependencies[oldIndex];
+			sortedDependents[i] = new int[dependents[oldIndex].length];
+			for(int j = 0; j < dependents[oldIndex].length; j++)
+			{
+				sortedDependents[i][j] = newIndex[dependents[oldIndex][j]];
+			}
+		}
+		return new CompiledTriplesMapPlan(graph, sortedTriplesMaps, sortedNumDependencies, sortedDependents);
+	}
+
+	public TriplesMapGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * @return the triples maps, each one after all the maps it depends on
+	 */
+	public List<TriplesMap> getTriplesMaps() {
+		return triplesMaps;
+	}
+
+	public int getNumDependencies(int triplesMapIndex) {
+		return numDependencies[triplesMapIndex];
+	}
+
+	/**
+	 * @return the indexes of the triples maps that depend on this one, not to
+	 *         be modified
+	 */
+	int[] getDependents(int triplesMapIndex) {
+		return dependents[triplesMapIndex];
+	}
+}
@@ -69,7 +69,12 @@ public abstract class MapPlan {
 			throws HNodeNotFoundKarmaException {
 		for(ColumnTemplateTerm term : subjMapTemplate.getAllColumnNameTermElements())
 		{
-			HNodePath path = factory.getHNode(translator.getHNodeIdForColumnName(term.getTemplateTermValue())).getHNodePath(factory);
+			String hNodeId = translator.getHNodeIdForColumnName(term.getTemplateTermValue());
+			if(hNodeId == null)
+			{
+				throw new HNodeNotFoundKarmaException("Column is not in the worksheet", term.getTemplateTermValue());
+			}
+			HNodePath path = factory.getHNode(hNodeId).getHNodePath(factory);
 			subjectTermsToPaths.put(term, path);
 		}
 	}
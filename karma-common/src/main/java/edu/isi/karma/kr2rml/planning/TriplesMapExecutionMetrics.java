@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.kr2rml.planning;
+
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Number of executions and time spent per triples map while generating RDF.
+ * Safe to update from several threads.
+ */
+public class TriplesMapExecutionMetrics {
+
+	private final ConcurrentHashMap<String, TriplesMapTiming> timings = new ConcurrentHashMap<String, TriplesMapTiming>();
+
+	private static class TriplesMapTiming {
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		private void record(long count, long totalNanos, long maxNanos)
+		{
+			this.count.addAndGet(count);
+			this.totalNanos.addAndGet(totalNanos);
+			long currentMax = this.maxNanos.get();
+			while(maxNanos > currentMax && !this.maxNanos.compareAndSet(currentMax, maxNanos))
+			{
+				currentMax = this.maxNanos.get();
+			}
+		}
+	}
+
+	public void record(String triplesMapId, long nanos)
+	{
+		getTiming(triplesMapId).record(1, nanos, nanos);
+	}
+
+	public void combine(TriplesMapExecutionMetrics other)
+	{
+		for(Entry<String, TriplesMapTiming> entry : other.timings.entrySet())
+		{
+			TriplesMapTiming timing = entry.getValue();
+			getTiming(entry.getKey()).record(timing.count.get(), timing.totalNanos.get(), timing.maxNanos.get());
+		}
+	}
+
+	private TriplesMapTiming getTiming(String triplesMapId)
+	{
+		TriplesMapTiming timing = timings.get(triplesMapId);
+		if(timing == null)
+		{
+			timing = new TriplesMapTiming();
+			TriplesMapTiming existingTiming = timings.putIfAbsent(triplesMapId, timing);
+			if(existingTiming != null)
+			{
+				timing = existingTiming;
+			}
+		}
+		return timing;
+	}
+
+	public Set<String> getTriplesMapIds() {
+		return timings.keySet();
+	}
+
+	public long getExecutionCount(String triplesMapId) {
+		TriplesMapTiming timing = timings.get(triplesMapId);
+		return timing == null ? 0 : timing.count.get();
+	}
+
+	public long getTotalExecutionTimeNanos(String triplesMapId) {
+		TriplesMapTiming timing = timings.get(triplesMapId);
+		return timing == null ? 0 : timing.totalNanos.get();
+	}
+
+	public long getMaxExecutionTimeNanos(String triplesMapId) {
+		TriplesMapTiming timing = timings.get(triplesMapId);
+		return timing == null ? 0 : timing.maxNanos.get();
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		for(Entry<String, TriplesMapTiming> entry : timings.entrySet())
+		{
+			TriplesMapTiming timing = entry.getValue();
+			long count = timing.count.get();
+			sb.append(entry.getKey());
+			sb.append(": executions = ");
+			sb.append(count);
+			sb.append(", total ms = ");
+			sb.append(timing.totalNanos.get() / 1000000);
+			sb.append(", mean us = ");
+			sb.append(count == 0 ? 0 : timing.totalNanos.get() / count / 1000);
+			sb.append(", max us = ");
+			sb.append(timing.maxNanos.get() / 1000);
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+}
@@ -20,12 +20,12 @@
  ******************************************************************************/
 package edu.isi.karma.kr2rml.planning;
 
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,45 +34,164 @@ import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.ErrorReport.Priority;
 import edu.isi.karma.kr2rml.ReportMessage;
 
+/**
+ * Runs the workers of a plan, only handing a worker to the pool once all the
+ * workers it depends on have finished.  No pool thread ever blocks waiting on 
+ * a dependency, so a deep or wide mapping can't starve the pool.
+ */
 public class TriplesMapPlanExecutor {
 
 	private static Logger LOG = LoggerFactory.getLogger(TriplesMapPlanExecutor.class);
-	private ExecutorService service = Executors.newFixedThreadPool(10);
+	private ForkJoinPool pool;
+	private boolean executeInCallingThread;
+	private final TriplesMapExecutionMetrics metrics = new TriplesMapExecutionMetrics();
+
+	public TriplesMapPlanExecutor()
+	{
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param parallelism
+	 *            the number of threads processing the triples maps of a row
+	 */
+	public TriplesMapPlanExecutor(int parallelism)
+	{
+		this.executeInCallingThread = false;
+		this.pool = new ForkJoinPool(Math.max(1, parallelism));
+	}
+
+	/**
+	 * @param executeInCallingThread
+	 *            run the workers of a plan one after another on the calling
+	 *            thread instead of on a thread pool. Used when the caller is
+	 *            already parallelizing over rows.
+	 */
+	public TriplesMapPlanExecutor(boolean executeInCallingThread)
+	{
+		this.executeInCallingThread = executeInCallingThread;
+		if(!executeInCallingThread)
+		{
+			pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		}
+	}
+
 	public ErrorReport execute(TriplesMapPlan plan)
 	{
 		ErrorReport errorReport = new ErrorReport();
-		//TODO Handle exceptions/waiting for results better
-		try {
-			List<Future<Boolean>> results = new LinkedList<Future<Boolean>>();
-			for(TriplesMapWorker worker : plan.workers)
+		List<TriplesMapWorker> readyWorkers = new LinkedList<TriplesMapWorker>();
+		for(TriplesMapWorker worker : plan.workers)
+		{
+			if(worker.isReady())
 			{
-				results.add(service.submit(worker));
+				readyWorkers.add(worker);
 			}
-
-			for(Future<Boolean> result : results)
+		}
+		if(executeInCallingThread)
+		{
+			executeInCallingThread(readyWorkers, errorReport);
+		}
+		else if(!readyWorkers.isEmpty())
+		{
+			try {
+				pool.invoke(new TriplesMapTask(readyWorkers, errorReport));
+			} catch (Exception e) {
+				LOG.error("Unable to finish executing plan", e);
+				addExecutionError(errorReport, e.getMessage());
+			}
+		}
+		for(TriplesMapWorker worker : plan.workers)
+		{
+			if(!worker.isFinished())
 			{
-				result.get(1, TimeUnit.MINUTES);
+				addExecutionError(errorReport, worker.toString() + " was unable to complete");
 			}
+		}
+		return errorReport;
+	}
+
+	private void executeInCallingThread(List<TriplesMapWorker> readyWorkers, ErrorReport errorReport)
+	{
+		Deque<TriplesMapWorker> workers = new LinkedList<TriplesMapWorker>(readyWorkers);
+		while(!workers.isEmpty())
+		{
+			workers.addAll(executeWorker(workers.removeFirst(), errorReport));
+		}
+	}
+
+	private List<TriplesMapWorker> executeWorker(TriplesMapWorker worker, ErrorReport errorReport)
+	{
+		try {
+			List<TriplesMapWorker> readyWorkers = worker.execute();
+			metrics.record(worker.getTriplesMap().getId(), worker.getExecutionTimeNanos());
+			return readyWorkers;
 		} catch (Exception e) {
 			LOG.error("Unable to finish executing plan", e);
-			errorReport.addReportMessage(new ReportMessage("Triples Map Plan Execution Error", e.getMessage(), Priority.high));
-			
-			shutdown(errorReport);
-			service = Executors.newFixedThreadPool(10);
-			
+			addExecutionError(errorReport, e.getMessage());
+			return new LinkedList<TriplesMapWorker>();
 		}
-		return errorReport;
 	}
-	public  void shutdown(ErrorReport errorReport) {
-		List<Runnable> unfinishedWorkers = service.shutdownNow();
-		for(Runnable unfinishedWorker : unfinishedWorkers)
+
+	private static void addExecutionError(ErrorReport errorReport, String message)
+	{
+		synchronized(errorReport)
+		{
+			errorReport.addReportMessage(new ReportMessage("Triples Map Plan Execution Error", message, Priority.high));
+		}
+	}
+
+	/**
+	 * Runs a worker and then forks the dependent workers it made ready. While
+	 * joining them the thread runs pending tasks instead of blocking.
+	 */
+	private class TriplesMapTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final List<TriplesMapWorker> workers;
+		private final ErrorReport errorReport;
+
+		private TriplesMapTask(List<TriplesMapWorker> workers, ErrorReport errorReport)
 		{
-			if(unfinishedWorker instanceof TriplesMapWorker)
+			this.workers = workers;
+			this.errorReport = errorReport;
+		}
+
+		@Override
+		protected void compute() {
+			List<TriplesMapWorker> currentWorkers = workers;
+			while(currentWorkers.size() == 1)
+			{
+				currentWorkers = executeWorker(currentWorkers.get(0), errorReport);
+			}
+			if(currentWorkers.isEmpty())
+			{
+				return;
+			}
+			List<TriplesMapTask> tasks = new ArrayList<TriplesMapTask>(currentWorkers.size());
+			for(TriplesMapWorker worker : currentWorkers)
 			{
-				TriplesMapWorker unfinishedTriplesMapWorker = (TriplesMapWorker) unfinishedWorker;
-				errorReport.addReportMessage(new ReportMessage("Triples Map Plan Execution Error", unfinishedTriplesMapWorker.toString() + " was unable to complete", Priority.high));
+				List<TriplesMapWorker> taskWorkers = new ArrayList<TriplesMapWorker>(1);
+				taskWorkers.add(worker);
+				tasks.add(new TriplesMapTask(taskWorkers, errorReport));
 			}
+			invokeAll(tasks);
+		}
+	}
+
+	/**
+	 * @return the time spent on each triples map by the plans this executor ran
+	 */
+	public TriplesMapExecutionMetrics getMetrics() {
+		return metrics;
+	}
+
+	public  void shutdown(ErrorReport errorReport) {
+		if(pool == null)
+		{
+			return;
 		}
+		pool.shutdownNow();
+		LOG.debug("Triples map execution times:\n" + metrics.toString());
 	}
 
 }
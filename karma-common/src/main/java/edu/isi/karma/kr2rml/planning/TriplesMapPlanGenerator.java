@@ -20,27 +20,19 @@
  ******************************************************************************/
 package edu.isi.karma.kr2rml.planning;
 
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.template.PopulatedTemplateTermSet;
 import edu.isi.karma.rep.Row;
 
 public class TriplesMapPlanGenerator {
-	private static Logger LOG = LoggerFactory.getLogger(TriplesMapPlanGenerator.class);
-	
 	private Map<TriplesMap, TriplesMapWorkerPlan> triplesMapToWorkerPlan;
-	private Set<String> unprocessedTriplesMapsIds = new HashSet<String>();
 	private Row r;
 	private List<KR2RMLRDFWriter> outWriters;
 	
@@ -54,95 +46,46 @@ public class TriplesMapPlanGenerator {
 	public TriplesMapPlan generatePlan(TriplesMapGraphMerger tmf)
 	{
 		List<TriplesMapWorker> workers = new LinkedList<TriplesMapWorker>();
-		Map<String, List<PopulatedTemplateTermSet>>triplesMapSubjects = new ConcurrentHashMap<String, List<PopulatedTemplateTermSet>>();
-		TriplesMapPlan plan = new TriplesMapPlan(workers, r, triplesMapSubjects);
-		
-		List<TriplesMapGraph> graphs = tmf.getGraphs();
-		for(TriplesMapGraph graph : graphs)
+		for(TriplesMapGraph graph : tmf.getGraphs())
 		{
-			//This can end up in deadlock.
-			workers.addAll(generatePlan(graph, plan).values());
+			CompiledTriplesMapPlan compiledPlan = CompiledTriplesMapPlan.compile(graph, new ArrayList<String>(graph.getTriplesMapIds()));
+			workers.addAll(generateWorkers(compiledPlan));
 		}
-		return plan;
+		Map<String, List<PopulatedTemplateTermSet>> triplesMapSubjects = Collections.emptyMap();
+		return new TriplesMapPlan(workers, r, triplesMapSubjects);
 	}
 
 	public TriplesMapPlan generatePlan(TriplesMapGraph graph, List<String> triplesMapProcessingOrder)
 	{
-		List<TriplesMapWorker> workers = new LinkedList<TriplesMapWorker>();
-		Map<String, List<PopulatedTemplateTermSet>>triplesMapSubjects = new ConcurrentHashMap<String, List<PopulatedTemplateTermSet>>();
-		TriplesMapPlan plan = new TriplesMapPlan(workers, r, triplesMapSubjects);
-		Map<TriplesMap, TriplesMapWorker> mapToWorker = generatePlan(graph, plan);
-		for(String triplesMapId : triplesMapProcessingOrder)
-		{
-			TriplesMap map = graph.getTriplesMap(triplesMapId);
-			TriplesMapWorker worker = mapToWorker.get(map);
-			if(worker != null)
-			{
-				workers.add(worker);
-			}
-			else
-			{
-				LOG.error("Graph is disconnected from " + triplesMapId );
-			}
-			
-			
-		}
-		
-		return plan;
+		return generatePlan(CompiledTriplesMapPlan.compile(graph, triplesMapProcessingOrder));
 	}
-	private Map<TriplesMap, TriplesMapWorker> generatePlan(TriplesMapGraph graph, TriplesMapPlan plan)
-	{
-		unprocessedTriplesMapsIds.addAll(graph.getTriplesMapIds());
-		//add strategy
-		Map<TriplesMap, TriplesMapWorker> mapToWorker = new HashMap<TriplesMap, TriplesMapWorker>();
-		String triplesMapId = graph.findRoot(new SteinerTreeRootStrategy(new WorksheetDepthRootStrategy()));
-		
-		do
-		{
-			if(triplesMapId == null)
-			{
-				triplesMapId = unprocessedTriplesMapsIds.iterator().next();
-			}
-			TriplesMap map = graph.getTriplesMap(triplesMapId);
-			generateTriplesMapWorker(mapToWorker, graph, map, plan);	
-			triplesMapId = null;
-		}
-		while(!unprocessedTriplesMapsIds.isEmpty());
 
-		
-		return mapToWorker;
+	/**
+	 * Instantiates the workers for this generator's row from a plan compiled 
+	 * for the mapping.  The workers are in dependency order.
+	 */
+	public TriplesMapPlan generatePlan(CompiledTriplesMapPlan compiledPlan)
+	{
+		Map<String, List<PopulatedTemplateTermSet>> triplesMapSubjects = Collections.emptyMap();
+		return new TriplesMapPlan(generateWorkers(compiledPlan), r, triplesMapSubjects);
 	}
-	private void generateTriplesMapWorker(
-			Map<TriplesMap, TriplesMapWorker> mapToWorker,
-			TriplesMapGraph graph, TriplesMap map, TriplesMapPlan plan) {
-		
-		if(!unprocessedTriplesMapsIds.remove(map.getId()))
+
+	private List<TriplesMapWorker> generateWorkers(CompiledTriplesMapPlan compiledPlan)
+	{
+		List<TriplesMap> triplesMaps = compiledPlan.getTriplesMaps();
+		List<TriplesMapWorker> workers = new ArrayList<TriplesMapWorker>(triplesMaps.size());
+		for(int i = 0; i < triplesMaps.size(); i++)
 		{
-			LOG.error("already visited " + map.toString());
-			return;
+			TriplesMap map = triplesMaps.get(i);
+			workers.add(new TriplesMapWorker(map, new CountDownLatch(compiledPlan.getNumDependencies(i)), r, triplesMapToWorkerPlan.get(map), outWriters));
 		}
-		List<TriplesMapLink> links = graph.getAllNeighboringTriplesMap(map.getId());
-		
-		
-		List<TriplesMapWorker> workersDependentOn = new LinkedList<TriplesMapWorker>();
-		for(TriplesMapLink link : links)
+		for(int i = 0; i < triplesMaps.size(); i++)
 		{
-			if((link.getSourceMap() == map && !link.isFlipped()) || (link.getTargetMap() == map && link.isFlipped()))
+			for(int dependent : compiledPlan.getDependents(i))
 			{
-				TriplesMap mapDependedOn = link.getSourceMap()==map? link.getTargetMap() : link.getSourceMap(); 
-				if(!mapToWorker.containsKey(mapDependedOn))
-				{
-					generateTriplesMapWorker(mapToWorker, graph, mapDependedOn, plan);
-				}
-				workersDependentOn.add(mapToWorker.get(mapDependedOn));
+				workers.get(i).addDependentTriplesMapWorker(workers.get(dependent));
 			}
 		}
-		TriplesMapWorker newWorker = new TriplesMapWorker(map, new CountDownLatch(workersDependentOn.size()), r, triplesMapToWorkerPlan.get(map), outWriters);
-		mapToWorker.put(map, newWorker);
-		
-		for(TriplesMapWorker worker : workersDependentOn)
-		{
-			worker.addDependentTriplesMapLatch(newWorker.getLatch());
-		}
+		return workers;
 	}
 }
@@ -24,6 +24,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,7 +41,11 @@ public class TriplesMapWorker implements Callable<Boolean> {
 
 	private Logger LOG = LoggerFactory.getLogger(TriplesMapWorker.class);
 	protected List<CountDownLatch> dependentTriplesMapLatches;
+	protected List<TriplesMapWorker> dependentTriplesMapWorkers;
 	protected CountDownLatch latch;
+	protected AtomicInteger remainingDependencies;
+	protected volatile boolean finished = false;
+	protected long executionTimeNanos = 0;
 	protected TriplesMap triplesMap;
 	protected Row r;
 	protected List<KR2RMLRDFWriter> outWriters;
@@ -53,6 +58,8 @@ public class TriplesMapWorker implements Callable<Boolean> {
 		this.triplesMap = triplesMap;
 		this.plan = plan;
 		this.dependentTriplesMapLatches = new LinkedList<CountDownLatch>();
+		this.dependentTriplesMapWorkers = new LinkedList<TriplesMapWorker>();
+		this.remainingDependencies = new AtomicInteger((int) latch.getCount());
 		this.r = r;
 		this.outWriters = outWriters;
 	}
@@ -61,12 +68,33 @@ public class TriplesMapWorker implements Callable<Boolean> {
 		dependentTriplesMapLatches.add(latch);
 	}
 	
-	private void notifyDependentTriplesMapWorkers()
+	/**
+	 * Registers a worker that can only run once this one has finished.  Unlike
+	 * {@link #addDependentTriplesMapLatch(CountDownLatch)} this lets a scheduler
+	 * hand the dependent worker off as soon as it is ready instead of having it
+	 * wait on its latch.
+	 */
+	public void addDependentTriplesMapWorker(TriplesMapWorker worker)
+	{
+		dependentTriplesMapWorkers.add(worker);
+		dependentTriplesMapLatches.add(worker.getLatch());
+	}
+	
+	private List<TriplesMapWorker> notifyDependentTriplesMapWorkers()
 	{
 		for(CountDownLatch latch : dependentTriplesMapLatches)
 		{
 			latch.countDown();
 		}
+		List<TriplesMapWorker> readyWorkers = new LinkedList<TriplesMapWorker>();
+		for(TriplesMapWorker worker : dependentTriplesMapWorkers)
+		{
+			if(worker.remainingDependencies.decrementAndGet() == 0)
+			{
+				readyWorkers.add(worker);
+			}
+		}
+		return readyWorkers;
 	}
 	
 	
@@ -83,22 +111,53 @@ public class TriplesMapWorker implements Callable<Boolean> {
 			notifyDependentTriplesMapWorkers();
 			return false;
 		}
+		execute();
+		return true;
+	}
+
+	/**
+	 * Processes the triples map for the row without waiting on the latch, so
+	 * the caller has to make sure the workers it depends on have finished.
+	 * 
+	 * @return the dependent workers that have no unfinished dependencies left
+	 */
+	public List<TriplesMapWorker> execute()
+	{
 		LOG.debug("Processing " + triplesMap.getId() + " " +triplesMap.getSubject().getId());
+		long start = System.nanoTime();
 		try
 		{
-		
-			plan.execute(r, outWriters);
-		
+			// there is no plan when the columns of the subject aren't in the worksheet
+			if(plan != null)
+			{
+				plan.execute(r, outWriters);
+			}
 		}
 		catch (Exception e)
 		{
 			e.printStackTrace();
 			LOG.error("Something went wrong " + e.getMessage() );
 		}
-			
+		executionTimeNanos = System.nanoTime() - start;
+		finished = true;
 		LOG.debug("Processed " + triplesMap.getId() + " " +triplesMap.getSubject().getId());
-		notifyDependentTriplesMapWorkers();
-		return true;
+		return notifyDependentTriplesMapWorkers();
+	}
+
+	public boolean isReady() {
+		return remainingDependencies.get() == 0;
+	}
+
+	public boolean isFinished() {
+		return finished;
+	}
+
+	public long getExecutionTimeNanos() {
+		return executionTimeNanos;
+	}
+
+	public TriplesMap getTriplesMap() {
+		return triplesMap;
 	}
 
 
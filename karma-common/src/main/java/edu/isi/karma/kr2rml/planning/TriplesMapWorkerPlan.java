@@ -61,7 +61,21 @@ public class TriplesMapWorkerPlan {
 	private boolean generateContext;
 
 	private Map<String, String> hNodeToContextUriMap;
+
+	private boolean skipMissingColumns;
+
 	public TriplesMapWorkerPlan(RepFactory factory, TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, KR2RMLMappingColumnNameHNodeTranslator translator, boolean generateContext, Map<String, String> hNodeToContextUriMap) throws HNodeNotFoundKarmaException
+	{
+		this(factory, triplesMap, kr2rmlMapping, uriFormatter, translator, generateContext, hNodeToContextUriMap, false);
+	}
+
+	/**
+	 * @param skipMissingColumns
+	 *            skip the predicate object maps whose column is not in the
+	 *            worksheet instead of failing, when missing columns are
+	 *            expected, e.g. in a batch of records
+	 */
+	public TriplesMapWorkerPlan(RepFactory factory, TriplesMap triplesMap, KR2RMLMapping kr2rmlMapping, URIFormatter uriFormatter, KR2RMLMappingColumnNameHNodeTranslator translator, boolean generateContext, Map<String, String> hNodeToContextUriMap, boolean skipMissingColumns) throws HNodeNotFoundKarmaException
 	{
 		this.factory = factory;
 		this.triplesMap = triplesMap;
@@ -70,6 +84,7 @@ public class TriplesMapWorkerPlan {
 		this.translator = translator;
 		this.generateContext = generateContext;
 		this.hNodeToContextUriMap = hNodeToContextUriMap;
+		this.skipMissingColumns = skipMissingColumns;
 		generate();
 	}
 	
@@ -94,7 +109,16 @@ public class TriplesMapWorkerPlan {
 				{
 					objectTriplesMap = link.getTargetMap();
 				}
-				PredicateObjectMappingPlan pomPlan = new InternalPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, objectTriplesMap, subjectMapPlan.getSubjectTermsToPaths(),link.isFlipped(), kr2rmlMapping,uriFormatter, factory, translator);
+				PredicateObjectMappingPlan pomPlan = null;
+				try
+				{
+					pomPlan = new InternalPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, objectTriplesMap, subjectMapPlan.getSubjectTermsToPaths(),link.isFlipped(), kr2rmlMapping,uriFormatter, factory, translator);
+				}
+				catch (HNodeNotFoundKarmaException e)
+				{
+					skipMissingColumn(pom, e);
+					continue;
+				}
 				if(link.isFlipped())
 				{
 					internalLinksPlans.addFirst(pomPlan);
@@ -135,9 +159,25 @@ public class TriplesMapWorkerPlan {
 				LOG.debug("Skipping " + pom.toString());
 				continue;
 			}
-			PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping,uriFormatter, factory, translator, hNodeToContextUriMap, generateContext);
-			columnLinksPlans.add(pomPlan);
+			try
+			{
+				PredicateObjectMappingPlan pomPlan = new ColumnPredicateObjectMappingPlan(subjectMapPlan.getTemplate(), pom, subjectMapPlan.getSubjectTermsToPaths(), kr2rmlMapping,uriFormatter, factory, translator, hNodeToContextUriMap, generateContext);
+				columnLinksPlans.add(pomPlan);
+			}
+			catch (HNodeNotFoundKarmaException e)
+			{
+				skipMissingColumn(pom, e);
+			}
+		}
+	}
+
+	private void skipMissingColumn(PredicateObjectMap pom, HNodeNotFoundKarmaException e) throws HNodeNotFoundKarmaException
+	{
+		if(!skipMissingColumns)
+		{
+			throw e;
 		}
+		LOG.debug("Skipping " + pom.toString() + ", " + e.getOffendingColumn() + " is not in the worksheet");
 	}
 	
 	public void execute(Row r, List<KR2RMLRDFWriter> outWriters)
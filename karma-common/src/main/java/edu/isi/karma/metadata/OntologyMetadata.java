@@ -28,6 +28,11 @@ public class OntologyMetadata extends KarmaUserMetadata {
 	public void setup(UpdateContainer uc) {
 		logger.info("Start OntologyMetadata.setup");
 		OntologyManager ontologyManager = workspace.getOntologyManager();
+		try {
+			createDirectoryForMetadata(ContextParameter.ONTOLOGY_CACHE_DIRECTORY, "ontology-cache");
+		} catch (KarmaException e) {
+			logger.error("Ontologies will be loaded without the cache written by the previous runs", e);
+		}
 		/** Check if any ontology needs to be preloaded **/
 		String preloadedOntDir = ServletContextParameterMap.getParameterValue(ServletContextParameterMap.ContextParameter.PRELOADED_ONTOLOGY_DIRECTORY);
 		File ontDir = new File(preloadedOntDir);
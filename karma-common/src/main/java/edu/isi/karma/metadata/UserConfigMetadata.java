@@ -2,6 +2,9 @@ package edu.isi.karma.metadata;
 
 import java.io.File;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import edu.isi.karma.controller.update.UpdateContainer;
 import edu.isi.karma.rep.Workspace;
 import edu.isi.karma.webserver.KarmaException;
@@ -9,6 +12,8 @@ import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 public class UserConfigMetadata extends KarmaUserMetadata {
 
+	private static final Logger logger = LoggerFactory.getLogger(UserConfigMetadata.class);
+
 	public UserConfigMetadata() throws KarmaException {
 		super(null);
 	}
@@ -18,7 +23,11 @@ public class UserConfigMetadata extends KarmaUserMetadata {
 
 	@Override
 	public void setup(UpdateContainer uc) {
-		
+		try {
+			createDirectoryForMetadata(ContextParameter.WORKSHEET_SPILL_DIRECTORY, "worksheet-spill");
+		} catch (KarmaException e) {
+			logger.error("Large worksheets will be kept in memory", e);
+		}
 	}
 
 	@Override
@@ -40,6 +40,8 @@ public class ModelingConfiguration {
 	private static Logger logger = LoggerFactory.getLogger(ModelingConfiguration.class);
 
     private static Boolean manualAlignment;
+    private static Boolean incrementalAlignment;
+    private static Double incrementalAlignmentCostGap;
     private static Boolean nodeClosure;
     private static Boolean propertiesDirect;
     private static Boolean propertiesIndirect;
@@ -74,6 +76,12 @@ public class ModelingConfiguration {
 			"##########################################################################################" + newLine + 
 			"manual.alignment=false" + newLine + 
 			"" + newLine + 
+			"# repair the previous steiner tree on user edits instead of computing it again," + newLine + 
+			"# unless its cost per steiner node grows by more than the gap, in range [0..]." + newLine + 
+			"# the tree is always computed again when the user forces or unforces a link." + newLine + 
+			"incremental.alignment=false" + newLine + 
+			"incremental.alignment.cost.gap=0.1" + newLine + 
+			"" + newLine + 
 			"node.closure=true" + newLine + 
 			"" + newLine + 
 			"properties.direct=true" + newLine + 
@@ -111,13 +119,17 @@ public class ModelingConfiguration {
 			"models.graphviz.dir=GRAPHVIZ/" + newLine + 
 			"alignment.graph.dir=AlignmentGraph/" + newLine;
     
-	public static void load() {
+	public static synchronized void load() {
         try {
             Properties modelingProperties = loadParams();
 
             if(modelingProperties.getProperty("manual.alignment") != null)
             	manualAlignment = Boolean.parseBoolean(modelingProperties.getProperty("manual.alignment"));
 
+            // not in the modeling.properties of older versions
+            incrementalAlignment = Boolean.parseBoolean(modelingProperties.getProperty("incremental.alignment", "false"));
+            incrementalAlignmentCostGap = Double.parseDouble(modelingProperties.getProperty("incremental.alignment.cost.gap", "0.1"));
+
             if(modelingProperties.getProperty("node.closure") != null)
             	nodeClosure = Boolean.parseBoolean(modelingProperties.getProperty("node.closure"));
             
@@ -214,6 +226,18 @@ public class ModelingConfiguration {
 		return manualAlignment;
 	}
 
+	public static boolean isIncrementalAlignment() {
+		if (incrementalAlignment == null)
+			load();
+		return incrementalAlignment;
+	}
+
+	public static Double getIncrementalAlignmentCostGap() {
+		if (incrementalAlignmentCostGap == null)
+			load();
+		return incrementalAlignmentCostGap;
+	}
+
 	public static Boolean getPropertiesDirect() {
 		if (propertiesDirect == null)
 			load();
@@ -326,6 +350,10 @@ public class ModelingConfiguration {
 		return multipleSamePropertyPerNode;
 	}
 	
+	public static void setIncrementalAlignment(Boolean newIncrementalAlignment) {
+		incrementalAlignment = newIncrementalAlignment;
+	}
+	
 	public static void setManualAlignment(Boolean newManualAlignment)
 	{
 		manualAlignment = newManualAlignment;
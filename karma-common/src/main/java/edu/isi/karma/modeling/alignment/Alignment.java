@@ -23,8 +23,10 @@ package edu.isi.karma.modeling.alignment;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.jgrapht.UndirectedGraph;
@@ -33,8 +35,7 @@ import org.jgrapht.graph.WeightedMultigraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.rits.cloning.Cloner;
-
+import edu.isi.karma.modeling.ModelingConfiguration;
 import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.modeling.ontology.OntologyManager;
 import edu.isi.karma.modeling.ontology.OntologyUpdateListener;
@@ -69,8 +70,24 @@ public class Alignment implements OntologyUpdateListener {
 	private DirectedWeightedMultigraph<Node, LabeledLink> steinerTree = null;
 	private Node root = null;
 	
+	// cost per steiner node of the last tree computed from scratch
+	private double lastFullSteinerTreeCost = -1;
+	// the links forced by the user and preferred by the UI when the tree was computed
+	private Map<LabeledLink, LinkStatus> linkStatusesOfSteinerTree = null;
+	
 	private NodeIdFactory nodeIdFactory;
 	
+	// a clone shares the nodes and links of the alignment, these are the values
+	// it puts back on them when it is restored
+	private Map<ColumnNode, SemanticType> userSelectedSemanticTypes = null;
+	private Map<ColumnNode, Label> rdfLiteralTypes = null;
+	private Map<ColumnNode, List<SemanticType>> crfSuggestedSemanticTypes = null;
+	private Map<Node, Set<String>> nodeModelIds = null;
+	private Map<LabeledLink, LinkStatus> linkStatuses = null;
+	private Map<LabeledLink, LinkKeyInfo> linkKeyTypes = null;
+	private Map<LabeledLink, Set<String>> linkModelIds = null;
+	private Map<DefaultLink, Double> linkWeights = null;
+	
 	public Alignment(OntologyManager ontologyManager) {
 
 		this.ontologyManager = ontologyManager;
@@ -90,14 +107,114 @@ public class Alignment implements OntologyUpdateListener {
 		return this.root;
 	}
 	
+	private Alignment(Alignment alignment) {
+		
+		this.ontologyManager = alignment.ontologyManager;
+		this.graphBuilder = alignment.graphBuilder.getSnapshot();
+		this.nodeIdFactory = this.graphBuilder.getNodeIdFactory();
+		this.steinerTree = alignment.steinerTree;
+		this.root = alignment.root;
+		this.lastFullSteinerTreeCost = alignment.lastFullSteinerTreeCost;
+		this.linkStatusesOfSteinerTree = alignment.linkStatusesOfSteinerTree;
+		
+		this.userSelectedSemanticTypes = new HashMap<ColumnNode, SemanticType>();
+		this.rdfLiteralTypes = new HashMap<ColumnNode, Label>();
+		this.crfSuggestedSemanticTypes = new HashMap<ColumnNode, List<SemanticType>>();
+		Set<Node> columnNodes = this.getNodesByType(NodeType.ColumnNode);
+		if (columnNodes != null) {
+			for (Node n : columnNodes) {
+				if (!(n instanceof ColumnNode)) continue;
+				ColumnNode c = (ColumnNode)n;
+				this.userSelectedSemanticTypes.put(c, c.getUserSelectedSemanticType());
+				this.rdfLiteralTypes.put(c, c.getRdfLiteralType());
+				this.crfSuggestedSemanticTypes.put(c, c.getCrfSuggestedSemanticTypes() == null ? 
+						null : new ArrayList<SemanticType>(c.getCrfSuggestedSemanticTypes()));
+			}
+		}
+		
+		this.nodeModelIds = new HashMap<Node, Set<String>>();
+		for (Node n : this.graphBuilder.getGraph().vertexSet()) {
+			if (n.getModelIds() != null && !n.getModelIds().isEmpty())
+				this.nodeModelIds.put(n, new HashSet<String>(n.getModelIds()));
+		}
+		
+		this.linkStatuses = this.getLinkStatuses();
+		
+		// the graph copy of the command shares the links, and so their weights
+		this.linkKeyTypes = new HashMap<LabeledLink, LinkKeyInfo>();
+		this.linkModelIds = new HashMap<LabeledLink, Set<String>>();
+		this.linkWeights = new HashMap<DefaultLink, Double>();
+		for (DefaultLink link : this.graphBuilder.getGraph().edgeSet()) {
+			this.linkWeights.put(link, link.getWeight());
+			if (!(link instanceof LabeledLink)) continue;
+			LabeledLink labeledLink = (LabeledLink)link;
+			if (labeledLink.getKeyType() != null)
+				this.linkKeyTypes.put(labeledLink, labeledLink.getKeyType());
+			if (labeledLink.getModelIds() != null && !labeledLink.getModelIds().isEmpty())
+				this.linkModelIds.put(labeledLink, new HashSet<String>(labeledLink.getModelIds()));
+		}
+	}
+	
+	/**
+	 * A snapshot of the alignment to go back to on undo. It shares the graph, the 
+	 * nodes and the links with the alignment and its indexes until either of them 
+	 * changes. It keeps the values of the nodes and the links that can change in 
+	 * place, so taking it costs as much as the nodes and the links of the graph, 
+	 * like the copy of the graph itself. The graph is not copied, use 
+	 * {@link #restore(DirectedWeightedMultigraph)} with a copy of it taken at the 
+	 * same time.
+	 */
 	public Alignment getAlignmentClone() {
-		Cloner cloner = new Cloner();
-//		cloner.setDumpClonedClasses(true);
-		cloner.dontClone(OntologyManager.class); 
-		cloner.dontCloneInstanceOf(OntologyManager.class); 
-		cloner.dontClone(DirectedWeightedMultigraph.class); 
-		cloner.dontCloneInstanceOf(DirectedWeightedMultigraph.class); 
-		return cloner.deepClone(this);
+		return new Alignment(this);
+	}
+	
+	/**
+	 * Makes a clone the current alignment again: sets its graph and puts back, as 
+	 * they were when the clone was taken, the semantic types and the suggested types 
+	 * of the columns, the model ids of the nodes, and the statuses, key types, model 
+	 * ids and weights of the links.
+	 */
+	public void restore(DirectedWeightedMultigraph<Node, DefaultLink> graph) {
+		
+		if (this.linkWeights != null) {
+			for (DefaultLink link : graph.edgeSet()) {
+				Double weight = this.linkWeights.get(link);
+				if (weight != null)
+					graph.setEdgeWeight(link, weight.doubleValue());
+			}
+		}
+		this.setGraph(graph);
+		
+		if (this.userSelectedSemanticTypes != null) {
+			for (Map.Entry<ColumnNode, SemanticType> entry : this.userSelectedSemanticTypes.entrySet())
+				entry.getKey().setUserSelectedSemanticType(entry.getValue());
+		}
+		if (this.rdfLiteralTypes != null) {
+			for (Map.Entry<ColumnNode, Label> entry : this.rdfLiteralTypes.entrySet())
+				entry.getKey().setRdfLiteralType(entry.getValue());
+		}
+		if (this.crfSuggestedSemanticTypes != null) {
+			for (Map.Entry<ColumnNode, List<SemanticType>> entry : this.crfSuggestedSemanticTypes.entrySet())
+				entry.getKey().setCrfSuggestedSemanticTypes(entry.getValue() == null ? 
+						null : new ArrayList<SemanticType>(entry.getValue()));
+		}
+		if (this.nodeModelIds != null) {
+			for (Node n : graph.vertexSet()) {
+				Set<String> modelIds = this.nodeModelIds.get(n);
+				n.setModelIds(modelIds == null ? new HashSet<String>() : new HashSet<String>(modelIds));
+			}
+		}
+		if (this.linkStatuses != null) {
+			for (DefaultLink link : graph.edgeSet()) {
+				if (!(link instanceof LabeledLink)) continue;
+				LabeledLink labeledLink = (LabeledLink)link;
+				LinkStatus status = this.linkStatuses.get(link);
+				labeledLink.setStatus(status == null ? LinkStatus.Normal : status);
+				labeledLink.setKeyType(this.linkKeyTypes.get(link));
+				Set<String> modelIds = this.linkModelIds.get(link);
+				labeledLink.setModelIds(modelIds == null ? new HashSet<String>() : new HashSet<String>(modelIds));
+			}
+		}
 	}
 	
 	public DirectedWeightedMultigraph<Node, LabeledLink> getSteinerTree() {
@@ -484,6 +601,17 @@ public class Alignment implements OntologyUpdateListener {
 		return possibleLinks;
 	}
 	
+	private Map<LabeledLink, LinkStatus> getLinkStatuses() {
+		Map<LabeledLink, LinkStatus> linkStatuses = new HashMap<LabeledLink, LinkStatus>();
+		for (LinkStatus status : LinkStatus.values()) {
+			Set<LabeledLink> links = this.getLinksByStatus(status);
+			if (links == null) continue;
+			for (LabeledLink link : links)
+				linkStatuses.put(link, status);
+		}
+		return linkStatuses;
+	}
+	
 	private void updateLinksPreferredByUI() {
 		
 		if (this.steinerTree == null)
@@ -557,6 +685,11 @@ public class Alignment implements OntologyUpdateListener {
 
 		long start = System.currentTimeMillis();
 		
+		// the repaired tree keeps the links of the previous one, which can be the 
+		// ones the user just replaced by forcing another link
+		boolean linkStatusesChanged = this.linkStatusesOfSteinerTree == null || 
+				!this.linkStatusesOfSteinerTree.equals(this.getLinkStatuses());
+		
 		logger.debug("updating UI preferred links ...");
 		this.updateLinksPreferredByUI();
 
@@ -582,9 +715,32 @@ public class Alignment implements OntologyUpdateListener {
 				logger.debug("\t" + node.getId());
 		}
 
-		logger.debug("computing steiner tree ...");
-		SteinerTree steinerTree = new SteinerTree(undirectedGraph, steinerNodes);
-		WeightedMultigraph<Node, DefaultLink> tree = steinerTree.getDefaultSteinerTree();
+		WeightedMultigraph<Node, DefaultLink> tree = null;
+		if (ModelingConfiguration.isIncrementalAlignment() && !linkStatusesChanged && 
+				this.steinerTree != null && this.lastFullSteinerTreeCost >= 0) {
+			logger.debug("repairing steiner tree ...");
+			IncrementalSteinerTree incrementalSteinerTree = 
+					new IncrementalSteinerTree(undirectedGraph, this.steinerTree.edgeSet(), steinerNodes);
+			double cost = incrementalSteinerTree.getCost() / Math.max(1, steinerNodes.size());
+			if (cost <= this.lastFullSteinerTreeCost * (1 + ModelingConfiguration.getIncrementalAlignmentCostGap())) {
+				tree = incrementalSteinerTree.getDefaultSteinerTree();
+			} else {
+				logger.debug("the repaired tree costs " + cost + " per steiner node against " + 
+						this.lastFullSteinerTreeCost + " for the last computed one.");
+			}
+		}
+		
+		if (tree == null) {
+			logger.debug("computing steiner tree ...");
+			SteinerTree steinerTree = new SteinerTree(undirectedGraph, steinerNodes);
+			tree = steinerTree.getDefaultSteinerTree();
+			if (tree != null) {
+				double cost = 0.0;
+				for (DefaultLink link : tree.edgeSet())
+					cost += undirectedGraph.getEdgeWeight(link);
+				this.lastFullSteinerTreeCost = cost / Math.max(1, steinerNodes.size());
+			}
+		}
 		if (tree == null) {
 			logger.debug("resulting tree is null ...");
 			return;
@@ -596,6 +752,7 @@ public class Alignment implements OntologyUpdateListener {
 
 		this.steinerTree = treePostProcess.getTree();
 		this.root = treePostProcess.getRoot();
+		this.linkStatusesOfSteinerTree = this.getLinkStatuses();
 
 		logger.info("*** steiner tree after post processing step ***");
 		logger.info(GraphUtil.labeledGraphToString(this.steinerTree));
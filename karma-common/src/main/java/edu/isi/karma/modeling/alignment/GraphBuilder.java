@@ -22,12 +22,17 @@ package edu.isi.karma.modeling.alignment;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+import org.jgrapht.graph.AsUndirectedGraph;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -66,7 +71,12 @@ public class GraphBuilder {
 	
 	private NodeIdFactory nodeIdFactory;
 	
-	private HashSet<String> visitedSourceTargetPairs; 
+	// the pairs of nodes that have had a link, updateLinks doesn't add another one, 
+	// keyed by the indexes of both nodes
+	private LongHashSet visitedSourceTargetPairs; 
+	private HashMap<String, Integer> nodeIndexes;
+	// the internal nodes updateLinks has not looked at yet
+	private HashSet<Node> newInternalNodes;
 
 	// HashMaps
 	
@@ -83,7 +93,7 @@ public class GraphBuilder {
 	
 	private HashMap<String, Set<String>> uriClosure;
 
-	private Set<Node> forcedAddedNodes;
+	private HashSet<Node> forcedAddedNodes;
 	
 	// To be used in matching semantic types with graph nodes
 	private HashSet<String> modelIds;
@@ -91,6 +101,15 @@ public class GraphBuilder {
 	private HashMap<String, Integer> nodeDataPropertyCount; // nodeId + dataPropertyUri --> count
 	private HashMap<String, Set<SemanticTypeMapping>> semanticTypeMatches; // nodeUri + dataPropertyUri --> SemanticType Mapping
 	private int numberOfModelLinks = 0;
+	
+	// bumped by every change to the graph, to know when the shortest paths are stale
+	private long modCount = 0;
+	private ShortestPathOracle shortestPathOracle;
+	private long[] shortestPathOracleVersion;
+	
+	// the indexes are shared with the snapshots of the builder until they change, 
+	// these are the ones the builder has created or copied since its last snapshot
+	private Set<Object> ownedIndexes;
 
 	// Constructor
 	
@@ -111,7 +130,9 @@ public class GraphBuilder {
 
 		this.graph = new DirectedWeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
 		
-		this.visitedSourceTargetPairs = new HashSet<String>();
+		this.visitedSourceTargetPairs = new LongHashSet();
+		this.nodeIndexes = new HashMap<String, Integer>();
+		this.newInternalNodes = new HashSet<Node>();
 			
 		this.modelIds = new HashSet<String>();
 		this.linkCountMap = new HashMap<String, Integer>();
@@ -119,6 +140,14 @@ public class GraphBuilder {
 		this.semanticTypeMatches = new HashMap<String, Set<SemanticTypeMapping>>();
 		
 		this.forcedAddedNodes = new HashSet<Node>();
+		
+		this.ownedIndexes = newIdentitySet();
+		Collections.addAll(this.ownedIndexes, this.idToNodeMap, this.idToLinkMap, 
+				this.uriToNodesMap, this.uriToLinksMap, this.typeToNodesMap, this.typeToLinksMap, 
+				this.statusToLinksMap, this.uriClosure, this.visitedSourceTargetPairs, this.nodeIndexes, 
+				this.newInternalNodes, this.modelIds, this.linkCountMap, this.nodeDataPropertyCount, 
+				this.semanticTypeMatches, this.forcedAddedNodes);
+		
 		if (addThingNode) 
 			this.initialGraph();
 		
@@ -155,6 +184,46 @@ public class GraphBuilder {
 		logger.debug("graph has been loaded.");
 	}
 	
+	private GraphBuilder(GraphBuilder graphBuilder) {
+		
+		this.ontologyManager = graphBuilder.ontologyManager;
+		this.nodeIdFactory = new NodeIdFactory(graphBuilder.nodeIdFactory);
+		this.graph = graphBuilder.graph;
+		
+		this.idToNodeMap = graphBuilder.idToNodeMap;
+		this.idToLinkMap = graphBuilder.idToLinkMap;
+		this.uriToNodesMap = graphBuilder.uriToNodesMap;
+		this.uriToLinksMap = graphBuilder.uriToLinksMap;
+		this.typeToNodesMap = graphBuilder.typeToNodesMap;
+		this.typeToLinksMap = graphBuilder.typeToLinksMap;
+		this.statusToLinksMap = graphBuilder.statusToLinksMap;
+		this.uriClosure = graphBuilder.uriClosure;
+		this.visitedSourceTargetPairs = graphBuilder.visitedSourceTargetPairs;
+		this.nodeIndexes = graphBuilder.nodeIndexes;
+		this.newInternalNodes = graphBuilder.newInternalNodes;
+		this.modelIds = graphBuilder.modelIds;
+		this.linkCountMap = graphBuilder.linkCountMap;
+		this.nodeDataPropertyCount = graphBuilder.nodeDataPropertyCount;
+		this.semanticTypeMatches = graphBuilder.semanticTypeMatches;
+		this.forcedAddedNodes = graphBuilder.forcedAddedNodes;
+		this.numberOfModelLinks = graphBuilder.numberOfModelLinks;
+		this.modCount = graphBuilder.modCount;
+		
+		this.ownedIndexes = newIdentitySet();
+	}
+	
+	/**
+	 * A copy of the builder as it is now. The copy and the builder share the graph, 
+	 * the nodes and the links, and share their indexes until one of them changes 
+	 * an index, so a snapshot costs nothing until the builder is changed, and 
+	 * then only a copy of the indexes that change.
+	 */
+	public GraphBuilder getSnapshot() {
+		GraphBuilder snapshot = new GraphBuilder(this);
+		this.ownedIndexes = newIdentitySet();
+		return snapshot;
+	}
+	
 	public NodeIdFactory getNodeIdFactory() {
 		return nodeIdFactory;
 	}
@@ -169,6 +238,21 @@ public class GraphBuilder {
 	
 	public void setGraph(DirectedWeightedMultigraph<Node, DefaultLink> graph) {
 		this.graph = graph;
+		this.modCount++;
+	}
+	
+	/**
+	 * @return the shortest paths of the current version of the graph, shared by 
+	 * everyone who asks until the graph changes
+	 */
+	public synchronized ShortestPathOracle getShortestPathOracle() {
+		// the sizes catch the links removed from the graph directly
+		long[] version = new long[] {this.modCount, this.graph.vertexSet().size(), this.graph.edgeSet().size()};
+		if (this.shortestPathOracle == null || !Arrays.equals(version, this.shortestPathOracleVersion)) {
+			this.shortestPathOracle = new ShortestPathOracle(new AsUndirectedGraph<Node, DefaultLink>(this.graph));
+			this.shortestPathOracleVersion = version;
+		}
+		return this.shortestPathOracle;
 	}
 	
 	public HashMap<String, Node> getIdToNodeMap() {
@@ -221,6 +305,7 @@ public class GraphBuilder {
 
 	public void resetOntologyMaps() {
 		String[] currentUris = this.uriClosure.keySet().toArray(new String[0]);
+		this.ownUriClosure();
 		this.uriClosure.clear();
 		for (String uri : currentUris)
 			computeUriClosure(uri);
@@ -308,30 +393,40 @@ public class GraphBuilder {
 			node.getLabel().setPrefix(label.getPrefix());
 		}
 		
-		if(node.isForceAddedByUser())
+		if(node.isForceAddedByUser()) {
+			this.forcedAddedNodes = own(this.forcedAddedNodes);
 			this.forcedAddedNodes.add(node);
+		}
 		
 		this.graph.addVertex(node);
+		this.modCount++;
 		
+		this.idToNodeMap = own(this.idToNodeMap);
 		this.idToNodeMap.put(node.getId(), node);
 		
-		Set<Node> nodesWithSameUri = uriToNodesMap.get(node.getUri());
-		if (nodesWithSameUri == null) {
-			nodesWithSameUri = new HashSet<Node>();
-			uriToNodesMap.put(node.getUri(), nodesWithSameUri);
+		// an id keeps its index when the node is removed, like its visited pairs
+		if (!this.nodeIndexes.containsKey(node.getId())) {
+			this.nodeIndexes = own(this.nodeIndexes);
+			this.nodeIndexes.put(node.getId(), this.nodeIndexes.size());
 		}
-		nodesWithSameUri.add(node);
 		
-		Set<Node> nodesWithSameType = typeToNodesMap.get(node.getType());
-		if (nodesWithSameType == null) {
-			nodesWithSameType = new HashSet<Node>();
-			typeToNodesMap.put(node.getType(), nodesWithSameType);
+		if (node.getType() == NodeType.InternalNode) {
+			this.newInternalNodes = own(this.newInternalNodes);
+			this.newInternalNodes.add(node);
 		}
-		nodesWithSameType.add(node);
 		
-		if (node.getModelIds() != null)
+		this.uriToNodesMap = own(this.uriToNodesMap);
+		ownValues(this.uriToNodesMap, node.getUri()).add(node);
+		
+		this.typeToNodesMap = own(this.typeToNodesMap);
+		ownValues(this.typeToNodesMap, node.getType()).add(node);
+		
+		if (node.getModelIds() != null) {
+			this.modelIds = own(this.modelIds);
 			this.modelIds.addAll(node.getModelIds());
+		}
 					
+		this.ownUriClosure();
 		this.uriClosure.put(node.getUri(), null);
 
 		logger.debug("exit>");		
@@ -378,8 +473,10 @@ public class GraphBuilder {
 		}
 			
 		this.graph.addEdge(source, target, link);
+		this.modCount++;
 		
-		this.visitedSourceTargetPairs.add(source.getId() + target.getId());
+		this.visitedSourceTargetPairs = own(this.visitedSourceTargetPairs);
+		this.visitedSourceTargetPairs.add(getPairKey(source, target));
 		
 		double w = 0.0;
 		if (link instanceof ObjectPropertyLink && ((ObjectPropertyLink)link).getObjectPropertyType() == ObjectPropertyType.Direct)
@@ -421,48 +518,36 @@ public class GraphBuilder {
 //		if (link instanceof LabeledLink)
 		labeledLink = (LabeledLink)link;
 		
+		this.idToLinkMap = own(this.idToLinkMap);
 		this.idToLinkMap.put(labeledLink.getId(), labeledLink);
 		
-		Set<LabeledLink> linksWithSameUri = uriToLinksMap.get(labeledLink.getUri());
-		if (linksWithSameUri == null) {
-			linksWithSameUri = new HashSet<LabeledLink>();
-			uriToLinksMap.put(labeledLink.getUri(), linksWithSameUri);
-		}
-		linksWithSameUri.add(labeledLink);
+		this.uriToLinksMap = own(this.uriToLinksMap);
+		ownValues(this.uriToLinksMap, labeledLink.getUri()).add(labeledLink);
 				
-		Set<LabeledLink> linksWithSameType = typeToLinksMap.get(labeledLink.getType());
-		if (linksWithSameType == null) {
-			linksWithSameType = new HashSet<LabeledLink>();
-			typeToLinksMap.put(labeledLink.getType(), linksWithSameType);
-		}
-		linksWithSameType.add(labeledLink);
+		this.typeToLinksMap = own(this.typeToLinksMap);
+		ownValues(this.typeToLinksMap, labeledLink.getType()).add(labeledLink);
 		
 		if (labeledLink.getStatus() != LinkStatus.Normal) {
-			Set<LabeledLink> linksWithSameStatus = statusToLinksMap.get(labeledLink.getStatus());
-			if (linksWithSameStatus == null) { 
-				linksWithSameStatus = new HashSet<LabeledLink>();
-				statusToLinksMap.put(labeledLink.getStatus(), linksWithSameStatus);
-			}
+			this.statusToLinksMap = own(this.statusToLinksMap);
+			ownValues(this.statusToLinksMap, labeledLink.getStatus()).add(labeledLink);
 		}
 
 		if (source instanceof InternalNode && target instanceof ColumnNode) {
 			
 			String key = source.getId() + link.getUri();
+			this.nodeDataPropertyCount = own(this.nodeDataPropertyCount);
 			Integer count = this.nodeDataPropertyCount.get(key);
 			if (count == null) this.nodeDataPropertyCount.put(key, 1);
 			else this.nodeDataPropertyCount.put(key, count.intValue() + 1);
 			
 			
 			key = source.getUri() + link.getUri();
-			Set<SemanticTypeMapping> SemanticTypeMappings = this.semanticTypeMatches.get(key);
-			if (SemanticTypeMappings == null) {
-				SemanticTypeMappings = new HashSet<SemanticTypeMapping>();
-				this.semanticTypeMatches.put(key, SemanticTypeMappings);
-			}
-			SemanticTypeMappings.add(new SemanticTypeMapping(null, null, (InternalNode)source, labeledLink, (ColumnNode)target));
+			this.semanticTypeMatches = own(this.semanticTypeMatches);
+			ownValues(this.semanticTypeMatches, key).add(new SemanticTypeMapping(null, null, (InternalNode)source, labeledLink, (ColumnNode)target));
 		}
 				
 		if (labeledLink.getModelIds() != null) {
+			this.modelIds = own(this.modelIds);
 			this.modelIds.addAll(labeledLink.getModelIds());
 			this.numberOfModelLinks++;
 		}
@@ -481,22 +566,19 @@ public class GraphBuilder {
 		
 		link.setStatus(newStatus);
 		
-		Set<LabeledLink> linksWithOldStatus = this.statusToLinksMap.get(oldStatus);
-		if (linksWithOldStatus != null) linksWithOldStatus.remove(link);
+		this.statusToLinksMap = own(this.statusToLinksMap);
+		if (this.statusToLinksMap.containsKey(oldStatus)) 
+			ownValues(this.statusToLinksMap, oldStatus).remove(link);
 
 		if (newStatus == LinkStatus.Normal) // we don't need to index normal links 
 			return;
 		
-		Set<LabeledLink> linksWithNewStatus = this.statusToLinksMap.get(newStatus);
-		if (linksWithNewStatus == null) {
-			linksWithNewStatus = new HashSet<LabeledLink>();
-			statusToLinksMap.put(newStatus, linksWithNewStatus);
-		}
-		linksWithNewStatus.add(link);
+		ownValues(this.statusToLinksMap, newStatus).add(link);
 	}
 	
 	public void changeLinkWeight(DefaultLink link, double weight) {
 		this.graph.setEdgeWeight(link, weight);
+		this.modCount++;
 	}
 	
 	public boolean removeLink(DefaultLink link) {
@@ -518,23 +600,28 @@ public class GraphBuilder {
 		
 		if (!this.graph.removeEdge(link))
 			return false;
+		this.modCount++;
 
 		// update hashmaps
 
 		if (link instanceof LabeledLink) {
+			this.idToLinkMap = own(this.idToLinkMap);
 			this.idToLinkMap.remove(link.getId());
 	
-			Set<LabeledLink> linksWithSameUri = uriToLinksMap.get(link.getUri());
-			if (linksWithSameUri != null) 
-				linksWithSameUri.remove(link);
+			if (uriToLinksMap.containsKey(link.getUri())) {
+				this.uriToLinksMap = own(this.uriToLinksMap);
+				ownValues(this.uriToLinksMap, link.getUri()).remove(link);
+			}
 			
-			Set<LabeledLink> linksWithSameType = typeToLinksMap.get(((LabeledLink)link).getType());
-			if (linksWithSameType != null) 
-				linksWithSameType.remove(link);
+			if (typeToLinksMap.containsKey(((LabeledLink)link).getType())) {
+				this.typeToLinksMap = own(this.typeToLinksMap);
+				ownValues(this.typeToLinksMap, ((LabeledLink)link).getType()).remove(link);
+			}
 			
-			Set<LabeledLink> linksWithSameStatus = statusToLinksMap.get(((LabeledLink)link).getStatus());
-			if (linksWithSameStatus != null) 
-				linksWithSameStatus.remove(link);
+			if (statusToLinksMap.containsKey(((LabeledLink)link).getStatus())) {
+				this.statusToLinksMap = own(this.statusToLinksMap);
+				ownValues(this.statusToLinksMap, ((LabeledLink)link).getStatus()).remove(link);
+			}
 		}
 		
 		return true;
@@ -570,23 +657,34 @@ public class GraphBuilder {
 			}
 		}
 		
-		if(node.isForceAddedByUser())
+		if(node.isForceAddedByUser()) {
+			this.forcedAddedNodes = own(this.forcedAddedNodes);
 			this.forcedAddedNodes.remove(node);
+		}
+		
+		if (this.newInternalNodes.contains(node)) {
+			this.newInternalNodes = own(this.newInternalNodes);
+			this.newInternalNodes.remove(node);
+		}
 		
 		if (!this.graph.removeVertex(node))
 			return false;
+		this.modCount++;
 		
 		// updating hashmaps
 		
+		this.idToNodeMap = own(this.idToNodeMap);
 		this.idToNodeMap.remove(node.getId());
 		
-		Set<Node> nodesWithSameUri = uriToNodesMap.get(node.getUri());
-		if (nodesWithSameUri != null) 
-			nodesWithSameUri.remove(node);
+		if (uriToNodesMap.containsKey(node.getUri())) {
+			this.uriToNodesMap = own(this.uriToNodesMap);
+			ownValues(this.uriToNodesMap, node.getUri()).remove(node);
+		}
 		
-		Set<Node> nodesWithSameType = typeToNodesMap.get(node.getType());
-		if (nodesWithSameType != null) 
-			nodesWithSameType.remove(node);
+		if (typeToNodesMap.containsKey(node.getType())) {
+			this.typeToNodesMap = own(this.typeToNodesMap);
+			ownValues(this.typeToNodesMap, node.getType()).remove(node);
+		}
 		
 		logger.debug("total number of nodes in graph: " + this.graph.vertexSet().size());
 		logger.debug("total number of links in graph: " + this.graph.edgeSet().size());
@@ -804,6 +902,8 @@ public class GraphBuilder {
 
 //		if (link instanceof DataPropertyLink) return;
 
+		this.linkCountMap = own(this.linkCountMap);
+		
 		if (target instanceof InternalNode) {
 			key = "domain:" + sourceUri + ",link:" + linkUri + ",range:" + targetUri;
 			count = this.linkCountMap.get(key);
@@ -827,6 +927,59 @@ public class GraphBuilder {
 		else this.linkCountMap.put(key, count.intValue() + 1);
 	}
 
+	private static Set<Object> newIdentitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	}
+	
+	private <K, V> HashMap<K, V> own(HashMap<K, V> index) {
+		if (this.ownedIndexes.contains(index))
+			return index;
+		HashMap<K, V> copy = new HashMap<K, V>(index);
+		this.ownedIndexes.add(copy);
+		return copy;
+	}
+
+	private LongHashSet own(LongHashSet index) {
+		if (this.ownedIndexes.contains(index))
+			return index;
+		LongHashSet copy = new LongHashSet(index);
+		this.ownedIndexes.add(copy);
+		return copy;
+	}
+
+	private <T> HashSet<T> own(HashSet<T> index) {
+		if (this.ownedIndexes.contains(index))
+			return index;
+		HashSet<T> copy = new HashSet<T>(index);
+		this.ownedIndexes.add(copy);
+		return copy;
+	}
+	
+	/**
+	 * The values of a key in an index the builder owns, copied if they are 
+	 * still shared with a snapshot.
+	 */
+	private <K, V> Set<V> ownValues(HashMap<K, Set<V>> index, K key) {
+		Set<V> values = index.get(key);
+		if (values == null || !this.ownedIndexes.contains(values)) {
+			values = (values == null) ? new HashSet<V>() : new HashSet<V>(values);
+			index.put(key, values);
+			this.ownedIndexes.add(values);
+		}
+		return values;
+	}
+	
+	private void ownUriClosure() {
+		if (this.ownedIndexes.contains(this.uriClosure))
+			return;
+		// the closures are completed in place, so they are copied as well
+		HashMap<String, Set<String>> copy = new HashMap<String, Set<String>>();
+		for (Map.Entry<String, Set<String>> entry : this.uriClosure.entrySet())
+			copy.put(entry.getKey(), entry.getValue() == null ? null : new HashSet<String>(entry.getValue()));
+		this.uriClosure = copy;
+		this.ownedIndexes.add(copy);
+	}
+
 	private HashSet<String> getUriDirectConnections(String uri) {
 		
 		HashSet<String> uriDirectConnections = new HashSet<String>();
@@ -855,6 +1008,7 @@ public class GraphBuilder {
 		if (closure != null) 
 			return closure;
 	
+		this.ownUriClosure();
 		closure = new HashSet<String>();
 		List<String> closedList = new ArrayList<String>();
 		HashMap<String, Set<String>> dependentUrisMap = new HashMap<String, Set<String>>();
@@ -975,12 +1129,17 @@ public class GraphBuilder {
 		
 		logger.debug("<enter");
 		
-		Set<Node> nodeSet = this.typeToNodesMap.get(NodeType.InternalNode);
-		if (nodeSet == null || nodeSet.isEmpty())
+		if (this.newInternalNodes.isEmpty())
 			return;
 		
-		List<Node> nodes = new ArrayList<Node>(nodeSet);
-		logger.debug("number of internal nodes: " + nodes.size());
+		// each pair of nodes is looked at once, when the second of them is new, so 
+		// only the pairs that the ontology may connect are looked at
+		List<Node> nodes = new ArrayList<Node>(this.newInternalNodes);
+		this.newInternalNodes = new HashSet<Node>();
+		this.ownedIndexes.add(this.newInternalNodes);
+		logger.debug("number of new internal nodes: " + nodes.size());
+		
+		Set<Node> updatedNodes = new HashSet<Node>();
 		
 		Node source;
 		Node target;
@@ -989,23 +1148,20 @@ public class GraphBuilder {
 
 		String id = null;
 		
-		for (int i = 0; i < nodes.size(); i++) {
+		for (Node n1 : nodes) {
 			
-			Node n1 = nodes.get(i);
-			for (int j = i+1; j < nodes.size(); j++) {
+			updatedNodes.add(n1);
+			for (Node n2 : getNodesToLink(n1)) {
 
-				Node n2 = nodes.get(j);
-
-				if (n1.equals(n2))
+				if (n1.equals(n2) || updatedNodes.contains(n2))
 					continue;
 
-				if (this.visitedSourceTargetPairs.contains(n1.getId() + n2.getId()))
-					continue;
-				if (this.visitedSourceTargetPairs.contains(n2.getId() + n1.getId()))
+				long pair = getPairKey(n1, n2);
+				if (this.visitedSourceTargetPairs.contains(pair))
 					continue;
 				
-				source = n1;
-				target = n2;
+				source = n2;
+				target = n1;
 
 				sourceUri = source.getUri();
 				targetUri = target.getUri();
@@ -1077,8 +1233,7 @@ public class GraphBuilder {
 				}
 
 				if (!connected) {
-					this.visitedSourceTargetPairs.add(n1.getId() + n2.getId());
-					logger.debug("did not put a link between (" + n1.getId() + ", " + n2.getId() + ")");
+					logger.debug("did not put a link between (" + n2.getId() + ", " + n1.getId() + ")");
 				}
 			}
 		}
@@ -1086,6 +1241,74 @@ public class GraphBuilder {
 		logger.debug("exit>");
 	}
 	
+	/**
+	 * The internal nodes whose classes the ontology may connect to the class of the node, 
+	 * from the domain and range indexes of the ontology, so the nodes of other classes are 
+	 * not looked at.
+	 */
+	private Collection<Node> getNodesToLink(Node node) {
+		
+		Set<Node> internalNodes = this.typeToNodesMap.get(NodeType.InternalNode);
+		if (internalNodes == null)
+			return Collections.emptySet();
+
+		String uri = node.getUri();
+		
+		// the properties without a domain or a range connect some classes to every class
+		if ((ModelingConfiguration.getPropertiesWithoutDomainRange() && 
+					this.ontologyManager.isConnectedByDomainlessAndRangelessProperty(uri, uri)) ||
+				(ModelingConfiguration.getPropertiesWithOnlyDomain() && 
+					this.ontologyManager.getClassesWithObjectPropertiesWithOnlyDomain().contains(uri)) ||
+				(ModelingConfiguration.getPropertiesWithOnlyRange() && 
+					this.ontologyManager.getClassesWithObjectPropertiesWithOnlyRange().contains(uri)))
+			return internalNodes;
+		
+		Set<Node> nodes = new HashSet<Node>();
+		Set<String> uris = new HashSet<String>();
+		if (ModelingConfiguration.getPropertiesDirect() || ModelingConfiguration.getPropertiesIndirect())
+			uris.addAll(this.ontologyManager.getClassesConnectedByObjectProperties(uri));
+		if (ModelingConfiguration.getPropertiesSubClass()) {
+			HashMap<String, Label> subClasses = this.ontologyManager.getSubClasses(uri, false);
+			if (subClasses != null) uris.addAll(subClasses.keySet());
+			HashMap<String, Label> superClasses = this.ontologyManager.getSuperClasses(uri, false);
+			if (superClasses != null) uris.addAll(superClasses.keySet());
+		}
+		addNodesOfUris(uris, nodes);
+		if (ModelingConfiguration.getPropertiesWithOnlyDomain())
+			addNodesOfUris(this.ontologyManager.getClassesWithObjectPropertiesWithOnlyDomain(), nodes);
+		if (ModelingConfiguration.getPropertiesWithOnlyRange())
+			addNodesOfUris(this.ontologyManager.getClassesWithObjectPropertiesWithOnlyRange(), nodes);
+		return nodes;
+	}
+	
+	private void addNodesOfUris(Set<String> uris, Set<Node> nodes) {
+		if (uris.size() <= this.uriToNodesMap.size()) {
+			for (String uri : uris) {
+				Set<Node> nodesOfUri = this.uriToNodesMap.get(uri);
+				if (nodesOfUri != null) addInternalNodes(nodesOfUri, nodes);
+			}
+		} else {
+			for (Map.Entry<String, Set<Node>> entry : this.uriToNodesMap.entrySet()) {
+				if (uris.contains(entry.getKey())) addInternalNodes(entry.getValue(), nodes);
+			}
+		}
+	}
+	
+	private static void addInternalNodes(Set<Node> nodesOfUri, Set<Node> nodes) {
+		for (Node n : nodesOfUri) {
+			if (n.getType() == NodeType.InternalNode) nodes.add(n);
+		}
+	}
+	
+	/**
+	 * The same key for both directions, the smaller index in the high bits.
+	 */
+	private long getPairKey(Node n1, Node n2) {
+		long i1 = this.nodeIndexes.get(n1.getId());
+		long i2 = this.nodeIndexes.get(n2.getId());
+		return i1 < i2 ? (i1 << 32) | i2 : (i2 << 32) | i1;
+	}
+	
 
 	public List<LabeledLink> getPossibleLinks(String sourceId, String targetId) {
 		return getPossibleLinks(sourceId, targetId, null, null);
@@ -0,0 +1,262 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.jgrapht.Graphs;
+import org.jgrapht.UndirectedGraph;
+import org.jgrapht.alg.ConnectivityInspector;
+import org.jgrapht.alg.KruskalMinimumSpanningTree;
+import org.jgrapht.graph.WeightedMultigraph;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * Repairs a previous Steiner tree for a new set of Steiner nodes instead of
+ * computing the tree again. The links of the previous tree that are still in
+ * the graph are kept, the branches that only led to nodes that are not Steiner
+ * nodes anymore are cut, and every piece that is left apart, such as a new
+ * Steiner node, is connected to the rest by its shortest path.
+ *
+ * Most edits change one column or one link, so only a few shortest paths are
+ * computed. The tree can be more expensive than the one {@link SteinerTree}
+ * would find, it is up to the caller to compare the costs.
+ */
+public class IncrementalSteinerTree {
+
+	static Logger logger = LoggerFactory.getLogger(IncrementalSteinerTree.class);
+
+	UndirectedGraph<Node, DefaultLink> graph;
+	WeightedMultigraph<Node, DefaultLink> tree;
+	Set<Node> steinerNodes;
+
+	public IncrementalSteinerTree(UndirectedGraph<Node, DefaultLink> graph,
+			Collection<? extends DefaultLink> previousTreeLinks,
+			List<Node> steinerNodes) {
+		this.graph = graph;
+		this.steinerNodes = new HashSet<Node>(steinerNodes);
+
+		runAlgorithm(previousTreeLinks);
+	}
+
+	public WeightedMultigraph<Node, DefaultLink> getDefaultSteinerTree() {
+		return this.tree;
+	}
+
+	public double getCost() {
+		double cost = 0.0;
+		for (DefaultLink link : this.tree.edgeSet())
+			cost += this.graph.getEdgeWeight(link);
+		return cost;
+	}
+
+	private void runAlgorithm(Collection<? extends DefaultLink> previousTreeLinks) {
+
+		logger.debug("<enter");
+
+		WeightedMultigraph<Node, DefaultLink> g =
+				new WeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+
+		for (DefaultLink link : previousTreeLinks) {
+			if (!this.graph.containsEdge(link))
+				continue;
+			addLink(g, link);
+		}
+		for (Node n : this.steinerNodes) {
+			if (this.graph.containsVertex(n))
+				g.addVertex(n);
+		}
+		removeNonSteinerLeaves(g);
+
+		logger.debug("connecting the pieces of the previous tree ...");
+		List<Set<Node>> components = new ConnectivityInspector<Node, DefaultLink>(g).connectedSets();
+		Set<Set<Node>> unreachable = new HashSet<Set<Node>>();
+		while (components.size() - unreachable.size() > 1) {
+			Set<Node> component = null;
+			for (Set<Node> c : components) {
+				if (!unreachable.contains(c)) {
+					component = c;
+					break;
+				}
+			}
+			List<DefaultLink> path = getShortestPathToTree(g, component);
+			if (path == null) {
+				unreachable.add(component);
+				continue;
+			}
+			for (DefaultLink link : path)
+				addLink(g, link);
+			components = new ConnectivityInspector<Node, DefaultLink>(g).connectedSets();
+			unreachable.clear();
+		}
+
+		// the pieces that could not be connected are left out, like the steiner
+		// nodes that SteinerTree can't reach
+		Set<Node> largest = null;
+		for (Set<Node> c : components) {
+			if (largest == null || c.size() > largest.size())
+				largest = c;
+		}
+		for (Set<Node> c : components) {
+			if (c != largest)
+				g.removeAllVertices(c);
+		}
+
+		this.tree = spanningTree(g);
+		removeNonSteinerLeaves(this.tree);
+
+		//Add all the force added vertices
+		for (Node n : this.steinerNodes) {
+			if (n.isForceAddedByUser() && this.graph.containsVertex(n))
+				this.tree.addVertex(n);
+		}
+
+		logger.debug("exit>");
+	}
+
+	private void addLink(WeightedMultigraph<Node, DefaultLink> g, DefaultLink link) {
+		Node source = this.graph.getEdgeSource(link);
+		Node target = this.graph.getEdgeTarget(link);
+		g.addVertex(source);
+		g.addVertex(target);
+		if (!g.containsEdge(link))
+			g.addEdge(source, target, link);
+	}
+
+	/**
+	 * The shortest path in the graph from a node of the component to a node of
+	 * the tree outside of it.
+	 */
+	private List<DefaultLink> getShortestPathToTree(WeightedMultigraph<Node, DefaultLink> g, Set<Node> component) {
+
+		Map<Node, Double> distances = new HashMap<Node, Double>();
+		Map<Node, DefaultLink> predecessors = new HashMap<Node, DefaultLink>();
+		Set<Node> settled = new HashSet<Node>();
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+
+		for (Node n : component) {
+			distances.put(n, 0.0);
+			queue.add(new QueueEntry(n, 0.0));
+		}
+
+		while (!queue.isEmpty()) {
+			QueueEntry entry = queue.poll();
+			Node v = entry.node;
+			if (!settled.add(v))
+				continue;
+
+			if (g.containsVertex(v) && !component.contains(v)) {
+				List<DefaultLink> path = new ArrayList<DefaultLink>();
+				while (predecessors.get(v) != null) {
+					DefaultLink link = predecessors.get(v);
+					path.add(link);
+					v = Graphs.getOppositeVertex(this.graph, link, v);
+				}
+				Collections.reverse(path);
+				return path;
+			}
+
+			for (DefaultLink link : this.graph.edgesOf(v)) {
+				Node u = Graphs.getOppositeVertex(this.graph, link, v);
+				if (settled.contains(u))
+					continue;
+				double distance = entry.distance + this.graph.getEdgeWeight(link);
+				Double current = distances.get(u);
+				if (current == null || distance < current.doubleValue()) {
+					distances.put(u, distance);
+					predecessors.put(u, link);
+					queue.add(new QueueEntry(u, distance));
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * The pieces are trees, but connecting them can close cycles.
+	 */
+	private WeightedMultigraph<Node, DefaultLink> spanningTree(WeightedMultigraph<Node, DefaultLink> g) {
+
+		KruskalMinimumSpanningTree<Node, DefaultLink> mst =
+				new KruskalMinimumSpanningTree<Node, DefaultLink>(g);
+
+		List<DefaultLink> edgesSortedById = new ArrayList<DefaultLink>(mst.getEdgeSet());
+		Collections.sort(edgesSortedById);
+
+		WeightedMultigraph<Node, DefaultLink> t =
+				new WeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+		for (Node n : g.vertexSet())
+			t.addVertex(n);
+		for (DefaultLink edge : edgesSortedById)
+			t.addEdge(edge.getSource(), edge.getTarget(), edge);
+
+		return t;
+	}
+
+	private void removeNonSteinerLeaves(WeightedMultigraph<Node, DefaultLink> g) {
+
+		List<Node> leaves = new ArrayList<Node>();
+		for (Node n : g.vertexSet()) {
+			if (g.degreeOf(n) <= 1 && !this.steinerNodes.contains(n))
+				leaves.add(n);
+		}
+
+		while (!leaves.isEmpty()) {
+			Node leaf = leaves.remove(leaves.size() - 1);
+			if (!g.containsVertex(leaf))
+				continue;
+			List<Node> neighbors = Graphs.neighborListOf(g, leaf);
+			g.removeVertex(leaf);
+			for (Node n : neighbors) {
+				if (g.containsVertex(n) && g.degreeOf(n) <= 1 && !this.steinerNodes.contains(n))
+					leaves.add(n);
+			}
+		}
+	}
+
+	private static class QueueEntry implements Comparable<QueueEntry> {
+
+		final Node node;
+		final double distance;
+
+		QueueEntry(Node node, double distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(QueueEntry other) {
+			return Double.compare(distance, other.distance);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import java.util.Arrays;
+
+/**
+ * A set of longs kept in an open addressing table, without a Long for each
+ * of them. Only adding is supported, which is all the pairs of nodes a
+ * GraphBuilder has visited need.
+ */
+final class LongHashSet {
+
+	private static final long EMPTY = 0L;
+
+	private long[] keys;
+	private boolean hasEmptyKey;
+	private int size;
+
+	LongHashSet() {
+		keys = new long[16];
+	}
+
+	LongHashSet(LongHashSet other) {
+		keys = Arrays.copyOf(other.keys, other.keys.length);
+		hasEmptyKey = other.hasEmptyKey;
+		size = other.size;
+	}
+
+	boolean contains(long key) {
+		if (key == EMPTY)
+			return hasEmptyKey;
+		int mask = keys.length - 1;
+		for (int i = slot(key, mask); keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return true if the key was not in the set
+	 */
+	boolean add(long key) {
+		if (key == EMPTY) {
+			if (hasEmptyKey)
+				return false;
+			hasEmptyKey = true;
+			size++;
+			return true;
+		}
+		if ((size + 1) * 2 > keys.length)
+			rehash(keys.length * 2);
+		int mask = keys.length - 1;
+		int i = slot(key, mask);
+		for (; keys[i] != EMPTY; i = (i + 1) & mask) {
+			if (keys[i] == key)
+				return false;
+		}
+		keys[i] = key;
+		size++;
+		return true;
+	}
+
+	int size() {
+		return size;
+	}
+
+	private void rehash(int capacity) {
+		long[] old = keys;
+		keys = new long[capacity];
+		int mask = capacity - 1;
+		for (long key : old) {
+			if (key == EMPTY)
+				continue;
+			int i = slot(key, mask);
+			while (keys[i] != EMPTY)
+				i = (i + 1) & mask;
+			keys[i] = key;
+		}
+	}
+
+	private static int slot(long key, int mask) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key & mask;
+	}
+}
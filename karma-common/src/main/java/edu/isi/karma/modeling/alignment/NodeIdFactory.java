@@ -27,6 +27,12 @@ public class NodeIdFactory {
 
 	private HashMap<String, Integer> nodeUris = new HashMap<String, Integer>();
 	
+	public NodeIdFactory() {
+	}
+	
+	public NodeIdFactory(NodeIdFactory nodeIdFactory) {
+		this.nodeUris.putAll(nodeIdFactory.nodeUris);
+	}
 
 	public String getNodeId(String uri) {
 		
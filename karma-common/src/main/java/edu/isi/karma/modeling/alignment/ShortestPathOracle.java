@@ -0,0 +1,213 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.alignment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.jgrapht.UndirectedGraph;
+
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.Node;
+
+/**
+ * Shortest paths in one version of an undirected graph. The shortest path
+ * tree of a source is computed with Dijkstra the first time it is asked for
+ * and kept, so the steps of a Steiner tree and the Steiner trees of several
+ * candidate sets over the same graph share it.
+ *
+ * The adjacency of the graph is copied when the oracle is created, so it can
+ * be queried from several threads, but it has to be thrown away once the
+ * graph changes. {@link GraphBuilder#getShortestPathOracle()} does that for
+ * the graph of a GraphBuilder.
+ */
+public class ShortestPathOracle {
+
+	private static final int DEFAULT_MAX_CACHED_SOURCES = 256;
+
+	private final Map<Node, Integer> nodeIndexes;
+	private final Node[] nodes;
+	private final int[][] neighbors;
+	private final DefaultLink[][] links;
+	private final double[][] weights;
+	private final Map<Node, ShortestPaths> cache;
+
+	public ShortestPathOracle(UndirectedGraph<Node, DefaultLink> graph) {
+		this(graph, DEFAULT_MAX_CACHED_SOURCES);
+	}
+
+	public ShortestPathOracle(UndirectedGraph<Node, DefaultLink> graph, final int maxCachedSources) {
+
+		int n = graph.vertexSet().size();
+		this.nodeIndexes = new HashMap<Node, Integer>(n * 2);
+		this.nodes = graph.vertexSet().toArray(new Node[n]);
+		for (int i = 0; i < n; i++)
+			nodeIndexes.put(nodes[i], i);
+
+		this.neighbors = new int[n][];
+		this.links = new DefaultLink[n][];
+		this.weights = new double[n][];
+		for (int i = 0; i < n; i++) {
+			DefaultLink[] edges = graph.edgesOf(nodes[i]).toArray(new DefaultLink[0]);
+			neighbors[i] = new int[edges.length];
+			weights[i] = new double[edges.length];
+			links[i] = edges;
+			for (int j = 0; j < edges.length; j++) {
+				Node other = graph.getEdgeTarget(edges[j]);
+				if (other.equals(nodes[i]))
+					other = graph.getEdgeSource(edges[j]);
+				neighbors[i][j] = nodeIndexes.get(other);
+				weights[i][j] = graph.getEdgeWeight(edges[j]);
+			}
+		}
+
+		this.cache = new LinkedHashMap<Node, ShortestPaths>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Node, ShortestPaths> eldest) {
+				return size() > maxCachedSources;
+			}
+		};
+	}
+
+	/**
+	 * @return the cost of the shortest path, or infinity if there is none
+	 */
+	public double getCost(Node source, Node target) {
+		ShortestPaths paths = getShortestPaths(source);
+		Integer t = nodeIndexes.get(target);
+		if (paths == null || t == null)
+			return Double.POSITIVE_INFINITY;
+		return paths.distances[t];
+	}
+
+	/**
+	 * @return the links of the shortest path from the source to the target,
+	 * or null if there is none
+	 */
+	public List<DefaultLink> getPathEdgeList(Node source, Node target) {
+		ShortestPaths paths = getShortestPaths(source);
+		Integer t = nodeIndexes.get(target);
+		if (paths == null || t == null || paths.distances[t] == Double.POSITIVE_INFINITY)
+			return null;
+
+		List<DefaultLink> path = new ArrayList<DefaultLink>();
+		int v = t;
+		while (paths.predecessors[v] != -1) {
+			path.add(paths.predecessorLinks[v]);
+			v = paths.predecessors[v];
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private ShortestPaths getShortestPaths(Node source) {
+		ShortestPaths paths;
+		synchronized (cache) {
+			paths = cache.get(source);
+		}
+		if (paths != null)
+			return paths;
+
+		Integer s = nodeIndexes.get(source);
+		if (s == null)
+			return null;
+
+		// computed outside the lock, two threads asking for the same source
+		// at once just both compute it
+		paths = dijkstra(s);
+		synchronized (cache) {
+			cache.put(source, paths);
+		}
+		return paths;
+	}
+
+	private ShortestPaths dijkstra(int source) {
+
+		int n = nodes.length;
+		ShortestPaths paths = new ShortestPaths(n);
+		Arrays.fill(paths.distances, Double.POSITIVE_INFINITY);
+		Arrays.fill(paths.predecessors, -1);
+		boolean[] settled = new boolean[n];
+
+		PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+		paths.distances[source] = 0.0;
+		queue.add(new QueueEntry(source, 0.0));
+
+		while (!queue.isEmpty()) {
+			QueueEntry entry = queue.poll();
+			int v = entry.node;
+			if (settled[v])
+				continue;
+			settled[v] = true;
+
+			for (int j = 0; j < neighbors[v].length; j++) {
+				int u = neighbors[v][j];
+				if (settled[u])
+					continue;
+				double distance = entry.distance + weights[v][j];
+				if (distance < paths.distances[u]) {
+					paths.distances[u] = distance;
+					paths.predecessors[u] = v;
+					paths.predecessorLinks[u] = links[v][j];
+					queue.add(new QueueEntry(u, distance));
+				}
+			}
+		}
+		return paths;
+	}
+
+	private static class ShortestPaths {
+
+		final double[] distances;
+		final int[] predecessors;
+		final DefaultLink[] predecessorLinks;
+
+		ShortestPaths(int n) {
+			distances = new double[n];
+			predecessors = new int[n];
+			predecessorLinks = new DefaultLink[n];
+		}
+	}
+
+	private static class QueueEntry implements Comparable<QueueEntry> {
+
+		final int node;
+		final double distance;
+
+		QueueEntry(int node, double distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(QueueEntry other) {
+			return Double.compare(distance, other.distance);
+		}
+	}
+}
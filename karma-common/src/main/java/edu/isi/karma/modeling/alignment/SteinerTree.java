@@ -26,8 +26,6 @@ import java.util.List;
 import java.util.Set;
 
 import org.jgrapht.UndirectedGraph;
-import org.jgrapht.alg.BellmanFordShortestPath;
-import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.alg.KruskalMinimumSpanningTree;
 import org.jgrapht.graph.Pseudograph;
 import org.jgrapht.graph.WeightedMultigraph;
@@ -50,10 +48,20 @@ public class SteinerTree {
 	UndirectedGraph<Node, DefaultLink> graph;
 	WeightedMultigraph<Node, DefaultLink> tree;
 	List<Node> steinerNodes;
+	ShortestPathOracle shortestPaths;
 	
 	public SteinerTree(UndirectedGraph<Node, DefaultLink> graph, List<Node> steinerNodes) {
+		this(graph, steinerNodes, new ShortestPathOracle(graph));
+	}
+	
+	/**
+	 * @param shortestPaths the shortest paths of the graph, shared with the other 
+	 * trees computed over the same version of it
+	 */
+	public SteinerTree(UndirectedGraph<Node, DefaultLink> graph, List<Node> steinerNodes, ShortestPathOracle shortestPaths) {
 		this.graph = graph;
 		this.steinerNodes = steinerNodes;
+		this.shortestPaths = shortestPaths;
 		
 		runAlgorithm();
 	}
@@ -73,11 +81,7 @@ public class SteinerTree {
 			g.addVertex(n);
 		}
 		
-		BellmanFordShortestPath<Node, DefaultLink> path;
-		
 		for (Node n1 : this.steinerNodes) {
-			path = new BellmanFordShortestPath<Node, DefaultLink>(this.graph, n1);
-			
 			for (Node n2 : this.steinerNodes) {
 				
 				if (n1.equals(n2))
@@ -88,7 +92,7 @@ public class SteinerTree {
 				
 				DefaultLink e = new DefaultLink();
 				g.addEdge(n1, n2, e);
-				g.setEdgeWeight(e, path.getCost(n2));
+				g.setEdgeWeight(e, this.shortestPaths.getCost(n1, n2));
 				
 			}
 
@@ -151,16 +155,13 @@ public class SteinerTree {
 			new WeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
 		
 		Set<DefaultLink> edges = g2.edgeSet();
-		DijkstraShortestPath<Node, DefaultLink> path;
-		
 		Node source, target;
 		
 		for (DefaultLink edge : edges) {
 			source = edge.getSource();
 			target = edge.getTarget();
 			
-			path = new DijkstraShortestPath<Node, DefaultLink>(this.graph, source, target);
-			List<DefaultLink> pathEdges = path.getPathEdgeList();
+			List<DefaultLink> pathEdges = this.shortestPaths.getPathEdgeList(source, target);
 			
 			if (pathEdges == null)
 				continue;
@@ -32,6 +32,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
 
 import org.jgrapht.UndirectedGraph;
 import org.jgrapht.graph.AsUndirectedGraph;
@@ -50,6 +53,7 @@ import edu.isi.karma.modeling.alignment.LinkIdFactory;
 import edu.isi.karma.modeling.alignment.ModelEvaluation;
 import edu.isi.karma.modeling.alignment.NodeIdFactory;
 import edu.isi.karma.modeling.alignment.SemanticModel;
+import edu.isi.karma.modeling.alignment.ShortestPathOracle;
 import edu.isi.karma.modeling.alignment.SteinerTree;
 import edu.isi.karma.modeling.alignment.TreePostProcess;
 import edu.isi.karma.modeling.ontology.OntologyManager;
@@ -81,6 +85,11 @@ public class ModelLearner {
 	private long lastUpdateTimeOfGraph;
 	private ModelLearningGraph modelLearningGraph = null;
 	private boolean useAlignmentGraphBuiltFromKnownModels = false;
+	
+	// shared by all the learners so that concurrent requests don't multiply the threads
+	private static final ForkJoinPool steinerTreePool = 
+			new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	private boolean computeTreesInParallel = true;
 //	private boolean useAlignmentGraphBuiltFromLOD = false;
 
 	public ModelLearner(OntologyManager ontologyManager, List<ColumnNode> columnNodes) {
@@ -110,6 +119,14 @@ public class ModelLearner {
 		this.ontologyManager = this.graphBuilder.getOntologyManager();
 	}
 
+	/**
+	 * Computes the steiner trees one by one, each after the previous one is
+	 * post processed, the way they were computed before they were parallel
+	 */
+	void setComputeTreesInParallel(boolean computeTreesInParallel) {
+		this.computeTreesInParallel = computeTreesInParallel;
+	}
+
 	public SemanticModel getModel() {
 		if (this.semanticModel == null)
 			this.learn();
@@ -180,27 +197,51 @@ public class ModelLearner {
 
 		
 		logger.info("computing steiner trees ...");
-		List<SortableSemanticModel> sortableSemanticModels = new ArrayList<SortableSemanticModel>();
-		int count = 1;
+		// the model of a candidate set gets the score of the set, and the sets are sorted by score. 
+		// the first ones are the top scored models, so the trees of the others are not computed.
+		List<SteinerNodes> candidates = new ArrayList<SteinerNodes>();
 		for (SteinerNodes sn : candidateSteinerSets.getSteinerSets()) {
-			logger.debug("computing steiner tree for steiner nodes set " + count + " ...");
-			logger.debug(sn.getScoreDetailsString());
-			DirectedWeightedMultigraph<Node, LabeledLink> tree = computeSteinerTree(sn.getNodes());
-			count ++;
-			if (tree != null) {
-				SemanticModel sm = new SemanticModel(new RandomGUID().toString(), 
-						tree,
-						columnNodes,
-						sn.getMappingToSourceColumns()
-						);
-				SortableSemanticModel sortableSemanticModel = 
-						new SortableSemanticModel(sm, sn);
-				sortableSemanticModels.add(sortableSemanticModel);
-			}
-			if (count == ModelingConfiguration.getMaxCandidateModels())
+			candidates.add(sn);
+			if (candidates.size() + 1 == ModelingConfiguration.getMaxCandidateModels())
 				break;
 		}
 		
+		// the steiner trees only read the graph, so they are computed in parallel. 
+		// post processing replaces the compact links of a tree in the graph, and the 
+		// trees of the next candidates have to see that, as if they were computed one by one. 
+		// the trees computed on the old graph are dropped and computed again.
+		List<SortableSemanticModel> sortableSemanticModels = new ArrayList<SortableSemanticModel>();
+		boolean graphChanged = false;
+		int next = 0;
+		while (next < candidates.size()) {
+			ShortestPathOracle shortestPaths = this.graphBuilder.getShortestPathOracle();
+			// after a change, one tree at a time until the graph stays the same
+			int end = this.computeTreesInParallel && !graphChanged ? candidates.size() : next + 1;
+			List<SteinerTree> computedSteinerTrees = computeSteinerTrees(candidates.subList(next, end), shortestPaths);
+			graphChanged = false;
+			for (SteinerTree steinerTree : computedSteinerTrees) {
+				SteinerNodes sn = candidates.get(next);
+				next++;
+				logger.debug("post processing steiner tree for steiner nodes set " + next + " ...");
+				logger.debug(sn.getScoreDetailsString());
+				DirectedWeightedMultigraph<Node, LabeledLink> tree = postProcessSteinerTree(steinerTree);
+				if (tree != null) {
+					SemanticModel sm = new SemanticModel(new RandomGUID().toString(), 
+							tree,
+							columnNodes,
+							sn.getMappingToSourceColumns()
+							);
+					SortableSemanticModel sortableSemanticModel = 
+							new SortableSemanticModel(sm, sn);
+					sortableSemanticModels.add(sortableSemanticModel);
+				}
+				if (next < candidates.size() && this.graphBuilder.getShortestPathOracle() != shortestPaths) {
+					graphChanged = true;
+					break;
+				}
+			}
+		}
+		
 		Collections.sort(sortableSemanticModels);
 		logger.info("results are ready ...");
 		return sortableSemanticModels;
@@ -224,7 +265,26 @@ public class ModelLearner {
 
 	}
 	
-	private DirectedWeightedMultigraph<Node, LabeledLink> computeSteinerTree(Set<Node> steinerNodes) {
+	private List<SteinerTree> computeSteinerTrees(List<SteinerNodes> candidates, ShortestPathOracle shortestPaths) {
+		
+		List<SteinerTree> steinerTrees = new ArrayList<SteinerTree>();
+		if (candidates.size() == 1) {
+			steinerTrees.add(computeSteinerTree(candidates.get(0).getNodes(), shortestPaths));
+			return steinerTrees;
+		}
+		
+		List<ForkJoinTask<SteinerTree>> tasks = new ArrayList<ForkJoinTask<SteinerTree>>();
+		for (SteinerNodes sn : candidates) {
+			tasks.add(steinerTreePool.submit(new SteinerTreeTask(sn.getNodes(), shortestPaths)));
+		}
+		// all of them, before the graph is changed by the first post processing
+		for (ForkJoinTask<SteinerTree> task : tasks) {
+			steinerTrees.add(task.join());
+		}
+		return steinerTrees;
+	}
+	
+	private SteinerTree computeSteinerTree(Set<Node> steinerNodes, ShortestPathOracle shortestPaths) {
 		
 		if (steinerNodes == null || steinerNodes.size() == 0) {
 			logger.error("There is no steiner node.");
@@ -238,16 +298,26 @@ public class ModelLearner {
 		UndirectedGraph<Node, DefaultLink> undirectedGraph = new AsUndirectedGraph<Node, DefaultLink>(this.graphBuilder.getGraph());
 
 		logger.debug("computing steiner tree ...");
-		SteinerTree steinerTree = new SteinerTree(undirectedGraph, steinerNodeList);
+		SteinerTree steinerTree = new SteinerTree(undirectedGraph, steinerNodeList, shortestPaths);
+		
+		long steinerTreeElapsedTimeMillis = System.currentTimeMillis() - start;
+		logger.debug("time to compute steiner tree: " + (steinerTreeElapsedTimeMillis/1000F));
+		
+		return steinerTree;
+	}
+	
+	private DirectedWeightedMultigraph<Node, LabeledLink> postProcessSteinerTree(SteinerTree steinerTree) {
+		
+		if (steinerTree == null)
+			return null;
+		
 		DirectedWeightedMultigraph<Node, LabeledLink> tree = new TreePostProcess(this.graphBuilder, steinerTree.getDefaultSteinerTree(), null, false).getTree();
 				//(DirectedWeightedMultigraph<Node, LabeledLink>)GraphUtil.asDirectedGraph(steinerTree.getDefaultSteinerTree());
 		
 		logger.debug(GraphUtil.labeledGraphToString(tree));
 		
-		long steinerTreeElapsedTimeMillis = System.currentTimeMillis() - start;
 		logger.debug("total number of nodes in steiner tree: " + tree.vertexSet().size());
 		logger.debug("total number of edges in steiner tree: " + tree.edgeSet().size());
-		logger.debug("time to compute steiner tree: " + (steinerTreeElapsedTimeMillis/1000F));
 		
 		return tree;
 		
@@ -260,6 +330,23 @@ public class ModelLearner {
 
 	}
 	
+	private class SteinerTreeTask extends RecursiveTask<SteinerTree> {
+
+		private static final long serialVersionUID = 1L;
+		private final Set<Node> steinerNodes;
+		private final ShortestPathOracle shortestPaths;
+
+		SteinerTreeTask(Set<Node> steinerNodes, ShortestPathOracle shortestPaths) {
+			this.steinerNodes = steinerNodes;
+			this.shortestPaths = shortestPaths;
+		}
+
+		@Override
+		protected SteinerTree compute() {
+			return computeSteinerTree(steinerNodes, shortestPaths);
+		}
+	}
+	
 	private CandidateSteinerSets getCandidateSteinerSets(List<ColumnNode> columnNodes, boolean useCorrectTypes, int numberOfCRFCandidates, Set<Node> addedNodes) {
 
 		if (columnNodes == null || columnNodes.isEmpty())
@@ -20,12 +20,21 @@
  ******************************************************************************/
 package edu.isi.karma.modeling.ontology;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.Map;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,8 +43,11 @@ import com.hp.hpl.jena.ontology.OntClass;
 import com.hp.hpl.jena.ontology.OntProperty;
 import com.hp.hpl.jena.ontology.OntResource;
 import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.RDFNode;
 import com.hp.hpl.jena.rdf.model.ResIterator;
 import com.hp.hpl.jena.rdf.model.Resource;
+import com.hp.hpl.jena.rdf.model.Statement;
+import com.hp.hpl.jena.rdf.model.StmtIterator;
 import com.hp.hpl.jena.util.iterator.ExtendedIterator;
 
 import edu.isi.karma.modeling.Namespaces;
@@ -43,12 +55,35 @@ import edu.isi.karma.modeling.Prefixes;
 import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.rep.alignment.Label;
 
+/**
+ * The classes and properties of the ontologies with their hierarchies,
+ * domains and ranges. URIs are given int ids by a {@link UriIndex} (one for
+ * the classes and the other resources used as domains or ranges, one for the
+ * properties) and every set of classes or properties is a BitSet of ids, so
+ * the transitive closures and the domain/range lookups are answered with bit
+ * operations. Sets of URIs and labels are only created for the results.
+ * 
+ * Once built, the cache doesn't need the ontology model anymore and can be
+ * written with {@link #write(DataOutput)} and read back with
+ * {@link #read(DataInput)} instead of being built again.
+ */
 public class OntologyCache {
-	
+
 	static Logger logger = LoggerFactory.getLogger(OntologyCache.class.getName());
-	
+
+	private static final BitSet EMPTY = new BitSet();
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final int MAGIC = 0x4b4f4e43;
+	// to increment whenever the format written by write() changes
+	private static final int VERSION = 1;
+
 	private OntologyHandler ontHandler = null;
 
+	private boolean emptyModel;
+	private Map<String, String> nsPrefixMap;
+	// labels of the other resources of the model, for getUriLabel
+	private HashMap<String, Label> otherResources;
+
 	private HashMap<String, Label> classes;
 	private HashMap<String, Label> properties;
 	private HashMap<String, Label> dataProperties;
@@ -58,96 +93,101 @@ public class OntologyCache {
 	private HashMap<String, Label> objectPropertiesWithOnlyDomain;
 	private HashMap<String, Label> objectPropertiesWithOnlyRange;
 	private HashMap<String, Label> objectPropertiesWithoutDomainAndRange;
-	
+	private BitSet objectPropertiesWithOnlyDomainIds;
+	private BitSet objectPropertiesWithOnlyRangeIds;
+
 	private OntologyTreeNode classHierarchy;
-//	private OntologyTreeNode objectPropertyHierarchy;
-//	private OntologyTreeNode dataPropertyHierarchy;
-	
-	// hashmap: class -> subclasses
-	private HashMap<String, HashMap<String, Label>> directSubClasses;
-	private HashMap<String, HashMap<String, Label>> indirectSubClasses;
-	// hashmap: class -> superclasses
-	private HashMap<String, HashMap<String, Label>> directSuperClasses;
-	private HashMap<String, HashMap<String, Label>> indirectSuperClasses;
-	// hashmap: class1 + class2 -> boolean (if c1 is subClassOf c2)
-	private HashSet<String> directSubClassCheck;
-	private HashSet<String> indirectSubClassCheck;
-	// List <subclass, superclass> pairs
-	private List<SubclassSuperclassPair> directSubclassSuperclassPairs;
-	private List<SubclassSuperclassPair> indirectSubclassSuperclassPairs;
-
-	// hashmap: class -> subproperties
-	private HashMap<String, HashMap<String, Label>> directSubProperties;
-	private HashMap<String, HashMap<String, Label>> indirectSubProperties;
-	// hashmap: class -> superproperties
-	private HashMap<String, HashMap<String, Label>> directSuperProperties;
-	private HashMap<String, HashMap<String, Label>> indirectSuperProperties;
-	// hashmap: property1 + property2 -> boolean (if p1 is subPropertyOf p2)
-	private HashSet<String> directSubPropertyCheck;
-	private HashSet<String> indirectSubPropertyCheck;
-	
-	// hashmap: property -> property inverse and inverseOf
+
+	private UriIndex classIndex;
+	private UriIndex propertyIndex;
+
+	// class -> subclasses
+	private BitSetTable directSubClasses;
+	private BitSetTable indirectSubClasses;
+	// class -> superclasses
+	private BitSetTable directSuperClasses;
+	private BitSetTable indirectSuperClasses;
+
+	// property -> subproperties
+	private BitSetTable directSubProperties;
+	private BitSetTable indirectSubProperties;
+	// property -> superproperties
+	private BitSetTable directSuperProperties;
+	private BitSetTable indirectSuperProperties;
+
+	// property -> property inverse and inverseOf
 	private HashMap<String, Label> propertyInverse;
 	private HashMap<String, Label> propertyInverseOf;
 
-	// hashmap: property -> direct domains
-	private HashMap<String, HashSet<String>> propertyDirectDomains;
-	private HashMap<String, HashSet<String>> propertyIndirectDomains;
-	// hashmap: property -> direct ranges
-	private HashMap<String, HashSet<String>> propertyDirectRanges;
-	private HashMap<String, HashSet<String>> propertyIndirectRanges;
-
-	// hashmap: class -> properties whose domain(direct) includes this class 
-	private HashMap<String, HashSet<String>> directOutDataProperties; 
-	private HashMap<String, HashSet<String>> indirectOutDataProperties; 
-	private HashMap<String, HashSet<String>> directOutObjectProperties; 
-	private HashMap<String, HashSet<String>> indirectOutObjectProperties; 
-	// hashmap: class -> properties whose range(direct) includes this class 
-	private HashMap<String, HashSet<String>> directInObjectProperties; 
-	private HashMap<String, HashSet<String>> indirectInObjectProperties;
-	
-	// hashmap: domain+range -> object properties
-	private HashMap<String, HashSet<String>> domainRangeToDirectProperties;
-	private HashMap<String, HashSet<String>> domainRangeToIndirectProperties;
-//	private HashMap<String, List<String>> domainRangeToDomainlessProperties;
-//	private HashMap<String, List<String>> domainRangeToRangelessProperties;
-
-	// hashmap: objectproperty -> <domain, range> pairs
-//	private HashMap<String, List<DomainRangePair>> domainRangePairsOfDirectProperties;
-//	private HashMap<String, List<DomainRangePair>> domainRangePairsOfIndirectProperties;
-//	private HashMap<String, List<DomainRangePair>> domainRangePairsOfDomainlessProperties;
-//	private HashMap<String, List<DomainRangePair>> domainRangePairsOfRangelessProperties;
-	
-	// hashmap: class1 + class2 -> boolean (if c1 is connected to c2)
-//	private HashSet<String> connectedByDirectProperties;
-//	private HashSet<String> connectedByIndirectProperties;
-//	private HashSet<String> connectedByDomainlessProperties;
-//	private HashSet<String> connectedByRangelessProperties;
+	// property -> direct domains
+	private BitSetTable propertyDirectDomains;
+	private BitSetTable propertyIndirectDomains;
+	// property -> direct ranges
+	private BitSetTable propertyDirectRanges;
+	private BitSetTable propertyIndirectRanges;
+	// class -> properties that have this class in propertyDirectDomains (propertyIndirectDomains)
+	private BitSetTable directDomainOfProperties;
+	private BitSetTable indirectDomainOfProperties;
+
+	// class -> properties whose domain(direct) includes this class
+	private BitSetTable directOutDataProperties;
+	private BitSetTable indirectOutDataProperties;
+	private BitSetTable directOutObjectProperties;
+	private BitSetTable indirectOutObjectProperties;
+	// class -> properties whose range(direct) includes this class
+	private BitSetTable directInObjectProperties;
+	private BitSetTable indirectInObjectProperties;
+
+	// domain -> object properties and range -> object properties, the object properties
+	// of a domain+range are the intersection of the two.
+	private BitSetTable directDomainToObjectProperties;
+	private BitSetTable directRangeToObjectProperties;
+	private BitSetTable domainToObjectProperties;
+	private BitSetTable rangeToObjectProperties;
+	// domain -> properties that have superproperties and range -> properties that have superproperties,
+	// the superproperties are indirect properties of the domain+range
+	private BitSetTable domainToSubProperties;
+	private BitSetTable rangeToSubProperties;
+
+	// class -> classes it may be connected to by an object property with a domain and a range, and
+	// the classes that properties without a range or a domain connect to any class. They are derived
+	// from the tables above when first asked for and not written.
+	private BitSetTable connectedClasses;
+	private BitSetTable[][] connectingTables;
+	private HashSet<String> classesWithOnlyDomainObjectProperties;
+	private HashSet<String> classesWithOnlyRangeObjectProperties;
 
 	// public methods
-	
+
 	public OntologyCache(OntologyHandler ontHandler) {
 		this.ontHandler = ontHandler;
 
 		allocateDataStructures();
+		this.emptyModel = ontHandler.getOntModel().isEmpty();
+		this.nsPrefixMap.putAll(ontHandler.getOntModel().getNsPrefixMap());
+	}
+
+	private OntologyCache() {
+		allocateDataStructures();
 	}
 
 	public void init() {
 
 		logger.debug("start building the ontology cache ...");
-		
-		
+
+
 		long start = System.currentTimeMillis();
-		
+
 		// create a list of classes and properties of the model
 		this.loadClasses();
 		this.loadProperties();
-		
+		this.loadOtherResources();
+
 		logger.info("number of classes:" + classes.size());
 		logger.info("number of all properties:" + properties.size());
 		logger.info("number of data properties:" + dataProperties.size() );
 		logger.info("number of object properties:" + objectProperties.size() );
-		// A = number of all properties including rdf:Property 
+		// A = number of all properties including rdf:Property
 		// B = number of properties defined as Data Property
 		// C = number of properties defined as Object Property
 		// properties = A
@@ -156,119 +196,117 @@ public class OntologyCache {
 		logger.info("number of properties explicitly defined as owl:DatatypeProperty:" + (properties.size() - objectProperties.size()) );
 		logger.info("number of properties explicitly defined as owl:ObjectProperty:" + (properties.size() - dataProperties.size()) );
 
+		// the direct children and parents of each class and property are read from the model once,
+		// the closures are computed from them
+		Hierarchy classHierarchyOfModel = new Hierarchy(classIndex);
+		Hierarchy propertyHierarchyOfModel = new Hierarchy(propertyIndex);
+
 		// build hashmaps for indirect subclass and subproperty relationships
 		logger.info("build subclass hashmaps ...");
-		this.buildSubClassesMaps();
+		this.buildSubClassesMaps(classHierarchyOfModel);
 		logger.info("build superclass hashmaps ...");
-		this.buildSuperClassesMaps();
+		this.buildSuperClassesMaps(classHierarchyOfModel);
 		logger.info("build subproperty hashmaps ...");
-		this.buildSubPropertiesMaps();
+		this.buildSubPropertiesMaps(propertyHierarchyOfModel);
 		logger.info("build superproperty hashmaps ...");
-		this.buildSuperPropertiesMaps();
+		this.buildSuperPropertiesMaps(propertyHierarchyOfModel);
 
 		// create a hierarchy of classes and properties of the model
 		logger.info("build class hierarchy ...");
-		this.buildClassHierarchy(classHierarchy);
-//		logger.info("build object property hierarchy ...");
-//		this.buildDataPropertyHierarchy(dataPropertyHierarchy);
-//		logger.info("build data property hierarchy ...");
-//		this.buildObjectPropertyHierarchy(objectPropertyHierarchy);
-		
-		
+		this.buildClassHierarchy(classHierarchy, new BitSet());
+
 		// build hashmaps to include inverse(Of) properties
 		logger.info("build inverse property hashmap ...");
 		this.buildInverseProperties();
-		
+
 		// build some hashmaps that will be used in alignment
 		logger.info("build data property hashmaps ...");
-		this.buildDataPropertiesMaps();
+		this.buildDataPropertiesMaps(classHierarchyOfModel);
 		logger.info("build object property hashmaps ...");
-		this.buildObjectPropertiesMaps();
-		// update hashmaps to include the subproperty relations  
+		this.buildObjectPropertiesMaps(classHierarchyOfModel);
+		this.buildDomainOfPropertiesMaps();
+		// update hashmaps to include the subproperty relations
 		logger.info("apply subproperty definitions ...");
 		this.updateMapsWithSubpropertyDefinitions();
-		
+
 		// classify different types of properties
 		logger.info("classify properties ...");
 		this.classifyProperties();
 
-		// build connectivity hashmaps
-//		logger.info("build connectivity hashmaps ...");
-//		this.buildConnectivityMaps();
-		
-		// build hashmaps to speed up adding links to the graph
-//		this.buildObjectPropertyDomainRangeMap();
-		
-		// add some common properties like rdfs:label, rdfs:comment, ...
-//		logger.info("add rdfs label/comment/value ...");
-//		this.addPropertiesOfRDFVocabulary();
-		
 		float elapsedTimeSec = (System.currentTimeMillis() - start)/1000F;
 		logger.info("time to build the ontology cache: " + elapsedTimeSec);
 	}
 
 	private void allocateDataStructures() {
+		this.nsPrefixMap = new LinkedHashMap<String, String>();
+		this.otherResources = new HashMap<String, Label>();
+
 		this.classes = new HashMap<String, Label>();
 		this.properties = new HashMap<String, Label>();
 		this.dataProperties = new HashMap<String, Label>();
 		this.objectProperties = new HashMap<String, Label>();
-		
+
 		this.dataPropertiesWithoutDomain = new HashMap<String, Label>();
 		this.objectPropertiesWithOnlyDomain = new HashMap<String, Label>();
 		this.objectPropertiesWithOnlyRange = new HashMap<String, Label>();
 		this.objectPropertiesWithoutDomainAndRange = new HashMap<String, Label>();
-		
+		this.objectPropertiesWithOnlyDomainIds = new BitSet();
+		this.objectPropertiesWithOnlyRangeIds = new BitSet();
+
 		this.classHierarchy = new OntologyTreeNode(new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL), null, null);
-//		this.dataPropertyHierarchy = new OntologyTreeNode(new Label("Data Properties"), null, null);
-//		this.objectPropertyHierarchy = new OntologyTreeNode(new Label("Object Properties"), null, null);
-
-		this.directSubClasses = new HashMap<String, HashMap<String, Label>>();
-		this.indirectSubClasses = new HashMap<String, HashMap<String, Label>>();
-		this.directSuperClasses = new HashMap<String, HashMap<String, Label>>();
-		this.indirectSuperClasses = new HashMap<String, HashMap<String, Label>>();
-		this.directSubClassCheck = new HashSet<String>();
-		this.indirectSubClassCheck = new HashSet<String>();
-		this.directSubclassSuperclassPairs = new ArrayList<SubclassSuperclassPair>();
-		this.indirectSubclassSuperclassPairs = new ArrayList<SubclassSuperclassPair>();
-		
-		this.directSubProperties = new HashMap<String, HashMap<String, Label>>();
-		this.indirectSubProperties = new HashMap<String, HashMap<String, Label>>();
-		this.directSuperProperties = new HashMap<String, HashMap<String, Label>>();
-		this.indirectSuperProperties = new HashMap<String, HashMap<String, Label>>();
-		this.directSubPropertyCheck = new HashSet<String>();
-		this.indirectSubPropertyCheck = new HashSet<String>();
-		
+
+		this.classIndex = new UriIndex();
+		this.propertyIndex = new UriIndex();
+
+		this.directSubClasses = new BitSetTable();
+		this.indirectSubClasses = new BitSetTable();
+		this.directSuperClasses = new BitSetTable();
+		this.indirectSuperClasses = new BitSetTable();
+
+		this.directSubProperties = new BitSetTable();
+		this.indirectSubProperties = new BitSetTable();
+		this.directSuperProperties = new BitSetTable();
+		this.indirectSuperProperties = new BitSetTable();
+
 		this.propertyInverse = new HashMap<String, Label>();
 		this.propertyInverseOf = new HashMap<String, Label>();
-		
-		this.propertyDirectDomains = new HashMap<String, HashSet<String>>();
-		this.propertyIndirectDomains = new HashMap<String, HashSet<String>>();
-		this.propertyDirectRanges = new HashMap<String, HashSet<String>>();
-		this.propertyIndirectRanges = new HashMap<String, HashSet<String>>();
-		
-		this.directOutDataProperties = new HashMap<String, HashSet<String>>();
-		this.indirectOutDataProperties = new HashMap<String, HashSet<String>>();
-		this.directOutObjectProperties = new HashMap<String, HashSet<String>>();
-		this.indirectOutObjectProperties = new HashMap<String, HashSet<String>>();
-		this.directInObjectProperties = new HashMap<String, HashSet<String>>();
-		this.indirectInObjectProperties = new HashMap<String, HashSet<String>>();
-		
-		this.domainRangeToDirectProperties = new HashMap<String, HashSet<String>>();
-		this.domainRangeToIndirectProperties = new HashMap<String, HashSet<String>>();
-//		this.domainRangeToDomainlessProperties = new HashMap<String, List<String>>();
-//		this.domainRangeToRangelessProperties = new HashMap<String, List<String>>();
-		
-//		this.domainRangePairsOfDirectProperties = new HashMap<String, List<DomainRangePair>>();
-//		this.domainRangePairsOfIndirectProperties = new HashMap<String, List<DomainRangePair>>();
-//		this.domainRangePairsOfDomainlessProperties = new HashMap<String, List<DomainRangePair>>();
-//		this.domainRangePairsOfRangelessProperties = new HashMap<String, List<DomainRangePair>>();
-
-//		this.connectedByDirectProperties = new HashSet<String>();
-//		this.connectedByIndirectProperties = new HashSet<String>();
-//		this.connectedByDomainlessProperties = new HashSet<String>();
-//		this.connectedByRangelessProperties = new HashSet<String>();
-	}
-	
+
+		this.propertyDirectDomains = new BitSetTable();
+		this.propertyIndirectDomains = new BitSetTable();
+		this.propertyDirectRanges = new BitSetTable();
+		this.propertyIndirectRanges = new BitSetTable();
+		this.directDomainOfProperties = new BitSetTable();
+		this.indirectDomainOfProperties = new BitSetTable();
+
+		this.directOutDataProperties = new BitSetTable();
+		this.indirectOutDataProperties = new BitSetTable();
+		this.directOutObjectProperties = new BitSetTable();
+		this.indirectOutObjectProperties = new BitSetTable();
+		this.directInObjectProperties = new BitSetTable();
+		this.indirectInObjectProperties = new BitSetTable();
+
+		this.directDomainToObjectProperties = new BitSetTable();
+		this.directRangeToObjectProperties = new BitSetTable();
+		this.domainToObjectProperties = new BitSetTable();
+		this.rangeToObjectProperties = new BitSetTable();
+		this.domainToSubProperties = new BitSetTable();
+		this.rangeToSubProperties = new BitSetTable();
+	}
+
+	/**
+	 * @return true if the ontologies the cache was built from had no statements
+	 */
+	public boolean isModelEmpty() {
+		return emptyModel;
+	}
+
+	/**
+	 * @return the prefix -> namespace map of the ontologies
+	 */
+	public Map<String, String> getNsPrefixMap() {
+		return nsPrefixMap;
+	}
+
 	public HashMap<String, Label> getClasses() {
 		return classes;
 	}
@@ -280,7 +318,7 @@ public class OntologyCache {
 	public Label getPropertyLabel(String property) {
 		return properties.get(property);
 	}
-	
+
 	public HashMap<String, Label> getDataProperties() {
 		return dataProperties;
 	}
@@ -305,213 +343,587 @@ public class OntologyCache {
 		return objectPropertiesWithoutDomainAndRange;
 	}
 
-//	public OntologyTreeNode getClassHierarchy() {
-//		return classHierarchy;
-//	}
-//
-//	public OntologyTreeNode getObjectPropertyHierarchy() {
-//		return objectPropertyHierarchy;
-//	}
-//
-//	public OntologyTreeNode getDataPropertyHierarchy() {
-//		return dataPropertyHierarchy;
-//	}
+	public HashMap<String, Label> getPropertyInverse() {
+		return propertyInverse;
+	}
 
-	public HashMap<String, HashMap<String, Label>> getDirectSubClasses() {
-		return directSubClasses;
+	public HashMap<String, Label> getPropertyInverseOf() {
+		return propertyInverseOf;
 	}
 
-	public HashMap<String, HashMap<String, Label>> getIndirectSubClasses() {
-		return indirectSubClasses;
+	public Label getUriLabel(String uri) {
+		Label label = this.classes.get(uri);
+		if (label == null) label = this.properties.get(uri);
+		if (label == null) label = this.otherResources.get(uri);
+		return label;
 	}
 
-	public HashMap<String, HashMap<String, Label>> getDirectSuperClasses() {
-		return directSuperClasses;
+	public boolean isSubClass(String subClassUri, String superClassUri, boolean recursive) {
+		int subClass = classIndex.getId(subClassUri);
+		int superClass = classIndex.getId(superClassUri);
+		if (subClass == -1 || superClass == -1)
+			return false;
+		if (contains(directSubClasses.get(superClass), subClass))
+			return true;
+		return recursive && contains(indirectSubClasses.get(superClass), subClass);
 	}
 
-	public HashMap<String, HashMap<String, Label>> getIndirectSuperClasses() {
-		return indirectSuperClasses;
+	public boolean isSubProperty(String subPropertyUri, String superPropertyUri, boolean recursive) {
+		int subProperty = propertyIndex.getId(subPropertyUri);
+		int superProperty = propertyIndex.getId(superPropertyUri);
+		if (subProperty == -1 || superProperty == -1)
+			return false;
+		if (contains(directSubProperties.get(superProperty), subProperty))
+			return true;
+		return recursive && contains(indirectSubProperties.get(superProperty), subProperty);
 	}
 
-	public HashSet<String> getDirectSubClassCheck() {
-		return directSubClassCheck;
+	/**
+	 * @return the subclasses of the class, null if recursive is false and the class is unknown
+	 */
+	public HashMap<String, Label> getSubClasses(String classUri, boolean recursive) {
+		return getRelatedClasses(classUri, directSubClasses, recursive ? indirectSubClasses : null);
 	}
 
-	public HashSet<String> getIndirectSubClassCheck() {
-		return indirectSubClassCheck;
+	/**
+	 * @return the superclasses of the class, null if recursive is false and the class is unknown
+	 */
+	public HashMap<String, Label> getSuperClasses(String classUri, boolean recursive) {
+		return getRelatedClasses(classUri, directSuperClasses, recursive ? indirectSuperClasses : null);
 	}
-	
-	public List<SubclassSuperclassPair> getDirectSubclassSuperclassPairs() {
-		return directSubclassSuperclassPairs;
+
+	/**
+	 * @return the subproperties of the property, null if recursive is false and the property is unknown
+	 */
+	public HashMap<String, Label> getSubProperties(String propertyUri, boolean recursive) {
+		return getRelatedProperties(propertyUri, directSubProperties, recursive ? indirectSubProperties : null);
 	}
 
-	public List<SubclassSuperclassPair> getIndirectSubclassSuperclassPairs() {
-		return indirectSubclassSuperclassPairs;
+	/**
+	 * @return the superproperties of the property, null if recursive is false and the property is unknown
+	 */
+	public HashMap<String, Label> getSuperProperties(String propertyUri, boolean recursive) {
+		return getRelatedProperties(propertyUri, directSuperProperties, recursive ? indirectSuperProperties : null);
 	}
 
-	public HashMap<String, HashMap<String, Label>> getDirectSubProperties() {
-		return directSubProperties;
+	public HashSet<String> getDomainsOfProperty(String propertyUri, boolean recursive) {
+		int property = propertyIndex.getId(propertyUri);
+		return classIndex.getUris(union(propertyDirectDomains.get(property),
+				recursive ? propertyIndirectDomains.get(property) : null));
 	}
 
-	public HashMap<String, HashMap<String, Label>> getIndirectSubProperties() {
-		return indirectSubProperties;
+	public HashSet<String> getRangesOfProperty(String propertyUri, boolean recursive) {
+		int property = propertyIndex.getId(propertyUri);
+		return classIndex.getUris(union(propertyDirectRanges.get(property),
+				recursive ? propertyIndirectRanges.get(property) : null));
 	}
 
-	public HashMap<String, HashMap<String, Label>> getDirectSuperProperties() {
-		return directSuperProperties;
+	public HashSet<String> getDomainsGivenRange(String rangeUri, boolean recursive) {
+		BitSet objectProperties = directInObjectProperties.get(classIndex.getId(rangeUri));
+		BitSet domains = new BitSet();
+		if (objectProperties == null)
+			return new HashSet<String>();
+		for (int op = objectProperties.nextSetBit(0); op >= 0; op = objectProperties.nextSetBit(op + 1)) {
+			or(domains, propertyDirectDomains.get(op));
+			if (recursive) or(domains, propertyIndirectDomains.get(op));
+		}
+		return classIndex.getUris(domains);
 	}
 
-	public HashMap<String, HashMap<String, Label>> getIndirectSuperProperties() {
-		return indirectSuperProperties;
+	/**
+	 * @return the object properties whose range includes the range and whose domain includes the domain
+	 */
+	public HashMap<String, Label> getObjectPropertiesByDomainRange(String domainUri, String rangeUri, boolean recursive) {
+		int domain = classIndex.getId(domainUri);
+		int range = classIndex.getId(rangeUri);
+		BitSet objectProperties = union(directInObjectProperties.get(range),
+				recursive ? indirectInObjectProperties.get(range) : null);
+		objectProperties.and(union(directDomainOfProperties.get(domain),
+				recursive ? indirectDomainOfProperties.get(domain) : null));
+		return getPropertyLabels(objectProperties);
 	}
 
-	public HashSet<String> getDirectSubPropertyCheck() {
-		return directSubPropertyCheck;
+	public HashMap<String, Label> getObjectPropertiesByDomain(String domainUri, boolean recursive) {
+		int domain = classIndex.getId(domainUri);
+		return getPropertyLabels(union(directOutObjectProperties.get(domain),
+				recursive ? indirectOutObjectProperties.get(domain) : null));
 	}
 
-	public HashSet<String> getIndirectSubPropertyCheck() {
-		return indirectSubPropertyCheck;
+	public HashMap<String, Label> getObjectPropertiesByRange(String rangeUri, boolean recursive) {
+		int range = classIndex.getId(rangeUri);
+		return getPropertyLabels(union(directInObjectProperties.get(range),
+				recursive ? indirectInObjectProperties.get(range) : null));
 	}
 
-	public HashMap<String, Label> getPropertyInverse() {
-		return propertyInverse;
+	public HashMap<String, Label> getDataPropertiesByDomain(String domainUri, boolean recursive) {
+		int domain = classIndex.getId(domainUri);
+		return getPropertyLabels(union(directOutDataProperties.get(domain),
+				recursive ? indirectOutDataProperties.get(domain) : null));
 	}
 
-	public HashMap<String, Label> getPropertyInverseOf() {
-		return propertyInverseOf;
+	/**
+	 * @return the object properties whose direct domains include the source and direct ranges include the target,
+	 * or null if there is none
+	 */
+	public HashSet<String> getObjectPropertiesDirect(String sourceUri, String targetUri) {
+		BitSet result = getObjectPropertiesDirect(classIndex.getId(sourceUri), classIndex.getId(targetUri));
+		return result.isEmpty() ? null : propertyIndex.getUris(result);
 	}
 
-	public HashMap<String, HashSet<String>> getPropertyDirectDomains() {
-		return propertyDirectDomains;
+	/**
+	 * @return the object properties that connect the source to the target through the subclasses of their
+	 * domains and ranges or through their subproperties, or null if there is none
+	 */
+	public HashSet<String> getObjectPropertiesIndirect(String sourceUri, String targetUri) {
+		BitSet result = getObjectPropertiesIndirect(classIndex.getId(sourceUri), classIndex.getId(targetUri));
+		return result.isEmpty() ? null : propertyIndex.getUris(result);
 	}
 
-	public HashMap<String, HashSet<String>> getPropertyIndirectDomains() {
-		return propertyIndirectDomains;
+	public HashSet<String> getObjectPropertiesWithOnlyDomain(String domainUri) {
+		int domain = classIndex.getId(domainUri);
+		BitSet result = union(directOutObjectProperties.get(domain), indirectOutObjectProperties.get(domain));
+		result.and(objectPropertiesWithOnlyDomainIds);
+		return propertyIndex.getUris(result);
 	}
 
-	public HashMap<String, HashSet<String>> getPropertyDirectRanges() {
-		return propertyDirectRanges;
+	public HashSet<String> getObjectPropertiesWithOnlyRange(String rangeUri) {
+		int range = classIndex.getId(rangeUri);
+		BitSet result = union(directInObjectProperties.get(range), indirectInObjectProperties.get(range));
+		result.and(objectPropertiesWithOnlyRangeIds);
+		return propertyIndex.getUris(result);
 	}
 
-	public HashMap<String, HashSet<String>> getPropertyIndirectRanges() {
-		return propertyIndirectRanges;
+	public boolean isConnectedByDirectProperty(String sourceUri, String targetUri) {
+		BitSet domainProperties = directDomainToObjectProperties.get(classIndex.getId(sourceUri));
+		BitSet rangeProperties = directRangeToObjectProperties.get(classIndex.getId(targetUri));
+		return domainProperties != null && rangeProperties != null && domainProperties.intersects(rangeProperties);
 	}
 
-	public HashMap<String, HashSet<String>> getDirectOutDataProperties() {
-		return directOutDataProperties;
+	public boolean isConnectedByIndirectProperty(String sourceUri, String targetUri) {
+		return !getObjectPropertiesIndirect(classIndex.getId(sourceUri), classIndex.getId(targetUri)).isEmpty();
 	}
 
-	public HashMap<String, HashSet<String>> getIndirectOutDataProperties() {
-		return indirectOutDataProperties;
+	public boolean isConnectedByDomainlessProperty(String sourceUri, String targetUri) {
+		int target = classIndex.getId(targetUri);
+		return intersects(directInObjectProperties.get(target), objectPropertiesWithOnlyRangeIds) ||
+				intersects(indirectInObjectProperties.get(target), objectPropertiesWithOnlyRangeIds);
 	}
 
-	public HashMap<String, HashSet<String>> getDirectOutObjectProperties() {
-		return directOutObjectProperties;
+	public boolean isConnectedByRangelessProperty(String sourceUri, String targetUri) {
+		int source = classIndex.getId(sourceUri);
+		return intersects(directOutObjectProperties.get(source), objectPropertiesWithOnlyDomainIds) ||
+				intersects(indirectOutObjectProperties.get(source), objectPropertiesWithOnlyDomainIds);
 	}
 
-	public HashMap<String, HashSet<String>> getIndirectOutObjectProperties() {
-		return indirectOutObjectProperties;
+	/**
+	 * @return the classes that an object property with a domain and a range may connect to the class, in
+	 * either direction, directly or through subclasses and subproperties. The set can have classes that
+	 * are not connected, but has all the ones that are.
+	 */
+	public HashSet<String> getClassesConnectedByObjectProperties(String classUri) {
+		int id = classIndex.getId(classUri);
+		if (id == -1)
+			return new HashSet<String>();
+		return classIndex.getUris(getConnectedClasses(id));
 	}
 
-	public HashMap<String, HashSet<String>> getDirectInObjectProperties() {
-		return directInObjectProperties;
+	/**
+	 * @return the classes with an outgoing object property that has no range, the classes
+	 * isConnectedByRangelessProperty connects to any class, not to be modified
+	 */
+	public synchronized HashSet<String> getClassesWithObjectPropertiesWithOnlyDomain() {
+		if (classesWithOnlyDomainObjectProperties == null)
+			classesWithOnlyDomainObjectProperties = classIndex.getUris(getClassesWithProperties(
+					objectPropertiesWithOnlyDomainIds, directOutObjectProperties, indirectOutObjectProperties));
+		return classesWithOnlyDomainObjectProperties;
 	}
 
-	public HashMap<String, HashSet<String>> getIndirectInObjectProperties() {
-		return indirectInObjectProperties;
+	/**
+	 * @return the classes with an incoming object property that has no domain, the classes
+	 * isConnectedByDomainlessProperty connects to any class, not to be modified
+	 */
+	public synchronized HashSet<String> getClassesWithObjectPropertiesWithOnlyRange() {
+		if (classesWithOnlyRangeObjectProperties == null)
+			classesWithOnlyRangeObjectProperties = classIndex.getUris(getClassesWithProperties(
+					objectPropertiesWithOnlyRangeIds, directInObjectProperties, indirectInObjectProperties));
+		return classesWithOnlyRangeObjectProperties;
 	}
 
-	public HashMap<String, HashSet<String>> getDomainRangeToDirectProperties() {
-		return domainRangeToDirectProperties;
+	/**
+	 * Writes everything the cache computed, so that {@link #read(DataInput)}
+	 * gives back a cache that answers the same without the ontology model.
+	 */
+	public void write(DataOutput out) throws IOException {
+		IdentityHashMap<Label, Integer> labelIds = new IdentityHashMap<Label, Integer>();
+
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeBoolean(emptyModel);
+		out.writeInt(nsPrefixMap.size());
+		for (Map.Entry<String, String> entry : nsPrefixMap.entrySet()) {
+			writeString(out, entry.getKey());
+			writeString(out, entry.getValue());
+		}
+
+		writeUriIndex(out, classIndex, labelIds);
+		writeUriIndex(out, propertyIndex, labelIds);
+		for (HashMap<String, Label> labels : getLabelMaps()) {
+			out.writeInt(labels.size());
+			for (Map.Entry<String, Label> entry : labels.entrySet()) {
+				writeString(out, entry.getKey());
+				writeLabel(out, entry.getValue(), labelIds);
+			}
+		}
+		writeBitSet(out, objectPropertiesWithOnlyDomainIds);
+		writeBitSet(out, objectPropertiesWithOnlyRangeIds);
+		for (BitSetTable table : getBitSetTables())
+			table.write(out);
+		writeClassHierarchy(out, classHierarchy, labelIds);
 	}
 
-	public HashMap<String, HashSet<String>> getDomainRangeToIndirectProperties() {
-		return domainRangeToIndirectProperties;
+	/**
+	 * Reads a cache written by {@link #write(DataOutput)}.
+	 * 
+	 * @throws IOException if the data was written by another version of the cache
+	 */
+	public static OntologyCache read(DataInput in) throws IOException {
+		List<Label> labels = new ArrayList<Label>();
+
+		if (in.readInt() != MAGIC)
+			throw new IOException("Not an ontology cache");
+		int version = in.readInt();
+		if (version != VERSION)
+			throw new IOException("Unsupported version of the ontology cache: " + version);
+
+		OntologyCache cache = new OntologyCache();
+		cache.emptyModel = in.readBoolean();
+		int numPrefixes = in.readInt();
+		for (int i = 0; i < numPrefixes; i++)
+			cache.nsPrefixMap.put(readString(in), readString(in));
+
+		readUriIndex(in, cache.classIndex, labels);
+		readUriIndex(in, cache.propertyIndex, labels);
+		for (HashMap<String, Label> labelMap : cache.getLabelMaps()) {
+			int size = in.readInt();
+			for (int i = 0; i < size; i++)
+				labelMap.put(readString(in), readLabel(in, labels));
+		}
+		cache.objectPropertiesWithOnlyDomainIds = readBitSet(in);
+		cache.objectPropertiesWithOnlyRangeIds = readBitSet(in);
+		for (BitSetTable table : cache.getBitSetTables())
+			table.read(in);
+		cache.classHierarchy = readClassHierarchy(in, null, labels);
+		return cache;
 	}
 
-//	public HashMap<String, List<String>> getDomainRangeToDomainlessProperties() {
-//		return domainRangeToDomainlessProperties;
-//	}
-//
-//	public HashMap<String, List<String>> getDomainRangeToRangelessProperties() {
-//		return domainRangeToRangelessProperties;
-//	}
-//
-//	public HashMap<String, List<DomainRangePair>> getDomainRangePairsOfDirectProperties() {
-//		return domainRangePairsOfDirectProperties;
-//	}
-//
-//	public HashMap<String, List<DomainRangePair>> getDomainRangePairsOfIndirectProperties() {
-//		return domainRangePairsOfIndirectProperties;
-//	}
-//
-//	public HashMap<String, List<DomainRangePair>> getDomainRangePairsOfDomainlessProperties() {
-//		return domainRangePairsOfDomainlessProperties;
-//	}
-//
-//	public HashMap<String, List<DomainRangePair>> getDomainRangePairsOfRangelessProperties() {
-//		return domainRangePairsOfRangelessProperties;
-//	}
+	/**
+	 * @return the maps of labels, in the order they are written
+	 */
+	private List<HashMap<String, Label>> getLabelMaps() {
+		return Arrays.asList(otherResources, classes, properties, dataProperties, objectProperties,
+				dataPropertiesWithoutDomain, objectPropertiesWithOnlyDomain, objectPropertiesWithOnlyRange,
+				objectPropertiesWithoutDomainAndRange, propertyInverse, propertyInverseOf);
+	}
 
-//	public HashSet<String> getConnectedByDirectProperties() {
-//		return connectedByDirectProperties;
-//	}
-//
-//	public HashSet<String> getConnectedByIndirectProperties() {
-//		return connectedByIndirectProperties;
-//	}
-//
-//	public HashSet<String> getConnectedByDomainlessProperties() {
-//		return connectedByDomainlessProperties;
-//	}
-//
-//	public HashSet<String> getConnectedByRangelessProperties() {
-//		return connectedByRangelessProperties;
-//	}
+	/**
+	 * @return the tables, in the order they are written
+	 */
+	private List<BitSetTable> getBitSetTables() {
+		return Arrays.asList(directSubClasses, indirectSubClasses, directSuperClasses, indirectSuperClasses,
+				directSubProperties, indirectSubProperties, directSuperProperties, indirectSuperProperties,
+				propertyDirectDomains, propertyIndirectDomains, propertyDirectRanges, propertyIndirectRanges,
+				directDomainOfProperties, indirectDomainOfProperties,
+				directOutDataProperties, indirectOutDataProperties, directOutObjectProperties, indirectOutObjectProperties,
+				directInObjectProperties, indirectInObjectProperties,
+				directDomainToObjectProperties, directRangeToObjectProperties, domainToObjectProperties, rangeToObjectProperties,
+				domainToSubProperties, rangeToSubProperties);
+	}
 
-	public Label getUriLabel(String uri) {
-		Label label = this.classes.get(uri);
-		if (label == null) label = this.properties.get(uri);
-		if (label == null) label = this.ontHandler.getUriLabel(uri);
+	private static void writeUriIndex(DataOutput out, UriIndex index, IdentityHashMap<Label, Integer> labelIds) throws IOException {
+		out.writeInt(index.size());
+		for (int i = 0; i < index.size(); i++) {
+			writeString(out, index.getUri(i));
+			writeLabel(out, index.getLabel(i), labelIds);
+		}
+	}
+
+	private static void readUriIndex(DataInput in, UriIndex index, List<Label> labels) throws IOException {
+		int size = in.readInt();
+		for (int i = 0; i < size; i++)
+			index.add(readString(in), readLabel(in, labels));
+	}
+
+	private static void writeClassHierarchy(DataOutput out, OntologyTreeNode node, IdentityHashMap<Label, Integer> labelIds) throws IOException {
+		writeLabel(out, node.getLabel(), labelIds);
+		List<OntologyTreeNode> children = node.getChildren();
+		out.writeInt(children == null ? -1 : children.size());
+		if (children != null)
+			for (OntologyTreeNode child : children)
+				writeClassHierarchy(out, child, labelIds);
+	}
+
+	private static OntologyTreeNode readClassHierarchy(DataInput in, OntologyTreeNode parent, List<Label> labels) throws IOException {
+		OntologyTreeNode node = new OntologyTreeNode(readLabel(in, labels), parent, null);
+		int numChildren = in.readInt();
+		if (numChildren >= 0) {
+			List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>(numChildren);
+			for (int i = 0; i < numChildren; i++)
+				children.add(readClassHierarchy(in, node, labels));
+			node.setChildren(children);
+		}
+		return node;
+	}
+
+	/**
+	 * Writes each label once, a label already written is written as its number, so the maps that share
+	 * labels still share them when they are read back.
+	 */
+	private static void writeLabel(DataOutput out, Label label, IdentityHashMap<Label, Integer> labelIds) throws IOException {
+		if (label == null) {
+			out.writeInt(-1);
+			return;
+		}
+		Integer id = labelIds.get(label);
+		if (id != null) {
+			out.writeInt(id);
+			return;
+		}
+		out.writeInt(labelIds.size());
+		labelIds.put(label, labelIds.size());
+		writeString(out, label.getUri());
+		writeString(out, label.getNs());
+		writeString(out, label.getPrefix());
+		writeString(out, label.getRdfsLabel());
+		writeString(out, label.getRdfsComment());
+	}
+
+	private static Label readLabel(DataInput in, List<Label> labels) throws IOException {
+		int id = in.readInt();
+		if (id == -1)
+			return null;
+		if (id < labels.size())
+			return labels.get(id);
+		if (id != labels.size())
+			throw new IOException("Invalid label number: " + id);
+		Label label = new Label(readString(in), readString(in), readString(in), readString(in), readString(in));
+		labels.add(label);
 		return label;
 	}
-	
-	// private methods 
-	
+
+	private static void writeString(DataOutput out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(UTF8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInput in) throws IOException {
+		int length = in.readInt();
+		if (length == -1)
+			return null;
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, UTF8);
+	}
+
+	private static void writeBitSet(DataOutput out, BitSet bits) throws IOException {
+		long[] words = bits.toLongArray();
+		out.writeInt(words.length);
+		for (long word : words)
+			out.writeLong(word);
+	}
+
+	private static BitSet readBitSet(DataInput in) throws IOException {
+		long[] words = new long[in.readInt()];
+		for (int i = 0; i < words.length; i++)
+			words[i] = in.readLong();
+		return BitSet.valueOf(words);
+	}
+
+	// private methods
+
+	private BitSet getObjectPropertiesDirect(int domain, int range) {
+		BitSet result = union(directDomainToObjectProperties.get(domain), null);
+		BitSet rangeProperties = directRangeToObjectProperties.get(range);
+		if (rangeProperties == null)
+			return EMPTY;
+		result.and(rangeProperties);
+		return result;
+	}
+
+	private BitSet getObjectPropertiesIndirect(int domain, int range) {
+
+		BitSet result = new BitSet();
+
+		// properties whose domains and ranges include the domain and range, not both directly
+		BitSet rangeProperties = rangeToObjectProperties.get(range);
+		if (rangeProperties != null) {
+			or(result, domainToObjectProperties.get(domain));
+			result.and(rangeProperties);
+			result.andNot(getObjectPropertiesDirect(domain, range));
+		}
+
+		// superproperties of the properties whose domains and ranges include the domain and range
+		BitSet subProperties = union(domainToSubProperties.get(domain), null);
+		rangeProperties = rangeToSubProperties.get(range);
+		if (rangeProperties == null)
+			return result;
+		subProperties.and(rangeProperties);
+		for (int p = subProperties.nextSetBit(0); p >= 0; p = subProperties.nextSetBit(p + 1)) {
+			BitSet superProperties = union(directSuperProperties.get(p), indirectSuperProperties.get(p));
+			superProperties.clear(p);
+			result.or(superProperties);
+		}
+		return result;
+	}
+
+	/**
+	 * The classes at the other end of the properties of the class that isConnectedByDirectProperty and
+	 * isConnectedByIndirectProperty look at, found through the tables inverted once.
+	 */
+	private synchronized BitSet getConnectedClasses(int id) {
+		if (connectedClasses == null) {
+			connectedClasses = new BitSetTable();
+			// class -> properties and property -> classes on the other end of the property
+			connectingTables = new BitSetTable[][] {
+					{directDomainToObjectProperties, invert(directRangeToObjectProperties)},
+					{directRangeToObjectProperties, invert(directDomainToObjectProperties)},
+					{domainToObjectProperties, invert(rangeToObjectProperties)},
+					{rangeToObjectProperties, invert(domainToObjectProperties)},
+					{domainToSubProperties, invert(rangeToSubProperties)},
+					{rangeToSubProperties, invert(domainToSubProperties)}};
+		}
+		BitSet classes = connectedClasses.get(id);
+		if (classes != null)
+			return classes;
+		classes = new BitSet();
+		for (BitSetTable[] tables : connectingTables) {
+			BitSet properties = tables[0].get(id);
+			if (properties == null)
+				continue;
+			for (int p = properties.nextSetBit(0); p >= 0; p = properties.nextSetBit(p + 1))
+				or(classes, tables[1].get(p));
+		}
+		connectedClasses.put(id, classes);
+		return classes;
+	}
+
+	private BitSet getClassesWithProperties(BitSet properties, BitSetTable direct, BitSetTable indirect) {
+		BitSet classes = new BitSet();
+		for (int c = 0; c < classIndex.size(); c++)
+			if (intersects(direct.get(c), properties) || intersects(indirect.get(c), properties))
+				classes.set(c);
+		return classes;
+	}
+
+	private static BitSetTable invert(BitSetTable table) {
+		BitSetTable inverse = new BitSetTable();
+		for (int id = 0; id < table.size(); id++) {
+			BitSet bits = table.get(id);
+			if (bits != null)
+				inverse.setAll(bits, id);
+		}
+		return inverse;
+	}
+
+	private HashMap<String, Label> getRelatedClasses(String classUri, BitSetTable direct, BitSetTable indirect) {
+		if (!this.classes.containsKey(classUri))
+			return indirect == null ? null : new HashMap<String, Label>();
+		int id = classIndex.getId(classUri);
+		return getLabels(classIndex, union(direct.get(id), indirect == null ? null : indirect.get(id)), this.classes);
+	}
+
+	private HashMap<String, Label> getRelatedProperties(String propertyUri, BitSetTable direct, BitSetTable indirect) {
+		if (!this.properties.containsKey(propertyUri))
+			return indirect == null ? null : new HashMap<String, Label>();
+		int id = propertyIndex.getId(propertyUri);
+		return getLabels(propertyIndex, union(direct.get(id), indirect == null ? null : indirect.get(id)), this.properties);
+	}
+
+	private HashMap<String, Label> getPropertyLabels(BitSet ids) {
+		HashMap<String, Label> results = new HashMap<String, Label>();
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+			String uri = propertyIndex.getUri(i);
+			results.put(uri, getPropertyLabel(uri));
+		}
+		return results;
+	}
+
+	/**
+	 * Uses the labels read with the resources, and for the uris added without one, the labels in the given map
+	 */
+	private static HashMap<String, Label> getLabels(UriIndex index, BitSet ids, HashMap<String, Label> labels) {
+		HashMap<String, Label> results = new HashMap<String, Label>();
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+			String uri = index.getUri(i);
+			Label label = index.getLabel(i);
+			results.put(uri, label != null ? label : labels.get(uri));
+		}
+		return results;
+	}
+
+	/**
+	 * @return a new BitSet with the bits of both sets, any of which can be null
+	 */
+	private static BitSet union(BitSet a, BitSet b) {
+		BitSet result = a == null ? new BitSet() : (BitSet) a.clone();
+		or(result, b);
+		return result;
+	}
+
+	private static void or(BitSet target, BitSet bits) {
+		if (bits != null)
+			target.or(bits);
+	}
+
+	private static boolean contains(BitSet bits, int id) {
+		return bits != null && bits.get(id);
+	}
+
+	private static boolean intersects(BitSet a, BitSet b) {
+		return a != null && b != null && a.intersects(b);
+	}
+
 	private void loadClasses() {
-		
+
 		this.classes.put(Uris.THING_URI, new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL));
+		this.classIndex.add(Uris.THING_URI, this.classes.get(Uris.THING_URI));
 
 		ExtendedIterator<OntClass> itrC = ontHandler.getOntModel().listNamedClasses();
-		
+
 		while (itrC.hasNext()) {
-			
+
 			OntClass c = itrC.next();
-			
+
 			if (!c.isURIResource())
 				continue;
-			
+
 			if (!classes.containsKey(c.getURI()))
 				classes.put(c.getURI(), ontHandler.getResourceLabel(c));
 
 		}
-		
+
 		Property rdfType = this.ontHandler.getOntModel().createProperty(Uris.RDF_TYPE_URI);
 		Resource classNode = this.ontHandler.getOntModel().createResource(Uris.RDFS_CLASS_URI);
 		ResIterator itr = ontHandler.getOntModel().listSubjectsWithProperty(rdfType, classNode);
-		
+
 		while (itr.hasNext()) {
-			
+
 			Resource r = itr.next();
-			
+
 			if (!r.isURIResource())
 				continue;
-			
+
 			if (!classes.containsKey(r.getURI()))
 				classes.put(r.getURI(), ontHandler.getResourceLabel(r));
 
 		}
 
+		for (String c : this.classes.keySet())
+			this.classIndex.add(c);
 	}
 
 	private void loadProperties() {
@@ -533,22 +945,22 @@ public class OntologyCache {
 		this.properties.put(Uris.DATAPROPERTY_OF_COLUMN_LINK_URI, new Label(Uris.DATAPROPERTY_OF_COLUMN_LINK_URI, Namespaces.KARMA_DEV, Prefixes.KARMA_DEV));
 		this.properties.put(Uris.OBJECTPROPERTY_SPECIALIZATION_LINK_URI, new Label(Uris.OBJECTPROPERTY_SPECIALIZATION_LINK_URI, Namespaces.KARMA_DEV, Prefixes.KARMA_DEV));
 		this.properties.put(Uris.DEFAULT_LINK_URI, new Label(Uris.DEFAULT_LINK_URI, Namespaces.KARMA_DEV, Prefixes.KARMA_DEV));
-		
+
 		ExtendedIterator<OntProperty> itrP = ontHandler.getOntModel().listAllOntProperties();
-		
+
 		while (itrP.hasNext()) {
-			
+
 			OntProperty p = itrP.next();
-			
+
 			if (!p.isURIResource())
 				continue;
-			
+
 //			if (p.isAnnotationProperty())
 //				continue;
 
 			if (!properties.containsKey(p.getURI()))
 				properties.put(p.getURI(), ontHandler.getResourceLabel(p));
-			
+
 			if (p.isDatatypeProperty() || !p.isObjectProperty())
 			{
 				if (!dataProperties.containsKey(p.getURI()))
@@ -557,7 +969,7 @@ public class OntologyCache {
 
 			if (p.isObjectProperty() || !p.isDatatypeProperty())
 			{
-				if (p.getRange() != null && p.getRange().hasURI(Namespaces.RDFS + "Literal")) { 
+				if (p.getRange() != null && p.getRange().hasURI(Namespaces.RDFS + "Literal")) {
 					if (!dataProperties.containsKey(p.getURI())) {
 						dataProperties.put(p.getURI(), ontHandler.getResourceLabel(p));
 					}
@@ -565,766 +977,351 @@ public class OntologyCache {
 					objectProperties.put(p.getURI(), ontHandler.getResourceLabel(p));
 			}
 		}
+
+		for (String p : this.properties.keySet())
+			this.propertyIndex.add(p);
+	}
+
+	/**
+	 * Keeps the labels of the resources of the model that are neither classes nor properties, so that
+	 * getUriLabel can answer without the model
+	 */
+	private void loadOtherResources() {
+
+		StmtIterator itr = ontHandler.getOntModel().listStatements();
+		HashSet<String> uris = new HashSet<String>();
+		while (itr.hasNext()) {
+			Statement st = itr.next();
+			addUri(uris, st.getSubject());
+			addUri(uris, st.getPredicate());
+			addUri(uris, st.getObject());
+		}
+		for (String uri : uris) {
+			if (!this.classes.containsKey(uri) && !this.properties.containsKey(uri))
+				this.otherResources.put(uri, this.ontHandler.getUriLabel(uri));
+		}
 	}
-	
+
+	private static void addUri(HashSet<String> uris, RDFNode node) {
+		if (node.isURIResource())
+			uris.add(node.asResource().getURI());
+	}
+
 	private boolean isTopLevelClass(String c) {
-		
+
 		// returns TRUE if the class s is an immediate node after THING in the class hierarchy
-		
-//		if (c.equalsIgnoreCase(Uris.THING_URI))
-//			return true;
-		
-		Set<String> superClasses = this.directSuperClasses.get(c).keySet();
+
+		BitSet superClasses = this.directSuperClasses.get(classIndex.getId(c));
 
 		if (superClasses == null || superClasses.isEmpty())
 			return true;
-		
-		if (superClasses.size() == 1 &&
-				superClasses.iterator().next().equalsIgnoreCase(Uris.THING_URI))
+
+		if (superClasses.cardinality() == 1 &&
+				classIndex.getUri(superClasses.nextSetBit(0)).equalsIgnoreCase(Uris.THING_URI))
 			return true;
-		
-		for (String s : superClasses)
-			if (this.classes.containsKey(s))
+
+		for (int s = superClasses.nextSetBit(0); s >= 0; s = superClasses.nextSetBit(s + 1))
+			if (this.classes.containsKey(classIndex.getUri(s)))
 				return false;
-		
+
 		return true;
 	}
-	
-	private void buildClassHierarchy(OntologyTreeNode node) {
-		
+
+	/**
+	 * @param ancestors the classes on the path from the root, so that a cycle of subclasses ends the branch
+	 */
+	private void buildClassHierarchy(OntologyTreeNode node, BitSet ancestors) {
+
 		List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>();
 		if (node.getParent() == null) {
 			for (String s : this.classes.keySet()) {
-//				if (s.equalsIgnoreCase(Uris.THING_URI)) continue;
 				if (isTopLevelClass(s)) {
 					Label label = this.classes.get(s);
 					OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-					buildClassHierarchy(childNode);
+					buildClassHierarchy(childNode, ancestors);
 					children.add(childNode);
 				}
 			}
 		} else {
-			HashMap<String, Label> subClasses = 
-					this.directSubClasses.get(node.getLabel().getUri());
+			int id = classIndex.getId(node.getLabel().getUri());
+			ancestors.set(id);
+			HashMap<String, Label> subClasses = getLabels(classIndex, union(directSubClasses.get(id), null), this.classes);
 
 			for (String s : subClasses.keySet()) {
+				if (ancestors.get(classIndex.getId(s)))
+					continue;
 				Label label = subClasses.get(s);
 				OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-				
-				buildClassHierarchy(childNode);
+
+				buildClassHierarchy(childNode, ancestors);
 				children.add(childNode);
 			}
+			ancestors.clear(id);
 		}
 		node.setChildren(children);
 	}
-	
-//	private boolean isTopLevelDataProperty(String property) {
-//		
-//		Set<String> superProperties = this.directSuperProperties.get(property).keySet();
-//
-//		if (superProperties == null || superProperties.isEmpty())
-//			return true;
-//		
-//		for (String s : superProperties)
-//			if (this.dataProperties.containsKey(s))
-//				return false;
-//		
-//		return true;
-//	}
-	
-//	private void buildDataPropertyHierarchy(OntologyTreeNode node) {
-//		List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>();
-//		if (node.getParent() == null) {
-//			for (String s : this.dataProperties.keySet()) {
-//				if (isTopLevelDataProperty(s)) {
-//					Label label = this.dataProperties.get(s);
-//					OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-//					buildDataPropertyHierarchy(childNode);
-//					children.add(childNode);
-//				}
-//			}
-//		} else {
-//			HashMap<String, Label> subProperties = 
-//					this.directSubProperties.get(node.getLabel().getUri());
-//
-//			if (subProperties != null)
-//				for (String s : subProperties.keySet()) {
-//					Label label = subProperties.get(s);
-//					OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-//					
-//					buildDataPropertyHierarchy(childNode);
-//					children.add(childNode);
-//				}
-//		}
-//		node.setChildren(children);	
-//	}
-	
-//	private boolean isTopLevelObjectProperty(String property) {
-//		
-//		Set<String> superProperties = this.directSuperProperties.get(property).keySet();
-//
-//		if (superProperties == null || superProperties.isEmpty())
-//			return true;
-//		
-//		for (String s : superProperties)
-//			if (this.objectProperties.containsKey(s))
-//				return false;
-//		
-//		return true;
-//	}
-//	
-//	private void buildObjectPropertyHierarchy(OntologyTreeNode node) {
-//		
-//		List<OntologyTreeNode> children = new ArrayList<OntologyTreeNode>();
-//		if (node.getParent() == null) {
-//			for (String s : this.objectProperties.keySet()) {
-//				if (isTopLevelObjectProperty(s)) {
-//					Label label = this.objectProperties.get(s);
-//					OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-//					buildObjectPropertyHierarchy(childNode);
-//					children.add(childNode);
-//				}
-//			}
-//		} else {
-//			HashMap<String, Label> subProperties = 
-//					this.directSubProperties.get(node.getLabel().getUri());
-//
-//			if (subProperties != null)
-//				for (String s : subProperties.keySet()) {
-//					Label label = subProperties.get(s);
-//					OntologyTreeNode childNode = new OntologyTreeNode(label, node, null);
-//					
-//					buildObjectPropertyHierarchy(childNode);
-//					children.add(childNode);
-//				}
-//		}
-//		node.setChildren(children);	
-//	}
 
-	private void buildSubClassesMaps() {
-		
-		HashMap<String, Label> allClassesExceptThing = new HashMap<String, Label>();
-		for (Entry<String, Label> entry : this.classes.entrySet())
-			if (!entry.getKey().equalsIgnoreCase(Uris.THING_URI))
-				allClassesExceptThing.put(entry.getKey(), entry.getValue());
-
-		HashMap<String, Label> directSubClassesLocal;
-		HashMap<String, Label> indirectSubClassesLocal;
-		HashMap<String, Label> allSubClassesLocal;
-		
+	private void buildSubClassesMaps(Hierarchy hierarchy) {
+
+		BitSet allClassesExceptThing = new BitSet();
+		for (String c : this.classes.keySet())
+			if (!c.equalsIgnoreCase(Uris.THING_URI))
+				allClassesExceptThing.set(classIndex.getId(c));
+
 		for (String c : this.classes.keySet()) {
-			
-			directSubClassesLocal = this.ontHandler.getSubClasses(c, false);
-			allSubClassesLocal = this.ontHandler.getSubClasses(c, true);
-			indirectSubClassesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSubClassesLocal.entrySet())
-				if (!directSubClassesLocal.containsKey(entry.getKey()))
-					indirectSubClassesLocal.put(entry.getKey(), entry.getValue());
-			
+
+			int id = classIndex.getId(c);
+			OntClass ontClass = this.ontHandler.getOntModel().getOntClass(c);
+			if (ontClass == null)
+				continue;
+			hierarchy.add(ontClass);
+
+			BitSet direct = hierarchy.getChildren(id);
+			BitSet indirect;
+
 			// Thing node
-			if (c.equalsIgnoreCase(Uris.THING_URI)) {
-				List<OntologyTreeNode> thingDirectChildren = this.classHierarchy.getChildren();
-				if (thingDirectChildren != null) 
-					for (OntologyTreeNode node : thingDirectChildren) 
-						if (node.getLabel() != null && node.getLabel().getUri() != null)
-							directSubClassesLocal.put(node.getLabel().getUri(), node.getLabel());
-				
-				indirectSubClassesLocal = allClassesExceptThing;
+			if (c.equalsIgnoreCase(Uris.THING_URI))
+				indirect = allClassesExceptThing;
+			else {
+				indirect = (BitSet) hierarchy.getDescendants(id).clone();
+				indirect.andNot(direct);
 			}
-			
-			this.directSubClasses.put(c, directSubClassesLocal);
-			this.indirectSubClasses.put(c, indirectSubClassesLocal);
-
-			for (String s : directSubClassesLocal.keySet())
-				this.directSubClassCheck.add(s + c);
-			
-			for (String s : indirectSubClassesLocal.keySet())
-				this.indirectSubClassCheck.add(s + c);
-		}
-		
-		for (String superclass : this.directSubClasses.keySet()) {
-			Set<String> subClasses = this.directSubClasses.get(superclass).keySet();
-			if (subClasses != null)
-			for (String subclass : subClasses)
-				this.directSubclassSuperclassPairs.add(new SubclassSuperclassPair(subclass, superclass));
-		}
-		
-		for (String superclass : this.indirectSubClasses.keySet()) {
-			Set<String> subClasses = this.indirectSubClasses.get(superclass).keySet();
-			if (subClasses != null)
-			for (String subclass : subClasses)
-				this.indirectSubclassSuperclassPairs.add(new SubclassSuperclassPair(subclass, superclass));
+
+			this.directSubClasses.put(id, direct);
+			this.indirectSubClasses.put(id, indirect);
 		}
 	}
-	
-	private void buildSuperClassesMaps() {
-		
-		HashMap<String, Label> directSuperClassesLocal;
-		HashMap<String, Label> indirectSuperClassesLocal;
-		HashMap<String, Label> allSuperClassesLocal;
-		
+
+	private void buildSuperClassesMaps(Hierarchy hierarchy) {
+
+		int thing = classIndex.getId(Uris.THING_URI);
+
 		for (String c : this.classes.keySet()) {
-			
-			directSuperClassesLocal = this.ontHandler.getSuperClasses(c, false);
-			
-			this.directSuperClasses.put(c, directSuperClassesLocal);
-			
-			allSuperClassesLocal = this.ontHandler.getSuperClasses(c, true);
-			indirectSuperClassesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSuperClassesLocal.entrySet())
-				if (!directSuperClassesLocal.containsKey(entry.getKey()))
-					indirectSuperClassesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.indirectSuperClasses.put(c, indirectSuperClassesLocal);
-		}		
-		
-		for (String c : this.indirectSuperClasses.keySet()) {
-			
-			HashMap<String, Label> superClasses = this.indirectSuperClasses.get(c);
-			if (superClasses == null) {
-				superClasses = new HashMap<String, Label>();
-				this.indirectSuperClasses.put(c, superClasses); 
+
+			int id = classIndex.getId(c);
+			BitSet indirect = new BitSet();
+			OntClass ontClass = this.ontHandler.getOntModel().getOntClass(c);
+			if (ontClass != null) {
+				hierarchy.add(ontClass);
+				BitSet direct = hierarchy.getParents(id);
+				this.directSuperClasses.put(id, direct);
+				indirect.or(hierarchy.getAncestors(id));
+				indirect.andNot(direct);
 			}
-			if (!c.equalsIgnoreCase(Uris.THING_URI) && !superClasses.containsKey(Uris.THING_URI))
-				superClasses.put(Uris.THING_URI, new Label(Uris.THING_URI, Namespaces.OWL, Prefixes.OWL));
+
+			if (!c.equalsIgnoreCase(Uris.THING_URI))
+				indirect.set(thing);
+			this.indirectSuperClasses.put(id, indirect);
 		}
-		
-	}
-	
-	private void buildSubPropertiesMaps() {
-
-		HashMap<String, Label> directSubPropertiesLocal; 
-		HashMap<String, Label> indirectSubPropertiesLocal;
-		HashMap<String, Label> allSubPropertiesLocal;
-		
-		for (String p : this.properties.keySet()) { 
-
-			directSubPropertiesLocal = this.ontHandler.getSubProperties(p, false);
-			
-			allSubPropertiesLocal = this.ontHandler.getSubProperties(p, true);
-			indirectSubPropertiesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSubPropertiesLocal.entrySet())
-				if (!directSubPropertiesLocal.containsKey(entry.getKey()))
-					indirectSubPropertiesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.directSubProperties.put(p, directSubPropertiesLocal);
-			this.indirectSubProperties.put(p, indirectSubPropertiesLocal);
-
-			for (String s : directSubPropertiesLocal.keySet())
-				this.directSubPropertyCheck.add(s + p);
-
-			for (String s : indirectSubPropertiesLocal.keySet())
-				this.indirectSubPropertyCheck.add(s + p);
+	}
+
+	private void buildSubPropertiesMaps(Hierarchy hierarchy) {
+
+		for (String p : this.properties.keySet()) {
+
+			int id = propertyIndex.getId(p);
+			OntProperty ontProperty = this.ontHandler.getOntModel().getOntProperty(p);
+			if (ontProperty == null)
+				continue;
+			hierarchy.add(ontProperty);
+
+			BitSet direct = hierarchy.getChildren(id);
+			BitSet indirect = (BitSet) hierarchy.getDescendants(id).clone();
+			indirect.andNot(direct);
+
+			this.directSubProperties.put(id, direct);
+			this.indirectSubProperties.put(id, indirect);
+		}
+	}
+
+	private void buildSuperPropertiesMaps(Hierarchy hierarchy) {
+
+		for (String p : this.properties.keySet()) {
+
+			int id = propertyIndex.getId(p);
+			OntProperty ontProperty = this.ontHandler.getOntModel().getOntProperty(p);
+			if (ontProperty == null)
+				continue;
+			hierarchy.add(ontProperty);
+
+			BitSet direct = hierarchy.getParents(id);
+			BitSet indirect = (BitSet) hierarchy.getAncestors(id).clone();
+			indirect.andNot(direct);
+
+			this.directSuperProperties.put(id, direct);
+			this.indirectSuperProperties.put(id, indirect);
 		}
 	}
 
-	private void buildSuperPropertiesMaps() {
-
-		HashMap<String, Label> directSuperPropertiesLocal;
-		HashMap<String, Label> indirectSuperPropertiesLocal;
-		HashMap<String, Label> allSuperPropertiesLocal;
-		
-		for (String p : this.properties.keySet()) { 
-
-			directSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, false);
-			
-			this.directSuperProperties.put(p, directSuperPropertiesLocal);
-			
-			allSuperPropertiesLocal = this.ontHandler.getSuperProperties(p, true);
-			indirectSuperPropertiesLocal = new HashMap<String, Label>();
-			for (Entry<String, Label> entry : allSuperPropertiesLocal.entrySet())
-				if (!directSuperPropertiesLocal.containsKey(entry.getKey()))
-					indirectSuperPropertiesLocal.put(entry.getKey(), entry.getValue());
-			
-			this.indirectSuperProperties.put(p, indirectSuperPropertiesLocal);
-		}		
-	}
-	
 	private void buildInverseProperties() {
 		for (String op : this.objectProperties.keySet()) {
 			this.propertyInverse.put(op, this.ontHandler.getInverseProperty(op));
 			this.propertyInverseOf.put(op, this.ontHandler.getInverseOfProperty(op));
 		}
 	}
-	
-	private void buildDataPropertiesMaps() {
-		
-		HashSet<OntResource> directDomains;
-		HashSet<String> directDomainsUris;
-		HashSet<String> indirectDomainsUris;
-		HashSet<OntResource> allDomains;
-		HashSet<String> allDomainsUris;
-		HashSet<OntResource> directRanges;
-		HashSet<String> directRangesUris;
-		HashSet<String> indirectRangesUris;
-		HashSet<OntResource> allRanges;
-		HashSet<String> allRangesUris;
-		HashSet<String> temp; 
-		
-		OntResource d;
-		OntResource r;
-		
+
+	/**
+	 * @return the ids of the members of the domains or ranges, for a domain like "A or (B and C)", the ids of A, B and C
+	 */
+	private BitSet getMembers(Hierarchy hierarchy, ExtendedIterator<? extends OntResource> resources) {
+		HashSet<OntResource> members = new HashSet<OntResource>();
+		while (resources.hasNext())
+			ontHandler.getMembers(resources.next(), members, false);
+		BitSet ids = new BitSet();
+		for (OntResource member : members)
+			ids.set(hierarchy.add(member));
+		return ids;
+	}
+
+	/**
+	 * @return the given classes and all their subclasses
+	 */
+	private static BitSet getAllSubClasses(Hierarchy hierarchy, BitSet ids) {
+		BitSet all = (BitSet) ids.clone();
+		for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1))
+			all.or(hierarchy.getDescendants(i));
+		return all;
+	}
+
+	private BitSet getAllClasses() {
+		BitSet all = new BitSet();
+		for (String c : this.classes.keySet())
+			all.set(classIndex.getId(c));
+		return all;
+	}
+
+	private void buildDataPropertiesMaps(Hierarchy hierarchy) {
+
+		int thing = classIndex.getId(Uris.THING_URI);
+
 		for (String propertyUri : this.dataProperties.keySet()) {
-			
-			directDomains = new HashSet<OntResource>();
-			directDomainsUris = new HashSet<String>();
-			indirectDomainsUris = new HashSet<String>();
-			allDomains = new HashSet<OntResource>();
-			allDomainsUris = new HashSet<String>();
-			directRanges = new HashSet<OntResource>();
-			directRangesUris = new HashSet<String>();
-			indirectRangesUris = new HashSet<String>();
-			allRanges = new HashSet<OntResource>();
-			allRangesUris = new HashSet<String>();
-			
+
 			OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
 			if (property == null || !property.isURIResource())
 				continue;
-			
+			int p = propertyIndex.getId(property.getURI());
+
 			// direct domain
-			ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
-			while (itrDomains.hasNext()) {
-				d = itrDomains.next();
-				ontHandler.getMembers(d, directDomains, false);
-			}
-			directDomainsUris = ontHandler.getResourcesUris(directDomains);
-			
-			temp  = propertyDirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyDirectDomains.put(property.getURI(), directDomainsUris);
-			else 
-				temp.addAll(directDomainsUris);
-			
-			for (OntResource domain : directDomains) {
-				temp = directOutDataProperties.get(domain.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directOutDataProperties.put(domain.getURI(), temp);
-				}
-				temp.add(property.getURI());
-			}
+			BitSet directDomains = getMembers(hierarchy, property.listDomain());
+			this.propertyDirectDomains.or(p, directDomains);
+			this.directOutDataProperties.setAll(directDomains, p);
 
 			// all domains
-			if (directDomainsUris.contains(Uris.THING_URI))
-				allDomainsUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource domain : directDomains) {
-					allDomains.add(domain);
-					ontHandler.getChildren(domain, allDomains, true);
-				}
-				allDomainsUris = ontHandler.getResourcesUris(allDomains);
-			}
+			BitSet allDomains;
+			if (directDomains.get(thing))
+				allDomains = getAllClasses();
+			else
+				allDomains = getAllSubClasses(hierarchy, directDomains);
 
 			// indirect domains
-			for (String domainUri : allDomainsUris) {
-				if (!directDomainsUris.contains(domainUri))
-					indirectDomainsUris.add(domainUri);
-			}
+			BitSet indirectDomains = allDomains;
+			indirectDomains.andNot(directDomains);
+			this.propertyIndirectDomains.or(p, indirectDomains);
+			this.indirectOutDataProperties.setAll(indirectDomains, p);
 
-			temp  = propertyIndirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
-			else 
-				temp.addAll(indirectDomainsUris);
-			
-			for (String domainUri : indirectDomainsUris) {
-				temp = indirectOutDataProperties.get(domainUri);
-				if (temp == null) { 
-					temp = new HashSet<String>();
-					indirectOutDataProperties.put(domainUri, temp);
-				}
-				temp.add(property.getURI());
-			}
-			
 			// direct ranges
-			ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
-			while (itrRanges.hasNext()) {
-				r = itrRanges.next();
-				ontHandler.getMembers(r, directRanges, false);
-			}
-			directRangesUris = ontHandler.getResourcesUris(directRanges);
-
-			temp  = propertyDirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyDirectRanges.put(property.getURI(), directRangesUris);
-			else 
-				temp.addAll(directRangesUris);
-			
-			// all ranges
-			for (OntResource range : directRanges) {
-				allRanges.add(range);
-				ontHandler.getChildren(range, allRanges, true);
-			}
-			allRangesUris = ontHandler.getResourcesUris(allRanges);
-			
+			BitSet directRanges = getMembers(hierarchy, property.listRange());
+			this.propertyDirectRanges.or(p, directRanges);
+
 			// indirect ranges
-			for (String rangeUri : allRangesUris) {
-				if (!directRangesUris.contains(rangeUri))
-					indirectRangesUris.add(rangeUri);
-			}
-			
-			temp  = propertyIndirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
-			else 
-				temp.addAll(indirectRangesUris);
-			
-		}	
-	}
-	
-	private void buildObjectPropertiesMaps() {
-		
-		HashSet<OntResource> directDomains;
-		HashSet<String> directDomainsUris;
-		HashSet<String> indirectDomainsUris;
-		HashSet<OntResource> allDomains;
-		HashSet<String> allDomainsUris;
-		HashSet<OntResource> directRanges;
-		HashSet<String> directRangesUris;
-		HashSet<String> indirectRangesUris;
-		HashSet<OntResource> allRanges;
-		HashSet<String> allRangesUris;
-		HashSet<String> temp; 
-		
-		OntResource d;
-		OntResource r;
-		
-//		int count = 0;
+			BitSet indirectRanges = getAllSubClasses(hierarchy, directRanges);
+			indirectRanges.andNot(directRanges);
+			this.propertyIndirectRanges.or(p, indirectRanges);
+		}
+	}
+
+	private void buildObjectPropertiesMaps(Hierarchy hierarchy) {
+
+		int thing = classIndex.getId(Uris.THING_URI);
+
 		for (String propertyUri : this.objectProperties.keySet()) {
 
 			OntProperty property = this.ontHandler.getOntModel().getOntProperty(propertyUri);
 			if (property == null || !property.isURIResource())
 				continue;
-						
-			directDomains = new HashSet<OntResource>();
-			directDomainsUris = new HashSet<String>();
-			indirectDomainsUris = new HashSet<String>();
-			allDomains = new HashSet<OntResource>();
-			allDomainsUris = new HashSet<String>();
-			directRanges = new HashSet<OntResource>();
-			directRangesUris = new HashSet<String>();
-			indirectRangesUris = new HashSet<String>();
-			allRanges = new HashSet<OntResource>();
-			allRangesUris = new HashSet<String>();
-			
-//			count ++;
-//			if (count % 1000 == 0)
-//				System.gc();
-
-			
+			int p = propertyIndex.getId(property.getURI());
+
 			// direct domain
-			ExtendedIterator<? extends OntResource> itrDomains = property.listDomain();
-			while (itrDomains.hasNext()) {
-				d = itrDomains.next();
-				ontHandler.getMembers(d, directDomains, false);
-			}
-			directDomainsUris = ontHandler.getResourcesUris(directDomains);
-			
-			if (directDomainsUris != null && directDomainsUris.contains(Uris.THING_URI))
-				directDomainsUris.remove(Uris.THING_URI);
-			
-			temp  = propertyDirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyDirectDomains.put(property.getURI(), directDomainsUris);
-			else 
-				temp.addAll(directDomainsUris);
-			
-			for (OntResource domain : directDomains) {
-				temp = directOutObjectProperties.get(domain.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directOutObjectProperties.put(domain.getURI(), temp);
-				}
-				temp.add(property.getURI());
-			}
+			BitSet domainMembers = getMembers(hierarchy, property.listDomain());
+			this.directOutObjectProperties.setAll(domainMembers, p);
+
+			// Thing is not a direct domain, the other classes are its indirect domains
+			BitSet directDomains = (BitSet) domainMembers.clone();
+			directDomains.clear(thing);
+			this.propertyDirectDomains.or(p, directDomains);
 
 			// all domains
-			if (directDomainsUris.contains(Uris.THING_URI))
-				allDomainsUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource domain : directDomains) {
-					allDomains.add(domain);
-					ontHandler.getChildren(domain, allDomains, true);
-				}
-				allDomainsUris = ontHandler.getResourcesUris(allDomains);
-			}
+			BitSet allDomains = getAllSubClasses(hierarchy, domainMembers);
 
 			// indirect domains
-			for (String domainUri : allDomainsUris) {
-				if (!directDomainsUris.contains(domainUri))
-					indirectDomainsUris.add(domainUri);
-			}
+			BitSet indirectDomains = (BitSet) allDomains.clone();
+			indirectDomains.andNot(directDomains);
+			this.propertyIndirectDomains.or(p, indirectDomains);
+			this.indirectOutObjectProperties.setAll(indirectDomains, p);
 
-			temp  = propertyIndirectDomains.get(property.getURI());
-			if (temp == null)
-				propertyIndirectDomains.put(property.getURI(), indirectDomainsUris);
-			else 
-				temp.addAll(indirectDomainsUris);
-			
-			for (String domainUri : indirectDomainsUris) {
-				temp = indirectOutObjectProperties.get(domainUri);
-				if (temp == null) { 
-					temp = new HashSet<String>();
-					indirectOutObjectProperties.put(domainUri, temp);
-				}
-				temp.add(property.getURI());
-			}
-			
 			// direct ranges
-			ExtendedIterator<? extends OntResource> itrRanges = property.listRange();
-			while (itrRanges.hasNext()) {
-				r = itrRanges.next();
-				ontHandler.getMembers(r, directRanges, false);
-			}
-			directRangesUris = ontHandler.getResourcesUris(directRanges);
-			
-			if (directRangesUris != null && directRangesUris.contains(Uris.THING_URI))
-				directRangesUris.remove(Uris.THING_URI);
-
-			temp  = propertyDirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyDirectRanges.put(property.getURI(), directRangesUris);
-			else 
-				temp.addAll(directRangesUris);
-			
-			for (OntResource range : directRanges) {
-				temp = directInObjectProperties.get(range.getURI());
-				if (temp == null) {
-					temp = new HashSet<String>();
-					directInObjectProperties.put(range.getURI(), temp);
-				}
-				temp.add(property.getURI());
-			}
-			
+			BitSet rangeMembers = getMembers(hierarchy, property.listRange());
+			this.directInObjectProperties.setAll(rangeMembers, p);
+
+			BitSet directRanges = (BitSet) rangeMembers.clone();
+			directRanges.clear(thing);
+			this.propertyDirectRanges.or(p, directRanges);
+
 			// all ranges
-			if (directRangesUris.contains(Uris.THING_URI))
-				allRangesUris = new HashSet<String>(this.classes.keySet());
-			else {
-				for (OntResource range : directRanges) {
-					allRanges.add(range);
-					ontHandler.getChildren(range, allRanges, true);
-				}
-				allRangesUris = ontHandler.getResourcesUris(allRanges);
-			}
-			
-			// indirect ranges
-			for (String rangeUri : allRangesUris) {
-				if (!directRangesUris.contains(rangeUri))
-					indirectRangesUris.add(rangeUri);
-			}
-			
-			temp  = propertyIndirectRanges.get(property.getURI());
-			if (temp == null)
-				propertyIndirectRanges.put(property.getURI(), indirectRangesUris);
-			else 
-				temp.addAll(indirectRangesUris);
-			
-			for (String rangeUri : indirectRangesUris) {
-				temp = indirectInObjectProperties.get(rangeUri);
-				if (temp == null) {
-					temp = new HashSet<String>();
-					indirectInObjectProperties.put(rangeUri, temp);
-				}
-				temp.add(property.getURI());
-			}
-				
-			for (String domain : directDomainsUris) {
-				for (String range : directRangesUris) {
-					temp = 
-						domainRangeToDirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToDirectProperties.put(domain + range, temp);
-					}
-					temp.add(property.getURI());
-				}
-			}
+			BitSet allRanges = getAllSubClasses(hierarchy, rangeMembers);
 
-			for (String domain : allDomainsUris) {
-				for (String range : allRangesUris) {
-					if (directDomainsUris.contains(domain) && directRangesUris.contains(range)) continue;
-					temp = domainRangeToIndirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToIndirectProperties.put(domain + range, temp);
-					}
-					temp.add(property.getURI());
-				}
-			}
+			// indirect ranges
+			BitSet indirectRanges = (BitSet) allRanges.clone();
+			indirectRanges.andNot(directRanges);
+			this.propertyIndirectRanges.or(p, indirectRanges);
+			this.indirectInObjectProperties.setAll(indirectRanges, p);
+
+			this.directDomainToObjectProperties.setAll(directDomains, p);
+			this.directRangeToObjectProperties.setAll(directRanges, p);
+			this.domainToObjectProperties.setAll(allDomains, p);
+			this.rangeToObjectProperties.setAll(allRanges, p);
+		}
 
-		}	
+	}
 
+	private void buildDomainOfPropertiesMaps() {
+		for (String propertyUri : this.properties.keySet()) {
+			int p = propertyIndex.getId(propertyUri);
+			BitSet directDomains = this.propertyDirectDomains.get(p);
+			if (directDomains != null)
+				this.directDomainOfProperties.setAll(directDomains, p);
+			BitSet indirectDomains = this.propertyIndirectDomains.get(p);
+			if (indirectDomains != null)
+				this.indirectDomainOfProperties.setAll(indirectDomains, p);
+		}
 	}
-	
-//	private void buildObjectPropertyDomainRangeMap() {
-//		
-//		for (String op : this.objectProperties.keySet()) {
-//			
-//			List<DomainRangePair> directDomainRangePairs = new ArrayList<DomainRangePair>();
-//			List<DomainRangePair> indirectDomainRangePairs = new ArrayList<DomainRangePair>();
-//			
-//			this.domainRangePairsOfDirectProperties.put(op, directDomainRangePairs);
-//			this.domainRangePairsOfIndirectProperties.put(op, indirectDomainRangePairs);
-//			
-//			List<String> directDomains = this.propertyDirectDomains.get(op);
-//			List<String> directRanges = this.propertyDirectRanges.get(op);
-//
-//			List<String> indirectDomains = this.propertyIndirectDomains.get(op);
-//			List<String> indirectRanges = this.propertyIndirectRanges.get(op);
-//
-//			// direct
-//			if (directDomains != null && directRanges != null) { 
-//				for (String d : directDomains)
-//					for (String r : directRanges)
-//						directDomainRangePairs.add(new DomainRangePair(d, r));
-//			}
-//			
-//			// indirect
-//			if (indirectDomains != null && indirectRanges != null) { 
-//				for (String d : indirectDomains)
-//					for (String r : indirectRanges) {
-//						if (directDomains.contains(d) && directRanges.contains(r)) continue;
-//						indirectDomainRangePairs.add(new DomainRangePair(d, r));
-//					}
-//			}
-//
-//		}
-//	}
-	
-//	private void addPropertiesOfRDFVocabulary() {
-//		
-//		List<String> uris = new ArrayList<String>();
-//		
-//		uris.add(Uris.RDFS_LABEL_URI);
-//		uris.add(Uris.RDFS_COMMENT_URI);
-//		uris.add(Uris.RDF_VALUE_URI);
-//		
-//		HashSet<String> temp;
-//		HashSet<String> temp1;
-//		HashSet<String> temp2;
-//		HashSet<String> temp3;
-//		
-//		ontHandler.getOntModel().setNsPrefix(Prefixes.RDF, Namespaces.RDF);
-//		ontHandler.getOntModel().setNsPrefix(Prefixes.RDFS, Namespaces.RDFS);
-//		
-//		ontHandler.getOntModel().createDatatypeProperty(Uris.RDFS_COMMENT_URI);
-//		ontHandler.getOntModel().createDatatypeProperty(Uris.RDFS_LABEL_URI);
-//		ontHandler.getOntModel().createObjectProperty(Uris.RDF_VALUE_URI);
-//
-//		// add label, value, comment property to the properties of all the classes
-//		for (String s : this.classes.keySet()) {
-//			temp1 = indirectOutDataProperties.get(s);
-//			temp2 = indirectOutObjectProperties.get(s);
-//			temp3 = indirectInObjectProperties.get(s);
-//			if (temp1 == null) {
-//				temp1 = new HashSet<String>();
-//				indirectOutDataProperties.put(s, temp1);
-//			}
-//			if (temp2 == null) {
-//				temp2 = new HashSet<String>();
-//				indirectOutObjectProperties.put(s, temp2);
-//			}
-//			if (temp3 == null) {
-//				temp3 = new HashSet<String>();
-//				indirectInObjectProperties.put(s, temp3);
-//			}
-//			temp1.add(Uris.RDFS_LABEL_URI);
-//			temp1.add(Uris.RDFS_COMMENT_URI);
-//			temp2.add(Uris.RDF_VALUE_URI);
-//			temp3.add(Uris.RDF_VALUE_URI);
-//		}
-//
-//		// add uris to properties hashmap
-//		for (String uri : uris) {
-//			temp = propertyIndirectDomains.get(uri);
-//			if (temp == null) {
-//				temp = new HashSet<String>();
-//				propertyIndirectDomains.put(uri, temp);
-//			}
-//			for (String s : this.classes.keySet())
-//				temp.add(s);
-//		}
-//
-//		temp = propertyIndirectRanges.get(Uris.RDF_VALUE_URI);
-//		if (temp == null) {
-//			temp = new HashSet<String>();
-//			propertyIndirectRanges.put(Uris.RDF_VALUE_URI, temp);
-//		}
-//		for (String s : this.classes.keySet())
-//			temp.add(s);
-//		
-//	}
-	
+
 	private void updateMapsWithSubpropertyDefinitions() {
-		
-		
-		Set<String> allSuperPropertiesLocal;
 
 		// iterate over all properties
-		for (String p : this.properties.keySet()) {
-			
-			allSuperPropertiesLocal = new HashSet<String>();
-			
-			Set<String> directSuperPropertiesLocal = this.directSuperProperties.get(p).keySet();
-			Set<String> indirectSuperPropertiesLocal = this.indirectSuperProperties.get(p).keySet();
-			if (directSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(directSuperPropertiesLocal);
-			if (indirectSuperPropertiesLocal != null) allSuperPropertiesLocal.addAll(indirectSuperPropertiesLocal);
-			
-			if (allSuperPropertiesLocal.size() == 0) continue;
-			
-			HashSet<String> temp = null;
-			
-			HashSet<String> directDomains = this.propertyDirectDomains.get(p);
-			HashSet<String> indirectDomains = this.propertyIndirectDomains.get(p);
-			HashSet<String> allDomains = new HashSet<String>();
-			if (directDomains != null) allDomains.addAll(directDomains);
-			if (indirectDomains != null) allDomains.addAll(indirectDomains);
-
-			HashSet<String> directRanges = this.propertyDirectRanges.get(p);
-			HashSet<String> indirectRanges = this.propertyIndirectRanges.get(p);
-			HashSet<String> allRanges = new HashSet<String>();
-			if (directRanges != null) allRanges.addAll(directRanges);
-			if (indirectRanges != null) allRanges.addAll(indirectRanges);
-
-			for (String d : allDomains) {
-				temp = indirectOutObjectProperties.get(d);
-				if (temp == null) {
-					temp = new HashSet<String>();
-					indirectOutObjectProperties.put(d,  temp);
-				}
-				for (String superP : allSuperPropertiesLocal) {
-					temp.add(superP);
-				}
-			}
+		for (String propertyUri : this.properties.keySet()) {
 
-			for (String r : allRanges) {
-				temp = indirectInObjectProperties.get(r);
-				if (temp == null) {
-					temp = new HashSet<String>();
-					indirectInObjectProperties.put(r,  temp);
-				}
-				for (String superP : allSuperPropertiesLocal) {
-					temp.add(superP);
-				}
-			}
+			int p = propertyIndex.getId(propertyUri);
+			BitSet allSuperPropertiesLocal = union(this.directSuperProperties.get(p), this.indirectSuperProperties.get(p));
 
-			for (String domain : allDomains) {
-				for (String range : allRanges) {
-					temp = domainRangeToIndirectProperties.get(domain + range);
-					if (temp == null) {
-						temp = new HashSet<String>();
-						domainRangeToIndirectProperties.put(domain + range, temp);
-					}
-					for (String superP : allSuperPropertiesLocal) {
-						if (superP.compareTo(p) != 0)
-							temp.add(superP);
-					}
-				}
-			}
+			if (allSuperPropertiesLocal.isEmpty()) continue;
+
+			BitSet allDomains = union(this.propertyDirectDomains.get(p), this.propertyIndirectDomains.get(p));
+			BitSet allRanges = union(this.propertyDirectRanges.get(p), this.propertyIndirectRanges.get(p));
+
+			for (int d = allDomains.nextSetBit(0); d >= 0; d = allDomains.nextSetBit(d + 1))
+				this.indirectOutObjectProperties.or(d, allSuperPropertiesLocal);
+
+			for (int r = allRanges.nextSetBit(0); r >= 0; r = allRanges.nextSetBit(r + 1))
+				this.indirectInObjectProperties.or(r, allSuperPropertiesLocal);
+
+			// the superproperties of p, other than p, are indirect properties from its domains to its ranges
+			this.domainToSubProperties.setAll(allDomains, p);
+			this.rangeToSubProperties.setAll(allRanges, p);
 		}
 
 	}
-	
+
 // 	Please don't remove this commented method. We had this before to implement SubProperty inference, but later we changed our interpretation of SubProperty.
 // 	It is better to keep that for a while.
 //	/**
@@ -1446,184 +1443,247 @@ public class OntologyCache {
 		boolean haveDomain;
 		boolean haveRange;
 		Label label;
-		
-		HashSet<String> directDomains;
-		HashSet<String> indirectDomains;
-		HashSet<String> directRanges;
-		HashSet<String> indirectRanges;
-		
+
+		BitSet directDomains;
+		BitSet indirectDomains;
+		BitSet directRanges;
+		BitSet indirectRanges;
+
 		for (String p : this.dataProperties.keySet()) {
-			
+
 			label = this.dataProperties.get(p);
-			
-			directDomains = propertyDirectDomains.get(p);
-			indirectDomains = propertyIndirectDomains.get(p);
+			int id = propertyIndex.getId(p);
+
+			directDomains = propertyDirectDomains.get(id);
+			indirectDomains = propertyIndirectDomains.get(id);
 
 			haveDomain = true;
-			
-			if ((directDomains == null || directDomains.size() == 0) &&
-					(indirectDomains == null || indirectDomains.size() == 0))
+
+			if ((directDomains == null || directDomains.isEmpty()) &&
+					(indirectDomains == null || indirectDomains.isEmpty()))
 				haveDomain = false;
-			
-			if (directDomains != null && directDomains.size() == 1 &&
-					directDomains.iterator().next().equalsIgnoreCase(Uris.THING_URI))
+
+			if (directDomains != null && directDomains.cardinality() == 1 &&
+					classIndex.getUri(directDomains.nextSetBit(0)).equalsIgnoreCase(Uris.THING_URI))
 				haveDomain = false;
-			
+
 			if (!haveDomain)
 				this.dataPropertiesWithoutDomain.put(p, label);
 		}
-		
+
 		for (String p : this.objectProperties.keySet()) {
-			
+
 			label = this.objectProperties.get(p);
-			
-			directDomains = propertyDirectDomains.get(p);
-			directRanges = propertyDirectRanges.get(p);
+			int id = propertyIndex.getId(p);
 
-			indirectDomains = propertyIndirectDomains.get(p);
-			indirectRanges = propertyIndirectRanges.get(p);
+			directDomains = propertyDirectDomains.get(id);
+			directRanges = propertyDirectRanges.get(id);
+
+			indirectDomains = propertyIndirectDomains.get(id);
+			indirectRanges = propertyIndirectRanges.get(id);
 
 			haveDomain = true;
 			haveRange = true;
-			
-			if ((directDomains == null || directDomains.size() == 0) &&
-					(indirectDomains == null || indirectDomains.size() == 0))
+
+			if ((directDomains == null || directDomains.isEmpty()) &&
+					(indirectDomains == null || indirectDomains.isEmpty()))
 				haveDomain = false;
-			
-			if ((directRanges == null || directRanges.size() == 0) &&
-					(indirectRanges == null || indirectRanges.size() == 0))
+
+			if ((directRanges == null || directRanges.isEmpty()) &&
+					(indirectRanges == null || indirectRanges.isEmpty()))
 				haveRange = false;
-			
-			if (haveDomain && !haveRange) 
+
+			if (haveDomain && !haveRange) {
 				this.objectPropertiesWithOnlyDomain.put(p, label);
+				this.objectPropertiesWithOnlyDomainIds.set(id);
+			}
 			else if (!haveDomain && haveRange) {
 				this.objectPropertiesWithOnlyRange.put(p, label);
+				this.objectPropertiesWithOnlyRangeIds.set(id);
 			}
-			else if (!haveDomain && !haveRange) 
+			else if (!haveDomain && !haveRange)
 				this.objectPropertiesWithoutDomainAndRange.put(p, label);
 		}
-}
-	
-//	private void buildConnectivityMaps() {
-//		
-//		List<String> classList = new ArrayList<String>(this.classes.keySet());
-//		
-//		HashSet<String> directProperties;
-//		HashSet<String> indirectProperties;
-//		HashSet<String> directOutProperties;
-//		HashSet<String> directInProperties;
-//		HashSet<String> indirectOutProperties;
-//		HashSet<String> indirectInProperties;
-//		boolean foundDomainlessProperty;
-//		boolean foundRangelessProperty;
-//		
-//		int count = 0;
-//		for (int i = 0; i < classList.size(); i++) {
-//			String c1 = classList.get(i);
-//			for (int j = 0; j < classList.size(); j++) {
-//				String c2 = classList.get(j);
-//				
-//				count ++;
-//				if (count % 1000000 == 0 ) {
-//					System.gc();
-//				}
-////				if (c1.equals(c2))
-////					continue;
-//				
-//				directProperties = this.domainRangeToDirectProperties.get(c1+c2);
-//				if (directProperties != null && directProperties.size() > 0) { 
-//					this.connectedByDirectProperties.add(c1+c2);
-//				}
-//				indirectProperties = this.domainRangeToIndirectProperties.get(c1+c2);
-//				if (indirectProperties != null && indirectProperties.size() > 0) { 
-//					this.connectedByIndirectProperties.add(c1+c2);
-//				}
-//				
-//				// domainless property
-//				
-//				foundDomainlessProperty = false;
-//				directInProperties = this.directInObjectProperties.get(c1);
-//				if (directInProperties != null) {
-//					for (String s : directInProperties) 
-//						if (this.objectPropertiesWithOnlyRange.containsKey(s)) {
-//							foundDomainlessProperty = true;
-//							break;
-//						}
-//				}
-//				if (!foundDomainlessProperty) {
-//					directInProperties = this.directInObjectProperties.get(c2);
-//					if (directInProperties != null)
-//						for (String s : directInProperties) 
-//							if (this.objectPropertiesWithOnlyRange.containsKey(s)) {
-//								foundDomainlessProperty = true;
-//								break;
-//							}			
-//				}
-//				if (!foundDomainlessProperty) {
-//					indirectInProperties = this.indirectInObjectProperties.get(c1);
-//					if (indirectInProperties != null)
-//						for (String s : indirectInProperties) 
-//							if (this.objectPropertiesWithOnlyRange.containsKey(s)) {
-//								foundDomainlessProperty = true;
-//								break;
-//							}
-//				}
-//				if (!foundDomainlessProperty) {
-//					indirectInProperties = this.indirectInObjectProperties.get(c2);
-//					if (indirectInProperties != null)
-//						for (String s : indirectInProperties) 
-//							if (this.objectPropertiesWithOnlyRange.containsKey(s)) {
-//								foundDomainlessProperty = true;
-//								break;
-//							}
-//				}
-//				
-//				// rangeless property
-//				
-//				foundRangelessProperty = false;
-//				directOutProperties = this.directOutObjectProperties.get(c1);
-//				if (directOutProperties != null) {
-//					for (String s : directOutProperties) 
-//						if (this.objectPropertiesWithOnlyDomain.containsKey(s)) {
-//							foundRangelessProperty = true;
-//							break;
-//						}
-//				}
-//				if (!foundRangelessProperty) {
-//					directOutProperties = this.directOutObjectProperties.get(c2);
-//					if (directOutProperties != null)
-//						for (String s : directOutProperties) 
-//							if (this.objectPropertiesWithOnlyDomain.containsKey(s)) {
-//								foundRangelessProperty = true;
-//								break;
-//							}
-//				}
-//				if (!foundRangelessProperty) {
-//					indirectOutProperties = this.indirectOutObjectProperties.get(c1);
-//					if (indirectOutProperties != null)
-//						for (String s : indirectOutProperties) 
-//							if (this.objectPropertiesWithOnlyDomain.containsKey(s)) {
-//								foundRangelessProperty = true;
-//								break;
-//							}
-//				}
-//				if (!foundRangelessProperty) {
-//					indirectOutProperties = this.indirectOutObjectProperties.get(c2);
-//					if (indirectOutProperties != null)
-//						for (String s : indirectOutProperties) 
-//							if (this.objectPropertiesWithOnlyDomain.containsKey(s)) {
-//								foundRangelessProperty = true;
-//								break;
-//							}
-//				}				
-//				
-//				if (foundRangelessProperty) { 
-//					this.connectedByRangelessProperties.add(c1+c2);
-//				}
-//				if (foundDomainlessProperty) { 
-//					this.connectedByDomainlessProperties.add(c1+c2);
-//				}
-//			}
-//		}
-//	}
+	}
+
+	/**
+	 * The direct children and parents of the classes or properties of the
+	 * model, read once for each of them, and the closures computed from them.
+	 */
+	private class Hierarchy {
+
+		private final UriIndex index;
+		private final List<OntResource> resources = new ArrayList<OntResource>();
+		private final BitSetTable children = new BitSetTable();
+		private final BitSetTable parents = new BitSetTable();
+		private final BitSet childrenLoaded = new BitSet();
+		private final BitSet parentsLoaded = new BitSet();
+		private final BitSetTable descendants = new BitSetTable();
+		private final BitSetTable ancestors = new BitSetTable();
+
+		public Hierarchy(UriIndex index) {
+			this.index = index;
+		}
+
+		public int add(OntResource r) {
+			int id = index.add(r.getURI());
+			while (resources.size() <= id)
+				resources.add(null);
+			if (resources.get(id) == null) {
+				resources.set(id, r);
+				index.add(r.getURI(), ontHandler.getResourceLabel(r));
+			}
+			return id;
+		}
+
+		/**
+		 * @return the direct children, not to be modified
+		 */
+		public BitSet getChildren(int id) {
+			return load(id, true);
+		}
+
+		/**
+		 * @return the direct parents, not to be modified
+		 */
+		public BitSet getParents(int id) {
+			return load(id, false);
+		}
+
+		/**
+		 * @return the children and their children, recursively, not to be modified
+		 */
+		public BitSet getDescendants(int id) {
+			return getClosure(id, true);
+		}
+
+		/**
+		 * @return the parents and their parents, recursively, not to be modified
+		 */
+		public BitSet getAncestors(int id) {
+			return getClosure(id, false);
+		}
+
+		private BitSet load(int id, boolean down) {
+			BitSetTable table = down ? children : parents;
+			BitSet loaded = down ? childrenLoaded : parentsLoaded;
+			if (!loaded.get(id)) {
+				loaded.set(id);
+				OntResource r = id < resources.size() ? resources.get(id) : null;
+				HashSet<OntResource> found = new HashSet<OntResource>();
+				if (down)
+					ontHandler.getChildren(r, found, false);
+				else
+					ontHandler.getParents(r, found, false);
+				BitSet ids = new BitSet();
+				for (OntResource f : found)
+					ids.set(add(f));
+				table.put(id, ids);
+			}
+			return table.get(id);
+		}
+
+		/**
+		 * Walks the children (or parents) from the given id, reusing the
+		 * closures computed before instead of walking them again.
+		 */
+		private BitSet getClosure(int id, boolean down) {
+			BitSetTable closures = down ? descendants : ancestors;
+			BitSet closure = closures.get(id);
+			if (closure != null)
+				return closure;
+			closure = new BitSet();
+			Deque<Integer> pending = new ArrayDeque<Integer>();
+			pending.push(id);
+			while (!pending.isEmpty()) {
+				BitSet next = load(pending.pop(), down);
+				for (int i = next.nextSetBit(0); i >= 0; i = next.nextSetBit(i + 1)) {
+					if (closure.get(i))
+						continue;
+					closure.set(i);
+					BitSet known = closures.get(i);
+					if (known != null)
+						closure.or(known);
+					else
+						pending.push(i);
+				}
+			}
+			closures.put(id, closure);
+			return closure;
+		}
+	}
+
+	/**
+	 * BitSets indexed by the id of a class or property, null for the ids
+	 * that have none.
+	 */
+	private static class BitSetTable {
+
+		private BitSet[] sets = new BitSet[64];
+
+		public BitSet get(int id) {
+			return id >= 0 && id < sets.length ? sets[id] : null;
+		}
+
+		public void put(int id, BitSet bits) {
+			ensureCapacity(id);
+			sets[id] = bits;
+		}
+
+		/**
+		 * Adds the bits to the set of the id
+		 */
+		public void or(int id, BitSet bits) {
+			if (bits.isEmpty())
+				return;
+			ensureCapacity(id);
+			if (sets[id] == null)
+				sets[id] = (BitSet) bits.clone();
+			else
+				sets[id].or(bits);
+		}
+
+		/**
+		 * Sets the bit in the set of each of the ids
+		 */
+		public void setAll(BitSet ids, int bit) {
+			for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+				ensureCapacity(id);
+				if (sets[id] == null)
+					sets[id] = new BitSet();
+				sets[id].set(bit);
+			}
+		}
+
+		/**
+		 * @return one more than the largest id that can have a set
+		 */
+		public int size() {
+			return sets.length;
+		}
+
+		public void write(DataOutput out) throws IOException {
+			int size = sets.length;
+			while (size > 0 && sets[size - 1] == null)
+				size--;
+			out.writeInt(size);
+			for (int id = 0; id < size; id++) {
+				out.writeBoolean(sets[id] != null);
+				if (sets[id] != null)
+					writeBitSet(out, sets[id]);
+			}
+		}
+
+		public void read(DataInput in) throws IOException {
+			int size = in.readInt();
+			for (int id = 0; id < size; id++)
+				if (in.readBoolean())
+					put(id, readBitSet(in));
+		}
+
+		private void ensureCapacity(int id) {
+			if (id >= sets.length)
+				sets = Arrays.copyOf(sets, Math.max(id + 1, sets.length * 2));
+		}
+	}
 }
@@ -37,7 +37,7 @@ class OntologyHandler {
 	
 	private static Logger logger = LoggerFactory.getLogger(OntologyHandler.class.getName());
 
-	private static OntModel ontModel = null;
+	private final OntModel ontModel;
 	
 	public OntologyHandler() {
 		
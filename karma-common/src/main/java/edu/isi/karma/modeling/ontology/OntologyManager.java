@@ -22,7 +22,6 @@ package edu.isi.karma.modeling.ontology;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -32,30 +31,43 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Sets;
-import com.google.common.io.Files;
-
 import edu.isi.karma.modeling.Uris;
 import edu.isi.karma.rep.alignment.Label;
 import edu.isi.karma.rep.alignment.ObjectPropertyType;
-import edu.isi.karma.util.EncodingDetector;
 
 public class OntologyManager  {
 	
 	static Logger logger = LoggerFactory.getLogger(OntologyManager.class.getName());
 
-	private OntologyHandler ontHandler = null;
 	private OntologyCache ontCache = null;
+	private OntologySnapshot snapshot;
+	// files imported since the cache was last updated
+	private final List<OntologySnapshot.Source> pendingSources;
+	// the model they were parsed into, null if they didn't need to be parsed
+	private OntologyHandler pendingHandler;
 	private List<OntologyUpdateListener> ontUpdateListeners; 
 	
 	public OntologyManager() {
-		ontHandler = new OntologyHandler();
-		ontCache = new OntologyCache(ontHandler);
+		setSnapshot(OntologySnapshot.empty());
+		pendingSources = new ArrayList<OntologySnapshot.Source>();
 		ontUpdateListeners = new ArrayList<OntologyUpdateListener>();	
 	}
 
+	private void setSnapshot(OntologySnapshot snapshot) {
+		this.snapshot = snapshot;
+		this.ontCache = snapshot.getOntologyCache();
+	}
+
+	/**
+	 * @return the ontologies and cache this manager currently answers from,
+	 *         shared with the other managers that imported the same files
+	 */
+	public OntologySnapshot getSnapshot() {
+		return snapshot;
+	}
+
 	public boolean isEmpty() {
-		return ontHandler.getOntModel().isEmpty();
+		return ontCache.isModelEmpty() && pendingSources.isEmpty();
 	}
 	
 	public boolean isClass(String uri) {
@@ -93,31 +105,12 @@ public class OntologyManager  {
 	
 	public boolean doImportAndUpdateCache(File sourceFile, String encoding) throws IOException {
 
-		if (sourceFile == null) {
-			logger.debug("input file is null.");
-			return false;
-		}
-		
-		logger.debug("Importing " + sourceFile.getName() + " OWL Ontology ...");
-
-		if(!sourceFile.exists()){
-			logger.error("file does not exist  " + sourceFile.getAbsolutePath());
+		if (!addSource(sourceFile, encoding)) {
 			return false;
 		}
 		
-		
-		InputStreamReader s = EncodingDetector.getInputStreamReader(sourceFile, encoding);
-		if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("N3"))
-			ontHandler.getOntModel().read(s, null, "N3");
-		else if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("TTL"))
-			ontHandler.getOntModel().read(s, null, "TURTLE");
-		else
-			ontHandler.getOntModel().read(s, null); // default lang = "RDF/XML"
-		
-		
 		// update the cache
-		ontCache = new OntologyCache(ontHandler);
-		ontCache.init();
+		updateCache();
 		
 		// notify listeners
 		this.notifyListeners();
@@ -126,8 +119,27 @@ public class OntologyManager  {
 		return true;
 	}
 	
+	/**
+	 * Adds the ontology to the ones to load on the next {@link #updateCache()}.
+	 * Importing several files and updating the cache once at the end only
+	 * builds the cache once. The file is parsed now, unless it parsed before,
+	 * so a file that can't be parsed fails the import and is left out.
+	 */
 	public boolean doImport(File sourceFile, String encoding) throws IOException {
 
+		if (!addSource(sourceFile, encoding)) {
+			return false;
+		}
+		
+		// notify listeners
+		this.notifyListeners();
+
+		logger.debug("done.");
+		return true;
+	}
+
+	private boolean addSource(File sourceFile, String encoding) throws IOException {
+		
 		if (sourceFile == null) {
 			logger.debug("input file is null.");
 			return false;
@@ -140,26 +152,23 @@ public class OntologyManager  {
 			return false;
 		}
 		
-		
-		InputStreamReader s = EncodingDetector.getInputStreamReader(sourceFile, encoding);
-		if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("N3"))
-			ontHandler.getOntModel().read(s, null, "N3");
-		else if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("TTL"))
-			ontHandler.getOntModel().read(s, null, "TURTLE");
-		else
-			ontHandler.getOntModel().read(s, null); // default lang = "RDF/XML"
-		
-		
-		// notify listeners
-		this.notifyListeners();
-
-		logger.debug("done.");
+		OntologySnapshot.Source source = new OntologySnapshot.Source(sourceFile, encoding);
+		OntologyHandler handler = pendingHandler;
+		// a model the parser failed on is not used
+		pendingHandler = null;
+		pendingHandler = OntologySnapshot.parse(snapshot, pendingSources, handler, source);
+		pendingSources.add(source);
 		return true;
 	}
 	
+	/**
+	 * Switches to the snapshot of the ontologies imported so far, parsing the
+	 * files and building the cache only if no other manager has it already.
+	 */
 	public void updateCache() {
-		ontCache = new OntologyCache(ontHandler);
-		ontCache.init();
+		setSnapshot(OntologySnapshot.getOrCreate(snapshot, pendingSources, pendingHandler));
+		pendingSources.clear();
+		pendingHandler = null;
 	}
 	
 	public HashMap<String, Label> getClasses() {
@@ -312,12 +321,7 @@ public class OntologyManager  {
 	 */
 	public boolean isSubClass(String subClassUri, String superClassUri, boolean recursive) {
 		
-		if (ontCache.getDirectSubClassCheck().contains(subClassUri + superClassUri))
-			return true;
-		else if (recursive) 
-			return ontCache.getIndirectSubClassCheck().contains(subClassUri + superClassUri);
-		
-		return false;
+		return ontCache.isSubClass(subClassUri, superClassUri, recursive);
 	}
 	
 	/**
@@ -330,12 +334,7 @@ public class OntologyManager  {
 	 */
 	public boolean isSubProperty(String subPropertyUri, String superPropertyUri, boolean recursive) {
 		
-		if (ontCache.getDirectSubPropertyCheck().contains(subPropertyUri + superPropertyUri))
-			return true;
-		else if (recursive) 
-			return ontCache.getIndirectSubPropertyCheck().contains(subPropertyUri + superPropertyUri);
-		
-		return false;
+		return ontCache.isSubProperty(subPropertyUri, superPropertyUri, recursive);
 	}
 		
 	
@@ -348,17 +347,7 @@ public class OntologyManager  {
 	 */
 	public HashSet<String> getDomainsOfProperty(String propertyUri, boolean recursive) {
 
-		HashSet<String> results = new HashSet<String>();
-		HashSet<String> direct = null;
-		HashSet<String> indirect = null;
-		
-		direct = ontCache.getPropertyDirectDomains().get(propertyUri);
-		if (direct != null) results.addAll(direct);
-		if (recursive) indirect = ontCache.getPropertyIndirectDomains().get(propertyUri);
-		if (indirect != null) results.addAll(indirect);
-		
-		return results;
-
+		return ontCache.getDomainsOfProperty(propertyUri, recursive);
 	}
 
 	/**
@@ -370,17 +359,7 @@ public class OntologyManager  {
 	 */
 	public HashSet<String> getRangesOfProperty(String propertyUri, boolean recursive) {
 
-		HashSet<String> results = new HashSet<String>();
-		HashSet<String> direct = null;
-		HashSet<String> indirect = null;
-		
-		direct = ontCache.getPropertyDirectRanges().get(propertyUri);		
-		if (direct != null) results.addAll(direct);
-		if (recursive) indirect = ontCache.getPropertyIndirectRanges().get(propertyUri);
-		if (indirect != null) results.addAll(indirect);
-		
-		return results;
-
+		return ontCache.getRangesOfProperty(propertyUri, recursive);
 	}
 	
 	/**
@@ -392,23 +371,9 @@ public class OntologyManager  {
 	 * @return
 	 */
 	public HashSet<String> getDomainsGivenRange(String rangeUri, boolean recursive) {
+
 		
-		HashSet<String> objectProperties = ontCache.getDirectInObjectProperties().get(rangeUri);
-		HashSet<String> results = new HashSet<String>();
-		HashSet<String> direct = null;
-		HashSet<String> indirect = null;
-		
-		if (objectProperties == null)
-			return results;
-		
-		for (String op : objectProperties) {
-			direct = ontCache.getPropertyDirectDomains().get(op);
-			if (direct != null) results.addAll(direct);
-			if (recursive) indirect = ontCache.getPropertyIndirectDomains().get(op);
-			if (indirect != null) results.addAll(indirect);
-		}
-		
-		return results;
+		return ontCache.getDomainsGivenRange(rangeUri, recursive);
 	}
 	
 	/**
@@ -420,6 +385,7 @@ public class OntologyManager  {
 	 * @return
 	 */
 	public Map<String, Label> getObjectPropertiesByDomainRange(String domainUri, String rangeUri, boolean recursive) {
+
 		logger.debug("getObjectPropertiesByDomainRange:" + domainUri + "," + rangeUri + "," + ontCache);
 		if(domainUri == null || domainUri.length() == 0)
 			return this.getObjectPropertiesByRange(rangeUri, recursive);
@@ -427,51 +393,7 @@ public class OntologyManager  {
 		if(rangeUri == null || rangeUri.length() == 0)
 			return this.getObjectPropertiesByDomain(domainUri, recursive);
 		
-		HashSet<String> objectProperties = ontCache.getDirectInObjectProperties().get(rangeUri);
-		if(recursive) {
-			HashSet<String> propRecursive = ontCache.getIndirectInObjectProperties().get(rangeUri);
-			if(propRecursive != null) {
-				if(objectProperties != null)
-					objectProperties.addAll(propRecursive);
-				else
-					objectProperties = propRecursive;
-			}
-		}
-		HashMap<String, Label> results = new HashMap<String, Label>();
-		HashSet<String> direct = null;
-		HashSet<String> indirect = null;
-		
-		logger.debug("Got object properties:" + objectProperties);
-		if (objectProperties == null)
-			return results;
-		
-		for (String op : objectProperties) {
-			boolean propAdded = false;
-			direct = ontCache.getPropertyDirectDomains().get(op);
-			if (direct != null) {
-				for(String directDomain : direct) {
-					if(directDomain.equals(domainUri)) {
-						results.put(op, ontCache.getPropertyLabel(op));
-						propAdded = true;
-						break;
-					}
-				}
-				//results.addAll(direct);
-			}
-			if(propAdded)
-				continue;
-			if (recursive) indirect = ontCache.getPropertyIndirectDomains().get(op);
-			if (indirect != null) {
-				//results.addAll(indirect);
-				for(String indirectDomain : indirect) {
-					if(indirectDomain.equals(domainUri)) {
-						results.put(op, ontCache.getPropertyLabel(op));
-						propAdded = true;
-						break;
-					}
-				}
-			}
-		}
+		HashMap<String, Label> results = ontCache.getObjectPropertiesByDomainRange(domainUri, rangeUri, recursive);
 		
 		logger.info("got back " + results.size() + " results");
 		return results;
@@ -479,64 +401,22 @@ public class OntologyManager  {
 	
 	
 	public Map<String, Label> getObjectPropertiesByDomain(String domainUri, boolean recursive) {
-		HashSet<String> all = new HashSet<String>();
-		HashSet<String> objectProperties = ontCache.getDirectOutObjectProperties().get(domainUri);
-		if(objectProperties != null)
-			all.addAll(objectProperties);
-		if(recursive) {
-			HashSet<String> propRecursive = ontCache.getIndirectOutObjectProperties().get(domainUri);
-			if(propRecursive != null)
-				all.addAll(propRecursive);
-		}
-		HashMap<String, Label> results = new HashMap<String, Label>();
-		
-		for (String op : all) {
-			results.put(op, ontCache.getPropertyLabel(op));
-		}
-		
-		return results;
+
+		return ontCache.getObjectPropertiesByDomain(domainUri, recursive);
 	}
 	
 	public Map<String, Label> getObjectPropertiesByRange(String rangeUri, boolean recursive) {
-		HashSet<String> all = new HashSet<String>();
-		HashSet<String> objectProperties = ontCache.getDirectInObjectProperties().get(rangeUri);
-		if(objectProperties != null)
-			all.addAll(objectProperties);
-		if(recursive) {
-			HashSet<String> propRecursive = ontCache.getIndirectInObjectProperties().get(rangeUri);
-			if(propRecursive != null)
-				all.addAll(propRecursive);
-		}
-		HashMap<String, Label> results = new HashMap<String, Label>();
-		
-		for (String op : all) {
-			results.put(op, ontCache.getPropertyLabel(op));
-		}
-		
-		return results;
+
+		return ontCache.getObjectPropertiesByRange(rangeUri, recursive);
 	}
 	
 	public Map<String, Label> getDataPropertiesByDomain(String domainUri, boolean recursive) {
-		HashSet<String> all = new HashSet<String>();
-		HashSet<String> dataProperties = ontCache.getDirectOutDataProperties().get(domainUri);
-		if(dataProperties != null)
-			all.addAll(dataProperties);
-		if(recursive) {
-			HashSet<String> propRecursive = ontCache.getIndirectOutDataProperties().get(domainUri);
-			if(propRecursive != null)
-				all.addAll(propRecursive);
-		}
-		HashMap<String, Label> results = new HashMap<String, Label>();
-		
-		for (String op : all) {
-			results.put(op, ontCache.getPropertyLabel(op));
-		}
-		
-		return results;
+
+		return ontCache.getDataPropertiesByDomain(domainUri, recursive);
 	}
 	
 	public Map<String, String> getPrefixMap () {
-		Map<String, String> nsMap = ontHandler.getOntModel().getNsPrefixMap();
+		Map<String, String> nsMap = ontCache.getNsPrefixMap();
 		Map<String, String> prefixMap = new HashMap<String, String>();
 		
 		for(String ns: nsMap.keySet()) {
@@ -553,15 +433,8 @@ public class OntologyManager  {
 	 * @return
 	 */
 	public HashMap<String, Label> getSubClasses(String classUri, boolean recursive) {
-		
-		HashMap<String, Label> direct = ontCache.getDirectSubClasses().get(classUri);
-		if (!recursive) return direct;
-		
-		HashMap<String, Label> all = new HashMap<String, Label>();
-		HashMap<String, Label> indirect = ontCache.getIndirectSubClasses().get(classUri);
-		if (direct != null) all.putAll(direct);
-		if (indirect != null) all.putAll(indirect);
-		return all;
+
+		return ontCache.getSubClasses(classUri, recursive);
 	}
 	
 	/**
@@ -571,15 +444,8 @@ public class OntologyManager  {
 	 * @return
 	 */
 	public HashMap<String, Label> getSuperClasses(String classUri, boolean recursive) {
-		
-		HashMap<String, Label> direct = ontCache.getDirectSuperClasses().get(classUri);
-		if (!recursive) return direct;
-		
-		HashMap<String, Label> all = new HashMap<String, Label>();
-		HashMap<String, Label> indirect = ontCache.getIndirectSuperClasses().get(classUri);
-		if (direct != null) all.putAll(direct);
-		if (indirect != null) all.putAll(indirect);
-		return all;
+
+		return ontCache.getSuperClasses(classUri, recursive);
 	}
 	
 	/**
@@ -590,15 +456,7 @@ public class OntologyManager  {
 	 */
 	public HashMap<String, Label> getSubProperties(String propertyUri, boolean recursive) {
 
-		HashMap<String, Label> direct = ontCache.getDirectSubProperties().get(propertyUri);
-		if (!recursive) return direct;
-		
-		HashMap<String, Label> all = new HashMap<String, Label>();
-		HashMap<String, Label> indirect = ontCache.getIndirectSubProperties().get(propertyUri);
-		if (direct != null) all.putAll(direct);
-		if (indirect != null) all.putAll(indirect);
-		return all;
-
+		return ontCache.getSubProperties(propertyUri, recursive);
 	}
 	
 	/**
@@ -609,15 +467,7 @@ public class OntologyManager  {
 	 */
 	public HashMap<String, Label> getSuperProperties(String propertyUri, boolean recursive) {
 
-		HashMap<String, Label> direct = ontCache.getDirectSuperProperties().get(propertyUri);
-		if (!recursive) return direct;
-		
-		HashMap<String, Label> all = new HashMap<String, Label>();
-		HashMap<String, Label> indirect = ontCache.getIndirectSuperProperties().get(propertyUri);
-		if (direct != null) all.putAll(direct);
-		if (indirect != null) all.putAll(indirect);
-		return all;
-
+		return ontCache.getSuperProperties(propertyUri, recursive);
 	}
 
 //	/**
@@ -660,117 +510,59 @@ public class OntologyManager  {
 //	}
 	
 	public HashSet<String> getObjectPropertiesDirect(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return null;
-		return this.ontCache.getDomainRangeToDirectProperties().get(sourceUri + targetUri);
+		return this.ontCache.getObjectPropertiesDirect(sourceUri, targetUri);
 	}
 
 	public HashSet<String> getObjectPropertiesIndirect(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return null;
-		return this.ontCache.getDomainRangeToIndirectProperties().get(sourceUri + targetUri);
+		return this.ontCache.getObjectPropertiesIndirect(sourceUri, targetUri);
 	}
 
 	public HashSet<String> getObjectPropertiesWithOnlyDomain(String domainUri) {
+
 		
 		if (domainUri == null) return null;
-		
-		HashSet<String> directOutProperties;
-		HashSet<String> indirectOutProperties;
-		HashSet<String> results = new HashSet<String>();
-
-		directOutProperties = this.ontCache.getDirectOutObjectProperties().get(domainUri);
-		if (directOutProperties != null)
-			for (String s : directOutProperties) 
-				if (this.ontCache.getObjectPropertiesWithOnlyDomain().containsKey(s)) 
-					results.add(s);
-
-		indirectOutProperties = this.ontCache.getIndirectOutObjectProperties().get(domainUri);
-		if (indirectOutProperties != null) 
-			for (String s : indirectOutProperties) 
-				if (this.ontCache.getObjectPropertiesWithOnlyDomain().containsKey(s)) 
-					results.add(s);
-		
-		return results;
+		return this.ontCache.getObjectPropertiesWithOnlyDomain(domainUri);
 	}
 
 	public HashSet<String> getObjectPropertiesWithOnlyRange(String rangeUri) {
+
 		
 		if (rangeUri == null) return null;
-		
-		HashSet<String> directInProperties;
-		HashSet<String> indirectInProperties;
-		HashSet<String> results = new HashSet<String>();
-		
-		directInProperties = this.ontCache.getDirectInObjectProperties().get(rangeUri);
-		if (directInProperties != null)
-			for (String s : directInProperties) 
-				if (this.ontCache.getObjectPropertiesWithOnlyRange().containsKey(s)) 
-					results.add(s);
-
-		indirectInProperties = this.ontCache.getIndirectInObjectProperties().get(rangeUri);
-		if (indirectInProperties != null) 
-			for (String s : indirectInProperties) 
-				if (this.ontCache.getObjectPropertiesWithOnlyRange().containsKey(s)) 
-					results.add(s);
-		
-		return results;
+		return this.ontCache.getObjectPropertiesWithOnlyRange(rangeUri);
 	}
 
 	public boolean isConnectedByDirectProperty(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return false;
-//		return this.ontCache.getConnectedByDirectProperties().contains(sourceUri + targetUri);
-		HashSet<String> directProperties = this.ontCache.getDomainRangeToDirectProperties().get(sourceUri+targetUri);
-		if (directProperties != null && directProperties.size() > 0) { 
-			return true;
-		}
-		return false;
+		return this.ontCache.isConnectedByDirectProperty(sourceUri, targetUri);
 	}
 
 	public boolean isConnectedByIndirectProperty(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return false;
-//		return this.ontCache.getConnectedByIndirectProperties().contains(sourceUri + targetUri);
-		HashSet<String> indirectProperties = this.ontCache.getDomainRangeToIndirectProperties().get(sourceUri+targetUri);
-		if (indirectProperties != null && indirectProperties.size() > 0) { 
-			return true;
-		}
-		return false;
+		return this.ontCache.isConnectedByIndirectProperty(sourceUri, targetUri);
 	}
 
 	public boolean isConnectedByDomainlessProperty(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return false;
-//		return this.ontCache.getConnectedByDomainlessProperties().contains(sourceUri + targetUri);
-		HashSet<String> directInProperties = this.ontCache.getDirectInObjectProperties().get(targetUri);
-		if (directInProperties != null) {
-			if (!Sets.intersection(this.ontCache.getObjectPropertiesWithOnlyRange().keySet(), directInProperties).isEmpty())
-				return true;
-		}
-		HashSet<String> indirectInProperties = this.ontCache.getIndirectInObjectProperties().get(targetUri);
-		if (indirectInProperties != null) {
-			if (!Sets.intersection(this.ontCache.getObjectPropertiesWithOnlyRange().keySet(), indirectInProperties).isEmpty())
-				return true;
-		}
-		return false;
+		return this.ontCache.isConnectedByDomainlessProperty(sourceUri, targetUri);
 	}
 
 	public boolean isConnectedByRangelessProperty(String sourceUri, String targetUri) {
+
 		
 		if (sourceUri == null || targetUri == null) return false;
-//		return this.ontCache.getConnectedByRangelessProperties().contains(sourceUri + targetUri);
-		HashSet<String> directOutProperties = this.ontCache.getDirectOutObjectProperties().get(sourceUri);
-		if (directOutProperties != null) {
-			if (!Sets.intersection(this.ontCache.getObjectPropertiesWithOnlyDomain().keySet(), directOutProperties).isEmpty())
-				return true;
-		}
-		HashSet<String> indirectOutProperties = this.ontCache.getIndirectOutObjectProperties().get(sourceUri);
-		if (indirectOutProperties != null) {
-			if (!Sets.intersection(this.ontCache.getObjectPropertiesWithOnlyDomain().keySet(), indirectOutProperties).isEmpty())
-				return true;
-		}
-		return false;
+		return this.ontCache.isConnectedByRangelessProperty(sourceUri, targetUri);
 	}
 	
 	public boolean isConnectedByDomainlessAndRangelessProperty(String sourceUri, String targetUri) {
@@ -778,4 +570,18 @@ public class OntologyManager  {
 		if (sourceUri == null || targetUri == null) return false;
 		return (this.ontCache.getObjectPropertiesWithoutDomainAndRange().size() > 0);
 	}
+
+	public HashSet<String> getClassesConnectedByObjectProperties(String classUri) {
+		
+		if (classUri == null) return new HashSet<String>();
+		return this.ontCache.getClassesConnectedByObjectProperties(classUri);
+	}
+
+	public HashSet<String> getClassesWithObjectPropertiesWithOnlyDomain() {
+		return this.ontCache.getClassesWithObjectPropertiesWithOnlyDomain();
+	}
+
+	public HashSet<String> getClassesWithObjectPropertiesWithOnlyRange() {
+		return this.ontCache.getClassesWithObjectPropertiesWithOnlyRange();
+	}
 }
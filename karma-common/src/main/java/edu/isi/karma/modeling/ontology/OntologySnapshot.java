@@ -0,0 +1,511 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.ref.WeakReference;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.codec.binary.Hex;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.io.Files;
+
+import edu.isi.karma.util.EncodingDetector;
+import edu.isi.karma.webserver.ServletContextParameterMap;
+import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
+
+/**
+ * The ontology model and the OntologyCache computed from a set of ontology
+ * files. A snapshot is never modified once it is built, so all the
+ * OntologyManagers that imported the same files, in the same order, share one
+ * snapshot instead of each parsing the files and building its own cache.
+ * 
+ * Snapshots are keyed by a hash of the content of the files and are only
+ * kept while some OntologyManager refers to them. When the
+ * ONTOLOGY_CACHE_DIRECTORY parameter is set, the cache of every snapshot
+ * built is also written there, and a later start that imports the same files
+ * reads it instead of building it again.
+ * 
+ * A file is parsed when it is imported, so that an import of a malformed file
+ * fails, and only the cache is built later. The hashes of the files that
+ * parsed are kept, in the cache directory as well, and such a file is not
+ * parsed again until its model is needed.
+ */
+public class OntologySnapshot {
+
+	private static Logger logger = LoggerFactory.getLogger(OntologySnapshot.class);
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final String CACHE_FILE_EXTENSION = ".bin";
+	// the caches written least recently used are deleted beyond this number
+	private static final int MAX_CACHE_FILES = 16;
+	private static final String PARSED_SOURCES_FILE = "parsed-sources.txt";
+
+	private static final OntologySnapshot EMPTY = new OntologySnapshot("", Collections.<Source>emptyList(), new OntologyHandler());
+	private static final Map<String, WeakReference<OntologySnapshot>> snapshots = new HashMap<String, WeakReference<OntologySnapshot>>();
+	// the hashes of the sources known to parse, and the cache directory they were last read from
+	private static final Set<String> parsedSources = new HashSet<String>();
+	private static File parsedSourcesDirectory = null;
+
+	private final String key;
+	private final List<Source> sources;
+	private final List<File> files;
+	// null until it is needed when the cache was read from disk
+	private OntologyHandler ontHandler;
+	private final OntologyCache ontCache;
+
+	private OntologySnapshot(String key, List<Source> sources, OntologyHandler ontHandler) {
+		this(key, sources, ontHandler, new OntologyCache(ontHandler));
+	}
+
+	private OntologySnapshot(String key, List<Source> sources, OntologyHandler ontHandler, OntologyCache ontCache) {
+		this.key = key;
+		this.sources = Collections.unmodifiableList(sources);
+		List<File> files = new ArrayList<File>();
+		for (Source source : sources) {
+			files.add(source.file);
+		}
+		this.files = Collections.unmodifiableList(files);
+		this.ontHandler = ontHandler;
+		this.ontCache = ontCache;
+	}
+
+	/**
+	 * @return the snapshot of an OntologyManager that didn't import anything
+	 */
+	public static OntologySnapshot empty() {
+		return EMPTY;
+	}
+
+	/**
+	 * Parses a source imported on top of the base snapshot and the sources
+	 * imported before it, unless it is known to parse and none of them had
+	 * to be parsed yet.
+	 * 
+	 * @param handler the model of the base snapshot and the sources, or null
+	 *            if they were not parsed
+	 * @return the model with the source added, or null if nothing was parsed
+	 * @throws IOException
+	 *             or the parser's exception if a file can't be parsed, the
+	 *             handler given must not be used anymore
+	 */
+	public static OntologyHandler parse(OntologySnapshot base, List<Source> sources, OntologyHandler handler, Source source) throws IOException {
+		if (handler == null) {
+			if (isParsed(source)) {
+				return null;
+			}
+			handler = newHandler(base);
+			for (Source s : sources) {
+				read(handler, s.file, s.encoding);
+			}
+		}
+		read(handler, source.file, source.encoding);
+		addParsed(source);
+		return handler;
+	}
+
+	/**
+	 * Returns the snapshot of the files of the base snapshot followed by the
+	 * given files, building it if no OntologyManager has it. The cache is read
+	 * from the cache directory if it was written there before. Otherwise the
+	 * cache is built once for all of the files, from the model they were
+	 * parsed into on import if there is one. If not, the model of the base
+	 * snapshot is copied and only the new files are parsed, a file that can't
+	 * be parsed any more is then logged and left out.
+	 * 
+	 * @param handler the model returned by the last
+	 *            {@link #parse(OntologySnapshot, List, OntologyHandler, Source)}
+	 *            of the sources, or null
+	 */
+	public static OntologySnapshot getOrCreate(OntologySnapshot base, List<Source> sources, OntologyHandler handler) {
+		if (sources.isEmpty()) {
+			return base;
+		}
+		MessageDigest digest = newDigest();
+		digest.update(base.key.getBytes(UTF8));
+		for (Source source : sources) {
+			digest.update(source.hash);
+		}
+		String key = Hex.encodeHexString(digest.digest());
+
+		synchronized (snapshots) {
+			OntologySnapshot snapshot = get(key);
+			if (snapshot != null) {
+				logger.info("Reusing the ontology cache of " + snapshot.files.size() + " ontology files");
+				return snapshot;
+			}
+			removeCollected();
+
+			File cacheDirectory = getCacheDirectory();
+			if (cacheDirectory != null) {
+				snapshot = readCache(cacheDirectory, key, base, sources, handler);
+			}
+			if (snapshot == null) {
+				snapshot = build(key, base, sources, handler);
+				if (cacheDirectory != null) {
+					writeCache(cacheDirectory, snapshot, sources);
+				}
+			}
+			snapshots.put(key, new WeakReference<OntologySnapshot>(snapshot));
+			return snapshot;
+		}
+	}
+
+	private static OntologySnapshot build(String key, OntologySnapshot base, List<Source> sources, OntologyHandler handler) {
+		List<Source> loadedSources = new ArrayList<Source>(base.sources);
+		if (handler != null) {
+			loadedSources.addAll(sources);
+		} else {
+			handler = newHandler(base);
+			for (Source source : sources) {
+				try {
+					read(handler, source.file, source.encoding);
+					loadedSources.add(source);
+					addParsed(source);
+				} catch (Exception e) {
+					logger.error("Error loading ontology: " + source.file.getAbsolutePath(), e);
+				}
+			}
+		}
+		OntologySnapshot snapshot = new OntologySnapshot(key, loadedSources, handler);
+		snapshot.ontCache.init();
+		return snapshot;
+	}
+
+	private static OntologyHandler newHandler(OntologySnapshot base) {
+		OntologyHandler ontHandler = new OntologyHandler();
+		OntologyHandler baseHandler = base.getOntologyHandler();
+		if (!baseHandler.getOntModel().isEmpty()) {
+			ontHandler.getOntModel().add(baseHandler.getOntModel());
+			ontHandler.getOntModel().setNsPrefixes(baseHandler.getOntModel().getNsPrefixMap());
+		}
+		return ontHandler;
+	}
+
+	private static boolean isParsed(Source source) {
+		synchronized (parsedSources) {
+			File cacheDirectory = getCacheDirectory();
+			if (cacheDirectory != null && !cacheDirectory.equals(parsedSourcesDirectory)) {
+				readParsedSources(cacheDirectory);
+				parsedSourcesDirectory = cacheDirectory;
+			}
+			return parsedSources.contains(source.getHash());
+		}
+	}
+
+	private static void addParsed(Source source) {
+		synchronized (parsedSources) {
+			if (!parsedSources.add(source.getHash())) {
+				return;
+			}
+			File cacheDirectory = getCacheDirectory();
+			if (cacheDirectory == null) {
+				return;
+			}
+			File file = new File(cacheDirectory, PARSED_SOURCES_FILE);
+			try {
+				Writer out = new FileWriter(file, true);
+				try {
+					out.write(source.getHash() + "\n");
+				} finally {
+					out.close();
+				}
+			} catch (IOException e) {
+				logger.warn("Unable to write the parsed ontology files to " + file.getAbsolutePath(), e);
+			}
+		}
+	}
+
+	private static void readParsedSources(File cacheDirectory) {
+		File file = new File(cacheDirectory, PARSED_SOURCES_FILE);
+		if (!file.isFile()) {
+			return;
+		}
+		try {
+			BufferedReader in = new BufferedReader(new FileReader(file));
+			try {
+				String line;
+				while ((line = in.readLine()) != null) {
+					if (!line.trim().isEmpty()) {
+						parsedSources.add(line.trim());
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			logger.warn("Unable to read the parsed ontology files from " + file.getAbsolutePath(), e);
+		}
+	}
+
+	/**
+	 * @return the directory the caches are written to, or null if they are
+	 *         not written
+	 */
+	private static File getCacheDirectory() {
+		String path = ServletContextParameterMap.getParameterValue(ContextParameter.ONTOLOGY_CACHE_DIRECTORY);
+		if (path == null || path.trim().isEmpty()) {
+			return null;
+		}
+		File directory = new File(path);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			logger.error("Unable to create the ontology cache directory " + path);
+			return null;
+		}
+		return directory;
+	}
+
+	/**
+	 * Reads the whole file at once and the cache from it.
+	 * 
+	 * @param handler the model of the files if they were parsed, or null
+	 * @return the snapshot, or null if the cache was never written or can't
+	 *         be read
+	 */
+	private static OntologySnapshot readCache(File cacheDirectory, String key, OntologySnapshot base, List<Source> sources, OntologyHandler handler) {
+		File cacheFile = new File(cacheDirectory, key + CACHE_FILE_EXTENSION);
+		if (!cacheFile.isFile()) {
+			return null;
+		}
+		long start = System.currentTimeMillis();
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.toByteArray(cacheFile)));
+			if (!key.equals(in.readUTF()) || in.readInt() != sources.size()) {
+				throw new IOException("The cache is not the one of these ontology files");
+			}
+			List<Source> loadedSources = new ArrayList<Source>(base.sources);
+			for (Source source : sources) {
+				if (in.readBoolean()) {
+					loadedSources.add(source);
+				}
+			}
+			OntologySnapshot snapshot = new OntologySnapshot(key, loadedSources, handler, OntologyCache.read(in));
+			cacheFile.setLastModified(System.currentTimeMillis());
+			logger.info("Read the ontology cache of " + loadedSources.size() + " ontology files from " + cacheFile.getAbsolutePath() +
+					" in " + (System.currentTimeMillis() - start) / 1000F);
+			return snapshot;
+		} catch (IOException e) {
+			logger.warn("Unable to read the ontology cache " + cacheFile.getAbsolutePath() + ", building it again", e);
+			cacheFile.delete();
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the cache to a temporary file that is then renamed, so that a
+	 * cache file is always complete.
+	 */
+	private static void writeCache(File cacheDirectory, OntologySnapshot snapshot, List<Source> sources) {
+		File cacheFile = new File(cacheDirectory, snapshot.key + CACHE_FILE_EXTENSION);
+		File tempFile = null;
+		try {
+			tempFile = File.createTempFile(snapshot.key, ".tmp", cacheDirectory);
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile), 64 * 1024));
+			try {
+				out.writeUTF(snapshot.key);
+				out.writeInt(sources.size());
+				for (Source source : sources) {
+					out.writeBoolean(snapshot.sources.contains(source));
+				}
+				snapshot.ontCache.write(out);
+			} finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(cacheFile)) {
+				throw new IOException("Unable to rename " + tempFile.getAbsolutePath() + " to " + cacheFile.getAbsolutePath());
+			}
+			logger.info("Wrote the ontology cache to " + cacheFile.getAbsolutePath());
+		} catch (IOException e) {
+			logger.error("Unable to write the ontology cache " + cacheFile.getAbsolutePath(), e);
+			if (tempFile != null) {
+				tempFile.delete();
+			}
+		}
+		deleteOldCaches(cacheDirectory);
+	}
+
+	private static void deleteOldCaches(File cacheDirectory) {
+		File[] cacheFiles = cacheDirectory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return name.endsWith(CACHE_FILE_EXTENSION);
+			}
+		});
+		if (cacheFiles == null || cacheFiles.length <= MAX_CACHE_FILES) {
+			return;
+		}
+		Arrays.sort(cacheFiles, new Comparator<File>() {
+			@Override
+			public int compare(File f1, File f2) {
+				return Long.compare(f2.lastModified(), f1.lastModified());
+			}
+		});
+		for (int i = MAX_CACHE_FILES; i < cacheFiles.length; i++) {
+			if (!cacheFiles[i].delete()) {
+				logger.warn("Unable to delete the ontology cache " + cacheFiles[i].getAbsolutePath());
+			}
+		}
+	}
+
+	private static OntologySnapshot get(String key) {
+		WeakReference<OntologySnapshot> reference = snapshots.get(key);
+		return reference == null ? null : reference.get();
+	}
+
+	private static void removeCollected() {
+		Iterator<WeakReference<OntologySnapshot>> references = snapshots.values().iterator();
+		while (references.hasNext()) {
+			if (references.next().get() == null) {
+				references.remove();
+			}
+		}
+	}
+
+	private static void read(OntologyHandler ontHandler, File sourceFile, String encoding) throws IOException {
+		InputStreamReader s = EncodingDetector.getInputStreamReader(sourceFile, encoding);
+		try {
+			if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("N3"))
+				ontHandler.getOntModel().read(s, null, "N3");
+			else if (Files.getFileExtension(sourceFile.getName()).equalsIgnoreCase("TTL"))
+				ontHandler.getOntModel().read(s, null, "TURTLE");
+			else
+				ontHandler.getOntModel().read(s, null); // default lang = "RDF/XML"
+		} finally {
+			s.close();
+		}
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the hash of the files this snapshot was built from, empty for
+	 *         the empty snapshot
+	 */
+	public String getKey() {
+		return key;
+	}
+
+	/**
+	 * @return the files this snapshot was built from, in import order
+	 */
+	public List<File> getFiles() {
+		return files;
+	}
+
+	/**
+	 * @return the model of the files, parsed again if the cache was read from
+	 *         disk
+	 */
+	synchronized OntologyHandler getOntologyHandler() {
+		if (ontHandler == null) {
+			OntologyHandler handler = new OntologyHandler();
+			for (Source source : sources) {
+				try {
+					if (!Arrays.equals(source.hash, new Source(source.file, source.encoding).hash)) {
+						logger.warn("The ontology " + source.file.getAbsolutePath() + " changed since its cache was written");
+					}
+					read(handler, source.file, source.encoding);
+				} catch (Exception e) {
+					logger.error("Error loading ontology: " + source.file.getAbsolutePath(), e);
+				}
+			}
+			ontHandler = handler;
+		}
+		return ontHandler;
+	}
+
+	OntologyCache getOntologyCache() {
+		return ontCache;
+	}
+
+	/**
+	 * An ontology file to import with the hash of its content, computed
+	 * when the file is added so that reading errors show up at that point.
+	 */
+	public static class Source {
+		private final File file;
+		private final String encoding;
+		private final byte[] hash;
+
+		/**
+		 * The content, the extension (which decides the syntax) and the
+		 * encoding of the file all go into the hash.
+		 */
+		public Source(File file, String encoding) throws IOException {
+			this.file = file;
+			this.encoding = encoding;
+			MessageDigest digest = newDigest();
+			digest.update((Files.getFileExtension(file.getName()).toLowerCase() + "|" + encoding + "|").getBytes(UTF8));
+			byte[] buffer = new byte[64 * 1024];
+			InputStream in = new FileInputStream(file);
+			try {
+				int read;
+				while ((read = in.read(buffer)) != -1) {
+					digest.update(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+			this.hash = digest.digest();
+		}
+
+		String getHash() {
+			return Hex.encodeHexString(hash);
+		}
+
+		public File getFile() {
+			return file;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.modeling.ontology;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import edu.isi.karma.rep.alignment.Label;
+
+/**
+ * Gives the URIs of an ontology dense int ids, so that sets of classes or
+ * properties can be kept in BitSets instead of sets of strings.
+ */
+class UriIndex {
+
+	private final HashMap<String, Integer> ids = new HashMap<String, Integer>();
+	private final List<String> uris = new ArrayList<String>();
+	private final List<Label> labels = new ArrayList<Label>();
+
+	/**
+	 * @return the id of the uri, or -1 if it was never added
+	 */
+	public int getId(String uri) {
+		if (uri == null)
+			return -1;
+		Integer id = ids.get(uri);
+		return id == null ? -1 : id;
+	}
+
+	public int add(String uri) {
+		Integer id = ids.get(uri);
+		if (id == null) {
+			id = uris.size();
+			ids.put(uri, id);
+			uris.add(uri);
+			labels.add(null);
+		}
+		return id;
+	}
+
+	public int add(String uri, Label label) {
+		int id = add(uri);
+		if (labels.get(id) == null)
+			labels.set(id, label);
+		return id;
+	}
+
+	public String getUri(int id) {
+		return uris.get(id);
+	}
+
+	/**
+	 * @return the label the uri was first added with, or null
+	 */
+	public Label getLabel(int id) {
+		return labels.get(id);
+	}
+
+	public int size() {
+		return uris.size();
+	}
+
+	public HashSet<String> getUris(BitSet bits) {
+		HashSet<String> result = new HashSet<String>();
+		for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1))
+			result.add(uris.get(i));
+		return result;
+	}
+}
@@ -85,8 +85,7 @@ public class SemanticTypeUtil {
 		{
 			return new ArrayList<String>();
 		}
-		ArrayList<Node> nodes = new ArrayList<Node>(Math.max(100, worksheet.getDataTable().getNumRows()));
-		worksheet.getDataTable().collectNodes(path, nodes);
+		List<Node> nodes = worksheet.getDataTable().getCollectedNodes(path);
 
 		Random r = new Random();
 		ArrayList<String> subset = new ArrayList<String>(TRAINING_EXAMPLE_MAX_COUNT);
@@ -108,10 +107,11 @@ public class SemanticTypeUtil {
 		}
 		else
 		{
-			Collections.shuffle(nodes);
-			for(int i = 0; i < nodes.size() && subset.size() < TRAINING_EXAMPLE_MAX_COUNT; i++)
+			List<Node> shuffledNodes = new ArrayList<Node>(nodes);
+			Collections.shuffle(shuffledNodes);
+			for(int i = 0; i < shuffledNodes.size() && subset.size() < TRAINING_EXAMPLE_MAX_COUNT; i++)
 			{
-				String nodeValue = nodes.get(i).getValue().asString();
+				String nodeValue = shuffledNodes.get(i).getValue().asString();
 				if (nodeValue != null && !nodeValue.equals(""))
 					subset.add(nodeValue);
 			}
@@ -268,8 +268,7 @@ public class SemanticTypeUtil {
 	 */
 	public static void identifyOutliers(Worksheet worksheet, String predictedType, HNodePath path, Tag outlierTag,
 			Map<ColumnFeature, Collection<String>> columnFeatures, CRFModelHandler crfModelHandler) {
-		Collection<Node> nodes = new ArrayList<Node>();
-		worksheet.getDataTable().collectNodes(path, nodes);
+		Collection<Node> nodes = worksheet.getDataTable().getCollectedNodes(path);
 
 		// Identify the top semantic type for each node
 		// It it does not matches the predicted type, it is a outlier.
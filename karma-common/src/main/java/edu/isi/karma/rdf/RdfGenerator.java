@@ -32,23 +32,32 @@ import edu.isi.karma.rep.WorkspaceManager;
 import edu.isi.karma.webserver.ExecutionController;
 import edu.isi.karma.webserver.KarmaException;
 import edu.isi.karma.webserver.WorkspaceRegistry;
+import org.json.JSONArray;
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
 import java.util.List;
 
 public abstract class RdfGenerator {
 
 	private static Logger logger = LoggerFactory.getLogger(RdfGenerator.class);
+	private final Deque<Workspace> idleWorkspaces = new LinkedList<Workspace>();
+	private int maxIdleWorkspaces = Runtime.getRuntime().availableProcessors();
 	
 	protected Workspace initializeWorkspace() {
 		
 		Workspace workspace = WorkspaceManager.getInstance().createWorkspace();
         WorkspaceRegistry.getInstance().register(new ExecutionController(workspace));
-        ModelingConfiguration.load();
-        ModelingConfiguration.setManualAlignment(true);
+        // other generators may be initializing workspaces at the same time
+        synchronized(ModelingConfiguration.class)
+        {
+        	ModelingConfiguration.load();
+        	ModelingConfiguration.setManualAlignment(true);
+        }
 		return workspace;
 	}
 
@@ -57,6 +66,69 @@ public abstract class RdfGenerator {
 	    WorkspaceRegistry.getInstance().deregister(workspace.getId());
 	}
 
+	/**
+	 * Hands out a workspace that was used before and reset, so that generating
+	 * RDF for many small sources doesn't set up a new workspace every time.
+	 * Has to be given back with {@link #releaseWorkspace(Workspace)}.
+	 */
+	protected Workspace acquireWorkspace() {
+		synchronized(idleWorkspaces)
+		{
+			if(!idleWorkspaces.isEmpty())
+			{
+				return idleWorkspaces.removeFirst();
+			}
+		}
+		return initializeWorkspace();
+	}
+
+	/**
+	 * Resets the workspace and keeps it for reuse, unless as many workspaces
+	 * as are kept are idle already, then it is removed.
+	 */
+	protected void releaseWorkspace(Workspace workspace) {
+		workspace.reset();
+		synchronized(idleWorkspaces)
+		{
+			if(idleWorkspaces.size() < maxIdleWorkspaces)
+			{
+				idleWorkspaces.addFirst(workspace);
+				return;
+			}
+		}
+		removeWorkspace(workspace);
+	}
+
+	/**
+	 * @param maxIdleWorkspaces
+	 *            number of workspaces kept for reuse, by default the number of
+	 *            processors, 0 to remove every workspace once it is released
+	 */
+	public void setMaxIdleWorkspaces(int maxIdleWorkspaces) {
+		this.maxIdleWorkspaces = Math.max(0, maxIdleWorkspaces);
+		synchronized(idleWorkspaces)
+		{
+			while(idleWorkspaces.size() > this.maxIdleWorkspaces)
+			{
+				removeWorkspace(idleWorkspaces.removeLast());
+			}
+		}
+	}
+
+	/**
+	 * Removes the workspaces kept for reuse from the workspace manager and
+	 * registry.
+	 */
+	public void removeIdleWorkspaces() {
+		synchronized(idleWorkspaces)
+		{
+			while(!idleWorkspaces.isEmpty())
+			{
+				removeWorkspace(idleWorkspaces.removeFirst());
+			}
+		}
+	}
+
 	protected void applyHistoryToWorksheet(Workspace workspace, Worksheet worksheet,
 			KR2RMLMapping mapping) throws JSONException {
 		WorksheetCommandHistoryExecutor wchr = new WorksheetCommandHistoryExecutor(worksheet.getId(), workspace);
@@ -64,7 +136,14 @@ public abstract class RdfGenerator {
 		{
 			List<CommandTag> tags = new ArrayList<CommandTag>();
 			tags.add(CommandTag.Transformation);
-			wchr.executeCommandsByTags(tags, mapping.getWorksheetHistory());
+			// The commands are normalized in place to the ids of the worksheet,
+			// so they are run from a copy to keep the mapping reusable
+			JSONArray history = mapping.getWorksheetHistory();
+			if(history != null && history.length() > 0)
+			{
+				history = new JSONArray(history.toString());
+			}
+			wchr.executeCommandsByTags(tags, history);
 		}
 		catch (CommandException | KarmaException e)
 		{
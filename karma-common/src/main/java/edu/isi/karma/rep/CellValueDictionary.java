@@ -0,0 +1,253 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Dictionary encodes the cell values of a worksheet. Every distinct string is
+ * stored once and the columns of the worksheet's tables only keep its int
+ * code. Code 0 is always {@link CellValue#getEmptyValue()}. Codes are never
+ * released, values that are overwritten stay in the dictionary until the
+ * worksheet is removed.
+ * 
+ * The values are kept in pages of consecutive codes. Codes are handed out as
+ * the values are first seen, so a page mostly holds the values of rows that
+ * were imported together. When the dictionary is given a spill directory and
+ * holds more than its maximum number of pages, the pages that were not used
+ * recently are written to a file there and dropped from memory, and read back
+ * the next time one of their values is decoded. Recent use is tracked with a
+ * reference bit per page that a clock hand clears, which approximates LRU
+ * without locking when a value in memory is decoded.
+ */
+class CellValueDictionary {
+
+	private static Logger logger = LoggerFactory.getLogger(CellValueDictionary.class);
+
+	static final int EMPTY_VALUE_CODE = 0;
+	static final int DEFAULT_MAX_RESIDENT_PAGES = 256;
+	private static final int PAGE_SHIFT = 12;
+	private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+	private static final int PAGE_MASK = PAGE_SIZE - 1;
+	private static final long NOT_WRITTEN = -1;
+
+	// the pages of values, null while a page is only in the spill file
+	private volatile AtomicReferenceArray<CellValue[]> pages = new AtomicReferenceArray<CellValue[]>(4);
+	// set when a page is used, cleared by the clock hand
+	private volatile byte[] referenced = new byte[4];
+	private long[] pageOffsets = new long[4];
+	private int numResidentPages = 0;
+	private int clockHand = 0;
+	private final File spillDirectory;
+	private final int maxResidentPages;
+	private ValueSpillFile spillFile;
+	private boolean spillFailed = false;
+
+	private int size = 0;
+	// open addressing table of code + 1, 0 marks a free slot, and the hash
+	// of the value of each slot so that probing doesn't read spilled pages
+	private int[] slots = new int[32];
+	private int[] slotHashes = new int[32];
+
+	CellValueDictionary() {
+		this(null, DEFAULT_MAX_RESIDENT_PAGES);
+	}
+
+	/**
+	 * @param spillDirectory
+	 *            where pages are written when there are more than
+	 *            maxResidentPages of them, or null to keep them all in memory
+	 */
+	CellValueDictionary(File spillDirectory, int maxResidentPages) {
+		this.spillDirectory = spillDirectory;
+		this.maxResidentPages = Math.max(2, maxResidentPages);
+		Arrays.fill(pageOffsets, NOT_WRITTEN);
+		append(CellValue.getEmptyValue());
+	}
+
+	synchronized int encode(CellValue value) {
+		if (value == null || value.isEmptyValue()) {
+			return EMPTY_VALUE_CODE;
+		}
+		String string = value.asString();
+		int hash = string.hashCode();
+		int mask = slots.length - 1;
+		int slot = spread(hash) & mask;
+		while (slots[slot] != 0) {
+			int code = slots[slot] - 1;
+			if (slotHashes[slot] == hash && decode(code).asString().equals(string)) {
+				return code;
+			}
+			slot = (slot + 1) & mask;
+		}
+		int code = append(value);
+		slots[slot] = code + 1;
+		slotHashes[slot] = hash;
+		if (size * 2 > slots.length) {
+			rehash();
+		}
+		return code;
+	}
+
+	CellValue decode(int code) {
+		int pageIndex = code >>> PAGE_SHIFT;
+		CellValue[] page = pages.get(pageIndex);
+		if (page == null) {
+			page = loadPage(pageIndex);
+		} else {
+			referenced[pageIndex] = 1;
+		}
+		return page[code & PAGE_MASK];
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * Deletes the spill file. The dictionary can't be used afterwards.
+	 */
+	synchronized void close() {
+		if (spillFile != null) {
+			spillFile.delete();
+			spillFile = null;
+		}
+	}
+
+	private int append(CellValue value) {
+		int code = size++;
+		int pageIndex = code >>> PAGE_SHIFT;
+		if ((code & PAGE_MASK) == 0) {
+			if (pageIndex == pages.length()) {
+				growPages();
+			}
+			pages.set(pageIndex, new CellValue[PAGE_SIZE]);
+			referenced[pageIndex] = 1;
+			numResidentPages++;
+			evictPages();
+		}
+		pages.get(pageIndex)[code & PAGE_MASK] = value;
+		return code;
+	}
+
+	private void growPages() {
+		int length = pages.length() * 2;
+		AtomicReferenceArray<CellValue[]> newPages = new AtomicReferenceArray<CellValue[]>(length);
+		for (int i = 0; i < pages.length(); i++) {
+			newPages.set(i, pages.get(i));
+		}
+		referenced = Arrays.copyOf(referenced, length);
+		int oldLength = pageOffsets.length;
+		pageOffsets = Arrays.copyOf(pageOffsets, length);
+		Arrays.fill(pageOffsets, oldLength, length, NOT_WRITTEN);
+		pages = newPages;
+	}
+
+	private synchronized CellValue[] loadPage(int pageIndex) {
+		CellValue[] page = pages.get(pageIndex);
+		if (page != null) {
+			return page;
+		}
+		try {
+			page = spillFile.read(pageOffsets[pageIndex], PAGE_SIZE);
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read spilled cell values", e);
+		}
+		if (pageIndex == 0) {
+			page[EMPTY_VALUE_CODE] = CellValue.getEmptyValue();
+		}
+		pages.set(pageIndex, page);
+		referenced[pageIndex] = 1;
+		numResidentPages++;
+		evictPages();
+		return page;
+	}
+
+	/**
+	 * Drops pages from memory until there are no more than maxResidentPages.
+	 * The last page, which is still being filled, always stays.
+	 */
+	private void evictPages() {
+		if (spillDirectory == null || spillFailed) {
+			return;
+		}
+		int lastPage = (size - 1) >>> PAGE_SHIFT;
+		while (numResidentPages > maxResidentPages) {
+			if (clockHand >= lastPage) {
+				clockHand = 0;
+			}
+			int pageIndex = clockHand++;
+			CellValue[] page = pages.get(pageIndex);
+			if (page == null) {
+				continue;
+			}
+			if (referenced[pageIndex] != 0) {
+				referenced[pageIndex] = 0;
+				continue;
+			}
+			if (pageOffsets[pageIndex] == NOT_WRITTEN) {
+				try {
+					if (spillFile == null) {
+						spillFile = new ValueSpillFile(spillDirectory);
+					}
+					pageOffsets[pageIndex] = spillFile.write(page, PAGE_SIZE);
+				} catch (IOException e) {
+					logger.error("Unable to spill cell values to " + spillDirectory
+							+ ", keeping them in memory", e);
+					spillFailed = true;
+					return;
+				}
+			}
+			pages.set(pageIndex, null);
+			numResidentPages--;
+		}
+	}
+
+	private void rehash() {
+		int[] oldSlots = slots;
+		int[] oldSlotHashes = slotHashes;
+		slots = new int[oldSlots.length * 2];
+		slotHashes = new int[oldSlots.length * 2];
+		int mask = slots.length - 1;
+		for (int i = 0; i < oldSlots.length; i++) {
+			if (oldSlots[i] == 0) {
+				continue;
+			}
+			int slot = spread(oldSlotHashes[i]) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = oldSlots[i];
+			slotHashes[slot] = oldSlotHashes[i];
+		}
+	}
+
+	private static int spread(int hash) {
+		hash *= 0x9E3779B9;
+		return hash ^ (hash >>> 16);
+	}
+}
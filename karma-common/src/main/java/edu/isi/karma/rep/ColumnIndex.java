@@ -0,0 +1,237 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The rows holding the nodes a Table collects for each HNodePath, kept in a
+ * flat array in the order {@link Table#collectNodes(HNodePath, Collection)}
+ * returns the nodes, so that column wide operations don't walk the rows and
+ * nested tables again. The nodes are created from the rows when they are
+ * asked for, like {@link Row#getNode(String)} does, so the index doesn't
+ * keep an object per cell.
+ * 
+ * Changing values doesn't change the rows of a path. An array is only
+ * collected again once one of the tables the walk went through changed
+ * structurally, which the {@link ColumnLayout} of the table counts.
+ */
+class ColumnIndex {
+
+	private final Table table;
+	private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+	ColumnIndex(Table table) {
+		this.table = table;
+	}
+
+	/**
+	 * @return the nodes of the path, an unmodifiable list that creates each
+	 *         node when it is read
+	 */
+	List<Node> getNodes(HNodePath path) {
+		return getEntry(path).getNodes();
+	}
+
+	boolean collectNodes(HNodePath path, Collection<Node> nodes) {
+		Entry entry = getEntry(path);
+		nodes.addAll(entry.getNodes());
+		return entry.found;
+	}
+
+	private Entry getEntry(HNodePath path) {
+		String key = path.toString();
+		Entry entry = entries.get(key);
+		if (entry == null || !entry.isValid()) {
+			removeInvalidEntries();
+			entry = collect(path);
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	private void removeInvalidEntries() {
+		Iterator<Entry> it = entries.values().iterator();
+		while (it.hasNext()) {
+			if (!it.next().isValid()) {
+				it.remove();
+			}
+		}
+	}
+
+	private Entry collect(HNodePath path) {
+		String[] hNodeIds = getHNodeIds(path);
+		// the counts are read before the tables, a change made meanwhile
+		// invalidates the entry
+		Map<ColumnLayout, Integer> visited = new IdentityHashMap<ColumnLayout, Integer>();
+		List<Row> rows = new ArrayList<Row>(table.getNumRows());
+		boolean found = collect(table, hNodeIds, 0, rows, visited);
+		return new Entry(rows.toArray(new Row[rows.size()]),
+				hNodeIds[hNodeIds.length - 1], found, visited);
+	}
+
+	static String[] getHNodeIds(HNodePath path) {
+		String[] hNodeIds = new String[path.length()];
+		HNodePath rest = path;
+		for (int i = 0; i < hNodeIds.length; i++) {
+			hNodeIds[i] = rest.getFirst().getId();
+			rest = rest.getRest();
+		}
+		return hNodeIds;
+	}
+
+	private static boolean collect(Table table, String[] hNodeIds, int depth,
+			Collection<Row> rows, Map<ColumnLayout, Integer> visited) {
+		visit(table, visited);
+		boolean result = false;
+		for (int i = 0; i < table.getNumRows(); i++) {
+			result |= collect(table.getRow(i), hNodeIds, depth, rows, visited);
+		}
+		return result;
+	}
+
+	/**
+	 * Collects the rows holding the nodes of the path from hNodeIds[depth]
+	 * on. When the next HNode of the path isn't in the nested table of the
+	 * node, it is looked for in the same row and then in the row of the
+	 * parent table.
+	 * 
+	 * @param rows
+	 *            gets the row of each node of the last HNode of the path
+	 * @param visited
+	 *            the layouts of the tables looked at, with their counts, or
+	 *            null
+	 */
+	static boolean collect(Row row, String[] hNodeIds, int depth,
+			Collection<Row> rows, Map<ColumnLayout, Integer> visited) {
+		visit(row.getBelongsToTable(), visited);
+		Node n = row.getNode(hNodeIds[depth]);
+		if (n == null) {
+			return false;
+		}
+		if (depth == hNodeIds.length - 1) {
+			rows.add(row);
+			return true;
+		}
+
+		String next = hNodeIds[depth + 1];
+		Table nestedTable = n.getNestedTable();
+		if (nestedTable != null) {
+			visit(nestedTable, visited);
+			if (nestedTable.getNumRows() != 0
+					&& nestedTable.getRow(0).getNode(next) != null) {
+				return collect(nestedTable, hNodeIds, depth + 1, rows, visited);
+			}
+		}
+		if (row.getNode(next) != null) {
+			return collect(row, hNodeIds, depth + 1, rows, visited);
+		}
+		Node parentNode = row.getBelongsToTable().getNestedTableInNode();
+		if (parentNode != null) {
+			return collect(parentNode.getBelongsToRow(), hNodeIds, depth + 1,
+					rows, visited);
+		}
+		return false;
+	}
+
+	private static void visit(Table table, Map<ColumnLayout, Integer> visited) {
+		if (visited != null) {
+			ColumnLayout layout = table.getColumnStore().getLayout();
+			if (!visited.containsKey(layout)) {
+				visited.put(layout, layout.getModCount());
+			}
+		}
+	}
+
+	private static class Entry {
+		private final Row[] rows;
+		private final String hNodeId;
+		private final boolean found;
+		private final ColumnLayout[] layouts;
+		private final int[] modCounts;
+
+		Entry(Row[] rows, String hNodeId, boolean found,
+				Map<ColumnLayout, Integer> visited) {
+			this.rows = rows;
+			this.hNodeId = hNodeId;
+			this.found = found;
+			this.layouts = new ColumnLayout[visited.size()];
+			this.modCounts = new int[visited.size()];
+			int i = 0;
+			for (Map.Entry<ColumnLayout, Integer> e : visited.entrySet()) {
+				layouts[i] = e.getKey();
+				modCounts[i++] = e.getValue();
+			}
+		}
+
+		boolean isValid() {
+			for (int i = 0; i < layouts.length; i++) {
+				if (layouts[i].getModCount() != modCounts[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		List<Node> getNodes() {
+			if (rows.length == 0) {
+				return new NodeList(rows, -1, hNodeId);
+			}
+			// the HNode belongs to one HTable, so all the rows share its
+			// layout, whose columns are never reused
+			int column = rows[0].getBelongsToTable().getColumnStore()
+					.getLayout().indexOf(hNodeId);
+			return new NodeList(rows, column, hNodeId);
+		}
+	}
+
+	private static class NodeList extends AbstractList<Node> implements
+			RandomAccess {
+		private final Row[] rows;
+		private final int column;
+		private final String hNodeId;
+
+		NodeList(Row[] rows, int column, String hNodeId) {
+			this.rows = rows;
+			this.column = column;
+			this.hNodeId = hNodeId;
+		}
+
+		@Override
+		public Node get(int index) {
+			return new Node(rows[index], column, hNodeId);
+		}
+
+		@Override
+		public int size() {
+			return rows.length;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Numbers the HNodes of an HTable so that the Tables of that HTable can keep
+ * their cells in int indexed columns. The layout is shared by all the Tables
+ * of the HTable. Indexes are never reused, a removed HNode just leaves its
+ * column unused.
+ * 
+ * The layout also counts the structural changes of its Tables: rows added
+ * or removed, cells added or removed and nested tables set. Changing a value
+ * is not a structural change.
+ * 
+ * @see ColumnStore
+ * @see ColumnIndex
+ */
+class ColumnLayout {
+
+	private final Map<String, Integer> indexes = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] hNodeIds = new String[0];
+	private final AtomicInteger modCount = new AtomicInteger();
+
+	/**
+	 * @return the column of the HNode or -1 if it never had one
+	 */
+	int indexOf(String hNodeId) {
+		Integer index = indexes.get(hNodeId);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * @return the column of the HNode, assigning the next one if it has none
+	 *         yet
+	 */
+	synchronized int addColumn(String hNodeId) {
+		Integer index = indexes.get(hNodeId);
+		if (index != null) {
+			return index;
+		}
+		String[] newHNodeIds = Arrays.copyOf(hNodeIds, hNodeIds.length + 1);
+		newHNodeIds[hNodeIds.length] = hNodeId;
+		hNodeIds = newHNodeIds;
+		indexes.put(hNodeId, hNodeIds.length - 1);
+		return hNodeIds.length - 1;
+	}
+
+	int getNumColumns() {
+		return hNodeIds.length;
+	}
+
+	String getHNodeId(int column) {
+		return hNodeIds[column];
+	}
+
+	/**
+	 * @return a number that changes whenever one of the Tables of this layout
+	 *         changes structurally
+	 */
+	int getModCount() {
+		return modCount.get();
+	}
+
+	void structureChanged() {
+		modCount.incrementAndGet();
+	}
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The values of a column in all the tables of a worksheet at some point, so
+ * that a command can put them back on undo, or put its own results back on
+ * redo, instead of computing them again.
+ *
+ * The snapshot shares the cell arrays of the tables, which copy an array
+ * before writing it once it is shared. Taking and restoring a snapshot only
+ * costs a pointer per table, and values stay valid because the dictionary
+ * of the worksheet never forgets a value.
+ */
+public class ColumnSnapshot {
+
+	private final String hNodeId;
+	private final List<Table> tables;
+	private final List<int[]> columns;
+
+	private ColumnSnapshot(String hNodeId, List<Table> tables, List<int[]> columns) {
+		this.hNodeId = hNodeId;
+		this.tables = tables;
+		this.columns = columns;
+	}
+
+	public static ColumnSnapshot take(Worksheet worksheet, String hNodeId, RepFactory factory) {
+		HNode hNode = factory.getHNode(hNodeId);
+		Set<Table> visited = Collections.newSetFromMap(new IdentityHashMap<Table, Boolean>());
+		List<Table> tables = new ArrayList<Table>();
+		List<int[]> columns = new ArrayList<int[]>();
+		for (Node node : worksheet.getDataTable().getCollectedNodes(hNode.getHNodePath(factory))) {
+			Table table = node.getBelongsToRow().getBelongsToTable();
+			if (visited.add(table)) {
+				ColumnStore store = table.getColumnStore();
+				tables.add(table);
+				columns.add(store.shareColumn(store.getLayout().indexOf(hNodeId)));
+			}
+		}
+		return new ColumnSnapshot(hNodeId, tables, columns);
+	}
+
+	public String getHNodeId() {
+		return hNodeId;
+	}
+
+	/**
+	 * Puts the values back in the column they were taken from.
+	 */
+	public void restore() {
+		restore(hNodeId);
+	}
+
+	/**
+	 * Puts the values in another column of the same tables, for a column that
+	 * was removed and added again with a new HNode.
+	 */
+	public void restore(String targetHNodeId) {
+		for (int i = 0; i < tables.size(); i++) {
+			ColumnStore store = tables.get(i).getColumnStore();
+			int column = store.getLayout().indexOf(targetHNodeId);
+			if (column != -1) {
+				store.restoreColumn(column, columns.get(i));
+			}
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.util.Arrays;
+
+import edu.isi.karma.rep.Node.NodeStatus;
+
+/**
+ * The cells of a Table, one int array per column of its {@link ColumnLayout}
+ * indexed by the slot of the row. A cell holds the dictionary code of its
+ * value plus one, so that 0 means the row has no node for that column, and a
+ * flag for edited values. Nested tables are kept in a separate array that is
+ * only created for columns that have them.
+ * 
+ * Slots are handed out in order and not reused when a row is removed.
+ * Writes are not synchronized, a table is expected to be modified by one
+ * thread at a time.
+ * 
+ * The array of a column can be shared with a {@link ColumnSnapshot}. A shared
+ * array is copied before it is written, so taking or restoring a snapshot
+ * doesn't copy any cells.
+ */
+class ColumnStore {
+
+	private static final int EDITED = 1 << 30;
+	private static final int CODE_MASK = EDITED - 1;
+	private static final int[] EMPTY_COLUMN = new int[0];
+
+	private final ColumnLayout layout;
+	private final CellValueDictionary dictionary;
+	private int[][] cells = new int[0][];
+	private boolean[] sharedColumns = new boolean[0];
+	private Table[][] nestedTables = new Table[0][];
+	private int numSlots = 0;
+
+	ColumnStore(ColumnLayout layout, CellValueDictionary dictionary) {
+		this.layout = layout;
+		this.dictionary = dictionary;
+	}
+
+	ColumnLayout getLayout() {
+		return layout;
+	}
+
+	int addSlot() {
+		return numSlots++;
+	}
+
+	boolean contains(int slot, int column) {
+		return cell(slot, column) != 0;
+	}
+
+	/**
+	 * Gives the row an empty, original cell in the column if it doesn't have
+	 * one yet.
+	 */
+	void add(int slot, int column) {
+		int[] values = column(slot, column);
+		if (values[slot] == 0) {
+			values[slot] = CellValueDictionary.EMPTY_VALUE_CODE + 1;
+			layout.structureChanged();
+		}
+	}
+
+	void remove(int slot, int column) {
+		if (cell(slot, column) != 0) {
+			column(slot, column)[slot] = 0;
+		}
+		if (column < nestedTables.length && nestedTables[column] != null
+				&& slot < nestedTables[column].length) {
+			nestedTables[column][slot] = null;
+		}
+		layout.structureChanged();
+	}
+
+	CellValue getValue(int slot, int column) {
+		int cell = cell(slot, column);
+		if (cell == 0) {
+			return CellValue.getEmptyValue();
+		}
+		return dictionary.decode((cell & CODE_MASK) - 1);
+	}
+
+	NodeStatus getStatus(int slot, int column) {
+		return (cell(slot, column) & EDITED) != 0 ? NodeStatus.edited
+				: NodeStatus.original;
+	}
+
+	void setValue(int slot, int column, CellValue value, NodeStatus status) {
+		int cell = dictionary.encode(value) + 1;
+		if (status == NodeStatus.edited) {
+			cell |= EDITED;
+		}
+		int[] values = column(slot, column);
+		if (values[slot] == 0) {
+			// a node removed from its row is being set again
+			layout.structureChanged();
+		}
+		values[slot] = cell;
+	}
+
+	Table getNestedTable(int slot, int column) {
+		if (column < nestedTables.length) {
+			Table[] tables = nestedTables[column];
+			if (tables != null && slot < tables.length) {
+				return tables[slot];
+			}
+		}
+		return null;
+	}
+
+	void setNestedTable(int slot, int column, Table nestedTable) {
+		if (column >= nestedTables.length) {
+			nestedTables = Arrays.copyOf(nestedTables, Math.max(column + 1, layout.getNumColumns()));
+		}
+		Table[] tables = nestedTables[column];
+		if (tables == null || slot >= tables.length) {
+			tables = Arrays.copyOf(tables == null ? new Table[0] : tables,
+					newLength(tables == null ? 0 : tables.length, slot));
+			nestedTables[column] = tables;
+		}
+		tables[slot] = nestedTable;
+		layout.structureChanged();
+	}
+
+	/**
+	 * @return the array of the column, which is copied the next time the
+	 *         column is written
+	 */
+	int[] shareColumn(int column) {
+		if (column < 0 || column >= cells.length) {
+			return EMPTY_COLUMN;
+		}
+		sharedColumns[column] = true;
+		return cells[column];
+	}
+
+	/**
+	 * Puts back an array returned by {@link #shareColumn(int)}. Rows that
+	 * got a slot after it was shared keep their cells.
+	 */
+	void restoreColumn(int column, int[] values) {
+		ensureColumn(column);
+		int[] current = cells[column];
+		boolean shared = true;
+		for (int slot = values.length; slot < current.length; slot++) {
+			if (current[slot] != 0) {
+				int[] merged = Arrays.copyOf(values, current.length);
+				System.arraycopy(current, values.length, merged,
+						values.length, current.length - values.length);
+				values = merged;
+				shared = false;
+				break;
+			}
+		}
+		cells[column] = values;
+		sharedColumns[column] = shared;
+		layout.structureChanged();
+	}
+
+	private int cell(int slot, int column) {
+		if (column < 0 || column >= cells.length) {
+			return 0;
+		}
+		int[] values = cells[column];
+		return slot < values.length ? values[slot] : 0;
+	}
+
+	/**
+	 * @return the array of the column, grown to hold the slot and copied if
+	 *         it is shared
+	 */
+	private int[] column(int slot, int column) {
+		ensureColumn(column);
+		int[] values = cells[column];
+		if (slot >= values.length || sharedColumns[column]) {
+			values = Arrays.copyOf(values, slot >= values.length
+					? newLength(values.length, slot) : values.length);
+			cells[column] = values;
+			sharedColumns[column] = false;
+		}
+		return values;
+	}
+
+	private void ensureColumn(int column) {
+		if (column >= cells.length) {
+			int oldLength = cells.length;
+			cells = Arrays.copyOf(cells, Math.max(column + 1, layout.getNumColumns()));
+			Arrays.fill(cells, oldLength, cells.length, EMPTY_COLUMN);
+			sharedColumns = Arrays.copyOf(sharedColumns, cells.length);
+		}
+	}
+
+	private static int newLength(int length, int slot) {
+		return Math.max(slot + 1, length + (length >> 1));
+	}
+}
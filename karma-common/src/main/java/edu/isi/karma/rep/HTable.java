@@ -53,11 +53,18 @@ public class HTable extends RepEntity {
 	 */
 	private HNode parentHNode = null;
 
+	// the columns of the data tables of this HTable
+	private final ColumnLayout columnLayout = new ColumnLayout();
+
 	public HTable(String id, String tableName) {
 		super(id);
 		this.tableName = tableName;
 	}
 
+	ColumnLayout getColumnLayout() {
+		return columnLayout;
+	}
+
 	public String getTableName() {
 		return tableName;
 	}
@@ -1,103 +1,183 @@
 package edu.isi.karma.rep;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.codec.digest.DigestUtils;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
 
+/**
+ * Computes 128 bit fingerprints of the values of rows so that rows with the
+ * same values can be grouped without comparing them. A leaf value is hashed
+ * with murmur3, the values of a row are combined in the order of the given
+ * columns and the rows of a nested table are combined independently of
+ * their order.
+ *
+ * An instance is meant to be used for one operation: it remembers the
+ * fingerprints of the nested tables it has seen, up to a bound, and is
+ * thrown away with them afterwards.
+ */
 public class HashValueManager {
-	private static Map<String, HashMap<String, String>> hashTable = new HashMap<String, HashMap<String, String>>();
+
+	private static final HashFunction MURMUR = Hashing.murmur3_128();
+	private static final int DEFAULT_MAX_CACHED_TABLES = 10000;
+	private static final long NULL_HASH = 0x9e3779b97f4a7c15L;
+	private static final long C1 = 0x87c37b91114253d5L;
+	private static final long C2 = 0x4cf5ad432745937fL;
+
+	private final Map<String, Fingerprint> nestedTableCache;
 
 	public HashValueManager() {
-		// TODO Auto-generated constructor stub
+		this(DEFAULT_MAX_CACHED_TABLES);
 	}
-	
-	private static void computeHashValue(Row row, List<String> HNodeIds) {
-		for (String HNodeid : HNodeIds) {
-			Node n = row.getNode(HNodeid);
-			if (n.hasNestedTable()) {
-				Table nestedTable = n.getNestedTable();
-				for (Row nestedRow : nestedTable.getRows(0, nestedTable.getNumRows())) {
-					List<String> ids = new ArrayList<String>();
-					for (Node node : nestedRow.getNodes()) {
-						ids.add(node.getHNodeId());
-					}
-					computeHashValue(nestedRow, ids);
-				}
-				//System.out.println("CellValue:" + v.asString());
+
+	public HashValueManager(final int maxCachedTables) {
+		nestedTableCache = new LinkedHashMap<String, Fingerprint>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+				return size() > maxCachedTables;
 			}
-			else {
-				//System.out.println("CellValue:" + n.getValue().asString());
-				HashMap<String, String> tmp = hashTable.get(row.getId());
-				if (tmp == null) 
-					tmp = new HashMap<String, String>();
-				String value = n.getValue().asString();
-				value = DigestUtils.shaHex(value);
-				tmp.put(n.getId(), value);
-				hashTable.put(row.getId(), tmp);
+		};
+	}
+
+	/**
+	 * Groups the rows of the table by the fingerprint of their values in the
+	 * given columns.
+	 *
+	 * @return the rows of each group, the groups in the order in which their
+	 *         first row appears in the table
+	 */
+	public Map<Fingerprint, List<Row>> groupRows(Table table, List<String> hNodeIds) {
+		Map<Fingerprint, List<Row>> groups = new LinkedHashMap<Fingerprint, List<Row>>();
+		int numRows = table.getNumRows();
+		for (int i = 0; i < numRows; i++) {
+			Row row = table.getRow(i);
+			Fingerprint fingerprint = getFingerprint(row, hNodeIds);
+			List<Row> group = groups.get(fingerprint);
+			if (group == null) {
+				group = new ArrayList<Row>();
+				groups.put(fingerprint, group);
 			}
+			group.add(row);
 		}
-		
+		return groups;
 	}
-	
-	public static String getHashValue(Row row, List<String> HNodeIds) {
-		computeHashValue(row, HNodeIds);
-		return getHashValueRecurse(row, HNodeIds);
+
+	public Fingerprint getFingerprint(Row row, List<String> hNodeIds) {
+		long h1 = hNodeIds.size();
+		long h2 = ~h1;
+		for (String hNodeId : hNodeIds) {
+			Node n = row.getNode(hNodeId);
+			Fingerprint value;
+			if (n == null)
+				value = Fingerprint.NULL;
+			else if (n.hasNestedTable())
+				value = getFingerprint(n.getNestedTable());
+			else
+				value = getFingerprint(n.getValue() == null ? null : n.getValue().asString());
+			h1 = fmix64((h1 ^ value.h1) * C1 + h2);
+			h2 = fmix64((h2 ^ value.h2) * C2 + h1);
+		}
+		return new Fingerprint(h1, h2);
 	}
-	
-	private static String getHashValueRecurse(Row row, List<String> HNodeIds) {
-		List<String> hashString = new ArrayList<String>();
-		for (String HNodeid : HNodeIds) {
-			Node n = row.getNode(HNodeid);
-			if (n.hasNestedTable()) {
-				Table nestedTable = n.getNestedTable();
-				for (Row nestedRow : nestedTable.getRows(0, nestedTable.getNumRows())) {
-					List<String> ids = new ArrayList<String>();
-					for (Node node : nestedRow.getNodes()) {
-						ids.add(node.getHNodeId());
-					}
-					hashString.add(getHashValue(nestedRow, ids));				
-				}
-			}
-			else {
-				HashMap<String, String> tmp = hashTable.get(row.getId());
-				
-				hashString.add(tmp.get(n.getId()));
+
+	/**
+	 * @return the fingerprint as a hex string, for callers that key maps on
+	 *         strings
+	 */
+	public String getHashValue(Row row, List<String> hNodeIds) {
+		return getFingerprint(row, hNodeIds).toString();
+	}
+
+	private Fingerprint getFingerprint(Table nestedTable) {
+		Fingerprint fingerprint = nestedTableCache.get(nestedTable.getId());
+		if (fingerprint != null)
+			return fingerprint;
+		// the rows are summed after mixing, so that their order doesn't
+		// matter but repeated rows still count
+		long h1 = 0;
+		long h2 = 0;
+		int numRows = nestedTable.getNumRows();
+		for (int i = 0; i < numRows; i++) {
+			Row nestedRow = nestedTable.getRow(i);
+			List<String> ids = new ArrayList<String>();
+			for (Node node : nestedRow.getNodes()) {
+				ids.add(node.getHNodeId());
 			}
+			Fingerprint rowFingerprint = getFingerprint(nestedRow, ids);
+			h1 += fmix64(rowFingerprint.h1 ^ C2);
+			h2 += fmix64(rowFingerprint.h2 ^ C1);
 		}
-		Collections.sort(hashString);
-		String hash = "";
-		for (String t : hashString) {
-			hash += t; 
-		}
-		//System.out.println(row.getId() + ": " + hash);
-		return hash;
+		fingerprint = new Fingerprint(fmix64(h1 + numRows), fmix64(h2 ^ numRows));
+		nestedTableCache.put(nestedTable.getId(), fingerprint);
+		return fingerprint;
 	}
-	
-	public static void purgeHashTable() {
-		hashTable.clear();
+
+	private static Fingerprint getFingerprint(String value) {
+		if (value == null)
+			return Fingerprint.NULL;
+		byte[] bytes = MURMUR.hashString(value).asBytes();
+		return new Fingerprint(toLong(bytes, 0), toLong(bytes, 8));
 	}
-	private static String getHashValue(Table table, String NodeId) {
-		for (Row row : table.getRows(0, table.getNumRows())) {
-			for (Node node : row.getNodes()) {
-				if (node.getId().compareTo(NodeId) == 0) {
-					return DigestUtils.shaHex(node.getValue().asString());
-				}
-				if (node.hasNestedTable()) {
-					String t = getHashValue(node.getNestedTable(), NodeId);
-					if (t != null)
-						return t;
-				}
-			}
+
+	private static long toLong(byte[] bytes, int offset) {
+		long value = 0;
+		for (int i = offset + 7; i >= offset; i--) {
+			value = (value << 8) | (bytes[i] & 0xffL);
 		}
-		return null;
+		return value;
+	}
+
+	private static long fmix64(long k) {
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
 	}
-	public static String getHashValue(Worksheet worksheet, String NodeId) {
-		Table dataTable = worksheet.getDataTable();
-		return getHashValue(dataTable, NodeId);
+
+	public void clear() {
+		nestedTableCache.clear();
 	}
 
+	/**
+	 * A 128 bit fingerprint of the values of a row.
+	 */
+	public static final class Fingerprint {
+
+		private static final Fingerprint NULL = new Fingerprint(NULL_HASH, ~NULL_HASH);
+
+		private final long h1;
+		private final long h2;
+
+		private Fingerprint(long h1, long h2) {
+			this.h1 = h1;
+			this.h2 = h2;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (h1 ^ (h1 >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Fingerprint))
+				return false;
+			Fingerprint other = (Fingerprint) obj;
+			return h1 == other.h1 && h2 == other.h2;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%016x%016x", h1, h2);
+		}
+	}
 }
@@ -53,30 +53,36 @@ public class Node extends RepEntity implements Neighbor {
 	// the HNode that defines my properties.
 	private final String hNodeId;
 
-	// possibly has a nested table, null if none
-	private Table nestedTable = null;
-
-	private NodeStatus status = NodeStatus.original;
-
-	// The value stored in this cell.
-	private CellValue value = CellValue.getEmptyValue();
-
-	private CellValue originalValue = CellValue.getEmptyValue();
-
 	// mariam
 	/**
 	 * The row that this node belongs to
 	 */
-	private Row belongsToRow;
+	private final Row belongsToRow;
+
+	// the column of the hNode in the ColumnStore of the row's table
+	private final int column;
 
-	Node(String id, String hNodeId) {
-		super(id);
+	/**
+	 * Nodes are views of a cell in the {@link ColumnStore} of the row's table,
+	 * created when a row is asked for them. The value, status and nested table
+	 * are not stored in the node.
+	 */
+	Node(Row belongsToRow, int column, String hNodeId) {
+		super(null);
+		this.belongsToRow = belongsToRow;
+		this.column = column;
 		this.hNodeId = hNodeId;
 	}
 
-	// mariam
-	public void setBelongsToRow(Row row) {
-		belongsToRow = row;
+	/**
+	 * Node ids are the id of the row followed by the id of the HNode, so
+	 * that they don't need to be stored.
+	 * 
+	 * @see RepFactory#getNode(String)
+	 */
+	@Override
+	public String getId() {
+		return belongsToRow.getId() + hNodeId;
 	}
 
 	public Row getBelongsToRow() {
@@ -94,24 +100,29 @@ public class Node extends RepEntity implements Neighbor {
 
 	// /////////////
 
+	private ColumnStore getColumnStore() {
+		return belongsToRow.getBelongsToTable().getColumnStore();
+	}
+
 	public String getHNodeId() {
 		return hNodeId;
 	}
 
 	public NodeStatus getStatus() {
-		return status;
+		return getColumnStore().getStatus(belongsToRow.getSlot(), column);
 	}
 
 	public CellValue getOriginalValue() {
-		return originalValue;
+		return CellValue.getEmptyValue();
 	}
 
 	public CellValue getValue() {
-		return value;
+		return getColumnStore().getValue(belongsToRow.getSlot(), column);
 	}
 
 	public void setValue(CellValue value, NodeStatus status, RepFactory factory) {
 		// Pedro 2012/09/14
+		Table nestedTable = getNestedTable();
 		if (nestedTable != null) {
 			logger.info("Node in column '"
 					+ factory.getColumnName(hNodeId)
@@ -119,16 +130,16 @@ public class Node extends RepEntity implements Neighbor {
 					+ value.asString() + "'. Adding as orphan in nested table");
 			nestedTable.addOrphanValue(value, hNodeId, factory);
 		} else {
-			this.value = value;
-			this.status = status;
+			getColumnStore().setValue(belongsToRow.getSlot(), column, value,
+					status);
 		}
 	}
 
 	public void clearValue(NodeStatus status) {
 		// pedro 2012-09-15: this was wrong because it was setting the value to
 		// null.
-		this.value = CellValue.getEmptyValue();
-		this.status = status;
+		getColumnStore().setValue(belongsToRow.getSlot(), column,
+				CellValue.getEmptyValue(), status);
 	}
 
 	public void setValue(String value, NodeStatus status, RepFactory factory) {
@@ -136,13 +147,15 @@ public class Node extends RepEntity implements Neighbor {
 	}
 
 	public Table getNestedTable() {
-		return nestedTable;
+		return getColumnStore().getNestedTable(belongsToRow.getSlot(), column);
 	}
 
 	public void setNestedTable(Table nestedTable, RepFactory factory) {
-		this.nestedTable = nestedTable;
+		getColumnStore().setNestedTable(belongsToRow.getSlot(), column,
+				nestedTable);
 		// mariam
 		if (nestedTable != null) {
+			CellValue value = getValue();
 			nestedTable.setNestedTableInNode(this);
 			// pedro 2012-09-15
 			if (!value.isEmptyValue()) {
@@ -151,15 +164,29 @@ public class Node extends RepEntity implements Neighbor {
 						+ "' already contains a value: '"
 						+ value.asString()
 						+ "'. Clearing value and adding as orphan in nested table. ");
-				CellValue orphanValue = value;
-				value = CellValue.getEmptyValue();
-				nestedTable.addOrphanValue(orphanValue, hNodeId, factory);
+				getColumnStore().setValue(belongsToRow.getSlot(), column,
+						CellValue.getEmptyValue(), getStatus());
+				nestedTable.addOrphanValue(value, hNodeId, factory);
 			}
 		}
 	}
 
 	public boolean hasNestedTable() {
-		return nestedTable != null;
+		return getNestedTable() != null;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o instanceof Node) {
+			Node n = (Node) o;
+			return n.belongsToRow == belongsToRow && n.column == column;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(belongsToRow) * 31 + column;
 	}
 
 	public String toString() {
@@ -167,11 +194,12 @@ public class Node extends RepEntity implements Neighbor {
 		b.append("N(");
 		b.append(getId() + ",");
 		b.append(hNodeId + ",");
+		Table nestedTable = getNestedTable();
 		if (nestedTable != null) {
 			b.append("*" + nestedTable.getId() + "/"
 					+ nestedTable.getHTableId() + ")");
 		} else {
-			b.append(value.asString() + ")");
+			b.append(getValue().asString() + ")");
 		}
 		return b.toString();
 	}
@@ -179,13 +207,14 @@ public class Node extends RepEntity implements Neighbor {
 	@Override
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix + "  - ");
-		pw.print(factory.getHNode(hNodeId).getColumnName() + "/" + id + "/"
-				+ hNodeId + ":");
+		pw.print(factory.getHNode(hNodeId).getColumnName() + "/" + getId()
+				+ "/" + hNodeId + ":");
+		Table nestedTable = getNestedTable();
 		if (nestedTable != null) {
 			pw.println();
 			nestedTable.prettyPrint(prefix + "      ", pw, factory);
 		} else {
-			pw.println("<" + value.asString() + ">");
+			pw.println("<" + getValue().asString() + ">");
 		}
 	}
 
@@ -20,26 +20,38 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
+import java.io.File;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.rep.HNode.HNodeType;
+import edu.isi.karma.webserver.ServletContextParameterMap;
+import edu.isi.karma.webserver.ServletContextParameterMap.ContextParameter;
 
 /**
+ * Ids are handed out atomically and the registries are concurrent maps, so
+ * the objects of a workspace can be created and looked up from several
+ * threads.
+ * 
  * @author szekely
  * 
  */
 public class RepFactory {
 
+	private static Logger logger = LoggerFactory.getLogger(RepFactory.class);
 
-	private final Map<String, HNode> hNodes = new HashMap<String, HNode>(100);
-	private final Map<String, HTable> hTables = new HashMap<String, HTable>(10);
-	private final Map<String, Worksheet> worksheets = new HashMap<String, Worksheet>(10);
-	private final Map<String, Table> tables = new HashMap<String, Table>(10);
-	private final Map<String, Row> rows = new HashMap<String, Row>(1000);
-	private final Map<String, Node> nodes = new HashMap<String, Node>(10000);
-	private int id = 0;
+	private final ConcurrentMap<String, HNode> hNodes = new ConcurrentHashMap<String, HNode>(100);
+	private final ConcurrentMap<String, HTable> hTables = new ConcurrentHashMap<String, HTable>(10);
+	private final ConcurrentMap<String, Worksheet> worksheets = new ConcurrentHashMap<String, Worksheet>(10);
+	private final ConcurrentMap<String, Table> tables = new ConcurrentHashMap<String, Table>(10);
+	private final ConcurrentMap<String, Row> rows = new ConcurrentHashMap<String, Row>(1000);
+	private final ConcurrentMap<String, CellValueDictionary> valueDictionaries = new ConcurrentHashMap<String, CellValueDictionary>(10);
+	private final AtomicInteger id = new AtomicInteger();
 	
 	public Worksheet createWorksheet(String tableName, Workspace workspace, String encoding) {
 		String id = getNewId("WS");
@@ -52,22 +64,40 @@ public class RepFactory {
 	}
         
 	public void replaceWorksheet(String id, Worksheet worksheet) {
-		if (worksheets.containsKey(id)) {
-			worksheets.put(id, worksheet);
+		if (id != null && worksheets.replace(id, worksheet) != null) {
 			hTables.put(worksheet.getHeaders().getId(), worksheet.getHeaders());
 		}
 	}
 
 	public void removeWorksheet(String id) {
-		if(worksheets.containsKey(id)) {
-			Worksheet worksheet = worksheets.get(id);
+		Worksheet worksheet = id != null ? worksheets.remove(id) : null;
+		if(worksheet != null) {
 			hTables.remove(worksheet.getHeaders().id);
-			worksheets.remove(id);
+			CellValueDictionary dictionary = valueDictionaries.remove(id);
+			if (dictionary != null) {
+				dictionary.close();
+			}
 		}
 	}
 	
+	/**
+	 * Forgets all the objects created by this factory. Ids keep increasing so
+	 * they are never reused.
+	 */
+	void clear() {
+		hNodes.clear();
+		hTables.clear();
+		worksheets.clear();
+		tables.clear();
+		rows.clear();
+		for (CellValueDictionary dictionary : valueDictionaries.values()) {
+			dictionary.close();
+		}
+		valueDictionaries.clear();
+	}
+
 	public String getNewId(String prefix) {
-		return prefix + id++;
+		return prefix + id.getAndIncrement();
 	}
 
 	HNode createHNode(String id, String hTableId, String columnName,
@@ -94,7 +124,7 @@ public class RepFactory {
 	}
 
 	public HNode getHNode(String id) {
-		return hNodes.get(id);
+		return get(hNodes, id);
 	}
 
 	public String getColumnName(String id) {
@@ -102,23 +132,41 @@ public class RepFactory {
 	}
 
 	public HTable getHTable(String id) {
-		return hTables.get(id);
+		return get(hTables, id);
 	}
 
+	/**
+	 * @param id
+	 *            a node id, the id of its row followed by the id of its HNode
+	 */
 	public Node getNode(String id) {
-		return nodes.get(id);
+		if (id == null) {
+			return null;
+		}
+		int hNodeIdStart = 1;
+		while (hNodeIdStart < id.length()
+				&& Character.isDigit(id.charAt(hNodeIdStart))) {
+			hNodeIdStart++;
+		}
+		Row r = rows.get(id.substring(0, hNodeIdStart));
+		return r == null ? null : r.getNode(id.substring(hNodeIdStart));
 	}
 
 	public Worksheet getWorksheet(String id) {
-		return worksheets.get(id);
+		return get(worksheets, id);
 	}
 
 	public Table getTable(String id) {
-		return tables.get(id);
+		return get(tables, id);
 	}
 	
 	public Row getRow(String id) {
-		return rows.get(id);
+		return get(rows, id);
+	}
+
+	// the maps used to be HashMaps, which allowed looking up null
+	private static <T> T get(ConcurrentMap<String, T> map, String id) {
+		return id != null ? map.get(id) : null;
 	}
 
 	HTable createHTable(String id, String tableName) {
@@ -133,7 +181,10 @@ public class RepFactory {
 	}
 
 	Table createTable(String id, String hTableId, String worksheetId) {
-		Table t = new Table(worksheetId, id, hTableId);
+		HTable ht = hTables.get(hTableId);
+		Table t = new Table(worksheetId, id, hTableId,
+				ht != null ? ht.getColumnLayout() : new ColumnLayout(),
+				getValueDictionary(worksheetId));
 		tables.put(id, t);
 		return t;
 	}
@@ -143,37 +194,62 @@ public class RepFactory {
 		return createTable(id, hTableId, worksheetId);
 	}
 
-	Row createRow(String id, String hTableId, String worksheetId) {
-		Row r = new Row(id);
+	/**
+	 * Cell values are dictionary encoded per worksheet, so the dictionary is
+	 * shared by the data table and all the nested tables of a worksheet. When
+	 * the WORKSHEET_SPILL_DIRECTORY parameter is set, the values of large
+	 * worksheets that were not used recently are moved to a file there.
+	 */
+	private CellValueDictionary getValueDictionary(String worksheetId) {
+		CellValueDictionary dictionary = valueDictionaries.get(worksheetId);
+		if (dictionary == null) {
+			dictionary = new CellValueDictionary(getSpillDirectory(),
+					CellValueDictionary.DEFAULT_MAX_RESIDENT_PAGES);
+			CellValueDictionary existing = valueDictionaries.putIfAbsent(worksheetId, dictionary);
+			if (existing != null) {
+				dictionary = existing;
+			}
+		}
+		return dictionary;
+	}
+
+	private static File getSpillDirectory() {
+		String path = ServletContextParameterMap.getParameterValue(ContextParameter.WORKSHEET_SPILL_DIRECTORY);
+		if (path == null || path.trim().isEmpty()) {
+			return null;
+		}
+		File directory = new File(path);
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			logger.error("Unable to create the worksheet spill directory " + path);
+			return null;
+		}
+		return directory;
+	}
+
+	Row createRow(String id, Table table) {
+		Row r = new Row(id, table);
 		rows.put(id, r);
 
-		HTable ht = hTables.get(hTableId);
+		HTable ht = hTables.get(table.getHTableId());
 		for (String hNodeId : ht.getHNodeIds()) {
-			Node n = createNode(hNodeId, worksheetId);
-			r.addNode(n);
+			createNode(r, hNodeId);
 		}
 
 		return r;
 	}
-	Row createRow(String hTableId, String worksheetId) {
+	Row createRow(Table table) {
 		String id = getNewId("R");
-		return createRow(id, hTableId, worksheetId);
+		return createRow(id, table);
 	}
 	
-	Node createNode(String id, String hNodeId, String worksheetId) {
-		Node n = new Node(id, hNodeId);
-		nodes.put(id, n);
+	Node createNode(Row row, String hNodeId) {
+		Node n = row.addNode(hNodeId);
 		HNode hn = hNodes.get(hNodeId);
 		HTable nestedHTable = hn.getNestedTable();
 		if (nestedHTable != null) {
-			n.setNestedTable(createTable(nestedHTable.getId(), worksheetId), this);
+			n.setNestedTable(createTable(nestedHTable.getId(), row.getWorksheetId()), this);
 		}
 		return n;
 	}
-	
-	Node createNode(String hNodeId, String worksheetId) {
-		String id = getNewId("N");
-		return createNode(id, hNodeId, worksheetId);
-	}
 
 }
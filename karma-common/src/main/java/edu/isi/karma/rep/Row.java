@@ -27,8 +27,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -41,28 +42,43 @@ public class Row extends RepEntity implements Neighbor {
 	private static Logger logger = LoggerFactory.getLogger(Row.class
 			.getSimpleName());
 
-	// My nodes, columns containing cells or nested tables, a map from HNode ids
-	// to Node.
-	private final Map<String, Node> nodes = new HashMap<String, Node>();
-
 	// mariam
 	/**
 	 * The table that this row belongs to
 	 */
-	private Table belongsToTable;
+	private final Table belongsToTable;
+
+	// My cells are in the slot of the ColumnStore of my table. My nodes are
+	// views of them, so that rows don't need a Node per cell.
+	private final int slot;
 
-	Row(String id) {
+	Row(String id, Table belongsToTable) {
 		super(id);
+		this.belongsToTable = belongsToTable;
+		this.slot = belongsToTable.getColumnStore().addSlot();
+	}
+
+	int getSlot() {
+		return slot;
 	}
 
 	public Node getNode(String hNodeId) {
-		return nodes.get(hNodeId);
+		ColumnStore store = belongsToTable.getColumnStore();
+		int column = store.getLayout().indexOf(hNodeId);
+		if (column == -1 || !store.contains(slot, column)) {
+			return null;
+		}
+		return new Node(this, column, hNodeId);
 	}
 
 	// mariam
 	public void removeNode(String hNodeId) {
-		nodes.remove(hNodeId);
-		for (Node n : nodes.values()) {
+		ColumnStore store = belongsToTable.getColumnStore();
+		int column = store.getLayout().indexOf(hNodeId);
+		if (column != -1) {
+			store.remove(slot, column);
+		}
+		for (Node n : getNodes()) {
 			Table nestedTable = n.getNestedTable();
 			if (nestedTable != null) {
 				nestedTable.removeNodeFromDataTable(hNodeId);
@@ -70,24 +86,37 @@ public class Row extends RepEntity implements Neighbor {
 		}
 	}
 
+	/**
+	 * @return the nodes of this row, in the order their columns were added to
+	 *         the table.
+	 */
 	public Collection<Node> getNodes() {
-		return nodes.values();
+		ColumnStore store = belongsToTable.getColumnStore();
+		ColumnLayout layout = store.getLayout();
+		int numColumns = layout.getNumColumns();
+		List<Node> nodes = new ArrayList<Node>(numColumns);
+		for (int column = 0; column < numColumns; column++) {
+			if (store.contains(slot, column)) {
+				nodes.add(new Node(this, column, layout.getHNodeId(column)));
+			}
+		}
+		return nodes;
 	}
 
 	// mariam
 	/**
 	 * Returns all nodes and associated HNodeIds.
 	 * 
-	 * @return all nodes and associated HNodeIds.
+	 * @return a new map of all nodes and associated HNodeIds.
 	 */
 	public Map<String, Node> getNodesMap() {
+		Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+		for (Node n : getNodes()) {
+			nodes.put(n.getHNodeId(), n);
+		}
 		return nodes;
 	}
 
-	public void setBelongsToTable(Table t) {
-		belongsToTable = t;
-	}
-
 	public Table getBelongsToTable() {
 		return belongsToTable;
 	}
@@ -98,10 +127,16 @@ public class Row extends RepEntity implements Neighbor {
 
 	// ///////////////
 
-	void addNode(Node node) {
-		nodes.put(node.getHNodeId(), node);
-		// mariam
-		node.setBelongsToRow(this);
+	/**
+	 * Gives this row an empty cell for the HNode, if it doesn't have one.
+	 * 
+	 * @return the node of the cell
+	 */
+	Node addNode(String hNodeId) {
+		ColumnStore store = belongsToTable.getColumnStore();
+		int column = store.getLayout().addColumn(hNodeId);
+		store.add(slot, column);
+		return new Node(this, column, hNodeId);
 	}
 
 	/**
@@ -158,7 +193,7 @@ public class Row extends RepEntity implements Neighbor {
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix + "__");
 		pw.println("/" + id);
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			n.prettyPrint(prefix, pw, factory);
 		}
 	}
@@ -166,7 +201,7 @@ public class Row extends RepEntity implements Neighbor {
 	// mariam
 	public String toString() {
 		String s = "ROW:\n";
-		for (Node n : nodes.values()) {
+		for (Node n : getNodes()) {
 			s += n.toString();
 		}
 		return s;
@@ -175,13 +210,11 @@ public class Row extends RepEntity implements Neighbor {
 	void addNodeToDataTable(HNode newHNode, Table table, RepFactory factory) {
 		HTable ht = factory.getHTable(table.getHTableId());
 		if (ht.contains(newHNode)) {
-			Node newNode = factory.createNode(newHNode.getId(),
-					getWorksheetId());
-			addNode(newNode);
+			factory.createNode(this, newHNode.getId());
 		} else {
 			// We don't know where the nested table is, so we have to
 			// try all of them.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNodeToDataTable(newHNode, factory);
@@ -212,7 +245,7 @@ public class Row extends RepEntity implements Neighbor {
 		} else {
 			// The node may be in one of the nested tables. We have to look for
 			// it.
-			for (Node n : nodes.values()) {
+			for (Node n : getNodes()) {
 				Table nestedTable = n.getNestedTable();
 				if (nestedTable != null) {
 					nestedTable.addNestedTableToDataTable(hNode, factory);
@@ -224,15 +257,16 @@ public class Row extends RepEntity implements Neighbor {
 	@Override
 	public boolean canReachNeighbor(String hNodeId) {
 
-		return nodes.containsKey(hNodeId)
+		return getNode(hNodeId) != null
 				|| (belongsToTable.getNestedTableInNode() != null && belongsToTable
 						.getNestedTableInNode().canReachNeighbor(hNodeId));
 	}
 
 	@Override
 	public Node getNeighbor(String hNodeId) {
-		if (nodes.containsKey(hNodeId)) {
-			return nodes.get(hNodeId);
+		Node node = getNode(hNodeId);
+		if (node != null) {
+			return node;
 		} else if (belongsToTable.getNestedTableInNode() != null) {
 			return belongsToTable.getNestedTableInNode().getNeighbor(hNodeId);
 		}
@@ -254,43 +288,12 @@ public class Row extends RepEntity implements Neighbor {
 	}
 
 	public boolean collectNodes(HNodePath path, Collection<Node> nodes) {
-		Node n = getNode(path.getFirst().getId());
-		if (n == null) {
-			return false;
-		}
-		// Check if the path has only one HNode
-		if (path.getRest() == null || path.getRest().isEmpty()) {
-			nodes.add(n);
-			return true;
-		}
-
-		// Check if the node has a nested table
-		HNodePath rest = path.getRest();
-		if (n.hasNestedTable()) {
-			int numRows = n.getNestedTable().getNumRows();
-			if (numRows != 0)
-			{
-				List<Row> rowsNestedTable = n.getNestedTable().getRows(0,
-						numRows);
-				if (rowsNestedTable != null && rowsNestedTable.size() != 0) {
-					
-					if(n.getNestedTable().getRows(0, 1).get(0).getNode(rest.getFirst().getId()) != null)
-					{
-						return n.getNestedTable().collectNodes(path.getRest(), nodes);
-					}
-				}
-			}
-		}
-		if(n.getBelongsToRow().getNode(rest.getFirst().getId()) != null)
-		{
-			return n.getBelongsToRow().collectNodes(rest, nodes);
-		}
-		
-		if(n.getBelongsToRow().getBelongsToTable().getNestedTableInNode() != null)
-		{
-			return n.getBelongsToRow().getBelongsToTable().getNestedTableInNode().getBelongsToRow().collectNodes(rest, nodes);
+		String[] hNodeIds = ColumnIndex.getHNodeIds(path);
+		List<Row> rows = new ArrayList<Row>();
+		boolean found = ColumnIndex.collect(this, hNodeIds, 0, rows, null);
+		for (Row row : rows) {
+			nodes.add(row.getNode(hNodeIds[hNodeIds.length - 1]));
 		}
-		return false;
-		
+		return found;
 	}
 }
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -50,7 +51,17 @@ public class Table extends RepEntity {
 	private final String hTableId;
 
 	// My rows.
-	private List<Row> rows = new ArrayList<Row>();
+	private final List<Row> rows = new ArrayList<Row>();
+
+	// A read-only view of my rows, handed out instead of copies.
+	private final List<Row> rowsView = Collections.unmodifiableList(rows);
+
+	// The cells of my rows.
+	private final ColumnStore columnStore;
+
+	// The nodes collected for each path, created the first time nodes are
+	// collected.
+	private volatile ColumnIndex columnIndex;
 
 	// mariam
 	/**
@@ -58,10 +69,16 @@ public class Table extends RepEntity {
 	 */
 	private Node nestedTableInNode;
 
-	Table(String myWorksheetId, String id, String hTableId) {
+	Table(String myWorksheetId, String id, String hTableId,
+			ColumnLayout columnLayout, CellValueDictionary valueDictionary) {
 		super(id);
 		this.worksheetId = myWorksheetId;
 		this.hTableId = hTableId;
+		this.columnStore = new ColumnStore(columnLayout, valueDictionary);
+	}
+
+	ColumnStore getColumnStore() {
+		return columnStore;
 	}
 
 	// mariam
@@ -82,21 +99,35 @@ public class Table extends RepEntity {
 	}
 
 	public Row addRow(RepFactory factory) {
-		Row r = factory.createRow(hTableId, worksheetId);
+		Row r = factory.createRow(this);
 		rows.add(r);
-		// mariam
-		r.setBelongsToTable(this);
+		columnStore.getLayout().structureChanged();
 		return r;
 	}
 	
 	public boolean removeRow(Row r) {
-		return rows.remove(r);
+		boolean removed = rows.remove(r);
+		if (removed) {
+			columnStore.getLayout().structureChanged();
+		}
+		return removed;
 	}
 
 	public int getNumRows() {
 		return rows.size();
 	}
 
+	Row getRow(int index) {
+		return rows.get(index);
+	}
+
+	/**
+	 * @return the position of the row in this table, or -1 if it isn't in it.
+	 */
+	int indexOfRow(Row row) {
+		return rows.indexOf(row);
+	}
+
 	/**
 	 * We need to add a new Node to each row in this table to provide a place
 	 * holder to store it's values.
@@ -141,14 +172,41 @@ public class Table extends RepEntity {
 	public ArrayList<Row> getRows(int startIndex, int count) {
 		ArrayList<Row> result = new ArrayList<Row>();
 		if (rows.size() > 0) {
-			for (int i = Math.min(startIndex, rows.size() - 1); i < Math.min(
-					startIndex + count, rows.size()); i++) {
-				result.add(rows.get(i));
+			int fromIndex = Math.min(startIndex, rows.size() - 1);
+			int toIndex = Math.min(startIndex + count, rows.size());
+			if (fromIndex < toIndex) {
+				result.addAll(rows.subList(fromIndex, toIndex));
 			}
 		}
 		return result;
 	}
 
+	/**
+	 * The rows without copying them. The view follows rows added or removed
+	 * later, so it should not be iterated while rows are added to or removed
+	 * from this table; use {@link #getRows(int, int)} then.
+	 * 
+	 * @return a read-only view of all the rows.
+	 */
+	public List<Row> getRowsView() {
+		return rowsView;
+	}
+
+	/**
+	 * @param startIndex
+	 *            , first row at index 0.
+	 * @param count
+	 * @return a read-only view of the requested number of rows, or less if
+	 *         the count or startIndex are out of bounds. Sub lists of the view
+	 *         are views too, so it can be split into ranges of rows to be
+	 *         processed in parallel.
+	 */
+	public List<Row> getRowsView(int startIndex, int count) {
+		int fromIndex = Math.max(0, Math.min(startIndex, rows.size()));
+		int toIndex = Math.max(fromIndex, (int) Math.min((long) startIndex + count, rows.size()));
+		return rowsView.subList(fromIndex, toIndex);
+	}
+
 	@Override
 	public void prettyPrint(String prefix, PrintWriter pw, RepFactory factory) {
 		pw.print(prefix);
@@ -173,18 +231,35 @@ public class Table extends RepEntity {
 		if (nodes == null) {
 			nodes = new ArrayList<Node>();
 		}
-		return collectNodes(path, nodes, rows);
+		return getColumnIndex().collectNodes(path, nodes);
 	}
 
-	private boolean collectNodes(HNodePath path, Collection<Node> nodes,
-			List<Row> rows) {
-		boolean result = false;
-		for (Row r : rows) {
-			
-			result |= r.collectNodes(path, nodes);
+	/**
+	 * Returns the nodes {@link #collectNodes(HNodePath, Collection)} would add,
+	 * in the same order. The rows of the nodes are collected once and kept
+	 * until the rows or nested tables along the path change, and each node
+	 * is created when it is read from the list.
+	 * 
+	 * @param path
+	 *            Path to a given column
+	 * @return an unmodifiable list of the nodes that satisfy the path
+	 */
+	public List<Node> getCollectedNodes(HNodePath path) {
+		return getColumnIndex().getNodes(path);
+	}
 
+	private ColumnIndex getColumnIndex() {
+		ColumnIndex index = columnIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = columnIndex;
+				if (index == null) {
+					index = new ColumnIndex(this);
+					columnIndex = index;
+				}
+			}
 		}
-		return result;
+		return index;
 	}
 
 	public void setCollectedNodeValues(HNodePath path, List<String> nodes,
@@ -213,8 +288,7 @@ public class Table extends RepEntity {
 				if (numRows == 0)
 					continue RowIterator;
 
-				List<Row> rowsNestedTable = n.getNestedTable().getRows(0,
-						numRows);
+				List<Row> rowsNestedTable = n.getNestedTable().getRowsView();
 				if (rowsNestedTable != null && rowsNestedTable.size() != 0) {
 					setCollectedNodeValues(path.getRest(), nodes,
 							rowsNestedTable, nodeIdx, factory);
@@ -23,13 +23,22 @@
  */
 package edu.isi.karma.rep;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Pages through the rows of a table. The pager remembers the last row it
+ * has shown as well as its index, so that rows added to or removed from the
+ * table before it don't make the next page skip or repeat rows.
+ */
 public class TablePager {
 
 	private final Table table;
 
 	private int currentEndIndex;
+
+	// The row at currentEndIndex when it was last moved.
+	private Row currentEndRow;
 	
 	private int pagerSize;
 
@@ -37,15 +46,39 @@ public class TablePager {
 		super();
 		this.table = table;
 		this.pagerSize = desiredSize;
-		currentEndIndex = (desiredSize < table.getNumRows()) ? desiredSize-1 : table.getNumRows();
+		moveCurrentEnd((desiredSize < table.getNumRows()) ? desiredSize-1 : table.getNumRows());
 	}
 
 	public int getCurrentEndIndex() {
+		if (currentEndRow != null) {
+			if (currentEndIndex >= table.getNumRows()
+					|| table.getRow(currentEndIndex) != currentEndRow) {
+				// rows were added or removed before it
+				int index = table.indexOfRow(currentEndRow);
+				if (index >= 0) {
+					currentEndIndex = index;
+				}
+			}
+		}
 		return currentEndIndex;
 	}
 
+	private void moveCurrentEnd(int endIndex) {
+		int numRows = table.getNumRows();
+		if (endIndex >= 0 && numRows > 0) {
+			currentEndIndex = Math.min(endIndex, numRows - 1);
+			currentEndRow = table.getRow(currentEndIndex);
+		} else {
+			currentEndIndex = endIndex;
+			currentEndRow = null;
+		}
+	}
+
+	/**
+	 * @return a read-only view of the rows shown so far.
+	 */
 	public List<Row> getRows() {
-		return table.getRows(0, currentEndIndex+1);
+		return table.getRowsView(0, getCurrentEndIndex()+1);
 	}
 
 	public int getPagerSize() {
@@ -57,21 +90,21 @@ public class TablePager {
 	}
 
 	public List<Row> loadAdditionalRows() {
-		int previousEndIndex = currentEndIndex;
+		int previousEndIndex = getCurrentEndIndex();
 		
-		currentEndIndex = Math.min(currentEndIndex + pagerSize, table.getNumRows()-1);
-		return table.getRows(previousEndIndex+1, pagerSize);
+		moveCurrentEnd(Math.min(previousEndIndex + pagerSize, table.getNumRows()-1));
+		return new ArrayList<Row>(table.getRowsView(previousEndIndex+1, pagerSize));
 	}
 	
 	public boolean isAtEndOfTable() {
-		return (currentEndIndex + 1) >= table.getNumRows(); 
+		return (getCurrentEndIndex() + 1) >= table.getNumRows(); 
 	}
 	
 	public int getAdditionalRowsLeftCount() {
 		if (isAtEndOfTable()) {
 			return 0;
 		} else {
-			return table.getNumRows() - (currentEndIndex + 1);
+			return table.getNumRows() - (getCurrentEndIndex() + 1);
 		}
 	}
 }
@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+package edu.isi.karma.rep;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A temporary file the pages of a {@link CellValueDictionary} are written to
+ * when they are evicted from memory. Pages are appended once, since the
+ * values of a code never change, and read back from any thread.
+ */
+class ValueSpillFile {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final File file;
+	private final RandomAccessFile randomAccessFile;
+	private final FileChannel channel;
+	private long length = 0;
+
+	ValueSpillFile(File directory) throws IOException {
+		file = File.createTempFile("worksheet-", ".values", directory);
+		file.deleteOnExit();
+		randomAccessFile = new RandomAccessFile(file, "rw");
+		channel = randomAccessFile.getChannel();
+	}
+
+	/**
+	 * @return the offset to read the page from
+	 */
+	synchronized long write(CellValue[] page, int count) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(count * 16);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(0);
+		out.writeInt(count);
+		for (int i = 0; i < count; i++) {
+			byte[] value = page[i].asString().getBytes(UTF8);
+			out.writeInt(value.length);
+			out.write(value);
+		}
+		out.flush();
+		ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+		buffer.putInt(0, buffer.limit() - 4);
+		long offset = length;
+		while (buffer.hasRemaining()) {
+			channel.write(buffer, length + buffer.position());
+		}
+		length += buffer.limit();
+		return offset;
+	}
+
+	CellValue[] read(long offset, int pageSize) throws IOException {
+		ByteBuffer buffer = readBytes(offset, 4);
+		buffer = readBytes(offset + 4, buffer.getInt(0));
+		int count = buffer.getInt();
+		CellValue[] page = new CellValue[pageSize];
+		for (int i = 0; i < count; i++) {
+			byte[] value = new byte[buffer.getInt()];
+			buffer.get(value);
+			page[i] = new StringCellValue(new String(value, UTF8));
+		}
+		return page;
+	}
+
+	private ByteBuffer readBytes(long offset, int size) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, offset + buffer.position()) < 0) {
+				throw new EOFException("Truncated value page at " + offset + " in " + file);
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	void delete() {
+		try {
+			randomAccessFile.close();
+		} catch (IOException e) {
+			// it is deleted anyway
+		}
+		file.delete();
+	}
+}
@@ -28,8 +28,8 @@ import edu.isi.karma.modeling.semantictypes.crfmodelhandler.CRFModelHandler;
 import edu.isi.karma.rep.metadata.TagsContainer;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Contains all the data to support a single instance of Karma, called a
@@ -53,7 +53,7 @@ public class Workspace extends Entity {
 	/**
 	 * Record all the worksheets defined in this workspace.
 	 */
-	private final Map<String, Worksheet> worksheets = new HashMap<String, Worksheet>();
+	private final Map<String, Worksheet> worksheets = new ConcurrentHashMap<String, Worksheet>();
 	
 	/**
 	 * Saves all the tagging information
@@ -103,13 +103,26 @@ public class Workspace extends Entity {
 	}
 
 	public void removeWorksheet(String id) {
-		Worksheet ws = worksheets.get(id);
 		factory.removeWorksheet(id);
-		this.worksheets.remove(id);
+		if (id != null) {
+			this.worksheets.remove(id);
+		}
+	}
+
+	/**
+	 * Removes all the worksheets, their data, their tags and the command 
+	 * history, keeping the ontology manager and the rest of the workspace, so 
+	 * that the workspace can be reused for another source.
+	 */
+	public void reset() {
+		worksheets.clear();
+		factory.clear();
+		tagsContainer.getTags().clear();
+		commandHistory = new CommandHistory();
 	}
 	
 	public Worksheet getWorksheet(String id) {
-		return worksheets.get(id);
+		return id != null ? worksheets.get(id) : null;
 	}
 
 	public Collection<Worksheet> getWorksheets() {
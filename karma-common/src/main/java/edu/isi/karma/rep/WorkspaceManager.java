@@ -20,19 +20,23 @@
  ******************************************************************************/
 package edu.isi.karma.rep;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
+ * Workspaces can be created and removed from several threads at once, for
+ * example by generators converting in parallel.
+ * 
  * @author szekely
  *
  */
 public class WorkspaceManager {
 	
-	private int nextId = 1;
+	private final AtomicInteger nextId = new AtomicInteger(1);
 	
-	private final Map<String, Workspace> workspaces = new HashMap<String, Workspace>();
+	private final Map<String, Workspace> workspaces = new ConcurrentHashMap<String, Workspace>();
 	
 	private static WorkspaceManager singleton = new WorkspaceManager();
 	
@@ -59,15 +63,17 @@ public class WorkspaceManager {
 	}
 	
 	public String getNewId(String prefix) {
-		return prefix + (nextId++);
+		return prefix + nextId.getAndIncrement();
 	}
 	
 	public void removeWorkspace(String workspaceId) {
-		workspaces.remove(workspaceId);
+		if (workspaceId != null) {
+			workspaces.remove(workspaceId);
+		}
 	}
 	
 	public Workspace getWorkspace(String workspaceId) {
-		return workspaces.get(workspaceId);
+		return workspaceId != null ? workspaces.get(workspaceId) : null;
 	}
 }
  
\ No newline at end of file
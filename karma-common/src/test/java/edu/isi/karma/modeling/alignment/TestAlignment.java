@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.ModelingConfiguration;
+import edu.isi.karma.modeling.ontology.OntologyManager;
+import edu.isi.karma.rep.alignment.ColumnNode;
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.LabeledLink;
+import edu.isi.karma.rep.alignment.LinkStatus;
+import edu.isi.karma.rep.alignment.Node;
+import edu.isi.karma.rep.alignment.SemanticType;
+
+/**
+ * Aligns a student with a name and an id who studies at a university with a
+ * name, and edits the links between them the way the alignment commands do.
+ */
+public class TestAlignment {
+
+	private static final String NS = "http://example.org/test#";
+
+	private Alignment alignment;
+	private InternalNode student;
+	private InternalNode university;
+
+	@Before
+	public void setUp() throws Exception {
+		OntologyManager ontMgr = new OntologyManager();
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImportAndUpdateCache(ontology, "UTF-8"));
+
+		alignment = new Alignment(ontMgr);
+		ColumnNode name = alignment.addColumnNode("h0", "name", null, null);
+		ColumnNode studentId = alignment.addColumnNode("h1", "studentId", null, null);
+		ColumnNode universityName = alignment.addColumnNode("h2", "university", null, null);
+		student = alignment.addInternalNode(new Label(NS + "Student"));
+		university = alignment.addInternalNode(new Label(NS + "University"));
+		alignment.addDataPropertyLink(student, name, new Label(NS + "name"), false);
+		alignment.addDataPropertyLink(student, studentId, new Label(NS + "studentId"), false);
+		alignment.addDataPropertyLink(university, universityName, new Label(NS + "name"), false);
+	}
+
+	@After
+	public void tearDown() {
+		// back to the configured mode
+		ModelingConfiguration.load();
+	}
+
+	@Test
+	public void testForcedLinkWithIncrementalAlignment() {
+		ModelingConfiguration.load();
+		ModelingConfiguration.setIncrementalAlignment(true);
+		assertForcedLinkInTree();
+	}
+
+	@Test
+	public void testForcedLink() {
+		ModelingConfiguration.load();
+		ModelingConfiguration.setIncrementalAlignment(false);
+		assertForcedLinkInTree();
+	}
+
+	private void assertForcedLinkInTree() {
+		alignment.align();
+		String studiesAt = LinkIdFactory.getLinkId(NS + "studiesAt", student.getId(), university.getId());
+		assertTrue(linkIds().contains(studiesAt));
+
+		String memberOf = LinkIdFactory.getLinkId(NS + "memberOf", student.getId(), university.getId());
+		forceLink(memberOf);
+		alignment.align();
+
+		Set<String> linkIds = linkIds();
+		assertTrue(linkIds.contains(memberOf));
+		assertFalse(linkIds.contains(studiesAt));
+		assertEquals(1, alignment.getSteinerTree().inDegreeOf(university));
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testUndo() {
+		ModelingConfiguration.load();
+		ModelingConfiguration.setIncrementalAlignment(false);
+		alignment.align();
+		Set<String> linkIds = linkIds();
+		Map<String, String> links = links();
+		ColumnNode name = alignment.getColumnNodeByHNodeId("h0");
+		List<SemanticType> suggestions = new ArrayList<SemanticType>();
+		suggestions.add(new SemanticType("h0", new Label(NS + "name"), new Label(NS + "Student"), 
+				SemanticType.Origin.CRFModel, 0.9, false));
+		name.setCrfSuggestedSemanticTypes(suggestions);
+
+		// as the commands do before changing the alignment
+		Alignment oldAlignment = alignment.getAlignmentClone();
+		DirectedWeightedMultigraph<Node, DefaultLink> oldGraph = 
+				(DirectedWeightedMultigraph<Node, DefaultLink>)alignment.getGraph().clone();
+
+		String studiesAt = LinkIdFactory.getLinkId(NS + "studiesAt", student.getId(), university.getId());
+		alignment.changeLinkWeight(studiesAt, 100.0);
+		alignment.getLinkById(studiesAt).getModelIds().add("model");
+		student.getModelIds().add("model");
+		name.setCrfSuggestedSemanticTypes(new ArrayList<SemanticType>());
+		forceLink(LinkIdFactory.getLinkId(NS + "memberOf", student.getId(), university.getId()));
+		alignment.align();
+		assertFalse(linkIds.equals(linkIds()));
+
+		alignment = oldAlignment;
+		alignment.restore(oldGraph);
+		assertEquals(linkIds, linkIds());
+		assertEquals(links, links());
+		assertEquals(suggestions, name.getCrfSuggestedSemanticTypes());
+		assertTrue(student.getModelIds().isEmpty());
+
+		// and the same tree when it is computed again
+		alignment.align();
+		assertEquals(linkIds, linkIds());
+	}
+
+	private void forceLink(String linkId) {
+		// as AddUserLinkToAlignmentCommand does
+		Set<LabeledLink> currentLinks = alignment.getCurrentIncomingLinksToNode(LinkIdFactory.getLinkTargetId(linkId));
+		if (currentLinks != null) {
+			for (LabeledLink currentLink : currentLinks)
+				alignment.changeLinkStatus(currentLink.getId(), LinkStatus.Normal);
+		}
+		alignment.changeLinkStatus(linkId, LinkStatus.ForcedByUser);
+	}
+
+	private Map<String, String> links() {
+		Map<String, String> links = new TreeMap<String, String>();
+		for (DefaultLink link : alignment.getGraph().edgeSet()) {
+			String values = link.getWeight() + "";
+			if (link instanceof LabeledLink) {
+				LabeledLink labeledLink = (LabeledLink)link;
+				values += " " + labeledLink.getStatus() + " " + labeledLink.getKeyType() + " " + labeledLink.getModelIds();
+			}
+			links.put(link.getId(), values);
+		}
+		return links;
+	}
+
+	private Set<String> linkIds() {
+		Set<String> linkIds = new TreeSet<String>();
+		for (LabeledLink link : alignment.getSteinerTree().edgeSet())
+			linkIds.add(link.getId());
+		return linkIds;
+	}
+}
@@ -0,0 +1,185 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.ModelingConfiguration;
+import edu.isi.karma.modeling.ontology.OntologyManager;
+import edu.isi.karma.rep.alignment.CompactObjectPropertyLink;
+import edu.isi.karma.rep.alignment.CompactSubClassLink;
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.Node;
+import edu.isi.karma.rep.alignment.NodeType;
+
+/**
+ * Adds the nodes of a small ontology to a graph a few at a time and checks
+ * that the links between them are the ones a comparison of every pair of
+ * nodes finds.
+ */
+public class TestGraphBuilder {
+
+	private static final String NS = "http://example.org/test#";
+
+	private OntologyManager ontMgr;
+
+	@Before
+	public void setUp() throws Exception {
+		ModelingConfiguration.load();
+		ontMgr = new OntologyManager();
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImportAndUpdateCache(ontology, "UTF-8"));
+	}
+
+	@Test
+	public void testClassesConnectedByObjectProperties() {
+		assertTrue(ontMgr.getClassesConnectedByObjectProperties(NS + "Student").containsAll(
+				uris("University", "Organization")));
+		assertTrue(ontMgr.getClassesConnectedByObjectProperties(NS + "University").contains(NS + "Place"));
+		assertFalse(ontMgr.getClassesConnectedByObjectProperties(NS + "Place").contains(NS + "Student"));
+	}
+
+	@Test
+	public void testLinksOfAllPairs() {
+		NodeIdFactory nodeIdFactory = new NodeIdFactory();
+		GraphBuilder graphBuilder = new GraphBuilder(ontMgr, nodeIdFactory, false);
+		for (String c : new String[] {"Student", "Place", "Person", "University", "Agent", "Student"}) {
+			graphBuilder.addNodeAndUpdate(new InternalNode(nodeIdFactory.getNodeId(NS + c), new Label(NS + c)));
+		}
+
+		Set<String> links = new TreeSet<String>();
+		for (DefaultLink link : graphBuilder.getGraph().edgeSet()) {
+			if (link.getSource().getType() == NodeType.InternalNode && link.getTarget().getType() == NodeType.InternalNode)
+				links.add(getPair(link.getSource(), link.getTarget()) + " " + getType(link));
+		}
+
+		List<Node> nodes = new ArrayList<Node>();
+		for (Node n : graphBuilder.getGraph().vertexSet()) {
+			if (n.getType() == NodeType.InternalNode)
+				nodes.add(n);
+		}
+		Set<String> expected = new TreeSet<String>();
+		for (int i = 0; i < nodes.size(); i++) {
+			for (int j = i + 1; j < nodes.size(); j++) {
+				String type = getTypeOfAllPairsLink(nodes.get(i).getUri(), nodes.get(j).getUri());
+				if (type != null)
+					expected.add(getPair(nodes.get(i), nodes.get(j)) + " " + type);
+			}
+		}
+
+		assertTrue(nodes.size() > 6);
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, links);
+	}
+
+	@Test
+	public void testLongHashSet() {
+		LongHashSet set = new LongHashSet();
+		assertFalse(set.contains(0L));
+		assertTrue(set.add(0L));
+		assertFalse(set.add(0L));
+		assertTrue(set.contains(0L));
+
+		// enough keys to rehash several times, with the node pair keys of GraphBuilder
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.add((i << 32) | (i + 1)));
+			assertTrue(set.add(-i));
+		}
+		assertEquals(2001, set.size());
+		for (long i = 1; i <= 1000; i++) {
+			assertTrue(set.contains((i << 32) | (i + 1)));
+			assertFalse(set.add(-i));
+			assertFalse(set.contains((i + 1) << 32 | i));
+		}
+		assertTrue(set.contains(0L));
+		assertFalse(set.contains(1L << 32));
+
+		LongHashSet copy = new LongHashSet(set);
+		assertTrue(copy.add(1L << 32));
+		assertFalse(set.contains(1L << 32));
+		assertEquals(2002, copy.size());
+		assertTrue(copy.contains(0L));
+	}
+
+	/**
+	 * What GraphBuilder.updateLinks linked two nodes with when it compared 
+	 * every pair of them
+	 */
+	private String getTypeOfAllPairsLink(String sourceUri, String targetUri) {
+		if (ModelingConfiguration.getPropertiesDirect() && 
+				(ontMgr.isConnectedByDirectProperty(sourceUri, targetUri) ||
+				ontMgr.isConnectedByDirectProperty(targetUri, sourceUri)))
+			return "Direct";
+		if (ModelingConfiguration.getPropertiesIndirect() && 
+				(ontMgr.isConnectedByIndirectProperty(sourceUri, targetUri) ||
+				ontMgr.isConnectedByIndirectProperty(targetUri, sourceUri)))
+			return "Indirect";
+		if (ModelingConfiguration.getPropertiesWithOnlyRange() && 
+				(ontMgr.isConnectedByDomainlessProperty(sourceUri, targetUri) ||
+				ontMgr.isConnectedByDomainlessProperty(targetUri, sourceUri)))
+			return "WithOnlyRange";
+		if (ModelingConfiguration.getPropertiesWithOnlyDomain() && 
+				(ontMgr.isConnectedByRangelessProperty(sourceUri, targetUri) ||
+				ontMgr.isConnectedByRangelessProperty(targetUri, sourceUri)))
+			return "WithOnlyDomain";
+		if (ModelingConfiguration.getPropertiesSubClass() && 
+				(ontMgr.isSubClass(sourceUri, targetUri, false) ||
+				ontMgr.isSubClass(targetUri, sourceUri, false)))
+			return "SubClass";
+		if (ModelingConfiguration.getPropertiesWithoutDomainRange() && 
+				ontMgr.isConnectedByDomainlessAndRangelessProperty(sourceUri, targetUri))
+			return "WithoutDomainAndRange";
+		return null;
+	}
+
+	private static String getType(DefaultLink link) {
+		if (link instanceof CompactSubClassLink)
+			return "SubClass";
+		if (link instanceof CompactObjectPropertyLink)
+			return ((CompactObjectPropertyLink) link).getObjectPropertyType().name();
+		return link.getClass().getSimpleName();
+	}
+
+	private static String getPair(Node n1, Node n2) {
+		return n1.getId().compareTo(n2.getId()) < 0 ? n1.getId() + " " + n2.getId() : n2.getId() + " " + n1.getId();
+	}
+
+	private static Set<String> uris(String... localNames) {
+		Set<String> uris = new TreeSet<String>();
+		for (String localName : localNames)
+			uris.add(NS + localName);
+		return uris;
+	}
+}
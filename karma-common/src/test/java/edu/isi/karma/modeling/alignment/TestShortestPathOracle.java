@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.alignment;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jgrapht.UndirectedGraph;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.jgrapht.graph.AsUndirectedGraph;
+import org.jgrapht.graph.DirectedWeightedMultigraph;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.ontology.OntologyManager;
+import edu.isi.karma.rep.alignment.CompactObjectPropertyLink;
+import edu.isi.karma.rep.alignment.DefaultLink;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.LabeledLink;
+import edu.isi.karma.rep.alignment.Node;
+import edu.isi.karma.rep.alignment.ObjectPropertyLink;
+import edu.isi.karma.rep.alignment.ObjectPropertyType;
+
+/**
+ * Compares the shortest paths of the oracle with the ones of JGraphT's
+ * Dijkstra, and checks that a GraphBuilder gives a new oracle once its graph
+ * changes.
+ */
+public class TestShortestPathOracle {
+
+	private static final String NS = "http://example.org/test#";
+
+	@Test
+	public void testSameAsDijkstra() {
+		DirectedWeightedMultigraph<Node, DefaultLink> graph = 
+				new DirectedWeightedMultigraph<Node, DefaultLink>(DefaultLink.class);
+		List<Node> nodes = new ArrayList<Node>();
+		for (int i = 0; i < 8; i++) {
+			Node n = new InternalNode("n" + i, new Label(NS + "n" + i));
+			graph.addVertex(n);
+			nodes.add(n);
+		}
+		// distinct powers of two, so every shortest path is the only one;
+		// n7 is not connected and n2 and n3 have two links between them
+		int[][] links = {{0, 1}, {1, 2}, {2, 3}, {3, 2}, {0, 4}, {4, 3}, {1, 5}, {5, 6}, {6, 3}, {4, 5}, {0, 6}};
+		for (int i = 0; i < links.length; i++) {
+			Node source = nodes.get(links[i][0]);
+			Node target = nodes.get(links[i][1]);
+			DefaultLink link = new CompactObjectPropertyLink(
+					LinkIdFactory.getLinkId(NS + "p" + i, source.getId(), target.getId()), ObjectPropertyType.Direct);
+			graph.addEdge(source, target, link);
+			graph.setEdgeWeight(link, Math.pow(2, (i * 5) % links.length));
+		}
+
+		UndirectedGraph<Node, DefaultLink> undirectedGraph = new AsUndirectedGraph<Node, DefaultLink>(graph);
+		ShortestPathOracle oracle = new ShortestPathOracle(undirectedGraph, 2);
+		int numPaths = 0;
+		for (Node source : nodes) {
+			for (Node target : nodes) {
+				DijkstraShortestPath<Node, DefaultLink> dijkstra = 
+						new DijkstraShortestPath<Node, DefaultLink>(undirectedGraph, source, target);
+				assertEquals(dijkstra.getPathLength(), oracle.getCost(source, target), 0.0);
+				assertEquals(dijkstra.getPathEdgeList(), oracle.getPathEdgeList(source, target));
+				if (dijkstra.getPathEdgeList() != null && !dijkstra.getPathEdgeList().isEmpty())
+					numPaths++;
+			}
+		}
+		assertEquals(7 * 6, numPaths);
+		assertEquals(Double.POSITIVE_INFINITY, oracle.getCost(nodes.get(0), nodes.get(7)), 0.0);
+	}
+
+	@Test
+	public void testNewOracleAfterChange() throws Exception {
+		OntologyManager ontMgr = new OntologyManager();
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImportAndUpdateCache(ontology, "UTF-8"));
+		NodeIdFactory nodeIdFactory = new NodeIdFactory();
+		GraphBuilder graphBuilder = new GraphBuilder(ontMgr, nodeIdFactory, false);
+
+		Node student = addNode(graphBuilder, nodeIdFactory, "Student");
+		Node place = addNode(graphBuilder, nodeIdFactory, "Place");
+		Node university = addNode(graphBuilder, nodeIdFactory, "University");
+		LabeledLink studiesAt = addLink(graphBuilder, student, "studiesAt", university, 1.0);
+		addLink(graphBuilder, university, "locatedIn", place, 1.0);
+		addLink(graphBuilder, student, "bornIn", place, 1.0);
+
+		ShortestPathOracle oracle = graphBuilder.getShortestPathOracle();
+		assertSame(oracle, graphBuilder.getShortestPathOracle());
+		assertEquals(1.0, oracle.getCost(student, university), 0.0);
+
+		graphBuilder.changeLinkWeight(studiesAt, 5.0);
+		ShortestPathOracle changedOracle = graphBuilder.getShortestPathOracle();
+		assertNotSame(oracle, changedOracle);
+		assertEquals(2.0, changedOracle.getCost(student, university), 0.0);
+		// the old oracle still answers for the graph it was created for
+		assertEquals(1.0, oracle.getCost(student, university), 0.0);
+
+		graphBuilder.changeLinkWeight(studiesAt, 0.5);
+		changedOracle = graphBuilder.getShortestPathOracle();
+		assertTrue(changedOracle.getPathEdgeList(student, university).contains(studiesAt));
+		assertTrue(graphBuilder.removeLink(studiesAt));
+		ShortestPathOracle removedOracle = graphBuilder.getShortestPathOracle();
+		assertNotSame(changedOracle, removedOracle);
+		assertFalse(removedOracle.getPathEdgeList(student, university).contains(studiesAt));
+		assertEquals(2.0, removedOracle.getCost(student, university), 0.0);
+	}
+
+	private static Node addNode(GraphBuilder graphBuilder, NodeIdFactory nodeIdFactory, String c) {
+		Node n = new InternalNode(nodeIdFactory.getNodeId(NS + c), new Label(NS + c));
+		assertTrue(graphBuilder.addNode(n));
+		return n;
+	}
+
+	private static LabeledLink addLink(GraphBuilder graphBuilder, Node source, String property, Node target, double weight) {
+		String id = LinkIdFactory.getLinkId(NS + property, source.getId(), target.getId());
+		LabeledLink link = new ObjectPropertyLink(id, new Label(NS + property), ObjectPropertyType.Direct);
+		assertTrue(graphBuilder.addLink(source, target, link));
+		graphBuilder.changeLinkWeight(link, weight);
+		return link;
+	}
+}
@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.alignment.learner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.modeling.alignment.GraphBuilder;
+import edu.isi.karma.modeling.alignment.LinkIdFactory;
+import edu.isi.karma.modeling.alignment.NodeIdFactory;
+import edu.isi.karma.modeling.ontology.OntologyManager;
+import edu.isi.karma.rep.alignment.ColumnNode;
+import edu.isi.karma.rep.alignment.InternalNode;
+import edu.isi.karma.rep.alignment.Label;
+import edu.isi.karma.rep.alignment.LabeledLink;
+import edu.isi.karma.rep.alignment.Node;
+import edu.isi.karma.rep.alignment.ObjectPropertyLink;
+import edu.isi.karma.rep.alignment.ObjectPropertyType;
+import edu.isi.karma.rep.alignment.SemanticType;
+
+/**
+ * Learns the models of a few columns with several suggested types each, with
+ * the steiner trees computed in parallel and one by one, and compares them.
+ */
+public class TestModelLearner {
+
+	private static final String NS = "http://example.org/test#";
+
+	private OntologyManager ontMgr;
+
+	@Before
+	public void setUp() throws Exception {
+		ontMgr = new OntologyManager();
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImportAndUpdateCache(ontology, "UTF-8"));
+	}
+
+	@Test
+	public void testParallelTreesGiveSameModels() {
+		List<String> oneByOne = hypothesize(false);
+		List<String> parallel = hypothesize(true);
+
+		assertTrue(oneByOne.size() > 1);
+		assertEquals(oneByOne, parallel);
+	}
+
+	private List<String> hypothesize(boolean computeTreesInParallel) {
+		NodeIdFactory nodeIdFactory = new NodeIdFactory();
+		GraphBuilder graphBuilder = new GraphBuilder(ontMgr, nodeIdFactory, false);
+
+		Map<String, Node> nodes = new HashMap<String, Node>();
+		for (String c : new String[] {"Person", "Student", "University", "Organization", "Place"}) {
+			Node n = new InternalNode(nodeIdFactory.getNodeId(NS + c), new Label(NS + c));
+			graphBuilder.addNode(n);
+			nodes.put(c, n);
+		}
+		addLink(graphBuilder, nodes.get("Student"), "studiesAt", nodes.get("University"));
+		addLink(graphBuilder, nodes.get("Person"), "memberOf", nodes.get("Organization"));
+		addLink(graphBuilder, nodes.get("Person"), "memberOf", nodes.get("University"));
+		addLink(graphBuilder, nodes.get("Organization"), "locatedIn", nodes.get("Place"));
+		addLink(graphBuilder, nodes.get("University"), "locatedIn", nodes.get("Place"));
+		addLink(graphBuilder, nodes.get("Person"), "bornIn", nodes.get("Place"));
+
+		List<ColumnNode> columnNodes = new ArrayList<ColumnNode>();
+		columnNodes.add(addColumn(graphBuilder, 0, "name", "Person", 0.6, "name", "Student", 0.4));
+		columnNodes.add(addColumn(graphBuilder, 1, "studentId", "Student", 1.0));
+		columnNodes.add(addColumn(graphBuilder, 2, "name", "University", 0.5, "name", "Organization", 0.5));
+		columnNodes.add(addColumn(graphBuilder, 3, "name", "Organization", 0.7, "name", "Place", 0.3));
+
+		ModelLearner modelLearner = new ModelLearner(graphBuilder, columnNodes);
+		modelLearner.setComputeTreesInParallel(computeTreesInParallel);
+		List<SortableSemanticModel> models = modelLearner.hypothesize(false, 4);
+		assertNotNull(models);
+
+		// the ids of the nodes added by the learner are random, so the models are compared by their labels
+		List<String> result = new ArrayList<String>();
+		for (SortableSemanticModel model : models) {
+			List<String> links = new ArrayList<String>();
+			for (LabeledLink l : model.getGraph().edgeSet())
+				links.add(toString(l.getSource()) + " " + l.getUri() + " " + toString(l.getTarget()));
+			Collections.sort(links);
+			result.add(model.getScore() + " " + model.getCost() + " " + links);
+		}
+		Collections.sort(result);
+		return result;
+	}
+
+	private static void addLink(GraphBuilder graphBuilder, Node source, String property, Node target) {
+		String id = LinkIdFactory.getLinkId(NS + property, source.getId(), target.getId());
+		graphBuilder.addLink(source, target, new ObjectPropertyLink(id, new Label(NS + property), ObjectPropertyType.Direct));
+	}
+
+	private static ColumnNode addColumn(GraphBuilder graphBuilder, int i, Object... types) {
+		List<SemanticType> suggestions = new ArrayList<SemanticType>();
+		for (int j = 0; j < types.length; j += 3) {
+			suggestions.add(new SemanticType("h" + i, new Label(NS + types[j]), new Label(NS + types[j + 1]),
+					SemanticType.Origin.CRFModel, (Double) types[j + 2], false));
+		}
+		ColumnNode n = new ColumnNode("c" + i, "h" + i, "col" + i, null, suggestions);
+		graphBuilder.addNode(n);
+		return n;
+	}
+
+	private static String toString(Node n) {
+		if (n instanceof ColumnNode)
+			return ((ColumnNode) n).getColumnName();
+		return n.getLabel().getUri();
+	}
+}
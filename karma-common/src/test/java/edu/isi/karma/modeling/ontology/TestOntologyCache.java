@@ -0,0 +1,194 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.modeling.ontology;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Loads a small ontology with subclasses, a subproperty, domains and ranges,
+ * and checks what the cache answers.
+ */
+public class TestOntologyCache {
+
+	private static final String NS = "http://example.org/test#";
+
+	private OntologyManager ontMgr;
+	private OntologyCache cache;
+
+	@Before
+	public void setUp() throws Exception {
+		ontMgr = new OntologyManager();
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImportAndUpdateCache(ontology, "UTF-8"));
+		cache = ontMgr.getSnapshot().getOntologyCache();
+	}
+
+	@Test
+	public void testClassesAndProperties() {
+		assertTrue(cache.getClasses().keySet().containsAll(
+				uris("Agent", "Person", "Student", "Organization", "University", "Place")));
+		assertTrue(cache.getObjectProperties().keySet().containsAll(
+				uris("memberOf", "studiesAt", "locatedIn", "bornIn")));
+		assertTrue(cache.getDataProperties().keySet().containsAll(uris("name", "studentId")));
+		assertTrue(cache.getObjectPropertiesWithOnlyRange().containsKey(NS + "bornIn"));
+	}
+
+	@Test
+	public void testClassHierarchy() {
+		assertEquals(uris("Organization", "Person"), keys(cache.getSubClasses(NS + "Agent", false)));
+		assertEquals(uris("Organization", "Person", "Student", "University"),
+				keys(cache.getSubClasses(NS + "Agent", true)));
+		assertEquals(uris("Person"), keys(cache.getSuperClasses(NS + "Student", false)));
+		assertTrue(keys(cache.getSuperClasses(NS + "Student", true)).containsAll(uris("Person", "Agent")));
+		assertTrue(cache.getSubClasses(NS + "Place", true).isEmpty());
+
+		assertTrue(cache.isSubClass(NS + "Student", NS + "Person", false));
+		assertFalse(cache.isSubClass(NS + "Student", NS + "Agent", false));
+		assertTrue(cache.isSubClass(NS + "Student", NS + "Agent", true));
+		assertFalse(cache.isSubClass(NS + "Agent", NS + "Student", true));
+		assertFalse(cache.isSubClass(NS + "Place", NS + "Agent", true));
+	}
+
+	@Test
+	public void testPropertyHierarchy() {
+		assertEquals(uris("studiesAt"), keys(cache.getSubProperties(NS + "memberOf", true)));
+		assertEquals(uris("memberOf"), keys(cache.getSuperProperties(NS + "studiesAt", false)));
+		assertTrue(cache.getSubProperties(NS + "locatedIn", true).isEmpty());
+		assertTrue(cache.isSubProperty(NS + "studiesAt", NS + "memberOf", false));
+		assertFalse(cache.isSubProperty(NS + "memberOf", NS + "studiesAt", true));
+	}
+
+	@Test
+	public void testDomainsAndRanges() {
+		assertEquals(uris("Person"), cache.getDomainsOfProperty(NS + "memberOf", false));
+		assertEquals(uris("Person", "Student"), cache.getDomainsOfProperty(NS + "memberOf", true));
+		assertEquals(uris("Organization"), cache.getRangesOfProperty(NS + "memberOf", false));
+		assertEquals(uris("Organization", "University"), cache.getRangesOfProperty(NS + "memberOf", true));
+		assertEquals(uris("Agent", "Organization", "Person", "Student", "University"),
+				cache.getDomainsOfProperty(NS + "name", true));
+		assertTrue(cache.getDomainsOfProperty(NS + "bornIn", true).isEmpty());
+		assertEquals(uris("Place"), cache.getRangesOfProperty(NS + "bornIn", true));
+
+		assertEquals(uris("Person"), cache.getDomainsGivenRange(NS + "Organization", false));
+		assertEquals(uris("Person", "Student"), cache.getDomainsGivenRange(NS + "Organization", true));
+		assertEquals(uris("Organization", "University"), cache.getDomainsGivenRange(NS + "Place", true));
+	}
+
+	@Test
+	public void testPropertiesByDomainAndRange() {
+		assertEquals(uris("memberOf"), keys(cache.getObjectPropertiesByDomainRange(NS + "Person", NS + "Organization", false)));
+		assertEquals(uris("studiesAt"), keys(cache.getObjectPropertiesByDomainRange(NS + "Student", NS + "University", false)));
+		assertEquals(uris("memberOf", "studiesAt"),
+				keys(cache.getObjectPropertiesByDomainRange(NS + "Student", NS + "University", true)));
+		assertEquals(uris("memberOf"), keys(cache.getObjectPropertiesByDomainRange(NS + "Person", NS + "University", true)));
+		// asking recursively doesn't change the direct answers
+		assertTrue(cache.getObjectPropertiesByDomainRange(NS + "Person", NS + "University", false).isEmpty());
+		assertTrue(cache.getObjectPropertiesByDomainRange(NS + "Place", NS + "Person", true).isEmpty());
+
+		assertEquals(uris("studiesAt"), keys(cache.getObjectPropertiesByDomain(NS + "Student", false)));
+		assertEquals(uris("memberOf", "studiesAt"), keys(cache.getObjectPropertiesByDomain(NS + "Student", true)));
+		assertEquals(uris("locatedIn"), keys(cache.getObjectPropertiesByDomain(NS + "University", true)));
+		assertEquals(uris("memberOf", "studiesAt"), keys(cache.getObjectPropertiesByRange(NS + "University", true)));
+		assertEquals(uris("bornIn", "locatedIn"), keys(cache.getObjectPropertiesByRange(NS + "Place", false)));
+		assertEquals(uris("studentId"), keys(cache.getDataPropertiesByDomain(NS + "Student", false)));
+		assertEquals(uris("name", "studentId"), keys(cache.getDataPropertiesByDomain(NS + "Student", true)));
+	}
+
+	@Test
+	public void testConnections() {
+		assertEquals(uris("memberOf"), cache.getObjectPropertiesDirect(NS + "Person", NS + "Organization"));
+		assertNull(cache.getObjectPropertiesDirect(NS + "Organization", NS + "Person"));
+		assertTrue(cache.isConnectedByDirectProperty(NS + "Student", NS + "University"));
+		assertFalse(cache.isConnectedByDirectProperty(NS + "Person", NS + "University"));
+		assertTrue(cache.isConnectedByIndirectProperty(NS + "Student", NS + "Organization"));
+		assertFalse(cache.isConnectedByIndirectProperty(NS + "Place", NS + "Person"));
+		assertTrue(cache.isConnectedByDomainlessProperty(NS + "Person", NS + "Place"));
+		assertFalse(cache.isConnectedByDomainlessProperty(NS + "Person", NS + "Organization"));
+	}
+
+	@Test
+	public void testWriteAndRead() throws Exception {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		cache.write(new DataOutputStream(bytes));
+		OntologyCache read = OntologyCache.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertEquals(cache.getClasses().keySet(), read.getClasses().keySet());
+		assertEquals(cache.getProperties().keySet(), read.getProperties().keySet());
+		assertEquals(keys(cache.getSubClasses(NS + "Agent", true)), keys(read.getSubClasses(NS + "Agent", true)));
+		assertEquals(cache.getDomainsOfProperty(NS + "memberOf", true), read.getDomainsOfProperty(NS + "memberOf", true));
+		assertEquals(keys(cache.getObjectPropertiesByDomainRange(NS + "Student", NS + "University", true)),
+				keys(read.getObjectPropertiesByDomainRange(NS + "Student", NS + "University", true)));
+	}
+
+	@Test
+	public void testMalformedImport() throws Exception {
+		File malformed = File.createTempFile("malformed", ".owl");
+		malformed.deleteOnExit();
+		Writer out = new FileWriter(malformed);
+		out.write("<rdf:RDF xmlns:rdf=\"http://www.w3.org/1999/02/22-rdf-syntax-ns#\"><owl:Class");
+		out.close();
+
+		OntologySnapshot snapshot = ontMgr.getSnapshot();
+		try {
+			ontMgr.doImportAndUpdateCache(malformed, "UTF-8");
+			fail("a malformed ontology was imported");
+		} catch (Exception e) {
+			// expected
+		}
+		assertTrue(snapshot == ontMgr.getSnapshot());
+
+		// the manager still imports on top of what it had
+		File ontology = new File(getClass().getClassLoader().getResource("test-ontology.owl").toURI());
+		assertTrue(ontMgr.doImport(ontology, "UTF-8"));
+		ontMgr.updateCache();
+		assertTrue(ontMgr.getSnapshot().getOntologyCache().getClasses().containsKey(NS + "Student"));
+	}
+
+	private static Set<String> uris(String... localNames) {
+		Set<String> uris = new HashSet<String>();
+		for (String localName : localNames)
+			uris.add(NS + localName);
+		return uris;
+	}
+
+	private static Set<String> keys(Map<String, ?> map) {
+		return new HashSet<String>(map.keySet());
+	}
+}
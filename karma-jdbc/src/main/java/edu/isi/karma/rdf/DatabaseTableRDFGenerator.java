@@ -27,12 +27,24 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.json.JSONException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.isi.karma.kr2rml.BufferedKR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
@@ -64,6 +76,9 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 	private String dBorSIDName;
 	private String encoding;
 	private static int DATABASE_TABLE_FETCH_SIZE = 10000;
+	public static final int DEFAULT_CHUNK_SIZE = DATABASE_TABLE_FETCH_SIZE;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int numConsumers = 1;
 	
 	public DatabaseTableRDFGenerator(DBType dbType, String hostname,
 			int portnumber, String username, String password,
@@ -93,10 +108,28 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		generateRDF(tablename, query, writers, id, baseURI);
 	}
 
+	/**
+	 * Generate the RDF for chunks of rows of the result set. The rows are
+	 * read from the database on a thread of their own while the previous
+	 * chunks are turned into RDF, so that neither the database nor the
+	 * generation waits for the other.
+	 * 
+	 * @param chunkSize
+	 *            number of rows put in a worksheet and generated at a time
+	 * @param numConsumers
+	 *            number of chunks generated concurrently. With more than one,
+	 *            the RDF of every chunk is buffered and written in row order.
+	 */
+	public void setPipelining(int chunkSize, int numConsumers) {
+		this.chunkSize = Math.max(1, chunkSize);
+		this.numConsumers = Math.max(1, numConsumers);
+	}
+
 	private void generateRDF(String wkname, String query, List<KR2RMLRDFWriter> writers, R2RMLMappingIdentifier id, String baseURI) 
 			throws IOException, JSONException, KarmaException, SQLException, ClassNotFoundException{
 		logger.debug("Generating RDF...");
 
+		// The mapping is parsed once, it isn't changed by generating RDF
 		WorksheetR2RMLJenaModelParser parserTest = new WorksheetR2RMLJenaModelParser(id);
 		KR2RMLMapping mapping = parserTest.parse();
 		
@@ -106,7 +139,7 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 		
 		java.sql.Statement stmt = conn.createStatement(java.sql.ResultSet.TYPE_FORWARD_ONLY,
 				java.sql.ResultSet.CONCUR_READ_ONLY);
-		stmt.setFetchSize(DATABASE_TABLE_FETCH_SIZE);
+		stmt.setFetchSize(Math.min(chunkSize, DATABASE_TABLE_FETCH_SIZE));
 		
 		ResultSet r = stmt.executeQuery(query);
 		ResultSetMetaData meta = r.getMetaData();;
@@ -117,53 +150,90 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 			columnNames.add(meta.getColumnName(i));
 		}
 		
-		// Prepare required Karma objects
-	     Workspace workspace = initializeWorkspace();
- 	
-		RepFactory factory = workspace.getFactory();
-		Worksheet wk = factory.createWorksheet(wkname, workspace, encoding);
-		List<String> headersList = addHeaders(wk, columnNames, factory);
+		// Every consumer fills and generates its chunks in a workspace of
+		// its own. They are set up here since creating workspaces isn't
+		// thread safe.
+		BlockingQueue<Workspace> availableWorkspaces = new LinkedBlockingQueue<Workspace>();
+		for(int i = 0; i < numConsumers; i++) {
+			availableWorkspaces.add(acquireWorkspace());
+		}
 		
+		BlockingQueue<RowChunk> chunks = new ArrayBlockingQueue<RowChunk>(numConsumers);
+		ExecutorService producerService = Executors.newSingleThreadExecutor();
+		ExecutorService consumerService = Executors.newFixedThreadPool(numConsumers);
+		Deque<Future<RowChunk>> generations = new LinkedList<Future<RowChunk>>();
+		int maxChunksInFlight = numConsumers * 2;
 		int counter = 0;
-		
-		ArrayList<String> rowValues = null;
-		while ((rowValues = dbUtil.parseResultSetRow(r)) != null) {
-			// Generate RDF and create a new worksheet for every DATABASE_TABLE_FETCH_SIZE rows
-			if(counter%DATABASE_TABLE_FETCH_SIZE == 0 && counter != 0) {
-				generateRDFFromWorksheet(wk, workspace, mapping, writers, baseURI);
+		try {
+			Future<Integer> producer = producerService.submit(new ResultSetReader(dbUtil, r, chunks));
+			RowChunk chunk;
+			while ((chunk = chunks.take()) != RowChunk.END) {
+				generations.add(consumerService.submit(new ChunkGeneration(wkname, columnNames, chunk, 
+						availableWorkspaces, mapping, writers)));
+				if(generations.size() >= maxChunksInFlight) {
+					counter += writeChunk(generations.removeFirst(), writers);
+					logger.debug("Done for " + counter + " rows ..." );
+				}
+			}
+			while(!generations.isEmpty()) {
+				counter += writeChunk(generations.removeFirst(), writers);
 				logger.debug("Done for " + counter + " rows ..." );
-			    removeWorkspace(workspace);
-			    
-			    parserTest = new WorksheetR2RMLJenaModelParser(id);
-				mapping = parserTest.parse();
-			    workspace = initializeWorkspace();
-			    factory = workspace.getFactory();
-				wk = factory.createWorksheet(wkname, workspace, encoding);
-				headersList = addHeaders(wk, columnNames, factory);
-				
 			}
-			
-			/** Add the data **/
-	        Table dataTable = wk.getDataTable();
-	        Row row = dataTable.addRow(factory);
-	        for(int i=0; i<rowValues.size(); i++) {
-	        	row.setValue(headersList.get(i), rowValues.get(i), factory);
-	        }
-			
-			counter++;
+			producer.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new KarmaException("Interrupted while generating RDF for " + wkname);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof SQLException) {
+				throw (SQLException) cause;
+			}
+			throw new KarmaException("Unable to generate RDF for " + wkname, cause);
+		} finally {
+			producerService.shutdownNow();
+			consumerService.shutdownNow();
+			// the reader still uses the result set and the generations their workspaces
+			awaitTermination(producerService);
+			awaitTermination(consumerService);
+			for(Workspace workspace : availableWorkspaces) {
+				releaseWorkspace(workspace);
+			}
+			// Releasing all the resources
+			r.close();
+			stmt.close();
+			conn.close();
 		}
-		
-		generateRDFFromWorksheet(wk, workspace, mapping, writers, baseURI);
-		
-		// Releasing all the resources
-		r.close();
-		conn.close();
-		stmt.close();
 		logger.debug("done");
 	}
 	
+	private void awaitTermination(ExecutorService service) {
+		boolean interrupted = false;
+		while(true) {
+			try {
+				if(service.awaitTermination(1, TimeUnit.MINUTES)) {
+					break;
+				}
+				logger.warn("Waiting for the RDF generation threads to stop ...");
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if(interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private int writeChunk(Future<RowChunk> generation, List<KR2RMLRDFWriter> writers) 
+			throws InterruptedException, ExecutionException {
+		RowChunk chunk = generation.get();
+		if(chunk.output != null) {
+			chunk.output.replay(writers);
+		}
+		return chunk.numRows;
+	}
+	
 	private void generateRDFFromWorksheet(Worksheet wk, 
-			Workspace workspace, KR2RMLMapping mapping, List<KR2RMLRDFWriter> writers, String baseURI) 
+			Workspace workspace, KR2RMLMapping mapping, List<KR2RMLRDFWriter> writers) 
 					throws IOException, JSONException, KarmaException {
 		// Generate RDF for the remaining rows
 		// Gets all the errors generated during the RDF generation
@@ -176,6 +246,11 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
 				workspace.getFactory(), workspace.getOntologyManager(), writers, false,
 				mapping, errorReport);
 
+		if(numConsumers > 1) {
+			// the chunks already keep the cores busy
+			rdfGen.setTriplesMapParallelism(Runtime.getRuntime().availableProcessors() / numConsumers);
+		}
+
 		// Generate the rdf
 		rdfGen.generateRDF(false);
 	}
@@ -191,4 +266,123 @@ public class DatabaseTableRDFGenerator extends RdfGenerator {
         }
         return headersList;
 	}
+
+	private static class RowChunk {
+		private static final RowChunk END = new RowChunk(null);
+		
+		private List<ArrayList<String>> rows;
+		private final int numRows;
+		private BufferedKR2RMLRDFWriter output;
+		
+		private RowChunk(List<ArrayList<String>> rows) {
+			this.rows = rows;
+			this.numRows = rows == null ? 0 : rows.size();
+		}
+	}
+	
+	/**
+	 * Reads the rows of the result set into chunks until it is exhausted. The
+	 * queue is bounded, so the reader waits when the consumers fall behind, and
+	 * the end is only waited for while they still take the chunks.
+	 */
+	private class ResultSetReader implements Callable<Integer> {
+		private final AbstractJDBCUtil dbUtil;
+		private final ResultSet r;
+		private final BlockingQueue<RowChunk> chunks;
+		
+		private ResultSetReader(AbstractJDBCUtil dbUtil, ResultSet r, BlockingQueue<RowChunk> chunks) {
+			this.dbUtil = dbUtil;
+			this.r = r;
+			this.chunks = chunks;
+		}
+		
+		@Override
+		public Integer call() throws SQLException, InterruptedException {
+			int counter = 0;
+			boolean interrupted = false;
+			try {
+				List<ArrayList<String>> rows = new ArrayList<ArrayList<String>>(chunkSize);
+				ArrayList<String> rowValues = null;
+				while ((rowValues = dbUtil.parseResultSetRow(r)) != null) {
+					rows.add(rowValues);
+					counter++;
+					if(rows.size() == chunkSize) {
+						chunks.put(new RowChunk(rows));
+						rows = new ArrayList<ArrayList<String>>(chunkSize);
+					}
+				}
+				if(!rows.isEmpty() || counter == 0) {
+					chunks.put(new RowChunk(rows));
+				}
+			} catch (InterruptedException e) {
+				interrupted = true;
+				throw e;
+			} finally {
+				if(interrupted || Thread.currentThread().isInterrupted()) {
+					// shut down, nobody takes the chunks anymore
+					chunks.offer(RowChunk.END);
+				} else {
+					chunks.put(RowChunk.END);
+				}
+			}
+			return counter;
+		}
+	}
+	
+	/**
+	 * Fills a worksheet with the rows of a chunk and generates its RDF, straight
+	 * to the writers when there is a single consumer and into a buffer
+	 * otherwise.
+	 */
+	private class ChunkGeneration implements Callable<RowChunk> {
+		private final String wkname;
+		private final List<String> columnNames;
+		private final RowChunk chunk;
+		private final BlockingQueue<Workspace> availableWorkspaces;
+		private final KR2RMLMapping mapping;
+		private final List<KR2RMLRDFWriter> writers;
+		
+		private ChunkGeneration(String wkname, List<String> columnNames, RowChunk chunk, 
+				BlockingQueue<Workspace> availableWorkspaces, KR2RMLMapping mapping, 
+				List<KR2RMLRDFWriter> writers) {
+			this.wkname = wkname;
+			this.columnNames = columnNames;
+			this.chunk = chunk;
+			this.availableWorkspaces = availableWorkspaces;
+			this.mapping = mapping;
+			this.writers = writers;
+		}
+		
+		@Override
+		public RowChunk call() throws Exception {
+			Workspace workspace = availableWorkspaces.take();
+			try {
+				RepFactory factory = workspace.getFactory();
+				Worksheet wk = factory.createWorksheet(wkname, workspace, encoding);
+				List<String> headersList = addHeaders(wk, columnNames, factory);
+				
+				/** Add the data **/
+				Table dataTable = wk.getDataTable();
+				for(ArrayList<String> rowValues : chunk.rows) {
+					Row row = dataTable.addRow(factory);
+					for(int i=0; i<rowValues.size(); i++) {
+						row.setValue(headersList.get(i), rowValues.get(i), factory);
+					}
+				}
+				chunk.rows = null;
+				
+				List<KR2RMLRDFWriter> chunkWriters = writers;
+				if(numConsumers > 1) {
+					chunk.output = new BufferedKR2RMLRDFWriter();
+					chunkWriters = new LinkedList<KR2RMLRDFWriter>();
+					chunkWriters.add(chunk.output);
+				}
+				generateRDFFromWorksheet(wk, workspace, mapping, chunkWriters);
+			} finally {
+				workspace.reset();
+				availableWorkspaces.put(workspace);
+			}
+			return chunk;
+		}
+	}
 }
@@ -0,0 +1,194 @@
+package edu.isi.karma.mapreduce.driver;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.log4j.Logger;
+import org.json.JSONException;
+
+import edu.isi.karma.kr2rml.N3KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.URIFormatter;
+import edu.isi.karma.rdf.GenericRDFGenerator;
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+import edu.isi.karma.webserver.KarmaException;
+
+/**
+ * Generates RDF for the records read by {@link KarmaRecordInputFormat}, a 
+ * batch of records at a time, and writes every triple as soon as it is 
+ * generated, keyed by its subject. Only a batch of records and the triples of
+ * a row are held in memory, however large the input file is.
+ */
+public class IncrementalRDFMapper extends Mapper<Text, Text, Text, Text> {
+
+	private static Logger LOG = Logger.getLogger(IncrementalRDFMapper.class);
+
+	public static final String BATCH_SIZE = "karma.batch.size";
+	public static final String XML_ROOT_TAG = "karma.xml.root.tag";
+	public static final int DEFAULT_BATCH_SIZE = 1000;
+
+	private GenericRDFGenerator generator;
+	private InputType inputType;
+	private int batchSize;
+	private String xmlRootTag;
+	private String batchPath;
+	private String csvHeader;
+	private StringBuilder batch = new StringBuilder();
+	private int numRecordsInBatch = 0;
+
+	@Override
+	public void setup(Context context)
+	{
+		generator = SimpleMapper.setUpGenerator(context);
+		String type = context.getConfiguration().get(KarmaRecordInputFormat.INPUT_TYPE, "JSON");
+		inputType = InputType.valueOf(type.toUpperCase());
+		batchSize = Math.max(1, context.getConfiguration().getInt(BATCH_SIZE, DEFAULT_BATCH_SIZE));
+		xmlRootTag = context.getConfiguration().get(XML_ROOT_TAG, "root");
+	}
+
+	@Override
+	public void map(Text key, Text value, Context context) throws IOException, InterruptedException {
+		String path = key.toString();
+		if(!path.equals(batchPath))
+		{
+			generateRDFForBatch(context);
+			batchPath = path;
+			if(inputType == InputType.CSV)
+			{
+				csvHeader = readHeader(new Path(path), context);
+			}
+		}
+		if(numRecordsInBatch > 0 && inputType == InputType.JSON)
+		{
+			batch.append(',');
+		}
+		batch.append(value.toString());
+		batch.append('\n');
+		if(++numRecordsInBatch >= batchSize)
+		{
+			generateRDFForBatch(context);
+		}
+	}
+
+	@Override
+	public void cleanup(Context context) throws IOException, InterruptedException {
+		generateRDFForBatch(context);
+	}
+
+	/**
+	 * Turns the records of the batch back into a document of the input type,
+	 * with the same structure as the file they came from.
+	 */
+	private void generateRDFForBatch(Context context) throws IOException, InterruptedException
+	{
+		if(numRecordsInBatch == 0)
+		{
+			return;
+		}
+		String document;
+		switch(inputType)
+		{
+			case CSV:
+				document = csvHeader + "\n" + batch;
+				break;
+			case XML:
+				document = "<" + xmlRootTag + ">\n" + batch + "</" + xmlRootTag + ">";
+				break;
+			default:
+				document = "[" + batch + "]";
+				break;
+		}
+		batch.setLength(0);
+		numRecordsInBatch = 0;
+
+		PrintWriter pw = new PrintWriter(new TripleWriter(context));
+		try {
+			generator.generateRDF("model", new Path(batchPath).getName(), document, inputType, false, 
+					new N3KR2RMLRDFWriter(new URIFormatter(), pw));
+		} catch (JSONException | KarmaException e) {
+			LOG.error("Unable to generate RDF: " + e.getMessage());
+		}
+		if(pw.checkError())
+		{
+			throw new IOException("Unable to write the triples of " + batchPath);
+		}
+	}
+
+	private static String readHeader(Path path, Context context) throws IOException
+	{
+		FileSystem fs = path.getFileSystem(context.getConfiguration());
+		BufferedReader reader = new BufferedReader(new InputStreamReader(fs.open(path), StandardCharsets.UTF_8));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Writes each line it receives as a triple keyed by its subject.
+	 */
+	private static class TripleWriter extends Writer {
+		private final Context context;
+		private final StringBuilder line = new StringBuilder();
+		private final Text subject = new Text();
+		private final Text triple = new Text();
+
+		private TripleWriter(Context context)
+		{
+			this.context = context;
+		}
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+			for(int i = off; i < off + len; i++)
+			{
+				char c = cbuf[i];
+				if(c == '\n')
+				{
+					writeLine();
+				}
+				else if(c != '\r')
+				{
+					line.append(c);
+				}
+			}
+		}
+
+		private void writeLine() throws IOException
+		{
+			if(line.length() > 0)
+			{
+				String value = line.toString();
+				int subjectEnd = value.indexOf(' ');
+				subject.set(subjectEnd == -1 ? value : value.substring(0, subjectEnd));
+				triple.set(value);
+				try {
+					context.write(subject, triple);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException("Interrupted while writing triples");
+				}
+				line.setLength(0);
+			}
+		}
+
+		@Override
+		public void flush() throws IOException {
+			return;
+		}
+
+		@Override
+		public void close() throws IOException {
+			writeLine();
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package edu.isi.karma.mapreduce.driver;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.input.LineRecordReader;
+
+/**
+ * Reads the records of JSON lines, CSV and XML files straight from the file
+ * system, so that a large file can be split across mappers. The key of every
+ * record is the path of its file and the value is the text of the record: a
+ * line for JSON and CSV, with the header line of CSV files skipped, and an
+ * element named by {@link #XML_RECORD_TAG} for XML.
+ */
+public class KarmaRecordInputFormat extends FileInputFormat<Text, Text> {
+
+	public static final String INPUT_TYPE = "karma.input.type";
+	public static final String XML_RECORD_TAG = "karma.xml.record.tag";
+
+	@Override
+	public RecordReader<Text, Text> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+		Configuration conf = context.getConfiguration();
+		if("XML".equalsIgnoreCase(conf.get(INPUT_TYPE)))
+		{
+			return new XMLRecordReader(conf.get(XML_RECORD_TAG));
+		}
+		return new PathKeyedLineRecordReader("CSV".equalsIgnoreCase(conf.get(INPUT_TYPE)));
+	}
+
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+		CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration()).getCodec(file);
+		return codec == null || codec instanceof SplittableCompressionCodec;
+	}
+
+	/**
+	 * Hands out the lines of a split keyed by the path of the file.
+	 */
+	private static class PathKeyedLineRecordReader extends RecordReader<Text, Text> {
+		private final LineRecordReader lines = new LineRecordReader();
+		private final boolean skipHeader;
+		private final Text key = new Text();
+
+		private PathKeyedLineRecordReader(boolean skipHeader)
+		{
+			this.skipHeader = skipHeader;
+		}
+
+		@Override
+		public void initialize(InputSplit genericSplit, TaskAttemptContext context)
+				throws IOException, InterruptedException {
+			FileSplit split = (FileSplit) genericSplit;
+			key.set(split.getPath().toString());
+			lines.initialize(genericSplit, context);
+			if(skipHeader && split.getStart() == 0)
+			{
+				lines.nextKeyValue();
+			}
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			while(lines.nextKeyValue())
+			{
+				if(lines.getCurrentValue().getLength() > 0)
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public Text getCurrentKey() {
+			return key;
+		}
+
+		@Override
+		public Text getCurrentValue() {
+			return lines.getCurrentValue();
+		}
+
+		@Override
+		public float getProgress() throws IOException {
+			return lines.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			lines.close();
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package edu.isi.karma.mapreduce.driver;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Properties;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.conf.Configured;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+import org.apache.hadoop.util.Tool;
+import org.apache.hadoop.util.ToolRunner;
+
+/**
+ * Generates RDF for JSON lines, CSV or XML files read straight from the input
+ * directory, without loading them into a SequenceFile first. With 
+ * dedup.triples set, the triples are grouped by subject and written once as 
+ * N-Triples text, otherwise the mappers write them keyed by subject to a 
+ * SequenceFile.
+ */
+public class RecordProcessor extends Configured implements Tool {
+
+	 public Job configure(Properties p ) throws Exception
+	 {
+		
+		Configuration conf = getConf();
+		conf.set("fs.default.name", p.getProperty("fs.default.name"));
+		conf.set("mapred.job.tracker", p.getProperty("mapred.job.tracker"));
+		conf.set("model.uri", p.getProperty("model.uri"));
+		if(p.getProperty("KARMA_USER_HOME") != null)
+		{
+			conf.set("KARMA_USER_HOME", p.getProperty("KARMA_USER_HOME"));
+		}
+		conf.set(KarmaRecordInputFormat.INPUT_TYPE, p.getProperty("input.type", "JSON"));
+		if(p.getProperty("xml.record.tag") != null)
+		{
+			conf.set(KarmaRecordInputFormat.XML_RECORD_TAG, p.getProperty("xml.record.tag"));
+		}
+		if(p.getProperty("xml.root.tag") != null)
+		{
+			conf.set(IncrementalRDFMapper.XML_ROOT_TAG, p.getProperty("xml.root.tag"));
+		}
+		if(p.getProperty("batch.size") != null)
+		{
+			conf.setInt(IncrementalRDFMapper.BATCH_SIZE, Integer.parseInt(p.getProperty("batch.size")));
+		}
+		Job job = new Job(getConf());
+        job.setInputFormatClass(KarmaRecordInputFormat.class);
+        job.setJarByClass(RecordProcessor.class);
+        job.setMapperClass(IncrementalRDFMapper.class);
+        job.setMapOutputKeyClass(Text.class);
+        job.setMapOutputValueClass(Text.class);
+        if(Boolean.parseBoolean(p.getProperty("dedup.triples")))
+        {
+        	job.setReducerClass(TripleDedupReducer.class);
+        	job.setOutputFormatClass(TextOutputFormat.class);
+        	job.setOutputKeyClass(NullWritable.class);
+        	job.setOutputValueClass(Text.class);
+        	if(p.getProperty("num.reduce.tasks") != null)
+        	{
+        		job.setNumReduceTasks(Integer.parseInt(p.getProperty("num.reduce.tasks")));
+        	}
+        }
+        else
+        {
+        	job.setOutputFormatClass(SequenceFileOutputFormat.class);
+        	job.setOutputKeyClass(Text.class);
+        	job.setOutputValueClass(Text.class);
+        	job.setNumReduceTasks(0);
+        }
+        FileInputFormat.setInputPaths(job, new Path(p.getProperty("input.directory")));
+        FileOutputFormat.setOutputPath(job, new Path(p.getProperty("output.directory")));
+        
+        return job;
+	 }
+	 
+	 public int run(String[] args) throws Exception {
+         // Configuration processed by ToolRunner
+		 Properties p = new Properties();
+		 p.load(new FileInputStream(new File(args[0])));
+		 
+         
+         Job job = configure(p);
+         
+         if(!job.waitForCompletion(false))
+         {
+        	 System.err.println("Unable to finished job");
+        	 return -1;
+         }
+        
+         return 0;
+       }
+       
+       public static void main(String[] args) throws Exception {
+         // Let ToolRunner handle generic command-line options 
+         int res = ToolRunner.run(new Configuration(), new RecordProcessor(), args);
+         
+         System.exit(res);
+       }
+
+}
@@ -7,6 +7,7 @@ import java.net.URL;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
 import org.apache.log4j.Logger;
 import org.json.JSONException;
@@ -32,7 +33,15 @@ public class SimpleMapper extends Mapper<Text, Text, Text, Text>{
 	@Override
 	public void setup(Context context)
 	{
-		
+		generator = setUpGenerator(context);
+	}
+
+	/**
+	 * Registers the Karma metadata in the user home given by the job, or in the
+	 * working directory, and loads the model found at model.uri.
+	 */
+	static GenericRDFGenerator setUpGenerator(JobContext context)
+	{
 		try {
 			Configuration conf = context.getConfiguration();
 			String karmaUserHome = conf.get("KARMA_USER_HOME") != null? conf.get("KARMA_USER_HOME"): context.getWorkingDirectory().toString() + java.io.File.separator + "karma";
@@ -45,10 +54,11 @@ public class SimpleMapper extends Mapper<Text, Text, Text, Text>{
 	        userMetadataManager.register(new UserConfigMetadata(), uc);
 	        userMetadataManager.register(new PythonTransformationMetadata(), uc);
 	        
-	        String modelUri = context.getConfiguration().get("model.uri");
-	        generator = new GenericRDFGenerator();
+	        String modelUri = conf.get("model.uri");
+	        GenericRDFGenerator generator = new GenericRDFGenerator();
 	        URL modelURL = new URL(modelUri);
 	        generator.addModel(new R2RMLMappingIdentifier("model", modelURL));
+	        return generator;
 		} catch (KarmaException | IOException e) {
 			LOG.error("Unable to complete Karma set up: " + e.getMessage());
 			throw new RuntimeException("Unable to complete Karma set up: " + e .getMessage());
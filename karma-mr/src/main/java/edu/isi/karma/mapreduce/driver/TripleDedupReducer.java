@@ -0,0 +1,30 @@
+package edu.isi.karma.mapreduce.driver;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Reducer;
+
+/**
+ * Writes the triples of each subject once, however many records or mappers
+ * generated them, as plain N-Triples.
+ */
+public class TripleDedupReducer extends Reducer<Text, Text, NullWritable, Text> {
+
+	@Override
+	public void reduce(Text subject, Iterable<Text> triples, Context context) throws IOException, InterruptedException {
+		Set<Text> written = new HashSet<Text>();
+		for(Text triple : triples)
+		{
+			if(!written.contains(triple))
+			{
+				// the framework reuses the value object
+				written.add(new Text(triple));
+				context.write(NullWritable.get(), triple);
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package edu.isi.karma.mapreduce.driver;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads the elements with the record tag out of an XML file. A split owns the
+ * records that start in it, the last one is read past the end of the split.
+ * Records can't be nested in each other.
+ */
+public class XMLRecordReader extends RecordReader<Text, Text> {
+
+	private final byte[] startTag;
+	private final byte[] endTag;
+	private final Text key = new Text();
+	private final Text value = new Text();
+	private final DataOutputBuffer record = new DataOutputBuffer();
+	private InputStream in;
+	private long start;
+	private long end;
+	private long pos;
+
+	public XMLRecordReader(String recordTag)
+	{
+		if(recordTag == null || recordTag.isEmpty())
+		{
+			throw new IllegalArgumentException("No record tag given for XML input, set " + KarmaRecordInputFormat.XML_RECORD_TAG);
+		}
+		this.startTag = ("<" + recordTag).getBytes(StandardCharsets.UTF_8);
+		this.endTag = ("</" + recordTag + ">").getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void initialize(InputSplit genericSplit, TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		FileSplit split = (FileSplit) genericSplit;
+		Configuration conf = context.getConfiguration();
+		Path file = split.getPath();
+		key.set(file.toString());
+		FileSystem fs = file.getFileSystem(conf);
+		FSDataInputStream fileIn = fs.open(file);
+		CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(file);
+		start = split.getStart();
+		end = start + split.getLength();
+		if(codec != null)
+		{
+			// not splittable, the whole file is a single split
+			in = new BufferedInputStream(codec.createInputStream(fileIn));
+			end = Long.MAX_VALUE;
+		}
+		else
+		{
+			fileIn.seek(start);
+			in = new BufferedInputStream(fileIn);
+		}
+		pos = start;
+	}
+
+	@Override
+	public boolean nextKeyValue() throws IOException, InterruptedException {
+		record.reset();
+		while(pos < end)
+		{
+			if(!skipToStartTag())
+			{
+				return false;
+			}
+			int b = read();
+			if(b == '>' || b == '/' || Character.isWhitespace(b))
+			{
+				record.write(startTag);
+				if(readRecord(b))
+				{
+					value.set(record.getData(), 0, record.getLength());
+					return true;
+				}
+				return false;
+			}
+		}
+		return false;
+	}
+
+	private boolean skipToStartTag() throws IOException
+	{
+		int matched = 0;
+		while(true)
+		{
+			int b = read();
+			if(b == -1)
+			{
+				return false;
+			}
+			if(b == startTag[matched])
+			{
+				if(++matched == startTag.length)
+				{
+					// a tag that starts after the end of the split belongs to the next one
+					return pos - startTag.length < end;
+				}
+			}
+			else
+			{
+				matched = b == startTag[0] ? 1 : 0;
+			}
+		}
+	}
+
+	/**
+	 * Copies the rest of the record, starting with the character after the
+	 * name of its tag.
+	 */
+	private boolean readRecord(int b) throws IOException
+	{
+		// the rest of the start tag, which may close the element
+		int previous = -1;
+		while(b != '>')
+		{
+			if(b == -1)
+			{
+				return false;
+			}
+			record.write(b);
+			previous = b;
+			b = read();
+		}
+		record.write(b);
+		if(previous == '/')
+		{
+			return true;
+		}
+		int matched = 0;
+		while(matched < endTag.length)
+		{
+			b = read();
+			if(b == -1)
+			{
+				return false;
+			}
+			record.write(b);
+			if(b == endTag[matched])
+			{
+				matched++;
+			}
+			else
+			{
+				matched = b == endTag[0] ? 1 : 0;
+			}
+		}
+		return true;
+	}
+
+	private int read() throws IOException
+	{
+		int b = in.read();
+		if(b != -1)
+		{
+			pos++;
+		}
+		return b;
+	}
+
+	@Override
+	public Text getCurrentKey() {
+		return key;
+	}
+
+	@Override
+	public Text getCurrentValue() {
+		return value;
+	}
+
+	@Override
+	public float getProgress() throws IOException {
+		if(end == Long.MAX_VALUE || end == start)
+		{
+			return 0.0f;
+		}
+		return Math.min(1.0f, (pos - start) / (float) (end - start));
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(in != null)
+		{
+			in.close();
+		}
+	}
+}
@@ -1,16 +1,21 @@
 package edu.isi.karma.rdf;
 
 import org.apache.hadoop.util.hash.Hash;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.kr2rml.KR2RMLBloomFilter;
 
 import java.io.IOException;
 import java.util.*;
 public class BloomFilterWorker implements Runnable{
+	private static Logger logger = LoggerFactory.getLogger(BloomFilterWorker.class);
 	private KR2RMLBloomFilter bf = new KR2RMLBloomFilter(KR2RMLBloomFilter.defaultVectorSize, KR2RMLBloomFilter.defaultnbHash, Hash.JENKINS_HASH);
 	private List<String> bloomfilters = Collections.synchronizedList(new ArrayList<String>());
 	private boolean isFinished = false;
 	private boolean isDone = false;
+	private boolean isEmpty = true;
+	private volatile Exception failure = null;
 
 	public void addBloomfilters(String bloomfilter) {
 		synchronized (bloomfilters) { 
@@ -27,6 +32,14 @@ public class BloomFilterWorker implements Runnable{
 		return isFinished;
 	}
 
+	/**
+	 * @return why the first bloom filter that couldn't be combined failed, 
+	 *         or null if all of them were combined
+	 */
+	public Exception getFailure() {
+		return failure;
+	}
+
 	private String getBloomfilter() {
 		synchronized (bloomfilters) {
 			if (bloomfilters.isEmpty())
@@ -53,15 +66,21 @@ public class BloomFilterWorker implements Runnable{
 	public void run() {
 
 		while(!isDone || !bloomfilters.isEmpty()) {
-			KR2RMLBloomFilter bf = new KR2RMLBloomFilter(KR2RMLBloomFilter.defaultVectorSize, KR2RMLBloomFilter.defaultnbHash, Hash.JENKINS_HASH);
 			String tmp = getBloomfilter();
 			try {
-				if (tmp != null)
-					bf.populateFromCompressedAndBase64EncodedString(tmp);
-			} catch (IOException e) {
-				
+				if (tmp != null && isEmpty) {
+					// takes the size of the filters being combined
+					this.bf.populateFromCompressedAndBase64EncodedString(tmp);
+					isEmpty = false;
+				}
+				else if (tmp != null)
+					this.bf.orFromCompressedAndBase64EncodedString(tmp);
+			} catch (IOException | IllegalArgumentException e) {
+				logger.error("Unable to combine the bloom filter " 
+						+ (tmp.length() > 64 ? tmp.substring(0, 64) + "..." : tmp), e);
+				if (failure == null)
+					failure = e;
 			}
-			this.bf.or(bf);
 		}
 		isFinished = true;
 
@@ -4,12 +4,10 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.lang.reflect.Field;
 
 import org.apache.commons.cli2.CommandLine;
 import org.apache.commons.cli2.Group;
@@ -19,7 +17,6 @@ import org.apache.commons.cli2.builder.DefaultOptionBuilder;
 import org.apache.commons.cli2.builder.GroupBuilder;
 import org.apache.commons.cli2.commandline.Parser;
 import org.apache.commons.cli2.util.HelpFormatter;
-import org.apache.hadoop.util.bloom.BloomFilter;
 import org.apache.hadoop.util.hash.Hash;
 
 import com.hp.hpl.jena.rdf.model.Model;
@@ -96,6 +93,8 @@ public class CombineBloomFiltersFromRDF {
 			}
 			for (Entry<String, BloomFilterWorker> entry : workers.entrySet()) {
 				while(!entry.getValue().isFinished());
+				if (entry.getValue().getFailure() != null)
+					throw new IOException("Unable to combine the bloom filters of " + entry.getKey(), entry.getValue().getFailure());
 				bfs.put(entry.getKey(), entry.getValue().getKR2RMLBloomFilter());
 			}
 			TripleStoreUtil utilObj = new TripleStoreUtil();
@@ -115,16 +114,9 @@ public class CombineBloomFiltersFromRDF {
 				bf2.populateFromCompressedAndBase64EncodedString(value);
 				bf2.and(bf);
 				bf2.xor(bf);
-				try {
-					Field f = BloomFilter.class.getDeclaredField("bits");
-					f.setAccessible(true);
-					BitSet bits = (BitSet) f.get(bf2);
-					if (bits.cardinality() != 0) {
-						verify = false;
-						break;
-					}
-				} catch (Exception e) {
-
+				if (bf2.cardinality() != 0) {
+					verify = false;
+					break;
 				}
 			}
 			if (!verify) {
@@ -1,6 +1,7 @@
 package edu.isi.karma.rdf;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -29,9 +30,13 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.SAXException;
 
+import edu.isi.karma.imp.BatchImport;
 import edu.isi.karma.imp.Import;
+import edu.isi.karma.imp.csv.CSVBatchImport;
 import edu.isi.karma.imp.csv.CSVImport;
+import edu.isi.karma.imp.json.JsonArrayBatchImport;
 import edu.isi.karma.imp.json.JsonImport;
+import edu.isi.karma.imp.json.XMLBatchImport;
 import edu.isi.karma.kr2rml.ErrorReport;
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
@@ -49,6 +54,11 @@ public class GenericRDFGenerator extends RdfGenerator {
 	private static Logger logger = LoggerFactory.getLogger(GenericRDFGenerator.class);
 	protected HashMap<String, R2RMLMappingIdentifier> modelIdentifiers;
 	protected HashMap<String, WorksheetR2RMLJenaModelParser> readModelParsers;
+	protected HashMap<String, KR2RMLMapping> readModelMappings;
+	protected int numRowPartitionThreads = 1;
+	protected int rowsPerPartition = KR2RMLWorksheetRDFGenerator.DEFAULT_ROWS_PER_PARTITION;
+	protected int streamingBatchSize = 0;
+	private static final int ENCODING_DETECTION_BYTES = 64 * 1024;
 
 	public enum InputType {
 		CSV,
@@ -60,10 +70,35 @@ public class GenericRDFGenerator extends RdfGenerator {
 		super();
 		this.modelIdentifiers = new HashMap<String, R2RMLMappingIdentifier>();
 		this.readModelParsers = new HashMap<String, WorksheetR2RMLJenaModelParser>();
+		this.readModelMappings = new HashMap<String, KR2RMLMapping>();
 	}
 
-	public void addModel(R2RMLMappingIdentifier modelIdentifier) {
+	public synchronized void addModel(R2RMLMappingIdentifier modelIdentifier) {
 		this.modelIdentifiers.put(modelIdentifier.getName(), modelIdentifier);
+		this.readModelParsers.remove(modelIdentifier.getName());
+		this.readModelMappings.remove(modelIdentifier.getName());
+	}
+
+	/**
+	 * Generate the RDF of each input for contiguous ranges of rows on 
+	 * numThreads threads. See {@link KR2RMLWorksheetRDFGenerator#setRowPartitioning(int, int)}
+	 */
+	public void setRowPartitioning(int numThreads, int rowsPerPartition) {
+		this.numRowPartitionThreads = numThreads;
+		this.rowsPerPartition = rowsPerPartition;
+	}
+
+	/**
+	 * Read JSON arrays, CSV lines and the child elements of the root of XML
+	 * documents a batch of records at a time, generating the RDF of each batch
+	 * before reading the next one, instead of loading the whole input into a
+	 * worksheet.  Only used when the input type is given.
+	 * 
+	 * @param recordsPerBatch
+	 *            number of records in a worksheet, 0 to disable streaming
+	 */
+	public void setStreamingBatchSize(int recordsPerBatch) {
+		this.streamingBatchSize = recordsPerBatch;
 	}
 
 	public void generateRDF(String modelName, String sourceName, String data, InputType dataType, boolean addProvenance,
@@ -134,36 +169,125 @@ public class GenericRDFGenerator extends RdfGenerator {
 			throws KarmaException, IOException {
 		logger.debug("Generating rdf for " + sourceName);
 		
-		Workspace workspace = initializeWorkspace();
 		R2RMLMappingIdentifier id = this.modelIdentifiers.get(modelName);
 		if(id == null) {
 			throw new KarmaException("Cannot generate RDF. Model named " + modelName + " does not exist");
 		}
 		
-		Worksheet worksheet = generateWorksheet(sourceName, new BufferedInputStream(data), dataType, 
-				workspace, maxNumLines);
-		
-		//Check if the parser for this model exists, else create one
-		WorksheetR2RMLJenaModelParser modelParser = readModelParsers.get(modelName);
-		if(modelParser == null) {
-			modelParser = loadModel(id);
+		if(streamingBatchSize > 0 && dataType != null) {
+			generateRDFInBatches(id, sourceName, data, dataType, maxNumLines, addProvenance, writers);
+			logger.debug("Generated rdf for " + sourceName);
+			return;
 		}
 		
-		//Generate mappping data for the worksheet using the model parser
-		KR2RMLMapping mapping = modelParser.parse();
+		Workspace workspace = acquireWorkspace();
+		try {
+			Worksheet worksheet = generateWorksheet(sourceName, new BufferedInputStream(data), dataType, 
+					workspace, maxNumLines);
+			
+			KR2RMLMapping mapping = getMapping(id);
+			
+			applyHistoryToWorksheet(workspace, worksheet, mapping);
+	
+			//Generate RDF using the mapping data
+			ErrorReport errorReport = new ErrorReport();
+			
+			KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
+			        workspace.getFactory(), workspace.getOntologyManager(), writers,
+			        addProvenance, mapping, errorReport);
+			rdfGen.setRowPartitioning(numRowPartitionThreads, rowsPerPartition);
+			rdfGen.generateRDF(true);
+		} finally {
+			releaseWorkspace(workspace);
+		}
 		
-		applyHistoryToWorksheet(workspace, worksheet, mapping);
+		logger.debug("Generated rdf for " + sourceName);
+	}
 
-		//Generate RDF using the mapping data
-		ErrorReport errorReport = new ErrorReport();
+	private void generateRDFInBatches(R2RMLMappingIdentifier id, String sourceName, InputStream data, 
+			InputType dataType, int maxNumLines, boolean addProvenance, List<KR2RMLRDFWriter> writers) 
+			throws KarmaException, IOException {
+		BufferedInputStream is = new BufferedInputStream(data);
 		
-		KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
-		        workspace.getFactory(), workspace.getOntologyManager(), writers,
-		        addProvenance, mapping, errorReport);
-		rdfGen.generateRDF(true);
-		removeWorkspace(workspace);
+		// Only look at the beginning of the input, so that it doesn't get buffered
+		is.mark(ENCODING_DETECTION_BYTES);
+		byte[] start = new byte[ENCODING_DETECTION_BYTES];
+		int length = IOUtils.read(is, start);
+		is.reset();
+		String encoding = EncodingDetector.detect(new ByteArrayInputStream(start, 0, length));
+		Reader reader = EncodingDetector.getInputStreamReader(is, encoding);
 		
-		logger.debug("Generated rdf for " + sourceName);
+		BatchImport batchImport = null;
+		switch (dataType) {
+			case JSON : {
+				batchImport = new JsonArrayBatchImport(reader, sourceName, encoding, streamingBatchSize, maxNumLines);
+				break;
+			}
+			case XML : {
+				batchImport = new XMLBatchImport(reader, sourceName, encoding, streamingBatchSize, maxNumLines);
+				break;
+			}
+			case CSV : {
+				batchImport = new CSVBatchImport(reader, sourceName, encoding, streamingBatchSize, maxNumLines, ',', '\"');
+				break;
+			}
+		}
+		
+		KR2RMLMapping mapping = getMapping(id);
+		ErrorReport errorReport = new ErrorReport();
+		try {
+			while(true) {
+				Workspace workspace = acquireWorkspace();
+				try {
+					Worksheet worksheet = batchImport.generateNextWorksheet(workspace);
+					if(worksheet == null) {
+						break;
+					}
+					applyHistoryToWorksheet(workspace, worksheet, mapping);
+					
+					KR2RMLWorksheetRDFGenerator rdfGen = new KR2RMLWorksheetRDFGenerator(worksheet,
+					        workspace.getFactory(), workspace.getOntologyManager(), writers,
+					        addProvenance, mapping, errorReport);
+					rdfGen.setRowPartitioning(numRowPartitionThreads, rowsPerPartition);
+					// a batch doesn't have the columns that none of its records have
+					rdfGen.setSkipMissingColumns(true);
+					rdfGen.generateRDF(false);
+				} catch (JSONException e) {
+					logger.error("Error generating worksheet", e);
+					throw new KarmaException("Unable to generate worksheet: " + e.getMessage());
+				} finally {
+					releaseWorkspace(workspace);
+				}
+			}
+			logger.debug("Generated rdf for " + batchImport.getNumRecords() + " records");
+		} finally {
+			batchImport.close();
+			for(KR2RMLRDFWriter writer : writers) {
+				writer.flush();
+				writer.close();
+			}
+		}
+	}
+
+	/**
+	 * The mapping only depends on the model, so it is parsed the first time 
+	 * the model is used and shared by all the sources it is applied to.
+	 */
+	private synchronized KR2RMLMapping getMapping(R2RMLMappingIdentifier id) 
+			throws KarmaException, JSONException, IOException {
+		KR2RMLMapping mapping = readModelMappings.get(id.getName());
+		if(mapping == null) {
+			//Check if the parser for this model exists, else create one
+			WorksheetR2RMLJenaModelParser modelParser = readModelParsers.get(id.getName());
+			if(modelParser == null) {
+				modelParser = loadModel(id);
+			}
+			
+			//Generate mappping data for the worksheet using the model parser
+			mapping = modelParser.parse();
+			readModelMappings.put(id.getName(), mapping);
+		}
+		return mapping;
 	}
 
 	private InputType getInputType(Metadata metadata) {
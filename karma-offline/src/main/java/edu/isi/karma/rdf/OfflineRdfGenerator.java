@@ -50,8 +50,11 @@ import org.slf4j.LoggerFactory;
 
 import edu.isi.karma.controller.update.UpdateContainer;
 import edu.isi.karma.kr2rml.BloomFilterKR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.KR2RMLBloomFilterManager;
 import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
 import edu.isi.karma.kr2rml.N3KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.StreamingN3KR2RMLRDFWriter;
 import edu.isi.karma.kr2rml.URIFormatter;
 import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
 import edu.isi.karma.metadata.KarmaMetadataManager;
@@ -68,12 +71,15 @@ import edu.isi.karma.webserver.KarmaException;
 public class OfflineRdfGenerator {
 
     private static Logger logger = LoggerFactory.getLogger(OfflineRdfGenerator.class);
+    private static final double DEFAULT_BLOOM_FILTER_FALSE_POSITIVE_RATE = 0.01;
 	private String inputType;
 	private String modelFilePath;
 	private String modelURLString;
 	private String baseURI;
 	private String outputFilePath;
 	private String bloomFiltersFilePath;
+	private String sBloomFilterExpectedUris;
+	private String sBloomFilterFalsePositiveRate;
 	private List<KR2RMLRDFWriter> writers;
 	private URL modelURL;
 	private String dbtypeStr;
@@ -92,6 +98,9 @@ public class OfflineRdfGenerator {
 	private DBType dbType;
 	private File inputFile;
 	private int maxNumLines; 
+	private String sNumThreads;
+	private String sBatchSize;
+	private boolean useStreamingWriter;
     public OfflineRdfGenerator(CommandLine cl)
     {
     	
@@ -183,6 +192,9 @@ public class OfflineRdfGenerator {
 		outputFilePath = (String) cl.getValue("--outputfile");
 		baseURI = (String) cl.getValue("--baseuri");
 		bloomFiltersFilePath = (String) cl.getValue("--outputbloomfilter");
+		sBloomFilterExpectedUris = (String) cl.getValue("--bloomfilteruris");
+		sBloomFilterFalsePositiveRate = (String) cl.getValue("--bloomfilterfpr");
+		useStreamingWriter = cl.hasOption("--streamingwriter");
 		parseDatabaseCommandLineOptions(cl);
 		parseFileCommandLineOptions(cl);
 
@@ -208,6 +220,8 @@ public class OfflineRdfGenerator {
 		sourceFilePath = (String) cl.getValue("--filepath");
 		sMaxNumLines = (String) cl.getValue("--maxNumLines");
 		sourceName = (String) cl.getValue("--sourcename");
+		sNumThreads = (String) cl.getValue("--threads");
+		sBatchSize = (String) cl.getValue("--batchsize");
 	}
     protected boolean validateCommandLineOptions() throws IOException
     {
@@ -283,6 +297,10 @@ public class OfflineRdfGenerator {
 		
 		DatabaseTableRDFGenerator dbRdfGen = new DatabaseTableRDFGenerator(dbType,
 		        hostname, port, username, password, dBorSIDName, encoding);
+		if(sNumThreads != null || sBatchSize != null) {
+			dbRdfGen.setPipelining(sBatchSize != null ? Integer.parseInt(sBatchSize) : DatabaseTableRDFGenerator.DEFAULT_CHUNK_SIZE, 
+					sNumThreads != null ? Integer.parseInt(sNumThreads) : 1);
+		}
 		if(inputType.equals("DB")) {
 			R2RMLMappingIdentifier id = new R2RMLMappingIdentifier(tablename, modelURL);
 			createWriters(id);
@@ -360,6 +378,17 @@ public class OfflineRdfGenerator {
 	protected void createN3Writer()
 			throws UnsupportedEncodingException, FileNotFoundException {
 
+		if(useStreamingWriter)
+		{
+			StreamingN3KR2RMLRDFWriter n3Writer = new StreamingN3KR2RMLRDFWriter(new URIFormatter(), 
+					new FileOutputStream(outputFilePath).getChannel());
+			if(baseURI != null)
+			{
+				n3Writer.setBaseURI(baseURI);
+			}
+			writers.add(n3Writer);
+			return;
+		}
 		OutputStreamWriter fw = new OutputStreamWriter(new FileOutputStream(outputFilePath), "UTF-8");
 		BufferedWriter bw = new BufferedWriter(fw);
 		PrintWriter pw = new PrintWriter(bw);
@@ -379,7 +408,14 @@ public class OfflineRdfGenerator {
 			BloomFilterKR2RMLRDFWriter bloomfilter = null;
 			if (bloomfilterpw != null)
 			{
-				bloomfilter = new BloomFilterKR2RMLRDFWriter(bloomfilterpw, id, true, baseURI);
+				KR2RMLBloomFilterManager bloomFilterManager = new KR2RMLBloomFilterManager(id);
+				if (sBloomFilterExpectedUris != null) {
+					double falsePositiveRate = sBloomFilterFalsePositiveRate != null ? 
+							Double.parseDouble(sBloomFilterFalsePositiveRate) : DEFAULT_BLOOM_FILTER_FALSE_POSITIVE_RATE;
+					bloomFilterManager = new KR2RMLBloomFilterManager(id, 
+							Long.parseLong(sBloomFilterExpectedUris), falsePositiveRate);
+				}
+				bloomfilter = new BloomFilterKR2RMLRDFWriter(bloomfilterpw, bloomFilterManager, true, baseURI);
 				writers.add(bloomfilter);
 			}
 		}
@@ -400,6 +436,13 @@ public class OfflineRdfGenerator {
 		createWriters(id);
 		GenericRDFGenerator rdfGenerator = new GenericRDFGenerator();
 		rdfGenerator.addModel(id);
+		if(sNumThreads != null) {
+			rdfGenerator.setRowPartitioning(Integer.parseInt(sNumThreads), 
+					KR2RMLWorksheetRDFGenerator.DEFAULT_ROWS_PER_PARTITION);
+		}
+		if(sBatchSize != null) {
+			rdfGenerator.setStreamingBatchSize(Integer.parseInt(sBatchSize));
+		}
 		InputType inputType = null;
 		if(this.inputType.equalsIgnoreCase("CSV"))
 			inputType = InputType.CSV;
@@ -435,7 +478,15 @@ public class OfflineRdfGenerator {
                 .withOption(buildOption("tablename", "hostname for database connection", "tablename", obuilder, abuilder))
                 .withOption(buildOption("queryfile", "query file for loading data", "queryfile", obuilder, abuilder))
                 .withOption(buildOption("outputbloomfilter", "generate bloom filters", "bloomfiltersfile", obuilder, abuilder))
+                .withOption(buildOption("bloomfilteruris", "number of URIs expected in each bloom filter, to size the filters", "bloomfilteruris", obuilder, abuilder))
+                .withOption(buildOption("bloomfilterfpr", "false positive rate of the bloom filters sized by bloomfilteruris, 0.01 by default", "bloomfilterfpr", obuilder, abuilder))
                 .withOption(buildOption("baseuri", "specifies base uri", "base URI", obuilder, abuilder))
+                .withOption(buildOption("threads", "number of threads generating RDF for ranges of rows or chunks of database rows", "threads", obuilder, abuilder))
+                .withOption(buildOption("batchsize", "number of records of a JSON array, CSV or XML file or of rows of a database table to read and generate RDF for at a time", "batchsize", obuilder, abuilder))
+                .withOption(obuilder
+                .withLongName("streamingwriter")
+                .withDescription("write the triples through the streaming N-Triples writer")
+                .create())
                 .withOption(obuilder
                 .withLongName("help")
                 .withDescription("print this message")
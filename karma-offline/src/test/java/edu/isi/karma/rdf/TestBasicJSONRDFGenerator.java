@@ -2,12 +2,15 @@ package edu.isi.karma.rdf;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 
+import org.json.JSONArray;
+
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -90,6 +93,31 @@ public class TestBasicJSONRDFGenerator extends TestJSONRDFGenerator {
 		}
 	}
 
+	@Test
+	public void testGenerateCompactJSON1() {
+		try {
+			String filename = "people.json";
+			logger.info("Loading json file: " + filename);
+			StringWriter sw = new StringWriter();
+			PrintWriter pw = new PrintWriter(sw);
+			rdfGen.generateRDF("people-model", new File(getTestResource(filename).toURI()), InputType.JSON, false, 
+					new JSONKR2RMLRDFWriter(pw));
+			String indented = sw.toString();
+			
+			sw = new StringWriter();
+			pw = new PrintWriter(sw);
+			rdfGen.generateRDF("people-model", new File(getTestResource(filename).toURI()), InputType.JSON, false, 
+					JSONKR2RMLRDFWriter.createCompactWriter(pw));
+			String compact = sw.toString();
+			
+			assertTrue(compact.length() < indented.length());
+			assertEquals(new JSONArray(indented).toString(), new JSONArray(compact).toString());
+		} catch (Exception e) {
+			logger.error("testGenerateCompactJSON1 failed:", e);
+			fail("Execption: " + e.getMessage());
+		}
+	}
+
 	/**
 	 * Test method for
 	 * {@link edu.isi.karma.rdf.JSONRDFGenerator#generateRDF(java.lang.String, java.lang.String, boolean, java.io.PrintWriter)}
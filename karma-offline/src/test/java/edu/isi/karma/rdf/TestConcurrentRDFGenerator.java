@@ -0,0 +1,181 @@
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+import edu.isi.karma.rep.HNode.HNodeType;
+import edu.isi.karma.rep.RepFactory;
+import edu.isi.karma.rep.Row;
+import edu.isi.karma.rep.Worksheet;
+import edu.isi.karma.rep.Workspace;
+import edu.isi.karma.rep.WorkspaceManager;
+
+/**
+ * Runs several conversions, and workspace and worksheet creation, in parallel
+ * threads of the same JVM.
+ */
+public class TestConcurrentRDFGenerator extends TestJSONRDFGenerator {
+
+	private static final int NUM_THREADS = 8;
+	private static final int NUM_ITERATIONS = 10;
+
+	private ExecutorService executor;
+
+	@Before
+	public void setUp() throws Exception {
+		rdfGen = createGenerator();
+		executor = Executors.newFixedThreadPool(NUM_THREADS);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		executor.shutdownNow();
+	}
+
+	private GenericRDFGenerator createGenerator() {
+		GenericRDFGenerator generator = new GenericRDFGenerator();
+		generator.addModel(new R2RMLMappingIdentifier("people-model",
+				getTestResource("people-model.ttl")));
+		return generator;
+	}
+
+	private String generate(GenericRDFGenerator generator) throws Exception {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		generator.generateRDF("people-model", new File(getTestResource(
+				"people.json").toURI()), InputType.JSON, false,
+				createBasicWriter(pw));
+		return sw.toString();
+	}
+
+	/**
+	 * Runs the task on every thread at once and waits for all of them,
+	 * failing on the first exception.
+	 */
+	private void runConcurrently(final Callable<Void> task) throws Exception {
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>();
+		for (int i = 0; i < NUM_THREADS; i++) {
+			futures.add(executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					start.await();
+					return task.call();
+				}
+			}));
+		}
+		start.countDown();
+		for (Future<Void> future : futures) {
+			future.get();
+		}
+	}
+
+	@Test
+	public void testConcurrentWorkspaceIds() throws Exception {
+		final Set<String> workspaceIds = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		final Workspace shared = WorkspaceManager.getInstance()
+				.createWorkspace();
+		final RepFactory factory = shared.getFactory();
+		final Set<String> factoryIds = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		runConcurrently(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				for (int i = 0; i < NUM_ITERATIONS * 10; i++) {
+					Workspace workspace = WorkspaceManager.getInstance()
+							.createWorkspace();
+					assertTrue(workspaceIds.add(workspace.getId()));
+					assertTrue(factoryIds.add(factory.getNewId("T")));
+				}
+				return null;
+			}
+		});
+		assertEquals(NUM_THREADS * NUM_ITERATIONS * 10, workspaceIds.size());
+		assertEquals(NUM_THREADS * NUM_ITERATIONS * 10, factoryIds.size());
+		for (String id : workspaceIds) {
+			assertNotNull(WorkspaceManager.getInstance().getWorkspace(id));
+			WorkspaceManager.getInstance().removeWorkspace(id);
+		}
+		WorkspaceManager.getInstance().removeWorkspace(shared.getId());
+	}
+
+	@Test
+	public void testConcurrentWorksheets() throws Exception {
+		final Workspace workspace = WorkspaceManager.getInstance()
+				.createWorkspace();
+		final RepFactory factory = workspace.getFactory();
+		final int numRows = 100;
+		runConcurrently(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				for (int i = 0; i < NUM_ITERATIONS; i++) {
+					Worksheet worksheet = factory.createWorksheet(
+							Thread.currentThread().getName(), workspace,
+							"UTF-8");
+					String hNodeId = worksheet.addHNode("value",
+							HNodeType.Regular, factory).getId();
+					for (int j = 0; j < numRows; j++) {
+						Row row = worksheet.addRow(factory);
+						row.setValue(hNodeId, Integer.toString(j), factory);
+						assertEquals(row, factory.getRow(row.getId()));
+						assertEquals(Integer.toString(j),
+								factory.getNode(row.getNode(hNodeId).getId())
+										.getValue().asString());
+					}
+					assertEquals(worksheet,
+							factory.getWorksheet(worksheet.getId()));
+				}
+				return null;
+			}
+		});
+		assertEquals(NUM_THREADS * NUM_ITERATIONS, workspace.getWorksheets()
+				.size());
+		WorkspaceManager.getInstance().removeWorkspace(workspace.getId());
+	}
+
+	@Test
+	public void testConcurrentGeneration() throws Exception {
+		final List<String> expected = getSortedLines(generate(rdfGen));
+		assertTrue(expected.size() > 1);
+		final Set<String> threadsWithOwnGenerator = Collections
+				.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+		runConcurrently(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				// half of the threads share a generator
+				GenericRDFGenerator generator = rdfGen;
+				if (threadsWithOwnGenerator.size() < NUM_THREADS / 2
+						&& threadsWithOwnGenerator.add(Thread.currentThread()
+								.getName())) {
+					generator = createGenerator();
+				}
+				for (int i = 0; i < NUM_ITERATIONS; i++) {
+					assertEquals(expected, getSortedLines(generate(generator)));
+				}
+				return null;
+			}
+		});
+	}
+}
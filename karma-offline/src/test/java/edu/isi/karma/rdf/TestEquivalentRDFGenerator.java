@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+
+/**
+ * Generates the RDF of the nested JSON, JSON and CSV sample inputs in two ways
+ * that must give the same RDF, and compares them.
+ */
+public abstract class TestEquivalentRDFGenerator extends TestJSONRDFGenerator {
+
+	@Before
+	public void setUp() throws Exception {
+		setUpSampleModels();
+	}
+
+	@Test
+	public void testNestedJSON() throws Exception {
+		assertSameRDF("cs548-events.json", "cs548-events-model", InputType.JSON);
+	}
+
+	@Test
+	public void testJSON() throws Exception {
+		assertSameRDF("people.json", "people-model", InputType.JSON);
+	}
+
+	@Test
+	public void testCSV() throws Exception {
+		assertSameRDF("schedule.csv", "schedule-model", InputType.CSV);
+	}
+
+	protected abstract void assertSameRDF(String filename, String modelName, InputType inputType) throws Exception;
+}
@@ -1,70 +1,101 @@
-/*******************************************************************************
- * Copyright 2012 University of Southern California
- * 
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- * 
- * 	http://www.apache.org/licenses/LICENSE-2.0
- * 
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- * 
- * This code was developed by the Information Integration Group as part 
- * of the Karma project at the Information Sciences Institute of the 
- * University of Southern California.  For more information, publications, 
- * and related projects, please see: http://www.isi.edu/integration
- ******************************************************************************/
-
-package edu.isi.karma.rdf;
-
-import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertNotEquals;
-
-import java.io.File;
-import java.io.IOException;
-import java.io.PrintWriter;
-import java.io.StringWriter;
-import java.net.URISyntaxException;
-import java.net.URL;
-import java.util.List;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
-import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
-import edu.isi.karma.webserver.KarmaException;
-
-
-/**
- * @author dipsy
- * 
- */
-public abstract class TestJSONRDFGenerator extends TestRdfGenerator{
-
-	protected GenericRDFGenerator rdfGen;
-	private static Logger logger = LoggerFactory.getLogger(TestJSONRDFGenerator.class);
-	
-	protected void executeBasicJSONTest(String filename, String modelName, boolean generateProvenance, int expectedNumberOfLines) throws IOException, URISyntaxException,
-			KarmaException {
-		logger.info("Loading json file: " + filename);
-		StringWriter sw = new StringWriter();
-		PrintWriter pw = new PrintWriter(sw);
-		List<KR2RMLRDFWriter> writers = this.createBasicWriter(pw);
-
-		rdfGen.generateRDF(modelName, new File(getTestResource(filename).toURI()), InputType.JSON, generateProvenance, writers);
-		String rdf = sw.toString();
-		assertNotEquals(rdf.length(), 0);
-		String[] lines = rdf.split(System.getProperty("line.separator"));
-		assertEquals(expectedNumberOfLines, lines.length);
-	}
-
-	protected URL getTestResource(String name)
-	{
-		return getClass().getClassLoader().getResource(name);
-	}
-}
+/*******************************************************************************
+ * Copyright 2012 University of Southern California
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ * This code was developed by the Information Integration Group as part 
+ * of the Karma project at the Information Sciences Institute of the 
+ * University of Southern California.  For more information, publications, 
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.mapping.R2RMLMappingIdentifier;
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+import edu.isi.karma.webserver.KarmaException;
+
+
+/**
+ * @author dipsy
+ * 
+ */
+public abstract class TestJSONRDFGenerator extends TestRdfGenerator{
+
+	protected GenericRDFGenerator rdfGen;
+	private static Logger logger = LoggerFactory.getLogger(TestJSONRDFGenerator.class);
+	
+	protected void executeBasicJSONTest(String filename, String modelName, boolean generateProvenance, int expectedNumberOfLines) throws IOException, URISyntaxException,
+			KarmaException {
+		logger.info("Loading json file: " + filename);
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		List<KR2RMLRDFWriter> writers = this.createBasicWriter(pw);
+
+		rdfGen.generateRDF(modelName, new File(getTestResource(filename).toURI()), InputType.JSON, generateProvenance, writers);
+		String rdf = sw.toString();
+		assertNotEquals(rdf.length(), 0);
+		String[] lines = rdf.split(System.getProperty("line.separator"));
+		assertEquals(expectedNumberOfLines, lines.length);
+	}
+
+	/**
+	 * Sets up the generator with the models of the nested JSON, JSON and CSV
+	 * inputs the tests comparing two ways of generating RDF run on.
+	 */
+	protected void setUpSampleModels() {
+		rdfGen = new GenericRDFGenerator();
+		rdfGen.addModel(new R2RMLMappingIdentifier("cs548-events-model",
+				getTestResource("cs548-events-model.ttl")));
+		rdfGen.addModel(new R2RMLMappingIdentifier("people-model",
+				getTestResource("people-model.ttl")));
+		rdfGen.addModel(new R2RMLMappingIdentifier("schedule-model",
+				getTestResource("schedule-model.txt")));
+	}
+
+	protected void generate(String filename, String modelName, InputType inputType,
+			List<KR2RMLRDFWriter> writers) throws Exception {
+		rdfGen.generateRDF(modelName, new File(getTestResource(filename).toURI()), inputType, false, writers);
+	}
+
+	/**
+	 * @return the sorted lines of the RDF written by the basic writer
+	 */
+	protected List<String> generateSortedLines(String filename, String modelName, InputType inputType) throws Exception {
+		StringWriter sw = new StringWriter();
+		PrintWriter pw = new PrintWriter(sw);
+		generate(filename, modelName, inputType, createBasicWriter(pw));
+		pw.flush();
+		return getSortedLines(sw.toString());
+	}
+
+	protected URL getTestResource(String name)
+	{
+		return getClass().getClassLoader().getResource(name);
+	}
+}
@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.List;
+
+import edu.isi.karma.kr2rml.KR2RMLWorksheetRDFGenerator;
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+
+/**
+ * Generates the RDF of the same inputs with the rows split in partitions on
+ * several threads and without, and compares the triples.
+ */
+public class TestPartitionedRDFGenerator extends TestEquivalentRDFGenerator {
+
+	@Override
+	protected void assertSameRDF(String filename, String modelName, InputType inputType) throws Exception {
+		rdfGen.setRowPartitioning(1, KR2RMLWorksheetRDFGenerator.DEFAULT_ROWS_PER_PARTITION);
+		List<String> sequential = generateSortedLines(filename, modelName, inputType);
+		// partitions of a few rows, so that each input is split in several of them
+		rdfGen.setRowPartitioning(4, 2);
+		List<String> partitioned = generateSortedLines(filename, modelName, inputType);
+
+		assertFalse(sequential.isEmpty());
+		assertEquals(sequential, partitioned);
+	}
+}
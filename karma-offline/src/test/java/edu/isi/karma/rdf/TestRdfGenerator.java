@@ -6,6 +6,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -91,6 +93,21 @@ public abstract class TestRdfGenerator {
      }
 	
 
+	/**
+	 * @return the non empty lines of the RDF, trimmed and sorted, to compare 
+	 *         RDF whose triples may be written in another order
+	 */
+	protected static List<String> getSortedLines(String rdf) {
+		List<String> lines = new ArrayList<String>();
+		for (String line : rdf.split("(\r\n|\n)")) {
+			line = line.trim();
+			if (line.length() > 0)
+				lines.add(line);
+		}
+		Collections.sort(lines);
+		return lines;
+	}
+
 	protected HashSet<String> getHashSet(String[] array) {
 		HashSet<String> hashSet = new HashSet<String>();
 		for (int i = 0; i < array.length; i++) {
@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2014 University of Southern California
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * 	http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * This code was developed by the Information Integration Group as part
+ * of the Karma project at the Information Sciences Institute of the
+ * University of Southern California.  For more information, publications,
+ * and related projects, please see: http://www.isi.edu/integration
+ ******************************************************************************/
+
+package edu.isi.karma.rdf;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedList;
+import java.util.List;
+
+import edu.isi.karma.kr2rml.KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.StreamingN3KR2RMLRDFWriter;
+import edu.isi.karma.kr2rml.URIFormatter;
+import edu.isi.karma.rdf.GenericRDFGenerator.InputType;
+
+/**
+ * Generates the RDF of the same inputs with the N3KR2RMLRDFWriter and the
+ * StreamingN3KR2RMLRDFWriter and compares the lines they write.
+ */
+public class TestStreamingN3RDFGenerator extends TestEquivalentRDFGenerator {
+
+	@Override
+	protected void assertSameRDF(String filename, String modelName, InputType inputType) throws Exception {
+		List<String> expected = generateSortedLines(filename, modelName, inputType);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StreamingN3KR2RMLRDFWriter streamingWriter = new StreamingN3KR2RMLRDFWriter(new URIFormatter(), out);
+		List<KR2RMLRDFWriter> writers = new LinkedList<KR2RMLRDFWriter>();
+		writers.add(streamingWriter);
+		generate(filename, modelName, inputType, writers);
+		streamingWriter.flush();
+
+		assertFalse(expected.isEmpty());
+		assertEquals(expected, getSortedLines(out.toString("UTF-8")));
+	}
+}
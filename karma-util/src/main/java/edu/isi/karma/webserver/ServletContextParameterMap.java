@@ -42,7 +42,7 @@ public class ServletContextParameterMap {
 		USER_DIRECTORY_PATH,
 		MSFT,
 		WEBAPP_PATH,
-		PRELOADED_ONTOLOGY_DIRECTORY, POLYGON_CLASS, SRID_PROPERTY, 
+		PRELOADED_ONTOLOGY_DIRECTORY, ONTOLOGY_CACHE_DIRECTORY, WORKSHEET_SPILL_DIRECTORY, POLYGON_CLASS, SRID_PROPERTY, 
 		SRID_CLASS, AUTO_MODEL_URI, PYTHON_SCRIPTS_DIRECTORY,
 		KML_CUSTOMIZATION_CLASS, KML_CATEGORY_PROPERTY,KML_LABEL_PROPERTY,
 		CLEANING_SERVICE_URL, CLUSTER_SERVICE_URL,